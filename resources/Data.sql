@@ -1,3 +1,6 @@
+/* Tables and indexes are also managed by the versioned scripts in src/main/resources/db/migration,
+   applied at startup by SchemaMigrator (and by the integration tests on the test DB). */
+
 /* Setting up PROD DB */
 create database prod;
 use prod;
@@ -0,0 +1,82 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+//Chemins chauds de TicketDAO / ParkingSpotDAO, avec et sans pool (paramètre pooled de EmbeddedParkingState)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoBenchmark {
+
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private String parkedPlate;
+    private ParkingSpot parkedSpot;
+
+    //Un véhicule garé par thread pour les lectures
+    @Setup
+    public void setUp(EmbeddedParkingState parking) {
+        parkedPlate = parking.newPlate();
+        parkedSpot = new ParkingSpot(parking.parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR), ParkingType.CAR, true);
+        parking.ticketDAO.saveIncomingTicket(newTicket(parkedSpot, parkedPlate));
+    }
+
+    @Benchmark
+    public Ticket getTicket(EmbeddedParkingState parking) {
+        return parking.ticketDAO.getTicket(parkedPlate);
+    }
+
+    @Benchmark
+    public int getNbTicketCached(EmbeddedParkingState parking) {
+        return parking.ticketDAO.getNbTicket(parkedPlate);
+    }
+
+    @Benchmark
+    public int getNbTicketUncached(EmbeddedParkingState parking) {
+        return parking.ticketDAO.getNbTicket(parking.newPlate());
+    }
+
+    @Benchmark
+    public boolean updateParking(EmbeddedParkingState parking) {
+        //alterne libération et occupation : chaque mise à jour conditionnelle modifie une ligne
+        parkedSpot.setAvailable(!parkedSpot.isAvailable());
+        return parking.parkingSpotDAO.updateParking(parkedSpot);
+    }
+
+    @Benchmark
+    public Ticket entryExitTransactions(EmbeddedParkingState parking) {
+        String plate = parking.newPlate();
+        int number = parking.parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+        ParkingSpot spot = new ParkingSpot(number, ParkingType.CAR, true);
+        parking.ticketDAO.saveIncomingTicket(newTicket(spot, plate));
+        Ticket ticket = parking.ticketDAO.saveOutgoingTicket(plate, new Date(), fareCalculatorService);
+        parking.parkingSpotDAO.releaseSlot(spot);
+        return ticket;
+    }
+
+    private static Ticket newTicket(ParkingSpot spot, String plate) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(spot);
+        ticket.setVehicleRegNumber(plate);
+        ticket.setInTime(new Date(System.currentTimeMillis() - 3_600_000L));
+        return ticket;
+    }
+}
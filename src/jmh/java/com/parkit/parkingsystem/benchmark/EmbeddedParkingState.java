@@ -0,0 +1,79 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parking partagé par les threads du benchmark : base H2 embarquée, DAO avec ou sans pool de connexions.
+ * Les messages console du service sont coupés pour ne mesurer que le traitement.
+ */
+@State(Scope.Benchmark)
+public class EmbeddedParkingState {
+
+    public static final int CAR_SPOTS = 1000;
+    public static final int BIKE_SPOTS = 200;
+
+    @Param({"true", "false"})
+    public boolean pooled;
+
+    public ParkingSpotDAO parkingSpotDAO;
+    public TicketDAO ticketDAO;
+
+    private final AtomicInteger nextPlate = new AtomicInteger();
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        EmbeddedDataBaseTestConfig dataBaseConfig = pooled
+                ? new EmbeddedDataBaseTestConfig("bench")
+                : new UnpooledConfig("bench");
+        new DataBasePrepareService(dataBaseConfig).createParkingSpots(CAR_SPOTS, BIKE_SPOTS);
+
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.loadAvailableSlots();
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+
+        console = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    //Plaque unique par appel (VARCHAR(10))
+    public String newPlate() {
+        return String.format("BM%08d", nextPlate.incrementAndGet());
+    }
+
+    //Connexion physique ouverte puis fermée à chaque appel DAO, comme avant le pool
+    static class UnpooledConfig extends EmbeddedDataBaseTestConfig {
+        UnpooledConfig(String name) {
+            super(name);
+        }
+
+        @Override
+        public java.sql.Connection getConnection() throws ClassNotFoundException, java.sql.SQLException {
+            return openConnection();
+        }
+    }
+}
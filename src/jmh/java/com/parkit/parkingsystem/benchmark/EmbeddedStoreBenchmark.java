@@ -0,0 +1,79 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.EmbeddedStore;
+import com.parkit.parkingsystem.dao.MeteredParkingSpotStore;
+import com.parkit.parkingsystem.dao.MeteredTicketStore;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Même parcours que ParkingServiceBenchmark, sur le stockage embarqué (mémoire + journal local)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmbeddedStoreBenchmark {
+
+    @Param({"false", "true"})
+    public boolean syncWrites;
+
+    //opérations de quelques microsecondes : le cas où le surcoût des mesures serait le plus visible
+    @Param({"true", "false"})
+    public boolean metrics;
+
+    private final AtomicInteger nextPlate = new AtomicInteger();
+    private EmbeddedStore store;
+    private ParkingService parkingService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        store = EmbeddedStore.open(Files.createTempDirectory("bench-store"), syncWrites, 100_000);
+        for (int number = 1; number <= EmbeddedParkingState.CAR_SPOTS; number++) {
+            store.defineParkingSpot(number, ParkingType.CAR);
+        }
+        Metrics.setEnabled(metrics);
+        parkingService = metrics
+                ? new ParkingService(new MeteredParkingSpotStore(store), new MeteredTicketStore(store))
+                : new ParkingService(store, store);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+    @Benchmark
+    public ExitResult entryThenExit() {
+        String plate = String.format("BM%08d", nextPlate.incrementAndGet());
+        parkingService.enter(ParkingType.CAR, plate);
+        return parkingService.exit(plate);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ExitResult entryThenExitFourGates() {
+        return entryThenExit();
+    }
+}
@@ -0,0 +1,84 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.TariffTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FareCalculatorBenchmark {
+
+    //gratuit, moins d'une heure, une heure, une journée
+    @Param({"20", "45", "60", "1440"})
+    public int durationMinutes;
+
+    @Param({"CAR", "BIKE"})
+    public ParkingType parkingType;
+
+    @Param({"false", "true"})
+    public boolean discount;
+
+    //grille simple, ou tranches nuit/week-end avec majoration à 95% d'occupation
+    @Param({"false", "true"})
+    public boolean dynamic;
+
+    private FareCalculatorService fareCalculatorService;
+    private Ticket ticket;
+    private TariffTable tariffTable;
+    private long inTimeMillis;
+    private long outTimeMillis;
+
+    @Setup
+    public void setUp() {
+        fareCalculatorService = dynamic
+                ? new FareCalculatorService(TariffTable.builder()
+                        .ratePerHour(ParkingType.CAR, 1.5)
+                        .ratePerHour(ParkingType.BIKE, 1.0)
+                        .freePeriodMinutes(30)
+                        .discountFromVisit(2, 500)
+                        .timeBands("SAT-SUN 00:00-00:00 8000;MON-FRI 20:00-08:00 7000")
+                        .surcharges("8000:2000,9500:5000")
+                        .build(), (lotId, type) -> 9_500)
+                : new FareCalculatorService();
+        long outTime = System.currentTimeMillis();
+        ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+        ticket.setInTime(new Date(outTime - durationMinutes * 60_000L));
+        ticket.setOutTime(new Date(outTime));
+        tariffTable = fareCalculatorService.getTariffTable();
+        inTimeMillis = outTime - durationMinutes * 60_000L;
+        outTimeMillis = outTime;
+    }
+
+    @Benchmark
+    public double calculateFare() {
+        fareCalculatorService.calculateFare(ticket, discount);
+        return ticket.getPrice();
+    }
+
+    //Chemin des re-tarifications en masse : primitives seulement, sans Ticket ni Date
+    @Benchmark
+    public long tariffTablePrice() {
+        return tariffTable.price(parkingType, inTimeMillis, outTimeMillis, discount ? 2 : 1, 9_500);
+    }
+}
@@ -0,0 +1,59 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Débit des bornes (entrée puis sortie) selon la journalisation : niveau debug (traces par appel écrites)
+ * ou info (traces coupées), avec les loggers asynchrones livrés par défaut ou en mode synchrone.
+ * Les journaux vont dans un fichier temporaire (log4j2-benchmark.xml).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+public class LoggingBenchmark {
+
+    @Param({"debug", "info"})
+    public String logLevel;
+
+    private ParkingService parkingService;
+
+    @Setup
+    public void setUp(EmbeddedParkingState parking) {
+        Configurator.setRootLevel(Level.toLevel(logLevel));
+        parkingService = new ParkingService(parking.parkingSpotDAO, parking.ticketDAO);
+    }
+
+    @Benchmark
+    public ExitResult asyncLogging(EmbeddedParkingState parking) {
+        String plate = parking.newPlate();
+        parkingService.enter(ParkingType.CAR, plate);
+        return parkingService.exit(plate);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Dlog4j.configurationFile=log4j2-benchmark.xml",
+            "-DLog4jContextSelector=org.apache.logging.log4j.core.selector.ClassLoaderContextSelector"})
+    public ExitResult syncLogging(EmbeddedParkingState parking) {
+        return asyncLogging(parking);
+    }
+}
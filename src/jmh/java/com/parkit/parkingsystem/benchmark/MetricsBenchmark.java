@@ -0,0 +1,51 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//Coût d'une mesure (lecture d'horloge + enregistrement), seul et avec quatre threads sur le même histogramme
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    private final LatencyHistogram histogram = Metrics.histogram("MetricsBenchmark.record");
+
+    @Benchmark
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    //référence : l'horloge seule, avec le même nombre de threads
+    @Benchmark
+    @Threads(4)
+    public long nanoTimeFourThreads() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    public void startAndRecord() {
+        histogram.recordSince(Metrics.start());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void startAndRecordFourThreads() {
+        histogram.recordSince(Metrics.start());
+    }
+}
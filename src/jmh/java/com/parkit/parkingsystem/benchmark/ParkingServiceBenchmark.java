@@ -0,0 +1,59 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.MeteredParkingSpotStore;
+import com.parkit.parkingsystem.dao.MeteredTicketStore;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//Parcours complet d'un véhicule (entrée puis sortie) par l'API enter()/exit() de ParkingService sur base embarquée,
+//avec ou sans mesure des latences (paramètre metrics) pour en vérifier le surcoût
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParkingServiceBenchmark {
+
+    @Param({"true", "false"})
+    public boolean metrics;
+
+    private ParkingService parkingService;
+
+    @Setup
+    public void setUp(EmbeddedParkingState parking) {
+        Metrics.setEnabled(metrics);
+        parkingService = metrics
+                ? new ParkingService(new MeteredParkingSpotStore(parking.parkingSpotDAO), new MeteredTicketStore(parking.ticketDAO))
+                : new ParkingService(parking.parkingSpotDAO, parking.ticketDAO);
+    }
+
+    @Benchmark
+    public ExitResult entryThenExit(EmbeddedParkingState parking) {
+        String plate = parking.newPlate();
+        parkingService.enter(ParkingType.CAR, plate);
+        return parkingService.exit(plate);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ExitResult entryThenExitFourGates(EmbeddedParkingState parking) {
+        return entryThenExit(parking);
+    }
+}
@@ -0,0 +1,70 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.service.ReservationCalendar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Disponibilité d'un parking sur un intervalle et réservation/annulation, avec 30 jours de réservations déjà prises
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReservationCalendarBenchmark {
+
+    private static final long MINUTE = 60_000L;
+    private static final long HORIZON = 30 * 24 * 60 * MINUTE;
+
+    @Param({"1000", "100000"})
+    public int reservations;
+
+    private ReservationCalendar calendar;
+    private long origin;
+    private long[] starts;
+    private long[] ends;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        calendar = new ReservationCalendar(15 * MINUTE);
+        origin = System.currentTimeMillis();
+        Random random = new Random(42);
+        for (int i = 0; i < reservations; i++) {
+            long start = origin + (long) (random.nextDouble() * HORIZON);
+            calendar.add(start, start + (30 + random.nextInt(8 * 60)) * MINUTE, 1);
+        }
+        starts = new long[1024];
+        ends = new long[1024];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = origin + (long) (random.nextDouble() * HORIZON);
+            ends[i] = starts[i] + (30 + random.nextInt(8 * 60)) * MINUTE;
+        }
+    }
+
+    @Benchmark
+    public int availability() {
+        int i = next++ & 1023;
+        return calendar.getMax(starts[i], ends[i]);
+    }
+
+    @Benchmark
+    public int reserveAndCancel() {
+        int i = next++ & 1023;
+        calendar.add(starts[i], ends[i], 1);
+        calendar.add(starts[i], ends[i], -1);
+        return calendar.getNodeCount();
+    }
+}
@@ -0,0 +1,136 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recherches de tickets par plaque avec et sans les index de la migration V2, sur une table ticket remplie
+ * de rows tickets pour plates véhicules (base H2 embarquée, la sienne, créée au début de chaque essai).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TicketLookupBenchmark {
+
+    @Param({"false", "true"})
+    public boolean indexed;
+
+    @Param({"200000"})
+    public int rows;
+
+    @Param({"20000"})
+    public int plates;
+
+    private TicketDAO ticketDAO;
+    private Connection connection;
+    private PreparedStatement latest;
+    private PreparedStatement open;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("ticketLookup");
+        new DataBasePrepareService(dataBaseConfig).createParkingSpots(5, 0);
+        connection = dataBaseConfig.getConnection();
+        if (!indexed) {
+            try (Statement st = connection.createStatement()) {
+                st.execute("drop index if exists IDX_TICKET_VEHICLE_OUT_ID");
+                st.execute("drop index if exists IDX_TICKET_VEHICLE_ID");
+            }
+        }
+        seed();
+        latest = connection.prepareStatement(DBConstants.GET_TICKET);
+        open = connection.prepareStatement(DBConstants.GET_OPEN_TICKET);
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        latest.close();
+        open.close();
+        try (Statement st = connection.createStatement()) {
+            st.execute("drop all objects");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public boolean latestTicket() throws SQLException {
+        return lookup(latest);
+    }
+
+    @Benchmark
+    public boolean openTicket() throws SQLException {
+        return lookup(open);
+    }
+
+    //COUNT des passages, cache vidé à chaque appel
+    @Benchmark
+    public int ticketCountUncached() {
+        ticketDAO.getTicketCountCache().clear();
+        return ticketDAO.getNbTicket(plateOf(ThreadLocalRandom.current().nextInt(plates)));
+    }
+
+    private boolean lookup(PreparedStatement ps) throws SQLException {
+        ps.setString(1, plateOf(ThreadLocalRandom.current().nextInt(plates)));
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next();
+        }
+    }
+
+    //Chaque véhicule a plusieurs tickets clôturés ; un sur deux a en plus un ticket ouvert
+    private void seed() throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement ps = connection.prepareStatement(DBConstants.SAVE_TICKET)) {
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < rows; i++) {
+                int plate = i % plates;
+                boolean isOpen = (i >= rows - plates) && plate % 2 == 0;
+                ps.setInt(1, 1 + (i % 5));
+                ps.setString(2, plateOf(plate));
+                ps.setDouble(3, isOpen ? 0 : 1.5);
+                ps.setTimestamp(4, new Timestamp(now - (rows - i) * 60_000L));
+                ps.setTimestamp(5, isOpen ? null : new Timestamp(now - (rows - i) * 60_000L + 3_600_000L));
+                ps.addBatch();
+                if (i % 10_000 == 9_999) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static String plateOf(int plate) {
+        return String.format("PL%07d", plate);
+    }
+}
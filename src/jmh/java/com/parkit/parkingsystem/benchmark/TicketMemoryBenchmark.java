@@ -0,0 +1,101 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.CompactTickets;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Empreinte mémoire par ticket (affichée au démarrage de chaque essai) et parcours complet, objets Ticket contre CompactTickets
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class TicketMemoryBenchmark {
+
+    @Param({"objects", "compact"})
+    public String representation;
+
+    @Param({"1000000"})
+    public int size;
+
+    private List<Ticket> objects;
+    private CompactTickets compact;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long before = usedHeap();
+        if ("compact".equals(representation)) {
+            compact = new CompactTickets(size);
+            for (int i = 0; i < size; i++) {
+                compact.add(newTicket(i));
+            }
+        } else {
+            objects = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                objects.add(newTicket(i));
+            }
+        }
+        long bytes = usedHeap() - before;
+        System.out.println(representation + ": " + bytes / size + " bytes per ticket (" + bytes / (1024 * 1024) + " MB for " + size + " tickets)");
+    }
+
+    //Recette des tickets clôturés : parcours de tout le jeu en mémoire
+    @Benchmark
+    public double revenue() {
+        double revenue = 0;
+        if (compact != null) {
+            for (int i = 0; i < compact.size(); i++) {
+                if (!compact.isOpen(i)) {
+                    revenue += compact.getPrice(i);
+                }
+            }
+        } else {
+            for (Ticket ticket : objects) {
+                if (ticket.getOutTime() != null) {
+                    revenue += ticket.getPrice();
+                }
+            }
+        }
+        return revenue;
+    }
+
+    //Plaques distinctes, places partagées, un ticket sur dix encore ouvert
+    private static Ticket newTicket(int i) {
+        long inTime = 1_700_000_000_000L + i * 60_000L;
+        Ticket ticket = new Ticket();
+        ticket.setId(i + 1);
+        ticket.setParkingSpot(new ParkingSpot(i % 500 + 1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("AB" + (100_000 + i));
+        ticket.setPrice(1.5);
+        ticket.setInTime(new Date(inTime));
+        ticket.setOutTime(i % 10 == 0 ? null : new Date(inTime + 3_600_000L));
+        return ticket;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
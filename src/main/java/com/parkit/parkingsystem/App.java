@@ -1,13 +1,147 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.BatchTicketDAO;
+import com.parkit.parkingsystem.dao.EmbeddedStore;
+import com.parkit.parkingsystem.dao.MeteredParkingSpotStore;
+import com.parkit.parkingsystem.dao.MeteredTicketStore;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotStore;
+import com.parkit.parkingsystem.dao.ReservationDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketStore;
+import com.parkit.parkingsystem.dao.WriteBehindTicketDAO;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.server.GateServer;
+import com.parkit.parkingsystem.service.FareAuditJob;
+import com.parkit.parkingsystem.service.GateEventImporter;
 import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.service.OccupancyFeed;
+import com.parkit.parkingsystem.service.ParkingAnalytics;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.ReservationService;
+import com.parkit.parkingsystem.service.TariffTable;
+import com.parkit.parkingsystem.service.TicketArchiveJob;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
 public class App {
     private static final Logger logger = LogManager.getLogger("App");
-    public static void main(String args[]){
+    private static final int ARCHIVE_CHUNK_SIZE = 5000;
+    public static void main(String args[]) throws Exception {
         logger.info("Initializing Parking System");
-        InteractiveShell.loadInterface();
+        if (args.length > 0 && "reprice".equals(args[0])) {
+            // reprice [fichier de reprise] : re-tarifie les tickets clôturés avec la grille courante, sauf si elle a des majorations
+            DataBaseConfig dataBaseConfig = new DataBaseConfig();
+            new SchemaMigrator(dataBaseConfig).migrate();
+            String checkpoint = args.length > 1 ? args[1] : "reprice.checkpoint";
+            new FareAuditJob(dataBaseConfig, TariffTable.fromSystemProperties(), 10000, 1000,
+                    Runtime.getRuntime().availableProcessors()).run(Paths.get(checkpoint));
+            return;
+        }
+        if (args.length > 0 && "archive".equals(args[0])) {
+            // archive [jours] : déplace vers ticket_archive les tickets clôturés depuis plus de jours jours (90)
+            DataBaseConfig dataBaseConfig = new DataBaseConfig();
+            new SchemaMigrator(dataBaseConfig).migrate();
+            int retentionDays = args.length > 1 ? Integer.parseInt(args[1]) : 90;
+            new TicketArchiveJob(dataBaseConfig, retentionDays, ARCHIVE_CHUNK_SIZE).run();
+            return;
+        }
+        if (args.length > 1 && "import".equals(args[0])) {
+            // import <fichier> [fichier des rejets] : rejoue un journal hors ligne de bornes (CSV ou binaire)
+            DataBaseConfig dataBaseConfig = new DataBaseConfig();
+            new SchemaMigrator(dataBaseConfig).migrate();
+            // un journal write-behind en attente est appliqué avant de lire l'état de la base
+            // sans réservations : les passages rejoués ont déjà eu lieu, aucun ne peut être refusé après coup
+            TicketDAO pendingJournal = WriteBehindTicketDAO.fromSystemProperties();
+            if (pendingJournal instanceof WriteBehindTicketDAO) {
+                ((WriteBehindTicketDAO) pendingJournal).stop();
+            }
+            ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+            parkingSpotDAO.loadAvailableSlots();
+            BatchTicketDAO ticketDAO = new BatchTicketDAO(Integer.getInteger("parkingsystem.import.batchSize", 1000));
+            ticketDAO.load();
+            String rejects = args.length > 2 ? args[2] : args[1] + ".rejects";
+            new GateEventImporter(new ParkingService(parkingSpotDAO, ticketDAO), ticketDAO,
+                    Long.getLong("parkingsystem.import.progressEvery", 100000L)).run(Paths.get(args[1]), Paths.get(rejects));
+            return;
+        }
+        ParkingSpotStore parkingSpotStore;
+        TicketStore ticketStore;
+        int defaultThreads;
+        // réservations enregistrées en base ; en mémoire seulement avec le stockage embarqué
+        ReservationDAO reservationDAO = null;
+        if ("embedded".equals(System.getProperty("parkingsystem.storage"))) {
+            // -Dparkingsystem.storage=embedded : stockage en mémoire et fichiers locaux, sans MySQL
+            EmbeddedStore embeddedStore = EmbeddedStore.fromSystemProperties();
+            parkingSpotStore = embeddedStore;
+            ticketStore = embeddedStore;
+            defaultThreads = Runtime.getRuntime().availableProcessors();
+        } else {
+            DataBaseConfig dataBaseConfig = new DataBaseConfig();
+            new SchemaMigrator(dataBaseConfig).migrate();
+            // le journal write-behind éventuel est rejoué avant de charger les places libres
+            TicketDAO ticketDAO = WriteBehindTicketDAO.fromSystemProperties();
+            ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+            parkingSpotDAO.loadAvailableSlots();
+            if (!(ticketDAO instanceof WriteBehindTicketDAO)) {
+                // places libérées par les autres instances : relues quand un parking est à sec (la base fait foi)
+                parkingSpotDAO.setResyncIntervalMillis(Long.getLong("parkingsystem.claim.resyncMillis", 1000L));
+            }
+            ticketDAO.loadTicketCounts();
+            // -Dparkingsystem.archive.retentionDays=90 : archivage en tâche de fond des tickets clôturés anciens
+            int retentionDays = Integer.getInteger("parkingsystem.archive.retentionDays", 0);
+            if (retentionDays > 0) {
+                new TicketArchiveJob(dataBaseConfig, retentionDays, ARCHIVE_CHUNK_SIZE)
+                        .schedule(TimeUnit.HOURS.toMillis(Long.getLong("parkingsystem.archive.intervalHours", 24L)));
+            }
+            parkingSpotStore = parkingSpotDAO;
+            ticketStore = ticketDAO;
+            defaultThreads = dataBaseConfig.getPool().getMaxSize();
+            reservationDAO = new ReservationDAO();
+        }
+        // latences publiées en JMX ; -Dparkingsystem.metrics.dumpSeconds=60 les écrit aussi dans le journal
+        parkingSpotStore = new MeteredParkingSpotStore(parkingSpotStore);
+        ticketStore = new MeteredTicketStore(ticketStore);
+        Metrics.startDump(Long.getLong("parkingsystem.metrics.dumpSeconds", 0L));
+        // réservations honorées à l'entrée par le serveur comme par la console
+        // créneaux de -Dparkingsystem.reservation.slotMinutes, places retenues leadMinutes avant le début
+        ReservationService reservationService = new ReservationService(parkingSpotStore, reservationDAO,
+                TimeUnit.MINUTES.toMillis(Long.getLong("parkingsystem.reservation.slotMinutes", 15L)),
+                TimeUnit.MINUTES.toMillis(Long.getLong("parkingsystem.reservation.leadMinutes", 15L)));
+        reservationService.load();
+        if (args.length > 0 && "server".equals(args[0])) {
+            // server [port] [threads] : bornes d'entrée/sortie en HTTP
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : defaultThreads;
+            ParkingService parkingService = new ParkingService(parkingSpotStore, ticketStore);
+            parkingService.setReservationService(reservationService);
+            ParkingAnalytics analytics = new ParkingAnalytics();
+            for (ParkingType parkingType : ParkingType.values()) {
+                analytics.setOccupied(parkingType, parkingSpotStore.getOccupiedSlotCount(parkingType));
+            }
+            parkingService.addListener(analytics);
+            // places libres poussées aux panneaux d'entrée sur /occupancy/stream
+            OccupancyFeed occupancyFeed = new OccupancyFeed(parkingService,
+                    Long.getLong("parkingsystem.feed.coalesceMillis", 200L),
+                    Long.getLong("parkingsystem.feed.heartbeatMillis", 15000L),
+                    Integer.getInteger("parkingsystem.feed.maxSubscribers", 1000),
+                    Integer.getInteger("parkingsystem.feed.dispatchThreads", 2),
+                    Long.getLong("parkingsystem.feed.writeTimeoutMillis", 5000L));
+            parkingService.addListener(occupancyFeed);
+            GateServer gateServer = new GateServer(port, threads, parkingService, analytics, occupancyFeed);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                gateServer.stop();
+                occupancyFeed.close();
+            }));
+            gateServer.start();
+            return;
+        }
+        InteractiveShell.loadInterface(parkingSpotStore, ticketStore, reservationService);
     }
 }
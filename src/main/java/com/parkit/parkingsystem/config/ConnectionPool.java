@@ -0,0 +1,501 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool de connexions JDBC borné : les connexions physiques sont réutilisées entre les appels DAO,
+ * validées à l'emprunt et fermées après une période d'inactivité.
+ * Un appel à close() sur la connexion empruntée la rend au pool au lieu de la fermer.
+ * Chaque connexion garde ses prepareStatement(sql) et prepareStatement(sql, clés générées) les plus récents
+ * (statementCacheSize par connexion) : close() sur la requête la remet en cache, paramètres effacés.
+ * Au retour de la connexion, toute requête encore ouverte par l'emprunteur est rendue ou fermée.
+ */
+public class ConnectionPool {
+
+    private static final Logger logger = LogManager.getLogger("ConnectionPool");
+    //ouverture d'une connexion physique, hors attente d'une connexion libre
+    private static final LatencyHistogram OPEN_CONNECTION = Metrics.histogram("ConnectionPool.openConnection");
+
+    public interface ConnectionFactory {
+        Connection create() throws ClassNotFoundException, SQLException;
+    }
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    //LIFO : les connexions les plus récemment utilisées sont reprises en premier, les plus anciennes expirent en queue
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final ScheduledExecutorService evictor;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final AtomicLong leakedStatementCount = new AtomicLong();
+
+    private volatile boolean closed;
+
+    public ConnectionPool(ConnectionFactory factory, int maxSize, long maxWaitMillis, long idleTimeoutMillis,
+                          int validationTimeoutSeconds) {
+        this(factory, maxSize, maxWaitMillis, idleTimeoutMillis, validationTimeoutSeconds, 0);
+    }
+
+    //statementCacheSize : requêtes préparées gardées par connexion, 0 pour ne rien garder
+    public ConnectionPool(ConnectionFactory factory, int maxSize, long maxWaitMillis, long idleTimeoutMillis,
+                          int validationTimeoutSeconds, int statementCacheSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+        if (idleTimeoutMillis > 0) {
+            evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "connection-pool-evictor");
+                t.setDaemon(true);
+                return t;
+            });
+            long period = Math.max(1, idleTimeoutMillis / 2);
+            evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            evictor = null;
+        }
+    }
+
+    public Connection borrow() throws ClassNotFoundException, SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTimeoutException("Timed out after " + maxWaitMillis + "ms waiting for a DB connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a DB connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isUsable(pooled)) {
+                    return lend(pooled);
+                }
+                destroy(pooled);
+            }
+            long openStart = Metrics.start();
+            try {
+                pooled = new PooledConnection(factory.create());
+            } finally {
+                OPEN_CONNECTION.recordSince(openStart);
+            }
+            createdCount.incrementAndGet();
+            return lend(pooled);
+        } catch (ClassNotFoundException | SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection lend(PooledConnection pooled) {
+        active.incrementAndGet();
+        borrowCount.incrementAndGet();
+        return pooled.lend();
+    }
+
+    private void giveBack(PooledConnection pooled) {
+        active.decrementAndGet();
+        try {
+            pooled.releaseStatements();
+            if (closed || pooled.physical.isClosed()) {
+                destroy(pooled);
+                return;
+            }
+            //une transaction laissée ouverte ne doit pas fuir vers le prochain emprunteur
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.lastUsedMillis = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            logger.error("Error while returning connection to pool", e);
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            return pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        destroyedCount.incrementAndGet();
+        try {
+            //fermer la connexion ferme aussi ses requêtes en cache
+            pooled.statements.clear();
+            pooled.physical.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing pooled connection", e);
+        }
+    }
+
+    void evictIdle() {
+        long deadline = System.currentTimeMillis() - idleTimeoutMillis;
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext()) {
+            PooledConnection pooled = it.next();
+            if (pooled.lastUsedMillis > deadline) {
+                break;
+            }
+            if (idle.removeLastOccurrence(pooled)) {
+                destroy(pooled);
+            }
+        }
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, nanos)) {
+            //réessayer jusqu'à publier le nouveau maximum
+        }
+    }
+
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public long getDestroyedCount() {
+        return destroyedCount.get();
+    }
+
+    public long getStatementCacheHitCount() {
+        return statementCacheHits.get();
+    }
+
+    public long getStatementCacheMissCount() {
+        return statementCacheMisses.get();
+    }
+
+    //requêtes laissées ouvertes par un emprunteur et fermées par le pool au retour de la connexion
+    public long getLeakedStatementCount() {
+        return leakedStatementCount.get();
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.get();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0 : totalWaitNanos.get() / (borrows * 1_000_000.0);
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool[active=" + getActiveCount() + ", idle=" + getIdleCount() + ", max=" + maxSize
+                + ", borrows=" + getBorrowCount() + ", timeouts=" + getTimeoutCount()
+                + ", statementHits=" + getStatementCacheHitCount() + ", statementMisses=" + getStatementCacheMissCount()
+                + ", avgWaitMs=" + String.format("%.3f", getAverageWaitMillis()) + "]";
+    }
+
+    /**
+     * Connexion physique gérée par le pool. Chaque emprunt reçoit un nouveau proxy afin qu'un
+     * close() tardif sur une ancienne référence ne rende pas deux fois la même connexion.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private volatile long lastUsedMillis = System.currentTimeMillis();
+        //ordre d'accès : la requête la moins récemment utilisée est fermée quand le cache déborde
+        private final Map<String, CachedStatement> statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= statementCacheSize) {
+                    return false;
+                }
+                CachedStatement evicted = eldest.getValue();
+                if (evicted.lease == null) {
+                    closeQuietly(evicted.physical);
+                } else {
+                    evicted.evicted = true;
+                }
+                return true;
+            }
+        };
+        //requêtes hors cache ouvertes pendant l'emprunt en cours
+        private final List<Statement> uncached = new ArrayList<>();
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        private Connection lend() {
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Handler(this));
+        }
+
+        //autoGeneratedKeys négatif : prepareStatement(sql) simple
+        private PreparedStatement prepare(Connection proxy, String sql, int autoGeneratedKeys) throws SQLException {
+            String key = autoGeneratedKeys < 0 ? sql : autoGeneratedKeys + "|" + sql;
+            CachedStatement cached = statements.get(key);
+            if (cached != null && cached.lease == null) {
+                statementCacheHits.incrementAndGet();
+                return cached.lend(proxy);
+            }
+            statementCacheMisses.incrementAndGet();
+            PreparedStatement ps = autoGeneratedKeys < 0 ? physical.prepareStatement(sql) : physical.prepareStatement(sql, autoGeneratedKeys);
+            if (cached != null) {
+                //même requête déjà ouverte sur cette connexion : exemplaire hors cache
+                uncached.add(ps);
+                return ps;
+            }
+            cached = new CachedStatement(this, key, ps);
+            statements.put(key, cached);
+            return cached.lend(proxy);
+        }
+
+        private void releaseStatements() {
+            for (CachedStatement cached : new ArrayList<>(statements.values())) {
+                if (cached.lease != null) {
+                    leakedStatementCount.incrementAndGet();
+                    cached.lease.closed = true;
+                    cached.giveBack();
+                }
+            }
+            for (Statement statement : uncached) {
+                try {
+                    if (!statement.isClosed()) {
+                        leakedStatementCount.incrementAndGet();
+                        statement.close();
+                    }
+                } catch (SQLException e) {
+                    logger.error("Error while closing leaked statement", e);
+                }
+            }
+            uncached.clear();
+        }
+    }
+
+    //Requête préparée physique gardée en cache ; lease est l'emprunt en cours, null si disponible
+    private final class CachedStatement {
+        private final PooledConnection owner;
+        private final String key;
+        private final PreparedStatement physical;
+        private StatementHandler lease;
+        private boolean evicted;
+
+        private CachedStatement(PooledConnection owner, String key, PreparedStatement physical) {
+            this.owner = owner;
+            this.key = key;
+            this.physical = physical;
+        }
+
+        private PreparedStatement lend(Connection connection) {
+            lease = new StatementHandler(this, connection);
+            return (PreparedStatement) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, lease);
+        }
+
+        //Remet la requête en cache : résultat courant fermé, paramètres effacés ; fermée si impossible ou évincée
+        private void giveBack() {
+            lease = null;
+            if (evicted) {
+                closeQuietly(physical);
+                return;
+            }
+            try {
+                ResultSet rs = physical.getResultSet();
+                if (rs != null) {
+                    rs.close();
+                }
+                physical.clearParameters();
+            } catch (SQLException e) {
+                owner.statements.remove(key);
+                closeQuietly(physical);
+            }
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing cached statement", e);
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection connection;
+        private boolean closed;
+
+        private StatementHandler(CachedStatement cached, Connection connection) {
+            this.cached = cached;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            //emprunt et retour passent par le verrou de la connexion empruntée
+            synchronized (Proxy.getInvocationHandler(connection)) {
+                switch (method.getName()) {
+                    case "close":
+                        if (!closed) {
+                            closed = true;
+                            cached.giveBack();
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed || cached.physical.isClosed();
+                    case "getConnection":
+                        return connection;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Cached[" + cached.physical + "]";
+                    default:
+                        if (closed) {
+                            throw new SQLException("Statement has already been closed");
+                        }
+                        try {
+                            return method.invoke(cached.physical, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                }
+            }
+        }
+    }
+
+    private final class Handler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned;
+
+        private Handler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        giveBack(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + pooled.physical + "]";
+                default:
+                    if (returned) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    if (statementCacheSize > 0 && "prepareStatement".equals(method.getName())
+                            && (args.length == 1 || args[1] instanceof Integer && args.length == 2)) {
+                        return pooled.prepare((Connection) proxy, (String) args[0], args.length == 1 ? -1 : (Integer) args[1]);
+                    }
+                    try {
+                        Object result = method.invoke(pooled.physical, args);
+                        if (result instanceof Statement) {
+                            pooled.uncached.add((Statement) result);
+                        }
+                        return result;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -1,27 +1,78 @@
 package com.parkit.parkingsystem.config;
 
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Supplier;
 
 import java.sql.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class DataBaseConfig {
 
     private static final Logger logger = LogManager.getLogger("DataBaseConfig");
     //utilise Log4j (LogManager.getLogger() pour enregistrer les évenements importants
+    //les traces par appel sont en debug, message construit seulement si ce niveau est actif
+
+    private static final String URL = "jdbc:mysql://localhost:3306/parkingsystem?useTimezone=true&serverTimezone=Europe/Paris&useCursorFetch=true&useServerPrepStmts=true&rewriteBatchedStatements=true";
+    private static final String USER = "root";
+    private static final String PASSWORD = "rootroot";
+
+    //Réglages du pool, surchargeables par propriétés système (-Dparkingsystem.pool.maxSize=20 ...)
+    private static final int POOL_MAX_SIZE = Integer.getInteger("parkingsystem.pool.maxSize", 10);
+    private static final long POOL_MAX_WAIT_MILLIS = Long.getLong("parkingsystem.pool.maxWaitMillis", 5000L);
+    private static final long POOL_IDLE_TIMEOUT_MILLIS = Long.getLong("parkingsystem.pool.idleTimeoutMillis", 300000L);
+    private static final int POOL_VALIDATION_TIMEOUT_SECONDS = Integer.getInteger("parkingsystem.pool.validationTimeoutSeconds", 2);
+    //requêtes préparées côté serveur (useServerPrepStmts) gardées par connexion, 0 pour désactiver le cache
+    private static final int POOL_STATEMENT_CACHE_SIZE = Integer.getInteger("parkingsystem.pool.statementCacheSize", 32);
+
+    //obtention d'une connexion : attente du pool, validation et ouverture éventuelle
+    private static final LatencyHistogram GET_CONNECTION = Metrics.histogram("DataBaseConfig.getConnection");
+
+    //un pool par base : tous les DAO pointant sur la même URL partagent les mêmes connexions
+    private static final ConcurrentMap<String, ConnectionPool> pools = new ConcurrentHashMap<>();
 
     public Connection getConnection() throws ClassNotFoundException, SQLException {
-        logger.info("Create DB connection");
+        long start = Metrics.start();
+        try {
+            return getPool().borrow();
+        } finally {
+            GET_CONNECTION.recordSince(start);
+        }
+    }
+
+    public ConnectionPool getPool() {
+        return pools.computeIfAbsent(getUrl(), url -> new ConnectionPool(this::openConnection,
+                POOL_MAX_SIZE, POOL_MAX_WAIT_MILLIS, POOL_IDLE_TIMEOUT_MILLIS, POOL_VALIDATION_TIMEOUT_SECONDS,
+                POOL_STATEMENT_CACHE_SIZE));
+    }
+
+    //Ouvre une connexion physique ; n'est appelée que par le pool
+    protected Connection openConnection() throws ClassNotFoundException, SQLException {
+        logger.debug("Create DB connection to {}", (Supplier<?>) this::getUrl);
         Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/parkingsystem?useTimezone=true&serverTimezone=Europe/Paris","root","rootroot");
+        return DriverManager.getConnection(getUrl(), getUser(), getPassword());
+    }
+
+    protected String getUrl() {
+        return URL;
+    }
+
+    protected String getUser() {
+        return USER;
+    }
+
+    protected String getPassword() {
+        return PASSWORD;
     }
 
     public void closeConnection(Connection con){
         if(con!=null){
             try {
                 con.close();
-                logger.info("Closing DB connection");
+                logger.debug("Closing DB connection");
             } catch (SQLException e) {
                 logger.error("Error while closing connection",e);
             }
@@ -32,7 +83,7 @@ public class DataBaseConfig {
         if(ps!=null){
             try {
                 ps.close();
-                logger.info("Closing Prepared Statement");
+                logger.debug("Closing Prepared Statement");
             } catch (SQLException e) {
                 logger.error("Error while closing prepared statement",e);
             }
@@ -43,7 +94,7 @@ public class DataBaseConfig {
         if(rs!=null){
             try {
                 rs.close();
-                logger.info("Closing Result Set");
+                logger.debug("Closing Result Set");
             } catch (SQLException e) {
                 logger.error("Error while closing result set",e);
             }
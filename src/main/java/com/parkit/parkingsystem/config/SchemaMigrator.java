@@ -0,0 +1,180 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applique au démarrage les scripts db/migration/V1.sql, V2.sql, ... du classpath qui ne l'ont pas encore été.
+ * La version atteinte est notée dans la table schema_version ; chaque script est joué dans sa propre transaction
+ * (MySQL valide implicitement les DDL, un script doit donc rester idempotent ou ne contenir qu'un changement).
+ * Un "create index NOM on TABLE" dont l'index existe déjà, ou un "alter table TABLE add column COLONNE ..." dont la
+ * colonne existe déjà, est sauté : un script interrompu après un premier changement peut être rejoué.
+ * Une colonne par "add column" ; les tables sont créées par "create table if not exists".
+ */
+public class SchemaMigrator {
+
+    private static final Logger logger = LogManager.getLogger("SchemaMigrator");
+
+    private static final String MIGRATION_PATH = "db/migration/V%d.sql";
+    private static final String CREATE_VERSION_TABLE = "create table if not exists schema_version(VERSION int PRIMARY KEY, DESCRIPTION varchar(200) NOT NULL, INSTALLED_ON DATETIME NOT NULL)";
+    private static final String GET_CURRENT_VERSION = "select max(VERSION) from schema_version";
+    private static final String SAVE_VERSION = "insert into schema_version(VERSION, DESCRIPTION, INSTALLED_ON) values(?,?,?)";
+    private static final Pattern ADD_COLUMN = Pattern.compile("(?i)^alter\\s+table\\s+(\\w+)\\s+add\\s+column\\s+(\\w+)\\s.*");
+    private static final Pattern CREATE_INDEX = Pattern.compile("(?i)^create\\s+(?:unique\\s+)?index\\s+(\\w+)\\s+on\\s+(\\w+)\\s*\\(.*");
+
+    private final DataBaseConfig dataBaseConfig;
+
+    public SchemaMigrator(DataBaseConfig dataBaseConfig) {
+        this.dataBaseConfig = dataBaseConfig;
+    }
+
+    //Retourne la version du schéma après migration
+    public int migrate() throws ClassNotFoundException, SQLException, IOException {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            try (Statement st = con.createStatement()) {
+                st.execute(CREATE_VERSION_TABLE);
+            }
+            int version = getCurrentVersion(con);
+            List<String> script;
+            while ((script = readScript(version + 1)) != null) {
+                version++;
+                String description = script.isEmpty() ? "V" + version : script.get(0);
+                logger.info("Applying schema migration V" + version + " - " + description);
+                apply(con, version, description, script);
+            }
+            logger.info("Database schema is at version " + version);
+            return version;
+        }
+    }
+
+    private int getCurrentVersion(Connection con) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery(GET_CURRENT_VERSION)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void apply(Connection con, int version, String description, List<String> script) throws SQLException {
+        con.setAutoCommit(false);
+        try {
+            try (Statement st = con.createStatement()) {
+                for (String sql : splitStatements(script)) {
+                    if (isAlreadyApplied(con, sql)) {
+                        logger.info("Skipping already applied statement: " + sql);
+                        continue;
+                    }
+                    st.execute(sql);
+                }
+            }
+            try (PreparedStatement ps = con.prepareStatement(SAVE_VERSION)) {
+                ps.setInt(1, version);
+                ps.setString(2, description);
+                ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+                ps.executeUpdate();
+            }
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw new SQLException("Schema migration V" + version + " failed", e);
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+
+    //Index ou colonne déjà présent : laissé par une exécution précédente du même script, interrompue plus loin
+    private boolean isAlreadyApplied(Connection con, String sql) throws SQLException {
+        Matcher createIndex = CREATE_INDEX.matcher(sql.trim());
+        if (createIndex.matches()) {
+            return indexExists(con.getMetaData(), createIndex.group(2), createIndex.group(1));
+        }
+        Matcher addColumn = ADD_COLUMN.matcher(sql.trim());
+        return addColumn.matches() && columnExists(con.getMetaData(), addColumn.group(1), addColumn.group(2));
+    }
+
+    private boolean columnExists(DatabaseMetaData metaData, String table, String column) throws SQLException {
+        try (ResultSet rs = metaData.getColumns(metaData.getConnection().getCatalog(), null,
+                identifier(metaData, table), identifier(metaData, column))) {
+            return rs.next();
+        }
+    }
+
+    private boolean indexExists(DatabaseMetaData metaData, String table, String index) throws SQLException {
+        try (ResultSet rs = metaData.getIndexInfo(metaData.getConnection().getCatalog(), null, identifier(metaData, table), false, false)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    //Nom tel que rangé par la base : H2 met les identifiants non cités en majuscules
+    private static String identifier(DatabaseMetaData metaData, String name) throws SQLException {
+        if (metaData.storesUpperCaseIdentifiers()) {
+            return name.toUpperCase();
+        }
+        return metaData.storesLowerCaseIdentifiers() ? name.toLowerCase() : name;
+    }
+
+    //Première ligne : description (commentaire "-- ..."), puis les lignes SQL ; null si le script n'existe pas
+    private List<String> readScript(int version) throws IOException {
+        InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(String.format(MIGRATION_PATH, version));
+        if (in == null) {
+            return null;
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            boolean first = true;
+            while ((line = reader.readLine()) != null) {
+                if (first) {
+                    lines.add(line.startsWith("--") ? line.substring(2).trim() : "V" + version);
+                    first = false;
+                    if (line.startsWith("--")) {
+                        continue;
+                    }
+                }
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private List<String> splitStatements(List<String> script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.subList(1, script.size())) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            current.append(trimmed).append(' ');
+            if (trimmed.endsWith(";")) {
+                statements.add(current.substring(0, current.lastIndexOf(";")));
+                current.setLength(0);
+            }
+        }
+        if (current.toString().trim().length() > 0) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+}
@@ -2,10 +2,50 @@ package com.parkit.parkingsystem.constants;
 
 public class DBConstants {
 
-    public static final String GET_NEXT_PARKING_SPOT = "select min(PARKING_NUMBER) from parking where AVAILABLE = true and TYPE = ?";
+    public static final String GET_PARKING_SPOTS = "select PARKING_NUMBER, TYPE, AVAILABLE, LOT_ID, LEVEL from parking";
+    //places libres d'un parking et d'un type, relues quand l'allocateur en mémoire est à sec
+    public static final String GET_AVAILABLE_PARKING_SPOTS_OF_LOT = "select PARKING_NUMBER, LEVEL from parking where LOT_ID = ? and TYPE = ? and AVAILABLE = true";
+    public static final String COUNT_OCCUPIED_PARKING_SPOTS = "select count(*) from parking where TYPE = ? and AVAILABLE = false";
     public static final String UPDATE_PARKING_SPOT = "update parking set available = ? where PARKING_NUMBER = ?";
+    public static final String CLAIM_PARKING_SPOT = "update parking set available = false where PARKING_NUMBER = ? and AVAILABLE = true";
+    //changement d'état conditionnel : sans effet si une autre instance a déjà mis la place dans cet état
+    public static final String SET_PARKING_SPOT_AVAILABILITY = "update parking set AVAILABLE = ? where PARKING_NUMBER = ? and AVAILABLE = ?";
 
     public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
+    public static final String SAVE_TICKET_WITH_ID = "insert into ticket(ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?,?)";
+    public static final String GET_MAX_TICKET_ID = "select greatest(coalesce((select max(ID) from ticket), 0), coalesce((select max(ID) from ticket_archive), 0))";
     public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=?";
-    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.ID DESC limit 1";
+    public static final String UPDATE_TICKET_PRICE = "update ticket set PRICE=? where ID=?";
+    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, p.LOT_ID, p.LEVEL from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.ID DESC limit 1";
+    public static final String GET_OPEN_TICKET_FOR_UPDATE = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, p.LOT_ID, p.LEVEL from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? and t.OUT_TIME is null order by t.ID DESC limit 1 for update";
+    public static final String GET_OPEN_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, p.LOT_ID, p.LEVEL from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? and t.OUT_TIME is null order by t.ID DESC limit 1";
+    //passages du véhicule : tickets de la table ticket plus le compteur des tickets archivés
+    public static final String COUNT_TICKETS = "select count(*) + coalesce((select TICKETS from ticket_archive_count where VEHICLE_REG_NUMBER=?), 0) from ticket where VEHICLE_REG_NUMBER=?";
+    //chargement complet pour l'import des journaux de bornes
+    public static final String GET_OPEN_TICKETS = "select t.PARKING_NUMBER, t.ID, t.VEHICLE_REG_NUMBER, t.IN_TIME, p.TYPE, p.LOT_ID, p.LEVEL from ticket t,parking p where p.parking_number = t.parking_number and t.OUT_TIME is null";
+    public static final String COUNT_TICKETS_BY_VEHICLE = "select VEHICLE_REG_NUMBER, count(*) from ticket group by VEHICLE_REG_NUMBER";
+    public static final String COUNT_ARCHIVED_TICKETS_BY_VEHICLE = "select VEHICLE_REG_NUMBER, TICKETS from ticket_archive_count";
+    public static final String COUNT_TICKETS_BY_RECENT_VEHICLE = "select t.VEHICLE_REG_NUMBER, count(*) + coalesce(max(a.TICKETS), 0) from ticket t left join ticket_archive_count a on a.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER group by t.VEHICLE_REG_NUMBER order by max(t.ID) DESC limit ?";
+
+    //rang du ticket parmi ceux du véhicule (passage n°) par l'index (VEHICLE_REG_NUMBER, ID)
+    public static final String GET_CLOSED_TICKETS_FOR_AUDIT = "select t.ID, t.IN_TIME, t.OUT_TIME, p.TYPE, (select count(*) from ticket c where c.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER and c.ID <= t.ID) + coalesce((select a.TICKETS from ticket_archive_count a where a.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER), 0), t.PRICE from ticket t,parking p where p.parking_number = t.parking_number and t.OUT_TIME is not null and t.ID > ? order by t.ID";
+
+    //historique complet d'un véhicule, tickets archivés compris, mêmes colonnes que GET_TICKET
+    public static final String GET_TICKET_HISTORY = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, p.LOT_ID, p.LEVEL from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? union all select PARKING_NUMBER, ID, PRICE, IN_TIME, OUT_TIME, TYPE, LOT_ID, LEVEL from ticket_archive where VEHICLE_REG_NUMBER=? order by 2";
+
+    //archivage des tickets clôturés avant une date, par paquets dans l'ordre des ID
+    public static final String GET_TICKETS_TO_ARCHIVE = "select t.ID, t.PARKING_NUMBER, t.VEHICLE_REG_NUMBER, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, p.LOT_ID, p.LEVEL from ticket t,parking p where p.parking_number = t.parking_number and t.ID > ? and t.OUT_TIME < ? order by t.ID limit ?";
+    public static final String SAVE_ARCHIVED_TICKET = "insert into ticket_archive(ARCHIVE_MONTH, ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME, TYPE, LOT_ID, LEVEL) values(?,?,?,?,?,?,?,?,?,?)";
+    public static final String ADD_ARCHIVED_TICKET_COUNT = "insert into ticket_archive_count(VEHICLE_REG_NUMBER, TICKETS) values(?,?) on duplicate key update TICKETS = TICKETS + values(TICKETS)";
+    public static final String DELETE_TICKET = "delete from ticket where ID=?";
+
+    //réservations de places pour des créneaux à venir
+    public static final String SAVE_RESERVATION = "insert into reservation(LOT_ID, TYPE, VEHICLE_REG_NUMBER, START_TIME, END_TIME, STATUS) values(?,?,?,?,?,?)";
+    public static final String UPDATE_RESERVATION_STATUS = "update reservation set STATUS=? where ID=?";
+    public static final String GET_ACTIVE_RESERVATIONS = "select ID, LOT_ID, TYPE, VEHICLE_REG_NUMBER, START_TIME, END_TIME, STATUS from reservation where END_TIME > ? and STATUS <> 'CANCELLED'";
+
+    //point de reprise du journal write-behind
+    public static final String GET_JOURNAL_CHECKPOINT = "select SEQ from journal_checkpoint where NAME=?";
+    public static final String SAVE_JOURNAL_CHECKPOINT = "insert into journal_checkpoint(NAME, SEQ) values(?,?)";
+    public static final String UPDATE_JOURNAL_CHECKPOINT = "update journal_checkpoint set SEQ=? where NAME=?";
 }
@@ -0,0 +1,207 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TicketDAO de l'import en masse des journaux de bornes.
+ * Les tickets ouverts, le nombre de passages par véhicule et le dernier ID sont chargés une fois par load() ;
+ * entrées et sorties sont ensuite tenues en mémoire et écrites par flush() en batch JDBC, une transaction par lot.
+ * Les ID de ticket sont attribués ici : aucune autre instance ne doit écrire de tickets pendant l'import.
+ */
+public class BatchTicketDAO extends TicketDAO {
+
+    private static final Logger logger = LogManager.getLogger("BatchTicketDAO");
+
+    private final int batchSize;
+
+    private final Map<String, Ticket> openTickets = new HashMap<>();
+    private final Map<String, Integer> visits = new HashMap<>();
+    //tickets pas encore insérés : une sortie dans le même lot complète directement la ligne à insérer
+    private final Map<Integer, Ticket> pendingInserts = new LinkedHashMap<>();
+    private final List<Ticket> pendingCloses = new ArrayList<>();
+    //dernier état de chaque place modifiée depuis le lot précédent
+    private final Map<Integer, Boolean> pendingSpots = new LinkedHashMap<>();
+    private int lastTicketId;
+    private int pendingEvents;
+    private long batches;
+
+    public BatchTicketDAO(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    //Charge les tickets ouverts, les passages par véhicule (tickets archivés compris) et le dernier ID
+    public void load() throws ClassNotFoundException, SQLException {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_OPEN_TICKETS);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Ticket ticket = new Ticket();
+                    ticket.setParkingSpot(new ParkingSpot(rs.getInt(1), rs.getInt(6), rs.getInt(7), ParkingType.valueOf(rs.getString(5)), false));
+                    ticket.setId(rs.getInt(2));
+                    ticket.setVehicleRegNumber(rs.getString(3));
+                    ticket.setInTime(rs.getTimestamp(4));
+                    openTickets.put(ticket.getVehicleRegNumber(), ticket);
+                }
+            }
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_TICKETS_BY_VEHICLE);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    visits.put(rs.getString(1), rs.getInt(2));
+                }
+            }
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_ARCHIVED_TICKETS_BY_VEHICLE);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    visits.merge(rs.getString(1), rs.getInt(2), Integer::sum);
+                }
+            }
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_MAX_TICKET_ID);
+                 ResultSet rs = ps.executeQuery()) {
+                lastTicketId = rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+        logger.info("Batch import loaded " + openTickets.size() + " open tickets and " + visits.size() + " vehicles, last ticket ID " + lastTicketId);
+    }
+
+    public boolean hasOpenTicket(String vehicleRegNumber) {
+        return openTickets.containsKey(vehicleRegNumber);
+    }
+
+    //La place vient de l'allocateur en mémoire : pas de réservation en base avant le flush
+    @Override
+    public int saveIncomingTicket(Ticket ticket) {
+        String vehicleRegNumber = ticket.getVehicleRegNumber();
+        if (openTickets.containsKey(vehicleRegNumber)) {
+            return ENTRY_FAILED;
+        }
+        ticket.setId(++lastTicketId);
+        ticket.getParkingSpot().setAvailable(false);
+        openTickets.put(vehicleRegNumber, ticket);
+        pendingInserts.put(ticket.getId(), ticket);
+        pendingSpots.put(ticket.getParkingSpot().getId(), false);
+        pendingEvents++;
+        return visits.merge(vehicleRegNumber, 1, Integer::sum);
+    }
+
+    @Override
+    public Ticket saveOutgoingTicket(String vehicleRegNumber, Date outTime, FareCalculatorService fareCalculatorService) {
+        Ticket ticket = openTickets.get(vehicleRegNumber);
+        if (ticket == null) {
+            return null;
+        }
+        ticket.setOutTime(outTime);
+        try {
+            fareCalculatorService.calculateFare(ticket, visits.getOrDefault(vehicleRegNumber, 1) > 1);
+        } catch (IllegalArgumentException e) {
+            //sortie antérieure à l'entrée : le ticket reste ouvert
+            ticket.setOutTime(null);
+            throw e;
+        }
+        openTickets.remove(vehicleRegNumber);
+        if (!pendingInserts.containsKey(ticket.getId())) {
+            pendingCloses.add(ticket);
+        }
+        ticket.getParkingSpot().setAvailable(true);
+        pendingSpots.put(ticket.getParkingSpot().getId(), true);
+        pendingEvents++;
+        return ticket;
+    }
+
+    @Override
+    public int getNbTicket(String vehicleRegNumber) {
+        return visits.getOrDefault(vehicleRegNumber, 0);
+    }
+
+    //Déjà chargé par load()
+    @Override
+    public void loadTicketCounts() {
+    }
+
+    //Écrit le lot courant s'il a atteint batchSize événements
+    public boolean flushIfFull() throws ClassNotFoundException, SQLException {
+        if (pendingEvents < batchSize) {
+            return false;
+        }
+        flush();
+        return true;
+    }
+
+    /**
+     * Écrit entrées, sorties et état des places en attente dans une seule transaction.
+     * En cas d'erreur le lot est annulé et l'exception remontée : la mémoire est alors en avance sur la base.
+     */
+    public void flush() throws ClassNotFoundException, SQLException {
+        if (pendingEvents == 0) {
+            return;
+        }
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            try (PreparedStatement insertTicket = con.prepareStatement(DBConstants.SAVE_TICKET_WITH_ID);
+                 PreparedStatement closeTicket = con.prepareStatement(DBConstants.UPDATE_TICKET);
+                 PreparedStatement updateParking = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)) {
+                for (Ticket ticket : pendingInserts.values()) {
+                    insertTicket.setInt(1, ticket.getId());
+                    insertTicket.setInt(2, ticket.getParkingSpot().getId());
+                    insertTicket.setString(3, ticket.getVehicleRegNumber());
+                    insertTicket.setDouble(4, ticket.getPrice());
+                    insertTicket.setTimestamp(5, new Timestamp(ticket.getInTime().getTime()));
+                    insertTicket.setTimestamp(6, ticket.getOutTime() == null ? null : new Timestamp(ticket.getOutTime().getTime()));
+                    insertTicket.addBatch();
+                }
+                for (Ticket ticket : pendingCloses) {
+                    closeTicket.setDouble(1, ticket.getPrice());
+                    closeTicket.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+                    closeTicket.setInt(3, ticket.getId());
+                    closeTicket.addBatch();
+                }
+                for (Map.Entry<Integer, Boolean> spot : pendingSpots.entrySet()) {
+                    updateParking.setBoolean(1, spot.getValue());
+                    updateParking.setInt(2, spot.getKey());
+                    updateParking.addBatch();
+                }
+                insertTicket.executeBatch();
+                closeTicket.executeBatch();
+                updateParking.executeBatch();
+            }
+            con.commit();
+        } catch (SQLException ex) {
+            rollback(con);
+            throw ex;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        logger.debug("Batch {} written: {} inserts, {} closes, {} spots", batches + 1, pendingInserts.size(), pendingCloses.size(), pendingSpots.size());
+        batches++;
+        pendingInserts.clear();
+        pendingCloses.clear();
+        pendingSpots.clear();
+        pendingEvents = 0;
+    }
+
+    public long getBatchCount() {
+        return batches;
+    }
+}
@@ -0,0 +1,666 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.CompactTickets;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Stockage embarqué, sans base externe : places, tickets et passages par véhicule sont tenus en mémoire,
+ * les tickets en colonnes compactes (CompactTickets, heures à la seconde comme les DATETIME de MySQL).
+ * Chaque modification est d'abord ajoutée au journal store-&lt;génération&gt;.log ([int longueur][int crc][op][données])
+ * puis appliquée ; une fin de journal tronquée par un arrêt brutal est ignorée à la relecture.
+ * Toutes les snapshotEvery modifications, un instantané complet est écrit (fichier temporaire puis renommage)
+ * et un journal de génération suivante est commencé. Au démarrage : instantané, puis journal de sa génération.
+ * Les écritures du journal sont confiées au système à chaque modification ; syncWrites les force aussi sur disque.
+ */
+public class EmbeddedStore implements TicketStore, ParkingSpotStore, Closeable {
+
+    private static final Logger logger = LogManager.getLogger("EmbeddedStore");
+
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+    //la version 2 ajoute parking et niveau des places ; un instantané version 1 est relu dans le parking par défaut
+    private static final int SNAPSHOT_MAGIC_V1 = 0x504b5331;
+    private static final int SNAPSHOT_MAGIC = 0x504b5332;
+
+    //opérations du journal
+    private static final byte OP_SPOT = 1;
+    private static final byte OP_TICKET = 2;
+    private static final byte OP_ENTRY = 3;
+    private static final byte OP_UPDATE = 4;
+    private static final byte OP_EXIT = 5;
+    private static final byte OP_IN_TIME = 6;
+    //déclaration d'une place avec son parking et son niveau ; OP_SPOT ne sert plus qu'aux changements de disponibilité
+    private static final byte OP_LOT_SPOT = 7;
+
+    private static final int RECORD_HEADER = 8;
+    //heure de sortie d'un ticket ouvert
+    private static final long OPEN = -1L;
+
+    private final Path directory;
+    private final boolean syncWrites;
+    private final int snapshotEvery;
+    private final ParkingLotAllocators allocators = new ParkingLotAllocators();
+
+    //état protégé par this
+    private final Map<Integer, Spot> spots = new TreeMap<>();
+    private final CompactTickets tickets = new CompactTickets(1024);
+    private final Map<String, Vehicle> vehicles = new HashMap<>();
+    private final ByteBuffer record = ByteBuffer.allocate(1024);
+    private long generation;
+    private FileChannel log;
+    private int writesSinceSnapshot;
+
+    private EmbeddedStore(Path directory, boolean syncWrites, int snapshotEvery) {
+        this.directory = directory;
+        this.syncWrites = syncWrites;
+        this.snapshotEvery = snapshotEvery;
+    }
+
+    public static EmbeddedStore open(Path directory, boolean syncWrites, int snapshotEvery) throws IOException {
+        Files.createDirectories(directory);
+        EmbeddedStore store = new EmbeddedStore(directory, syncWrites, snapshotEvery);
+        store.recover();
+        return store;
+    }
+
+    /**
+     * Stockage configuré par propriétés système : parkingsystem.storage.dir, .syncWrites, .snapshotEvery.
+     * Un stockage neuf reçoit le parc par défaut de Data.sql (places 1 à 3 voitures, 4 et 5 motos).
+     */
+    public static EmbeddedStore fromSystemProperties() throws IOException {
+        EmbeddedStore store = open(Paths.get(System.getProperty("parkingsystem.storage.dir", "parkingsystem-data")),
+                Boolean.getBoolean("parkingsystem.storage.syncWrites"),
+                Integer.getInteger("parkingsystem.storage.snapshotEvery", 100_000));
+        if (store.getParkingSpotCount() == 0) {
+            for (int number = 1; number <= 5; number++) {
+                store.defineParkingSpot(number, number <= 3 ? ParkingType.CAR : ParkingType.BIKE);
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(store::closeQuietly, "embedded-store-shutdown"));
+        return store;
+    }
+
+    //Ajoute une place libre au parking par défaut, sans effet si elle existe déjà
+    public boolean defineParkingSpot(int number, ParkingType parkingType) {
+        return defineParkingSpot(number, ParkingSpot.DEFAULT_LOT_ID, 0, parkingType);
+    }
+
+    //Ajoute une place libre au parking lotId, au niveau donné ; le numéro reste unique tous parkings confondus
+    public synchronized boolean defineParkingSpot(int number, int lotId, int level, ParkingType parkingType) {
+        if (spots.containsKey(number)) {
+            return false;
+        }
+        try {
+            append(beginRecord(OP_LOT_SPOT).putInt(number).putInt(lotId).putInt(level)
+                    .put((byte) parkingType.ordinal()).put((byte) 1));
+        } catch (IOException e) {
+            logger.error("Error defining parking spot", e);
+            return false;
+        }
+        Spot spot = applySpot(number, lotId, level, parkingType, true);
+        allocators.define(spot.toParkingSpot());
+        afterWrite();
+        return true;
+    }
+
+    public synchronized int getParkingSpotCount() {
+        return spots.size();
+    }
+
+    //Copie de l'état courant de la place, null si elle n'existe pas
+    public synchronized ParkingSpot getParkingSpot(int number) {
+        Spot spot = spots.get(number);
+        return spot == null ? null : spot.toParkingSpot();
+    }
+
+    @Override
+    public synchronized void loadAvailableSlots() {
+        allocators.clear();
+        for (Spot spot : spots.values()) {
+            allocators.define(spot.toParkingSpot());
+        }
+    }
+
+    @Override
+    public int getNextAvailableSlot(ParkingType parkingType) {
+        return getNextAvailableSlot(ParkingSpot.DEFAULT_LOT_ID, parkingType);
+    }
+
+    //Attribution sans le verrou du stockage : seul l'allocateur du parking demandé est touché
+    @Override
+    public int getNextAvailableSlot(int lotId, ParkingType parkingType) {
+        return allocators.claim(lotId, parkingType);
+    }
+
+    @Override
+    public void releaseSlot(ParkingSpot parkingSpot) {
+        allocators.release(parkingSpot);
+    }
+
+    @Override
+    public int getAvailableSlotCount(ParkingType parkingType) {
+        return allocators.getFreeCount(parkingType);
+    }
+
+    @Override
+    public int getAvailableSlotCount(int lotId, ParkingType parkingType) {
+        return allocators.getFreeCount(lotId, parkingType);
+    }
+
+    @Override
+    public int getSpotCount(int lotId, ParkingType parkingType) {
+        return allocators.getSpotCount(lotId, parkingType);
+    }
+
+    @Override
+    public SortedSet<Integer> getLotIds() {
+        return allocators.getLotIds();
+    }
+
+    @Override
+    public synchronized int getOccupiedSlotCount(ParkingType parkingType) {
+        int occupied = 0;
+        for (Spot spot : spots.values()) {
+            if (spot.type == parkingType && !spot.available) {
+                occupied++;
+            }
+        }
+        return occupied;
+    }
+
+    @Override
+    public boolean updateParking(ParkingSpot parkingSpot) {
+        boolean updated = false;
+        synchronized (this) {
+            Spot spot = spots.get(parkingSpot.getId());
+            if (spot != null) {
+                try {
+                    append(beginRecord(OP_SPOT).putInt(spot.number).put((byte) spot.type.ordinal())
+                            .put((byte) (parkingSpot.isAvailable() ? 1 : 0)));
+                    spot.available = parkingSpot.isAvailable();
+                    afterWrite();
+                    updated = true;
+                } catch (IOException e) {
+                    logger.error("Error updating parking info", e);
+                }
+            }
+        }
+        //même règle que ParkingSpotDAO : place libérée, ou occupation non enregistrée
+        if (parkingSpot.isAvailable() == updated) {
+            releaseSlot(parkingSpot);
+        }
+        return updated;
+    }
+
+    @Override
+    public synchronized int saveIncomingTicket(Ticket ticket) {
+        Spot spot = spots.get(ticket.getParkingSpot().getId());
+        if (spot == null) {
+            logger.error("Unknown parking spot " + ticket.getParkingSpot().getId());
+            return ENTRY_FAILED;
+        }
+        if (!spot.available) {
+            return SPOT_ALREADY_TAKEN;
+        }
+        int id = tickets.size() + 1;
+        try {
+            appendTicket(OP_ENTRY, id, ticket);
+        } catch (IOException e) {
+            logger.error("Error saving incoming ticket", e);
+            return ENTRY_FAILED;
+        }
+        Vehicle vehicle = applyTicket(id, ticket.getParkingSpot().getId(), ticket.getVehicleRegNumber(),
+                ticket.getPrice(), ticket.getInTime().getTime(), OPEN, true);
+        afterWrite();
+        ticket.setId(id);
+        ticket.getParkingSpot().setAvailable(false);
+        return vehicle.visits;
+    }
+
+    @Override
+    public synchronized Ticket saveOutgoingTicket(String vehicleRegNumber, Date outTime, FareCalculatorService fareCalculatorService) {
+        Vehicle vehicle = vehicles.get(vehicleRegNumber);
+        if (vehicle == null || vehicle.openTicketId == 0) {
+            return null;
+        }
+        Ticket ticket = toTicket(vehicle.openTicketId);
+        try {
+            ticket.setOutTime(outTime);
+            fareCalculatorService.calculateFare(ticket, vehicle.visits > 1);
+            appendClose(OP_EXIT, ticket.getId(), ticket.getPrice(), outTime.getTime());
+        } catch (IllegalArgumentException e) {
+            //sortie antérieure à l'entrée : rien n'est écrit, le ticket reste ouvert
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error saving outgoing ticket", e);
+            throw new TicketStoreException("Outgoing ticket not saved for " + vehicleRegNumber, e);
+        }
+        applyClose(ticket.getId(), ticket.getPrice(), outTime.getTime(), true);
+        afterWrite();
+        ticket.getParkingSpot().setAvailable(true);
+        return ticket;
+    }
+
+    @Override
+    public synchronized Ticket getTicket(String vehicleRegNumber) {
+        Vehicle vehicle = vehicles.get(vehicleRegNumber);
+        return vehicle == null ? null : toTicket(vehicle.lastTicketId);
+    }
+
+    @Override
+    public synchronized int getNbTicket(String vehicleRegNumber) {
+        Vehicle vehicle = vehicles.get(vehicleRegNumber);
+        return vehicle == null ? 0 : vehicle.visits;
+    }
+
+    @Override
+    public synchronized boolean saveTicket(Ticket ticket) {
+        if (!spots.containsKey(ticket.getParkingSpot().getId())) {
+            return false;
+        }
+        int id = tickets.size() + 1;
+        long outTime = ticket.getOutTime() == null ? OPEN : ticket.getOutTime().getTime();
+        try {
+            appendTicket(OP_TICKET, id, ticket);
+        } catch (IOException e) {
+            logger.error("Error saving ticket", e);
+            return false;
+        }
+        applyTicket(id, ticket.getParkingSpot().getId(), ticket.getVehicleRegNumber(),
+                ticket.getPrice(), ticket.getInTime().getTime(), outTime, false);
+        afterWrite();
+        ticket.setId(id);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean updateTicket(Ticket ticket) {
+        if (ticket.getId() < 1 || ticket.getId() > tickets.size()) {
+            return false;
+        }
+        long outTime = ticket.getOutTime() == null ? OPEN : ticket.getOutTime().getTime();
+        try {
+            appendClose(OP_UPDATE, ticket.getId(), ticket.getPrice(), outTime);
+        } catch (IOException e) {
+            logger.error("Error updating ticket", e);
+            return false;
+        }
+        applyClose(ticket.getId(), ticket.getPrice(), outTime, false);
+        afterWrite();
+        return true;
+    }
+
+    //Corrige l'heure d'entrée d'un ticket (reprise de saisie, scénarios de test)
+    public synchronized boolean updateTicketInTime(int ticketId, Date inTime) {
+        if (ticketId < 1 || ticketId > tickets.size()) {
+            return false;
+        }
+        try {
+            append(beginRecord(OP_IN_TIME).putInt(ticketId).putLong(inTime.getTime()));
+        } catch (IOException e) {
+            logger.error("Error updating ticket", e);
+            return false;
+        }
+        tickets.setInTime(ticketId - 1, inTime.getTime());
+        afterWrite();
+        return true;
+    }
+
+    @Override
+    public void loadTicketCounts() {
+        //tout est déjà en mémoire
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null && log.isOpen()) {
+            log.force(false);
+            log.close();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            logger.error("Error closing embedded store", e);
+        }
+    }
+
+    //Application d'une modification, commune à l'écriture et à la relecture du journal
+
+    private Spot applySpot(int number, int lotId, int level, ParkingType type, boolean available) {
+        Spot spot = spots.get(number);
+        if (spot == null) {
+            spot = new Spot(number, lotId, level, type, available);
+            spots.put(number, spot);
+        } else {
+            spot.available = available;
+        }
+        return spot;
+    }
+
+    private Vehicle applyTicket(int id, int parkingNumber, String plate, double price, long inTime, long outTime, boolean occupy) {
+        tickets.add(id, parkingNumber, plate, price, inTime, outTime == OPEN ? 0 : outTime);
+        Vehicle vehicle = vehicles.computeIfAbsent(plate, p -> new Vehicle());
+        vehicle.visits++;
+        vehicle.lastTicketId = id;
+        if (outTime == OPEN) {
+            vehicle.openTicketId = id;
+        }
+        if (occupy) {
+            spots.get(parkingNumber).available = false;
+        }
+        return vehicle;
+    }
+
+    private void applyClose(int id, double price, long outTime, boolean free) {
+        tickets.setPrice(id - 1, price);
+        tickets.setOutTime(id - 1, outTime == OPEN ? 0 : outTime);
+        Vehicle vehicle = vehicles.get(tickets.getVehicleRegNumber(id - 1));
+        if (outTime != OPEN && vehicle.openTicketId == id) {
+            vehicle.openTicketId = 0;
+        }
+        if (free) {
+            spots.get(tickets.getParkingNumber(id - 1)).available = true;
+        }
+    }
+
+    private Ticket toTicket(int id) {
+        return tickets.toTicket(id - 1, number -> {
+            ParkingSpot parkingSpot = spots.get(number).toParkingSpot();
+            parkingSpot.setAvailable(false);
+            return parkingSpot;
+        });
+    }
+
+    //Journal
+
+    private ByteBuffer beginRecord(byte op) {
+        record.clear();
+        record.position(RECORD_HEADER);
+        return record.put(op);
+    }
+
+    private void appendTicket(byte op, int id, Ticket ticket) throws IOException {
+        byte[] plate = ticket.getVehicleRegNumber().getBytes(StandardCharsets.UTF_8);
+        if (plate.length > Short.MAX_VALUE || plate.length > record.capacity() - 64) {
+            throw new IOException("Vehicle registration number too long");
+        }
+        beginRecord(op).putInt(id).putInt(ticket.getParkingSpot().getId()).putShort((short) plate.length).put(plate)
+                .putDouble(ticket.getPrice()).putLong(ticket.getInTime().getTime())
+                .putLong(ticket.getOutTime() == null ? OPEN : ticket.getOutTime().getTime());
+        append(record);
+    }
+
+    private void appendClose(byte op, int id, double price, long outTime) throws IOException {
+        append(beginRecord(op).putInt(id).putDouble(price).putLong(outTime));
+    }
+
+    private void append(ByteBuffer buffer) throws IOException {
+        int end = buffer.position();
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), RECORD_HEADER, end - RECORD_HEADER);
+        buffer.putInt(0, end - RECORD_HEADER).putInt(4, (int) crc.getValue());
+        buffer.flip();
+        long start = log.position();
+        try {
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            if (syncWrites) {
+                log.force(false);
+            }
+        } catch (IOException e) {
+            //enregistrement partiel : on le retire pour ne pas corrompre la suite du journal
+            log.truncate(start);
+            log.position(start);
+            throw e;
+        }
+        writesSinceSnapshot++;
+    }
+
+    private void afterWrite() {
+        if (writesSinceSnapshot >= snapshotEvery) {
+            try {
+                snapshot();
+            } catch (IOException e) {
+                //le journal courant reste complet : on réessaiera à la prochaine modification
+                logger.error("Error writing snapshot", e);
+            }
+        }
+    }
+
+    private Path logFile(long logGeneration) {
+        return directory.resolve("store-" + logGeneration + ".log");
+    }
+
+    //Instantané : le journal suivant est créé avant le renommage, l'ancien n'est supprimé qu'après
+    private void snapshot() throws IOException {
+        long next = generation + 1;
+        FileChannel nextLog = FileChannel.open(logFile(next),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            Path tmp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+                BufferedOutputStream buffered = new BufferedOutputStream(file);
+                CheckedOutputStream checked = new CheckedOutputStream(buffered, new CRC32());
+                DataOutputStream out = new DataOutputStream(checked);
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeLong(next);
+                out.writeInt(spots.size());
+                for (Spot spot : spots.values()) {
+                    out.writeInt(spot.number);
+                    out.writeInt(spot.lotId);
+                    out.writeInt(spot.level);
+                    out.writeByte(spot.type.ordinal());
+                    out.writeBoolean(spot.available);
+                }
+                out.writeInt(tickets.size());
+                for (int i = 0; i < tickets.size(); i++) {
+                    out.writeInt(tickets.getParkingNumber(i));
+                    out.writeUTF(tickets.getVehicleRegNumber(i));
+                    out.writeDouble(tickets.getPrice(i));
+                    out.writeLong(tickets.getInTime(i));
+                    out.writeLong(tickets.isOpen(i) ? OPEN : tickets.getOutTime(i));
+                }
+                out.flush();
+                new DataOutputStream(buffered).writeLong(checked.getChecksum().getValue());
+                buffered.flush();
+                file.getFD().sync();
+            }
+            Files.move(tmp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            nextLog.close();
+            throw e;
+        }
+        log.close();
+        Files.deleteIfExists(logFile(generation));
+        log = nextLog;
+        generation = next;
+        writesSinceSnapshot = 0;
+        logger.info("Embedded store snapshot " + generation + ": " + spots.size() + " spots, " + tickets.size() + " tickets");
+    }
+
+    private synchronized void recover() throws IOException {
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshotFile)) {
+            readSnapshot(snapshotFile);
+        }
+        deleteOldLogs();
+        Path logFile = logFile(generation);
+        int replayed = Files.exists(logFile) ? replay(logFile) : 0;
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        log.position(log.size());
+        writesSinceSnapshot = replayed;
+        loadAvailableSlots();
+        logger.info("Embedded store opened: " + spots.size() + " spots, " + tickets.size() + " tickets, "
+                + replayed + " log records replayed");
+    }
+
+    //Un instantané illisible arrête le démarrage plutôt que de repartir d'un stockage vide
+    private void readSnapshot(Path snapshotFile) throws IOException {
+        try (BufferedInputStream buffered = new BufferedInputStream(Files.newInputStream(snapshotFile))) {
+            CheckedInputStream checked = new CheckedInputStream(buffered, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            int magic = in.readInt();
+            if (magic != SNAPSHOT_MAGIC && magic != SNAPSHOT_MAGIC_V1) {
+                throw new IOException("Not an embedded store snapshot: " + snapshotFile);
+            }
+            long snapshotGeneration = in.readLong();
+            int spotCount = in.readInt();
+            for (int i = 0; i < spotCount; i++) {
+                int number = in.readInt();
+                int lotId = magic == SNAPSHOT_MAGIC_V1 ? ParkingSpot.DEFAULT_LOT_ID : in.readInt();
+                int level = magic == SNAPSHOT_MAGIC_V1 ? 0 : in.readInt();
+                applySpot(number, lotId, level, ParkingType.values()[in.readByte()], in.readBoolean());
+            }
+            int ticketCount = in.readInt();
+            for (int i = 0; i < ticketCount; i++) {
+                applyTicket(i + 1, in.readInt(), in.readUTF(), in.readDouble(), in.readLong(), in.readLong(), false);
+            }
+            long expected = checked.getChecksum().getValue();
+            if (new DataInputStream(buffered).readLong() != expected) {
+                throw new IOException("Corrupted embedded store snapshot: " + snapshotFile);
+            }
+            generation = snapshotGeneration;
+        } catch (EOFException e) {
+            throw new IOException("Truncated embedded store snapshot: " + snapshotFile, e);
+        }
+    }
+
+    private void deleteOldLogs() throws IOException {
+        try (DirectoryStream<Path> logs = Files.newDirectoryStream(directory, "store-*.log")) {
+            for (Path file : logs) {
+                String name = file.getFileName().toString();
+                try {
+                    if (Long.parseLong(name.substring(6, name.length() - 4)) < generation) {
+                        Files.delete(file);
+                    }
+                } catch (NumberFormatException e) {
+                    //fichier étranger au stockage : on n'y touche pas
+                }
+            }
+        }
+    }
+
+    //Rejoue le journal ; une fin incomplète ou dont le CRC ne correspond pas est tronquée
+    private int replay(Path logFile) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(logFile));
+        int count = 0;
+        int valid = 0;
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_HEADER) {
+            int length = buffer.getInt();
+            int expected = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.array(), buffer.position(), length);
+            if ((int) crc.getValue() != expected) {
+                break;
+            }
+            int next = buffer.position() + length;
+            replayRecord(buffer);
+            buffer.position(next);
+            valid = next;
+            count++;
+        }
+        if (valid < buffer.limit()) {
+            logger.warn("Truncating embedded store log " + logFile + " at " + valid + " of " + buffer.limit() + " bytes");
+            try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        return count;
+    }
+
+    private void replayRecord(ByteBuffer buffer) throws IOException {
+        byte op = buffer.get();
+        switch (op) {
+            case OP_SPOT:
+                applySpot(buffer.getInt(), ParkingSpot.DEFAULT_LOT_ID, 0, ParkingType.values()[buffer.get()], buffer.get() == 1);
+                break;
+            case OP_LOT_SPOT:
+                applySpot(buffer.getInt(), buffer.getInt(), buffer.getInt(), ParkingType.values()[buffer.get()], buffer.get() == 1);
+                break;
+            case OP_TICKET:
+            case OP_ENTRY: {
+                int id = buffer.getInt();
+                int parkingNumber = buffer.getInt();
+                byte[] plate = new byte[buffer.getShort()];
+                buffer.get(plate);
+                applyTicket(id, parkingNumber, new String(plate, StandardCharsets.UTF_8),
+                        buffer.getDouble(), buffer.getLong(), buffer.getLong(), op == OP_ENTRY);
+                break;
+            }
+            case OP_UPDATE:
+            case OP_EXIT:
+                applyClose(buffer.getInt(), buffer.getDouble(), buffer.getLong(), op == OP_EXIT);
+                break;
+            case OP_IN_TIME:
+                tickets.setInTime(buffer.getInt() - 1, buffer.getLong());
+                break;
+            default:
+                throw new IOException("Unknown embedded store log operation " + op);
+        }
+    }
+
+    private static final class Spot {
+        private final int number;
+        private final int lotId;
+        private final int level;
+        private final ParkingType type;
+        private boolean available;
+
+        private Spot(int number, int lotId, int level, ParkingType type, boolean available) {
+            this.number = number;
+            this.lotId = lotId;
+            this.level = level;
+            this.type = type;
+            this.available = available;
+        }
+
+        private ParkingSpot toParkingSpot() {
+            return new ParkingSpot(number, lotId, level, type, available);
+        }
+    }
+
+    //Passages d'un véhicule : nombre de tickets, dernier ticket, ticket ouvert (0 si aucun)
+    private static final class Vehicle {
+        private int visits;
+        private int lastTicketId;
+        private int openTicketId;
+    }
+}
@@ -0,0 +1,128 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.SortedSet;
+
+/**
+ * Mesure la durée de chaque appel au stockage des places sous-jacent.
+ * Histogrammes nommés d'après la classe décorée : ParkingSpotDAO.getNextAvailableSlot...
+ */
+public class MeteredParkingSpotStore implements ParkingSpotStore {
+
+    private final ParkingSpotStore delegate;
+    private final LatencyHistogram loadAvailableSlots;
+    private final LatencyHistogram getNextAvailableSlot;
+    private final LatencyHistogram releaseSlot;
+    private final LatencyHistogram getAvailableSlotCount;
+    private final LatencyHistogram getOccupiedSlotCount;
+    private final LatencyHistogram updateParking;
+
+    public MeteredParkingSpotStore(ParkingSpotStore delegate) {
+        this.delegate = delegate;
+        String prefix = delegate.getClass().getSimpleName() + ".";
+        loadAvailableSlots = Metrics.histogram(prefix + "loadAvailableSlots");
+        getNextAvailableSlot = Metrics.histogram(prefix + "getNextAvailableSlot");
+        releaseSlot = Metrics.histogram(prefix + "releaseSlot");
+        getAvailableSlotCount = Metrics.histogram(prefix + "getAvailableSlotCount");
+        getOccupiedSlotCount = Metrics.histogram(prefix + "getOccupiedSlotCount");
+        updateParking = Metrics.histogram(prefix + "updateParking");
+    }
+
+    public ParkingSpotStore getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void loadAvailableSlots() {
+        long start = Metrics.start();
+        try {
+            delegate.loadAvailableSlots();
+        } finally {
+            loadAvailableSlots.recordSince(start);
+        }
+    }
+
+    @Override
+    public int getNextAvailableSlot(ParkingType parkingType) {
+        long start = Metrics.start();
+        try {
+            return delegate.getNextAvailableSlot(parkingType);
+        } finally {
+            getNextAvailableSlot.recordSince(start);
+        }
+    }
+
+    @Override
+    public int getNextAvailableSlot(int lotId, ParkingType parkingType) {
+        long start = Metrics.start();
+        try {
+            return delegate.getNextAvailableSlot(lotId, parkingType);
+        } finally {
+            getNextAvailableSlot.recordSince(start);
+        }
+    }
+
+    @Override
+    public void releaseSlot(ParkingSpot parkingSpot) {
+        long start = Metrics.start();
+        try {
+            delegate.releaseSlot(parkingSpot);
+        } finally {
+            releaseSlot.recordSince(start);
+        }
+    }
+
+    @Override
+    public int getAvailableSlotCount(ParkingType parkingType) {
+        long start = Metrics.start();
+        try {
+            return delegate.getAvailableSlotCount(parkingType);
+        } finally {
+            getAvailableSlotCount.recordSince(start);
+        }
+    }
+
+    @Override
+    public int getAvailableSlotCount(int lotId, ParkingType parkingType) {
+        long start = Metrics.start();
+        try {
+            return delegate.getAvailableSlotCount(lotId, parkingType);
+        } finally {
+            getAvailableSlotCount.recordSince(start);
+        }
+    }
+
+    @Override
+    public int getSpotCount(int lotId, ParkingType parkingType) {
+        return delegate.getSpotCount(lotId, parkingType);
+    }
+
+    @Override
+    public SortedSet<Integer> getLotIds() {
+        return delegate.getLotIds();
+    }
+
+    @Override
+    public int getOccupiedSlotCount(ParkingType parkingType) {
+        long start = Metrics.start();
+        try {
+            return delegate.getOccupiedSlotCount(parkingType);
+        } finally {
+            getOccupiedSlotCount.recordSince(start);
+        }
+    }
+
+    @Override
+    public boolean updateParking(ParkingSpot parkingSpot) {
+        long start = Metrics.start();
+        try {
+            return delegate.updateParking(parkingSpot);
+        } finally {
+            updateParking.recordSince(start);
+        }
+    }
+}
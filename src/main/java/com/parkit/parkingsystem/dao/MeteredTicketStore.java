@@ -0,0 +1,110 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+
+import java.util.Date;
+
+/**
+ * Mesure la durée de chaque appel au stockage des tickets sous-jacent.
+ * Histogrammes nommés d'après la classe décorée : TicketDAO.getTicket, EmbeddedStore.saveIncomingTicket...
+ */
+public class MeteredTicketStore implements TicketStore {
+
+    private final TicketStore delegate;
+    private final LatencyHistogram saveIncomingTicket;
+    private final LatencyHistogram saveOutgoingTicket;
+    private final LatencyHistogram getTicket;
+    private final LatencyHistogram getNbTicket;
+    private final LatencyHistogram saveTicket;
+    private final LatencyHistogram updateTicket;
+    private final LatencyHistogram loadTicketCounts;
+
+    public MeteredTicketStore(TicketStore delegate) {
+        this.delegate = delegate;
+        String prefix = delegate.getClass().getSimpleName() + ".";
+        saveIncomingTicket = Metrics.histogram(prefix + "saveIncomingTicket");
+        saveOutgoingTicket = Metrics.histogram(prefix + "saveOutgoingTicket");
+        getTicket = Metrics.histogram(prefix + "getTicket");
+        getNbTicket = Metrics.histogram(prefix + "getNbTicket");
+        saveTicket = Metrics.histogram(prefix + "saveTicket");
+        updateTicket = Metrics.histogram(prefix + "updateTicket");
+        loadTicketCounts = Metrics.histogram(prefix + "loadTicketCounts");
+    }
+
+    public TicketStore getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public int saveIncomingTicket(Ticket ticket) {
+        long start = Metrics.start();
+        try {
+            return delegate.saveIncomingTicket(ticket);
+        } finally {
+            saveIncomingTicket.recordSince(start);
+        }
+    }
+
+    @Override
+    public Ticket saveOutgoingTicket(String vehicleRegNumber, Date outTime, FareCalculatorService fareCalculatorService) {
+        long start = Metrics.start();
+        try {
+            return delegate.saveOutgoingTicket(vehicleRegNumber, outTime, fareCalculatorService);
+        } finally {
+            saveOutgoingTicket.recordSince(start);
+        }
+    }
+
+    @Override
+    public Ticket getTicket(String vehicleRegNumber) {
+        long start = Metrics.start();
+        try {
+            return delegate.getTicket(vehicleRegNumber);
+        } finally {
+            getTicket.recordSince(start);
+        }
+    }
+
+    @Override
+    public int getNbTicket(String vehicleRegNumber) {
+        long start = Metrics.start();
+        try {
+            return delegate.getNbTicket(vehicleRegNumber);
+        } finally {
+            getNbTicket.recordSince(start);
+        }
+    }
+
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        long start = Metrics.start();
+        try {
+            return delegate.saveTicket(ticket);
+        } finally {
+            saveTicket.recordSince(start);
+        }
+    }
+
+    @Override
+    public boolean updateTicket(Ticket ticket) {
+        long start = Metrics.start();
+        try {
+            return delegate.updateTicket(ticket);
+        } finally {
+            updateTicket.recordSince(start);
+        }
+    }
+
+    @Override
+    public void loadTicketCounts() {
+        long start = Metrics.start();
+        try {
+            delegate.loadTicketCounts();
+        } finally {
+            loadTicketCounts.recordSince(start);
+        }
+    }
+}
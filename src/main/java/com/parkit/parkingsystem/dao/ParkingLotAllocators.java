@@ -0,0 +1,75 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Allocateurs de places partitionnés par parking : chaque LOT_ID a son propre ParkingSpotAllocator,
+ * deux entrées dans des parkings différents ne touchent donc jamais la même structure.
+ * Le parking de chaque place déclarée est retenu pour qu'une place libérée revienne à son allocateur.
+ */
+public class ParkingLotAllocators {
+
+    private final ConcurrentMap<Integer, ParkingSpotAllocator> allocators = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Integer> lotBySpot = new ConcurrentHashMap<>();
+
+    //Déclare une place de son parking ; libre, elle devient attribuable
+    public void define(ParkingSpot parkingSpot) {
+        Integer previousLotId = lotBySpot.put(parkingSpot.getId(), parkingSpot.getLotId());
+        ParkingSpotAllocator allocator = allocators.computeIfAbsent(parkingSpot.getLotId(), lotId -> new ParkingSpotAllocator());
+        if (previousLotId == null) {
+            allocator.define(parkingSpot.getParkingType());
+        }
+        if (parkingSpot.isAvailable()) {
+            allocator.release(parkingSpot.getParkingType(), parkingSpot.getId());
+        }
+    }
+
+    //Plus petite place libre du type dans le parking, 0 si ce parking est complet ou inconnu
+    public int claim(int lotId, ParkingType parkingType) {
+        ParkingSpotAllocator allocator = allocators.get(lotId);
+        return allocator == null ? 0 : allocator.claim(parkingType);
+    }
+
+    public void release(ParkingSpot parkingSpot) {
+        Integer lotId = lotBySpot.get(parkingSpot.getId());
+        ParkingSpotAllocator allocator = allocators.get(lotId == null ? parkingSpot.getLotId() : lotId);
+        if (allocator != null) {
+            allocator.release(parkingSpot.getParkingType(), parkingSpot.getId());
+        }
+    }
+
+    public int getFreeCount(int lotId, ParkingType parkingType) {
+        ParkingSpotAllocator allocator = allocators.get(lotId);
+        return allocator == null ? 0 : allocator.getFreeCount(parkingType);
+    }
+
+    //Places du type dans le parking, libres ou occupées, 0 si ce parking est inconnu
+    public int getSpotCount(int lotId, ParkingType parkingType) {
+        ParkingSpotAllocator allocator = allocators.get(lotId);
+        return allocator == null ? 0 : allocator.getSpotCount(parkingType);
+    }
+
+    //Places libres du type, tous parkings confondus
+    public int getFreeCount(ParkingType parkingType) {
+        int free = 0;
+        for (ParkingSpotAllocator allocator : allocators.values()) {
+            free += allocator.getFreeCount(parkingType);
+        }
+        return free;
+    }
+
+    public SortedSet<Integer> getLotIds() {
+        return new TreeSet<>(allocators.keySet());
+    }
+
+    void clear() {
+        allocators.clear();
+        lotBySpot.clear();
+    }
+}
@@ -0,0 +1,65 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Places libres gardées en mémoire par type de véhicule, triées par numéro.
+ * claim() retire atomiquement la plus petite place libre (pollFirst sans verrou, O(log n)) :
+ * deux guichets concurrents ne peuvent jamais obtenir la même place.
+ */
+public class ParkingSpotAllocator {
+
+    private final Map<ParkingType, ConcurrentSkipListSet<Integer>> freeSpots = new EnumMap<>(ParkingType.class);
+    private final Map<ParkingType, AtomicInteger> freeCounts = new EnumMap<>(ParkingType.class);
+    private final Map<ParkingType, AtomicInteger> spotCounts = new EnumMap<>(ParkingType.class);
+
+    public ParkingSpotAllocator() {
+        for (ParkingType parkingType : ParkingType.values()) {
+            freeSpots.put(parkingType, new ConcurrentSkipListSet<>());
+            freeCounts.put(parkingType, new AtomicInteger());
+            spotCounts.put(parkingType, new AtomicInteger());
+        }
+    }
+
+    //Compte une place du type, libre ou occupée, dans la capacité du parking
+    public void define(ParkingType parkingType) {
+        spotCounts.get(parkingType).incrementAndGet();
+    }
+
+    //Retourne la plus petite place libre et la marque occupée, 0 si le parking est complet
+    public int claim(ParkingType parkingType) {
+        Integer number = freeSpots.get(parkingType).pollFirst();
+        if (number == null) {
+            return 0;
+        }
+        freeCounts.get(parkingType).decrementAndGet();
+        return number;
+    }
+
+    public void release(ParkingType parkingType, int number) {
+        if (freeSpots.get(parkingType).add(number)) {
+            freeCounts.get(parkingType).incrementAndGet();
+        }
+    }
+
+    public int getFreeCount(ParkingType parkingType) {
+        return freeCounts.get(parkingType).get();
+    }
+
+    public int getSpotCount(ParkingType parkingType) {
+        return spotCounts.get(parkingType).get();
+    }
+
+    void clear() {
+        for (ParkingType parkingType : ParkingType.values()) {
+            freeSpots.get(parkingType).clear();
+            freeCounts.get(parkingType).set(0);
+            spotCounts.get(parkingType).set(0);
+        }
+    }
+}
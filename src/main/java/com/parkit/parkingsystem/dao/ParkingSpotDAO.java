@@ -10,50 +10,161 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class ParkingSpotDAO {
+public class ParkingSpotDAO implements ParkingSpotStore {
     private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
 
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    private final ParkingLotAllocators allocators = new ParkingLotAllocators();
+    private volatile boolean allocatorLoaded;
+    private volatile long resyncIntervalMillis = -1;
+    private final ConcurrentMap<String, AtomicLong> lastResyncs = new ConcurrentHashMap<>();
+
+    //Charge les places depuis la table parking, réparties par parking ; appelé au démarrage puis à la demande
+    public synchronized void loadAvailableSlots(){
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+             ResultSet rs = ps.executeQuery()) {
+            allocators.clear();
+            while(rs.next()){
+                allocators.define(new ParkingSpot(rs.getInt(1), rs.getInt(4), rs.getInt(5),
+                        ParkingType.valueOf(rs.getString(2)), rs.getBoolean(3)));
+            }
+            allocatorLoaded = true;
+        }catch (Exception ex){
+            logger.error("Error loading available slots",ex);
+        }
+    }
+
+    //Réserve la place en mémoire : aucune requête sur le chemin d'entrée, la place est écrite en base par updateParking
     public int getNextAvailableSlot(ParkingType parkingType){
-        Connection con = null;
-        int result=-1;
-        try {
-            con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
+        return getNextAvailableSlot(ParkingSpot.DEFAULT_LOT_ID, parkingType);
+    }
+
+    public int getNextAvailableSlot(int lotId, ParkingType parkingType){
+        if(!allocatorLoaded){
+            loadAvailableSlots();
+            if(!allocatorLoaded){
+                return -1;
+            }
+        }
+        int parkingNumber = allocators.claim(lotId, parkingType);
+        if (parkingNumber == 0 && resyncFreeSlots(lotId, parkingType)) {
+            parkingNumber = allocators.claim(lotId, parkingType);
+        }
+        return parkingNumber;
+    }
+
+    /**
+     * Active la relecture en base des places libres d'un parking quand son allocateur est à sec, au plus une fois
+     * par intervalle et par type : places libérées par une autre instance ou écartées après un conflit.
+     * Réservé au TicketDAO qui occupe les places par mise à jour conditionnelle ; négatif (défaut) : désactivée.
+     */
+    public void setResyncIntervalMillis(long resyncIntervalMillis){
+        this.resyncIntervalMillis = resyncIntervalMillis;
+    }
+
+    //Rend à l'allocateur les places du type libres en base ; false si la relecture n'a pas eu lieu
+    private boolean resyncFreeSlots(int lotId, ParkingType parkingType){
+        long interval = resyncIntervalMillis;
+        if (interval < 0) {
+            return false;
+        }
+        AtomicLong lastResync = lastResyncs.computeIfAbsent(lotId + "/" + parkingType, key -> new AtomicLong(Long.MIN_VALUE));
+        long now = System.currentTimeMillis();
+        long last = lastResync.get();
+        if ((last != Long.MIN_VALUE && now - last < interval) || !lastResync.compareAndSet(last, now)) {
+            return false;
+        }
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.GET_AVAILABLE_PARKING_SPOTS_OF_LOT)) {
+            ps.setInt(1, lotId);
+            ps.setString(2, parkingType.toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    allocators.define(new ParkingSpot(rs.getInt(1), lotId, rs.getInt(2), parkingType, true));
+                }
+            }
+            return true;
+        }catch (Exception ex){
+            logger.error("Error reloading available slots",ex);
+            return false;
+        }
+    }
+
+    //Rend une place obtenue par getNextAvailableSlot mais finalement non utilisée, à l'allocateur de son parking
+    public void releaseSlot(ParkingSpot parkingSpot){
+        allocators.release(parkingSpot);
+    }
+
+    public int getAvailableSlotCount(ParkingType parkingType){
+        return allocators.getFreeCount(parkingType);
+    }
+
+    public int getAvailableSlotCount(int lotId, ParkingType parkingType){
+        return allocators.getFreeCount(lotId, parkingType);
+    }
+
+    public int getSpotCount(int lotId, ParkingType parkingType){
+        return allocators.getSpotCount(lotId, parkingType);
+    }
+
+    public SortedSet<Integer> getLotIds(){
+        return allocators.getLotIds();
+    }
+
+    public int getOccupiedSlotCount(ParkingType parkingType){
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_OCCUPIED_PARKING_SPOTS)) {
             ps.setString(1, parkingType.toString());
-            ResultSet rs = ps.executeQuery();
-            if(rs.next()){
-                result = rs.getInt(1);;
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
             }
-            dataBaseConfig.closeResultSet(rs);
-            dataBaseConfig.closePreparedStatement(ps);
         }catch (Exception ex){
-            logger.error("Error fetching next available slot",ex);
-        }finally {
-            dataBaseConfig.closeConnection(con);
+            logger.error("Error counting occupied slots",ex);
+            return 0;
         }
-        return result;
     }
 
+    /**
+     * Enregistre le nouvel état de la place seulement si elle est encore dans l'état inverse en base.
+     * Occupation refusée parce qu'une autre instance a pris la place : false, et la place n'est pas rendue à l'allocateur
+     * (elle y revient par la relecture des places libres une fois libérée en base).
+     * Libération d'une place déjà libre en base : true, rien à changer.
+     */
     public boolean updateParking(ParkingSpot parkingSpot){
-        //update the availability fo that parking slot
-        Connection con = null;
-        try {
-            con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+        int updateRowCount = -1;
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.SET_PARKING_SPOT_AVAILABILITY)) {
             ps.setBoolean(1, parkingSpot.isAvailable());
             ps.setInt(2, parkingSpot.getId());
-            int updateRowCount = ps.executeUpdate();
-            dataBaseConfig.closePreparedStatement(ps);
-            return (updateRowCount == 1);
+            ps.setBoolean(3, !parkingSpot.isAvailable());
+            updateRowCount = ps.executeUpdate();
         }catch (Exception ex){
             logger.error("Error updating parking info",ex);
+        }
+        if (parkingSpot.isAvailable()) {
+            if (updateRowCount < 0) {
+                return false;
+            }
+            releaseSlot(parkingSpot);
+            return true;
+        }
+        if (updateRowCount == 0) {
+            logger.debug("Parking spot {} already taken by another instance", parkingSpot.getId());
+            return false;
+        }
+        if (updateRowCount < 0) {
+            //occupation non enregistrée : la place redevient attribuable
+            releaseSlot(parkingSpot);
             return false;
-        }finally {
-            dataBaseConfig.closeConnection(con);
         }
+        return true;
     }
 
 }
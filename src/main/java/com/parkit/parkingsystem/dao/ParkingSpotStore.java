@@ -0,0 +1,41 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.SortedSet;
+
+/**
+ * Stockage des places utilisé par ParkingService.
+ * Implémentations : ParkingSpotDAO (MySQL) et EmbeddedStore (en mémoire, sans base externe).
+ * Les places sont attribuées parking par parking (LOT_ID), chacun avec son propre allocateur.
+ */
+public interface ParkingSpotStore {
+
+    void loadAvailableSlots();
+
+    //Réserve une place libre du type dans le parking par défaut : numéro de place, 0 si le parking est complet, -1 en cas d'erreur
+    int getNextAvailableSlot(ParkingType parkingType);
+
+    //Même chose dans le parking lotId ; 0 aussi pour un parking inconnu
+    int getNextAvailableSlot(int lotId, ParkingType parkingType);
+
+    //Rend une place obtenue par getNextAvailableSlot mais finalement non utilisée, ou libérée par une sortie
+    void releaseSlot(ParkingSpot parkingSpot);
+
+    //Places libres du type, tous parkings confondus
+    int getAvailableSlotCount(ParkingType parkingType);
+
+    int getAvailableSlotCount(int lotId, ParkingType parkingType);
+
+    //Capacité : places du type dans le parking, libres ou occupées
+    int getSpotCount(int lotId, ParkingType parkingType);
+
+    //Parkings ayant au moins une place, par identifiant croissant
+    SortedSet<Integer> getLotIds();
+
+    //Places occupées d'après le stockage, pour initialiser les statistiques au démarrage
+    int getOccupiedSlotCount(ParkingType parkingType);
+
+    boolean updateParking(ParkingSpot parkingSpot);
+}
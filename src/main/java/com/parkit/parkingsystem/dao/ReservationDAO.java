@@ -0,0 +1,85 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Reservation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+//Réservations enregistrées dans la table reservation ; l'index des créneaux est tenu en mémoire par ReservationService
+public class ReservationDAO {
+
+    private static final Logger logger = LogManager.getLogger("ReservationDAO");
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    //Insère la réservation et lui affecte son ID ; false en cas d'erreur
+    public boolean saveReservation(Reservation reservation) {
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_RESERVATION, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setInt(1, reservation.getLotId());
+            ps.setString(2, reservation.getParkingType().toString());
+            ps.setString(3, reservation.getVehicleRegNumber());
+            ps.setTimestamp(4, new Timestamp(reservation.getStartTime().getTime()));
+            ps.setTimestamp(5, new Timestamp(reservation.getEndTime().getTime()));
+            ps.setString(6, reservation.getStatus().toString());
+            ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    return false;
+                }
+                reservation.setId(keys.getInt(1));
+            }
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error saving reservation", ex);
+            return false;
+        }
+    }
+
+    public boolean updateStatus(int id, Reservation.Status status) {
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_RESERVATION_STATUS)) {
+            ps.setString(1, status.toString());
+            ps.setInt(2, id);
+            return ps.executeUpdate() == 1;
+        } catch (Exception ex) {
+            logger.error("Error updating reservation " + id, ex);
+            return false;
+        }
+    }
+
+    //Réservations non annulées qui se terminent après now
+    public List<Reservation> getActiveReservations(Date now) throws ClassNotFoundException, SQLException {
+        List<Reservation> reservations = new ArrayList<>();
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.GET_ACTIVE_RESERVATIONS)) {
+            ps.setTimestamp(1, new Timestamp(now.getTime()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Reservation reservation = new Reservation();
+                    reservation.setId(rs.getInt(1));
+                    reservation.setLotId(rs.getInt(2));
+                    reservation.setParkingType(ParkingType.valueOf(rs.getString(3)));
+                    reservation.setVehicleRegNumber(rs.getString(4));
+                    reservation.setStartTime(new Date(rs.getTimestamp(5).getTime()));
+                    reservation.setEndTime(new Date(rs.getTimestamp(6).getTime()));
+                    reservation.setStatus(Reservation.Status.valueOf(rs.getString(7)));
+                    reservations.add(reservation);
+                }
+            }
+        }
+        return reservations;
+    }
+}
@@ -0,0 +1,102 @@
+package com.parkit.parkingsystem.dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Nombre de tickets par plaque, tenu à jour à chaque nouveau ticket pour éviter le COUNT(*) sur la table ticket.
+ * Taille bornée : la plaque la moins récemment consultée est évincée (LRU).
+ */
+public class TicketCountCache {
+
+    private final int capacity;
+    private final LinkedHashMap<String, Integer> counts;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public TicketCountCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counts = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                if (size() > TicketCountCache.this.capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    //Retourne le nombre de tickets connu pour la plaque, ou null si elle n'est pas en cache
+    public Integer get(String vehicleRegNumber) {
+        Integer count;
+        synchronized (counts) {
+            count = counts.get(vehicleRegNumber);
+        }
+        if (count == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return count;
+    }
+
+    public void put(String vehicleRegNumber, int count) {
+        synchronized (counts) {
+            counts.put(vehicleRegNumber, count);
+        }
+    }
+
+    //Compte un nouveau ticket ; une plaque absente n'est pas ajoutée, son total sera relu en base au prochain accès
+    public Integer increment(String vehicleRegNumber) {
+        synchronized (counts) {
+            return counts.computeIfPresent(vehicleRegNumber, (plate, count) -> count + 1);
+        }
+    }
+
+    public void clear() {
+        synchronized (counts) {
+            counts.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (counts) {
+            return counts.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        return "TicketCountCache[size=" + size() + ", capacity=" + capacity + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+}
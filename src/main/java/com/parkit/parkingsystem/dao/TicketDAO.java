@@ -3,27 +3,50 @@ package com.parkit.parkingsystem.dao;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 
-public class TicketDAO {
+public class TicketDAO implements TicketStore {
 
     private static final Logger logger = LogManager.getLogger("TicketDAO");
 
+    private static final int TICKET_COUNT_CACHE_SIZE = Integer.getInteger("parkingsystem.ticketCountCache.size", 100000);
+
+    //étapes internes des transactions, les appels eux-mêmes étant mesurés par MeteredTicketStore
+    private static final LatencyHistogram COUNT_QUERY = Metrics.histogram("TicketDAO.countQuery");
+    private static final LatencyHistogram COMMIT = Metrics.histogram("TicketDAO.commit");
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    private final TicketCountCache ticketCountCache;
+
+    public TicketDAO() {
+        this(TICKET_COUNT_CACHE_SIZE);
+    }
+
+    public TicketDAO(int ticketCountCacheSize) {
+        this.ticketCountCache = new TicketCountCache(ticketCountCacheSize);
+    }
+
     public boolean saveTicket(Ticket ticket){
-        Connection con = null;
-        try {
-            con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET);
+        //la requête est refermée (rendue au cache du pool) avant la connexion, même en cas d'erreur
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET)) {
             //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
             //ps.setInt(1,ticket.getId());
             ps.setInt(1,ticket.getParkingSpot().getId());
@@ -31,49 +54,196 @@ public class TicketDAO {
             ps.setDouble(3, ticket.getPrice());
             ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
             ps.setTimestamp(5, (ticket.getOutTime() == null)?null: (new Timestamp(ticket.getOutTime().getTime())) );
-            return ps.execute();
+            boolean result = ps.execute();
+            ticketCountCache.increment(ticket.getVehicleRegNumber());
+            return result;
         }catch (Exception ex){
-            logger.error("Error fetching next available slot",ex);
-        }finally {
-            dataBaseConfig.closeConnection(con);
+            logger.error("Error saving ticket",ex);
             return false;
         }
     }
 
-    public Ticket getTicket(String vehicleRegNumber) {
+    /**
+     * Entrée d'un véhicule en une seule transaction sur une seule connexion : occupe la place
+     * (seulement si elle est encore libre), insère le ticket et compte les passages du véhicule.
+     * Retourne le nombre de tickets du véhicule, ticket courant inclus, ou ENTRY_FAILED / SPOT_ALREADY_TAKEN.
+     */
+    public int saveIncomingTicket(Ticket ticket){
         Connection con = null;
-        Ticket ticket = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET);
-            //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-            ps.setString(1,vehicleRegNumber);
-            ResultSet rs = ps.executeQuery();
-            if(rs.next()){
-                ticket = new Ticket();
-                ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)),false);
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setId(rs.getInt(2));
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(rs.getDouble(3));
-                ticket.setInTime(rs.getTimestamp(4));
-                ticket.setOutTime(rs.getTimestamp(5));
+            con.setAutoCommit(false);
+            try (PreparedStatement claim = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT)) {
+                claim.setInt(1, ticket.getParkingSpot().getId());
+                if (claim.executeUpdate() != 1) {
+                    con.rollback();
+                    return SPOT_ALREADY_TAKEN;
+                }
             }
-            dataBaseConfig.closeResultSet(rs);
-            dataBaseConfig.closePreparedStatement(ps);
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setInt(1, ticket.getParkingSpot().getId());
+                ps.setString(2, ticket.getVehicleRegNumber());
+                ps.setDouble(3, ticket.getPrice());
+                ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
+                ps.setTimestamp(5, (ticket.getOutTime() == null) ? null : (new Timestamp(ticket.getOutTime().getTime())));
+                ps.executeUpdate();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        ticket.setId(keys.getInt(1));
+                    }
+                }
+            }
+            //plaque connue : pas de COUNT, le compteur est incrémenté après le commit
+            Integer cachedCount = ticketCountCache.get(ticket.getVehicleRegNumber());
+            int count = (cachedCount == null) ? queryTicketCount(con, ticket.getVehicleRegNumber()) : 0;
+            commit(con);
+            ticket.getParkingSpot().setAvailable(false);
+            if (cachedCount == null) {
+                ticketCountCache.put(ticket.getVehicleRegNumber(), count);
+            } else {
+                Integer incremented = ticketCountCache.increment(ticket.getVehicleRegNumber());
+                count = (incremented == null) ? cachedCount + 1 : incremented;
+            }
+            return count;
         }catch (Exception ex){
-            logger.error("Error fetching next available slot",ex);
+            logger.error("Error saving incoming ticket",ex);
+            rollback(con);
+            return ENTRY_FAILED;
         }finally {
             dataBaseConfig.closeConnection(con);
-            return ticket;
         }
     }
 
-    public boolean updateTicket(Ticket ticket) {
+    /**
+     * Sortie d'un véhicule en une seule transaction : verrouille le ticket ouvert, compte les passages,
+     * calcule le tarif, clôture le ticket et libère la place.
+     * Retourne le ticket clôturé, ou null si aucun ticket ouvert n'existe ; TicketStoreException si la transaction a échoué.
+     */
+    public Ticket saveOutgoingTicket(String vehicleRegNumber, Date outTime, FareCalculatorService fareCalculatorService){
         Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
+            con.setAutoCommit(false);
+            Ticket ticket = null;
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_OPEN_TICKET_FOR_UPDATE)) {
+                ps.setString(1, vehicleRegNumber);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        ticket = new Ticket();
+                        ticket.setParkingSpot(new ParkingSpot(rs.getInt(1), rs.getInt(7), rs.getInt(8), ParkingType.valueOf(rs.getString(6)), false));
+                        ticket.setId(rs.getInt(2));
+                        ticket.setVehicleRegNumber(vehicleRegNumber);
+                        ticket.setPrice(rs.getDouble(3));
+                        ticket.setInTime(rs.getTimestamp(4));
+                    }
+                }
+            }
+            if (ticket == null) {
+                con.rollback();
+                return null;
+            }
+            int nbTickets = countTickets(con, vehicleRegNumber);
+            ticket.setOutTime(outTime);
+            fareCalculatorService.calculateFare(ticket, nbTickets > 1);
+
+            try (PreparedStatement updateTicket = con.prepareStatement(DBConstants.UPDATE_TICKET);
+                 PreparedStatement updateParking = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)) {
+                updateTicket.setDouble(1, ticket.getPrice());
+                updateTicket.setTimestamp(2, new Timestamp(outTime.getTime()));
+                updateTicket.setInt(3, ticket.getId());
+                updateParking.setBoolean(1, true);
+                updateParking.setInt(2, ticket.getParkingSpot().getId());
+                if (updateTicket.executeUpdate() != 1 || updateParking.executeUpdate() != 1) {
+                    throw new SQLException("Ticket " + ticket.getId() + " or its parking spot was not updated");
+                }
+            }
+            commit(con);
+            ticket.getParkingSpot().setAvailable(true);
+            return ticket;
+        }catch (IllegalArgumentException ex){
+            //sortie antérieure à l'entrée : le ticket reste ouvert, l'appelant signale le refus
+            rollback(con);
+            throw ex;
+        }catch (Exception ex){
+            logger.error("Error saving outgoing ticket",ex);
+            rollback(con);
+            throw new TicketStoreException("Outgoing ticket not saved for " + vehicleRegNumber, ex);
+        }finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private static void commit(Connection con) throws SQLException {
+        long start = Metrics.start();
+        try {
+            con.commit();
+        } finally {
+            COMMIT.recordSince(start);
+        }
+    }
+
+    protected void rollback(Connection con) {
+        if (con != null) {
+            try {
+                con.rollback();
+            } catch (SQLException e) {
+                logger.error("Error while rolling back transaction", e);
+            }
+        }
+    }
+
+    //Dernier ticket de la table ticket : un véhicule dont tous les tickets sont archivés n'en a pas
+    public Ticket getTicket(String vehicleRegNumber) {
+        Ticket ticket = null;
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET)) {
+            //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+            ps.setString(1,vehicleRegNumber);
+            try (ResultSet rs = ps.executeQuery()) {
+                if(rs.next()){
+                    ticket = readTicket(rs, vehicleRegNumber);
+                }
+            }
+        }catch (Exception ex){
+            logger.error("Error fetching ticket",ex);
+        }
+        return ticket;
+    }
+
+    //Tous les tickets du véhicule par ID croissant, archivés compris ; hors du chemin des entrées et sorties
+    public List<Ticket> getTicketHistory(String vehicleRegNumber) {
+        List<Ticket> tickets = new ArrayList<>();
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET_HISTORY)) {
+            ps.setString(1, vehicleRegNumber);
+            ps.setString(2, vehicleRegNumber);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    tickets.add(readTicket(rs, vehicleRegNumber));
+                }
+            }
+        } catch (Exception ex) {
+            logger.error("Error fetching ticket history", ex);
+        }
+        return tickets;
+    }
+
+    //PARKING_NUMBER, ID, PRICE, IN_TIME, OUT_TIME, TYPE, LOT_ID, LEVEL
+    private static Ticket readTicket(ResultSet rs, String vehicleRegNumber) throws SQLException {
+        Ticket ticket = new Ticket();
+        ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), rs.getInt(7), rs.getInt(8), ParkingType.valueOf(rs.getString(6)),false);
+        ticket.setParkingSpot(parkingSpot);
+        ticket.setId(rs.getInt(2));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(rs.getDouble(3));
+        ticket.setInTime(rs.getTimestamp(4));
+        ticket.setOutTime(rs.getTimestamp(5));
+        return ticket;
+    }
+
+    public boolean updateTicket(Ticket ticket) {
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET)) {
             ps.setDouble(1, ticket.getPrice());
             ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
             ps.setInt(3,ticket.getId());
@@ -81,25 +251,75 @@ public class TicketDAO {
             return true;
         }catch (Exception ex){
             logger.error("Error saving ticket info",ex);
-        }finally {
-            dataBaseConfig.closeConnection(con);
         }
         return false;
     }
+    //Nombre de tickets du véhicule, servi par le cache ; la base n'est interrogée que pour une plaque inconnue
     public int getNbTicket(String vehicleRegNumber) {
+        Integer cachedCount = ticketCountCache.get(vehicleRegNumber);
+        if (cachedCount != null) {
+            return cachedCount;
+        }
         int count = 0;
-        try (Connection con = dataBaseConfig.getConnection();
-             PreparedStatement ps = con.prepareStatement("SELECT COUNT(*) FROM ticket WHERE VEHICLE_REG_NUMBER=?")) {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            count = queryTicketCount(con, vehicleRegNumber);
+            ticketCountCache.put(vehicleRegNumber, count);
+        } catch (Exception ex) {
+            logger.error("Error fetching ticket count", ex);
+        }
+        return count;
+    }
+
+    private int countTickets(Connection con, String vehicleRegNumber) throws SQLException {
+        Integer cachedCount = ticketCountCache.get(vehicleRegNumber);
+        if (cachedCount != null) {
+            return cachedCount;
+        }
+        int count = queryTicketCount(con, vehicleRegNumber);
+        ticketCountCache.put(vehicleRegNumber, count);
+        return count;
+    }
 
+    protected int queryTicketCount(Connection con, String vehicleRegNumber) throws SQLException {
+        long start = Metrics.start();
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_TICKETS)) {
             ps.setString(1, vehicleRegNumber);
+            ps.setString(2, vehicleRegNumber);
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    count = rs.getInt(1);
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } finally {
+            COUNT_QUERY.recordSince(start);
+        }
+    }
+
+    /*
+     * Préchauffe le cache au démarrage avec les plaques les plus récentes, dans la limite de sa capacité.
+     * La requête les renvoie de la plus récente à la plus ancienne : elles sont insérées en sens inverse,
+     * pour que l'ordre LRU place les plus anciennes en tête d'éviction.
+     */
+    public void loadTicketCounts() {
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_TICKETS_BY_RECENT_VEHICLE)) {
+            ps.setInt(1, ticketCountCache.getCapacity());
+            List<String> plates = new ArrayList<>();
+            List<Integer> counts = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plates.add(rs.getString(1));
+                    counts.add(rs.getInt(2));
                 }
             }
+            for (int i = plates.size() - 1; i >= 0; i--) {
+                ticketCountCache.put(plates.get(i), counts.get(i));
+            }
+            logger.info("Ticket count cache warmed with " + ticketCountCache.size() + " vehicles");
         } catch (Exception ex) {
-            logger.error("Error fetching ticket count", ex);
+            logger.error("Error loading ticket counts", ex);
         }
-        return count;
+    }
+
+    public TicketCountCache getTicketCountCache() {
+        return ticketCountCache;
     }
 }
@@ -0,0 +1,386 @@
+package com.parkit.parkingsystem.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Journal local des mutations de tickets : fichier mappé en mémoire, utilisé en anneau.
+ * Enregistrement : longueur des données, CRC32, numéro de séquence, type, données.
+ * sync() ne rend la main qu'une fois l'enregistrement forcé sur disque ; les appels simultanés
+ * partagent le même force() (group commit).
+ * L'en-tête note la position du premier enregistrement non encore appliqué en base, dans deux emplacements
+ * alternés protégés par CRC : une écriture d'en-tête interrompue laisse toujours l'état précédent lisible.
+ * À l'ouverture, la lecture repart de cette position et s'arrête au premier enregistrement incomplet,
+ * corrompu ou hors séquence.
+ */
+public class TicketJournal implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("TicketJournal");
+
+    private static final int MAGIC = 0x504B4A31;
+    static final int HEADER_SIZE = 64;
+    private static final int[] HEADER_SLOTS = {8, 32};
+    //longueur, CRC, séquence, type
+    static final int RECORD_HEADER_SIZE = 17;
+    //fin de tour : l'enregistrement suivant est en début d'anneau
+    private static final int WRAP = -1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final long writeTimeoutNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition durableChanged = lock.newCondition();
+    private final Condition spaceFreed = lock.newCondition();
+    private final CRC32 appendChecksum = new CRC32();
+
+    //protégés par lock
+    private int tail;
+    private int head;
+    private long appliedSeq;
+    private long lastSeq;
+    private long durableSeq;
+    private boolean syncing;
+    private boolean closed;
+    private int headerSlot;
+    private long syncCount;
+
+    //curseur de lecture, utilisé par un seul thread (rejeu puis écriture en base)
+    private final CRC32 readChecksum = new CRC32();
+    private int readPosition;
+    private long readSeq;
+
+    private TicketJournal(Path file, int capacity, long initialSeq, long writeTimeoutMillis) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long existingSize = channel.size();
+        //un journal existant garde sa taille : ses enregistrements doivent rester lisibles
+        this.capacity = existingSize > HEADER_SIZE ? (int) Math.min(existingSize, Integer.MAX_VALUE) : capacity;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            writeHeaderSlot(0, initialSeq, HEADER_SIZE);
+            buffer.force();
+        }
+        recover();
+    }
+
+    public static TicketJournal open(Path file, int capacity, long initialSeq, long writeTimeoutMillis) throws IOException {
+        if (capacity < HEADER_SIZE + 2 * RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Journal capacity too small: " + capacity);
+        }
+        return new TicketJournal(file, capacity, initialSeq, writeTimeoutMillis);
+    }
+
+    private void recover() {
+        long bestSeq = -1;
+        int bestPosition = HEADER_SIZE;
+        for (int slot = 0; slot < HEADER_SLOTS.length; slot++) {
+            int offset = HEADER_SLOTS[slot];
+            long seq = buffer.getLong(offset);
+            long position = buffer.getLong(offset + 8);
+            if (buffer.getLong(offset + 16) == headerChecksum(seq, position) && seq > bestSeq
+                    && position >= HEADER_SIZE && position < capacity) {
+                bestSeq = seq;
+                bestPosition = (int) position;
+                headerSlot = slot;
+            }
+        }
+        if (bestSeq < 0) {
+            throw new IllegalStateException("Journal header is corrupted");
+        }
+        head = bestPosition;
+        appliedSeq = bestSeq;
+        readPosition = head;
+        readSeq = appliedSeq;
+        //parcours des enregistrements intacts qui suivent le dernier point appliqué
+        int position = head;
+        long seq = appliedSeq;
+        int found;
+        while ((found = locate(position, seq + 1, readChecksum)) >= 0) {
+            seq++;
+            position = found + RECORD_HEADER_SIZE + buffer.getInt(found);
+        }
+        tail = position;
+        lastSeq = seq;
+        durableSeq = seq;
+        if (seq > appliedSeq) {
+            logger.info("Journal recovered " + (seq - appliedSeq) + " records not yet applied to the database");
+        }
+    }
+
+    /**
+     * Ajoute un enregistrement et retourne son numéro de séquence ; il n'est durable qu'après sync().
+     * Attend que le thread d'écriture libère de la place si l'anneau est plein, au plus le délai configuré.
+     */
+    public long append(byte type, byte[] payload) throws IOException {
+        int size = RECORD_HEADER_SIZE + payload.length;
+        if (size >= capacity - HEADER_SIZE) {
+            throw new IOException("Journal record too large: " + size + " bytes");
+        }
+        lock.lock();
+        try {
+            long remaining = writeTimeoutNanos;
+            int position;
+            while ((position = reserve(size)) < 0) {
+                if (closed) {
+                    throw new IOException("Journal is closed");
+                }
+                if (remaining <= 0) {
+                    throw new IOException("Journal full: " + (lastSeq - appliedSeq) + " records not applied to the database yet");
+                }
+                try {
+                    remaining = spaceFreed.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for journal space");
+                }
+            }
+            long seq = ++lastSeq;
+            buffer.putLong(position + 8, seq);
+            buffer.put(position + 16, type);
+            ByteBuffer body = buffer.duplicate();
+            body.position(position + RECORD_HEADER_SIZE);
+            body.put(payload);
+            appendChecksum.reset();
+            body.limit(position + size).position(position + 8);
+            appendChecksum.update(body);
+            buffer.putInt(position + 4, (int) appendChecksum.getValue());
+            buffer.putInt(position, payload.length);
+            tail = position + size;
+            return seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Position où écrire size octets, en repartant du début de l'anneau si besoin ; -1 si la place manque
+    private int reserve(int size) {
+        if (tail >= head) {
+            if (tail + size <= capacity) {
+                return tail;
+            }
+            //au moins un octet doit séparer la fin d'écriture du premier enregistrement non appliqué
+            if (HEADER_SIZE + size < head) {
+                if (tail + RECORD_HEADER_SIZE <= capacity) {
+                    buffer.putInt(tail, WRAP);
+                }
+                tail = HEADER_SIZE;
+                return tail;
+            }
+            return -1;
+        }
+        return tail + size < head ? tail : -1;
+    }
+
+    //Rend durable l'enregistrement seq (et tous les précédents) ; un seul force() sert tous les threads en attente
+    public void sync(long seq) throws IOException {
+        lock.lock();
+        try {
+            while (durableSeq < seq) {
+                if (closed) {
+                    throw new IOException("Journal is closed");
+                }
+                if (syncing) {
+                    durableChanged.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                long target = lastSeq;
+                boolean forced = false;
+                lock.unlock();
+                try {
+                    buffer.force();
+                    forced = true;
+                } finally {
+                    lock.lock();
+                    syncing = false;
+                    if (forced && target > durableSeq) {
+                        durableSeq = target;
+                        syncCount++;
+                    }
+                    durableChanged.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Enregistrements durables pas encore lus, au plus max, dans l'ordre des séquences.
+     * Attend au plus timeoutMillis s'il n'y en a aucun. Réservé au thread d'écriture en base.
+     */
+    public List<Record> poll(int max, long timeoutMillis) throws InterruptedException {
+        long durable;
+        lock.lock();
+        try {
+            if (readSeq >= durableSeq && timeoutMillis > 0) {
+                durableChanged.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            durable = durableSeq;
+        } finally {
+            lock.unlock();
+        }
+        List<Record> records = new ArrayList<>();
+        while (records.size() < max && readSeq < durable) {
+            int position = locate(readPosition, readSeq + 1, readChecksum);
+            if (position < 0) {
+                throw new IllegalStateException("Journal record " + (readSeq + 1) + " is missing or corrupted");
+            }
+            int length = buffer.getInt(position);
+            byte[] payload = new byte[length];
+            ByteBuffer body = buffer.duplicate();
+            body.position(position + RECORD_HEADER_SIZE);
+            body.get(payload);
+            readPosition = position + RECORD_HEADER_SIZE + length;
+            readSeq++;
+            records.add(new Record(readSeq, buffer.get(position + 16), payload, readPosition));
+        }
+        return records;
+    }
+
+    /**
+     * Note que tous les enregistrements jusqu'à record inclus sont en base. L'en-tête est forcé sur disque
+     * avant que leur place ne soit réutilisée.
+     */
+    public void markApplied(Record record) {
+        int slot;
+        lock.lock();
+        try {
+            slot = 1 - headerSlot;
+            writeHeaderSlot(slot, record.getSeq(), record.nextPosition);
+        } finally {
+            lock.unlock();
+        }
+        buffer.force();
+        lock.lock();
+        try {
+            headerSlot = slot;
+            head = record.nextPosition;
+            appliedSeq = record.getSeq();
+            spaceFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeHeaderSlot(int slot, long seq, long position) {
+        int offset = HEADER_SLOTS[slot];
+        buffer.putLong(offset, seq);
+        buffer.putLong(offset + 8, position);
+        buffer.putLong(offset + 16, headerChecksum(seq, position));
+    }
+
+    private static long headerChecksum(long seq, long position) {
+        CRC32 checksum = new CRC32();
+        ByteBuffer bytes = ByteBuffer.allocate(16);
+        bytes.putLong(seq).putLong(position).flip();
+        checksum.update(bytes);
+        return checksum.getValue();
+    }
+
+    //Position de l'enregistrement expectedSeq à partir de position (après un éventuel retour en début d'anneau), -1 s'il est absent ou invalide
+    private int locate(int position, long expectedSeq, CRC32 checksum) {
+        if (position + RECORD_HEADER_SIZE > capacity || buffer.getInt(position) == WRAP) {
+            position = HEADER_SIZE;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || length > capacity - position - RECORD_HEADER_SIZE || buffer.getLong(position + 8) != expectedSeq) {
+            return -1;
+        }
+        ByteBuffer body = buffer.duplicate();
+        body.limit(position + RECORD_HEADER_SIZE + length).position(position + 8);
+        checksum.reset();
+        checksum.update(body);
+        return (int) checksum.getValue() == buffer.getInt(position + 4) ? position : -1;
+    }
+
+    public long getLastSeq() {
+        lock.lock();
+        try {
+            return lastSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAppliedSeq() {
+        lock.lock();
+        try {
+            return appliedSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Nombre de force() effectués : inférieur au nombre d'enregistrements quand le group commit joue
+    public long getSyncCount() {
+        lock.lock();
+        try {
+            return syncCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            durableChanged.signalAll();
+            spaceFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        buffer.force();
+        channel.close();
+    }
+
+    public static final class Record {
+        private final long seq;
+        private final byte type;
+        private final byte[] payload;
+        private final int nextPosition;
+
+        private Record(long seq, byte type, byte[] payload, int nextPosition) {
+            this.seq = seq;
+            this.type = type;
+            this.payload = payload;
+            this.nextPosition = nextPosition;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+
+import java.util.Date;
+
+/**
+ * Stockage des tickets utilisé par ParkingService.
+ * Implémentations : TicketDAO (MySQL), WriteBehindTicketDAO (MySQL derrière un journal local)
+ * et EmbeddedStore (en mémoire, sans base externe).
+ */
+public interface TicketStore {
+
+    //Codes d'échec de saveIncomingTicket
+    int ENTRY_FAILED = -1;
+    int SPOT_ALREADY_TAKEN = -2;
+    //Ticket peut-être enregistré malgré l'échec : la place ne doit pas être réattribuée
+    int ENTRY_IN_DOUBT = -3;
+
+    //Occupe la place et crée le ticket (son id est renseigné) ; retourne le nombre de tickets du véhicule, ticket courant inclus, ou un code d'échec
+    int saveIncomingTicket(Ticket ticket);
+
+    /*
+     * Tarife et clôture le ticket ouvert du véhicule, libère sa place ; null si aucun ticket ouvert.
+     * IllegalArgumentException si l'heure de sortie est antérieure à l'entrée : le ticket reste ouvert.
+     * TicketStoreException si la sortie n'a pas pu être enregistrée.
+     */
+    Ticket saveOutgoingTicket(String vehicleRegNumber, Date outTime, FareCalculatorService fareCalculatorService);
+
+    //Dernier ticket du véhicule, ouvert ou non
+    Ticket getTicket(String vehicleRegNumber);
+
+    int getNbTicket(String vehicleRegNumber);
+
+    boolean saveTicket(Ticket ticket);
+
+    boolean updateTicket(Ticket ticket);
+
+    //Préchargement au démarrage, sans effet si tout est déjà en mémoire
+    void loadTicketCounts();
+}
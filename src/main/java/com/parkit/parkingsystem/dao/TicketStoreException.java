@@ -0,0 +1,11 @@
+package com.parkit.parkingsystem.dao;
+
+//Échec du stockage des tickets (base, journal) : à distinguer d'une réponse "aucun ticket"
+public class TicketStoreException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public TicketStoreException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
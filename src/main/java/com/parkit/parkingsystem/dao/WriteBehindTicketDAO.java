@@ -0,0 +1,528 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * TicketDAO en écriture différée (write-behind) : entrées et sorties sont acquittées dès qu'elles sont durables
+ * dans le journal local, puis un thread les applique à la base par lots, une transaction par lot.
+ * Le dernier numéro de séquence appliqué est noté dans journal_checkpoint dans la même transaction :
+ * au démarrage, le journal est rejoué sans doublon, avant le chargement des places libres.
+ * Les numéros de ticket sont attribués ici (à partir du max(ID) en base) pour être connus dès l'acquittement,
+ * et les places ne sont arbitrées que par l'allocateur en mémoire : une seule instance par base dans ce mode.
+ * Si une entrée est ajoutée au journal mais que sync() échoue, elle peut encore être appliquée : le ticket est
+ * tenu pour ouvert, la place n'est pas rendue (ENTRY_IN_DOUBT) et les entrées sont refusées tant que le journal
+ * ne redevient pas durable.
+ */
+public class WriteBehindTicketDAO extends TicketDAO {
+
+    private static final Logger logger = LogManager.getLogger("WriteBehindTicketDAO");
+
+    static final byte ENTRY = 1;
+    static final byte EXIT = 2;
+
+    private static final String CHECKPOINT_NAME = "ticket";
+    private static final int PLATE_LOCKS = 256;
+    private static final long POLL_MILLIS = 100;
+    private static final long MAX_RETRY_DELAY_MILLIS = 5000;
+    private static final long STOP_TIMEOUT_MILLIS = 10000;
+
+    private final Path journalFile;
+    private final int journalSize;
+    private final int batchSize;
+    private final long writeTimeoutMillis;
+
+    private final AtomicInteger ticketIds = new AtomicInteger();
+    //dernière mutation journalisée pas encore en base, par plaque
+    private final ConcurrentMap<String, PendingTicket> pendingTickets = new ConcurrentHashMap<>();
+    //entrées journalisées pas encore en base, par plaque, ajoutées au comptage des passages
+    private final ConcurrentMap<String, Integer> unappliedEntries = new ConcurrentHashMap<>();
+    //un comptage (base + non appliquées) ne s'intercale jamais entre le commit d'un lot et son décompte
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private final Object[] plateLocks = new Object[PLATE_LOCKS];
+
+    private TicketJournal journal;
+    private long checkpointSeq;
+    private Thread writer;
+    private volatile boolean running;
+    //un sync() a échoué : plus d'entrée tant que tout le journal n'est pas de nouveau durable
+    private volatile boolean journalFailed;
+
+    public WriteBehindTicketDAO(Path journalFile, int journalSize, int batchSize, long writeTimeoutMillis) {
+        this.journalFile = journalFile;
+        this.journalSize = journalSize;
+        this.batchSize = batchSize;
+        this.writeTimeoutMillis = writeTimeoutMillis;
+        for (int i = 0; i < PLATE_LOCKS; i++) {
+            plateLocks[i] = new Object();
+        }
+    }
+
+    //TicketDAO de l'application : écriture différée si -Dparkingsystem.journal.file=<fichier> est défini
+    public static TicketDAO fromSystemProperties() throws IOException, SQLException, ClassNotFoundException {
+        String file = System.getProperty("parkingsystem.journal.file");
+        if (file == null || file.isEmpty()) {
+            return new TicketDAO();
+        }
+        WriteBehindTicketDAO ticketDAO = new WriteBehindTicketDAO(Paths.get(file),
+                Integer.getInteger("parkingsystem.journal.sizeMb", 64) * 1024 * 1024,
+                Integer.getInteger("parkingsystem.journal.batchSize", 500),
+                Long.getLong("parkingsystem.journal.writeTimeoutMillis", 5000L));
+        ticketDAO.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(ticketDAO::stop, "ticket-journal-shutdown"));
+        return ticketDAO;
+    }
+
+    //Ouvre le journal, rejoue en base ce qui n'y est pas encore puis démarre le thread d'écriture
+    public synchronized void start() throws IOException, SQLException, ClassNotFoundException {
+        checkpointSeq = readCheckpoint();
+        journal = openJournal(checkpointSeq);
+        if (journal.getAppliedSeq() > checkpointSeq) {
+            logger.warn("Journal " + journalFile + " is ahead of the database checkpoint (" + journal.getAppliedSeq()
+                    + " > " + checkpointSeq + "), was the database restored?");
+        }
+        try {
+            List<TicketJournal.Record> records;
+            while (!(records = journal.poll(batchSize, 0)).isEmpty()) {
+                apply(records);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while replaying journal", e);
+        }
+        ticketIds.set(queryMaxTicketId());
+        running = true;
+        writer = new Thread(this::writeLoop, "ticket-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        logger.info("Write-behind ticket journal " + journalFile + " started at sequence " + journal.getLastSeq());
+    }
+
+    protected TicketJournal openJournal(long initialSeq) throws IOException {
+        return TicketJournal.open(journalFile, journalSize, initialSeq, writeTimeoutMillis);
+    }
+
+    public void stop() {
+        stop(STOP_TIMEOUT_MILLIS);
+    }
+
+    //Arrête le thread d'écriture après avoir appliqué ce qui peut l'être ; le reste sera rejoué au démarrage
+    public synchronized void stop(long timeoutMillis) {
+        if (journal == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(timeoutMillis);
+            if (writer.isAlive()) {
+                writer.interrupt();
+                writer.join(timeoutMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long unapplied = journal.getLastSeq() - journal.getAppliedSeq();
+        logger.info("Write-behind ticket journal stopped: " + journal.getLastSeq() + " records, "
+                + journal.getSyncCount() + " disk syncs, " + unapplied + " left to replay");
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.error("Error while closing journal", e);
+        }
+        journal = null;
+    }
+
+    //Attend que tout ce qui est journalisé soit en base ; false si le délai expire avant
+    public boolean flush(long timeoutMillis) throws InterruptedException {
+        long target = journal.getLastSeq();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (journal.getAppliedSeq() < target) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    public TicketJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Entrée acquittée dès que l'enregistrement est durable dans le journal.
+     * Retourne le nombre de tickets du véhicule, ticket courant inclus, ENTRY_FAILED si rien n'a été journalisé,
+     * ou ENTRY_IN_DOUBT si l'enregistrement est dans le journal sans avoir pu être rendu durable.
+     */
+    @Override
+    public int saveIncomingTicket(Ticket ticket) {
+        String vehicleRegNumber = ticket.getVehicleRegNumber();
+        synchronized (lockFor(vehicleRegNumber)) {
+            if (journalFailed && !recoverJournal()) {
+                return ENTRY_FAILED;
+            }
+            long seq = 0;
+            int ticketId = 0;
+            try {
+                Integer cachedCount = getTicketCountCache().get(vehicleRegNumber);
+                int count = (cachedCount == null ? countStoredTickets(vehicleRegNumber) : cachedCount) + 1;
+                ticketId = ticketIds.incrementAndGet();
+                //compté avant l'ajout au journal : le thread d'écriture peut l'appliquer dès qu'il est durable
+                unappliedEntries.merge(vehicleRegNumber, 1, Integer::sum);
+                seq = journal.append(ENTRY, encode(ticketId, ticket.getParkingSpot(), ticket.getInTime().getTime(), 0, vehicleRegNumber));
+                journal.sync(seq);
+                ticket.setId(ticketId);
+                ticket.getParkingSpot().setAvailable(false);
+                pendingTickets.put(vehicleRegNumber, new PendingTicket(ticket, seq));
+                if (cachedCount == null) {
+                    getTicketCountCache().put(vehicleRegNumber, count);
+                } else {
+                    Integer incremented = getTicketCountCache().increment(vehicleRegNumber);
+                    count = (incremented == null) ? count : incremented;
+                }
+                return count;
+            } catch (Exception ex) {
+                if (seq == 0) {
+                    unappliedEntries.computeIfPresent(vehicleRegNumber, (plate, n) -> n > 1 ? n - 1 : null);
+                    logger.error("Error journaling incoming ticket", ex);
+                    return ENTRY_FAILED;
+                }
+                //appliqué au prochain sync réussi ou au rejeu : le ticket est tenu pour ouvert et sa place reste prise
+                journalFailed = true;
+                ticket.setId(ticketId);
+                ticket.getParkingSpot().setAvailable(false);
+                pendingTickets.put(vehicleRegNumber, new PendingTicket(ticket, seq));
+                getTicketCountCache().increment(vehicleRegNumber);
+                logger.error("Incoming ticket " + ticketId + " journaled but not synced, refusing entries until the journal syncs again", ex);
+                return ENTRY_IN_DOUBT;
+            }
+        }
+    }
+
+    //Les entrées ne reprennent que lorsque tout le journal, enregistrements en doute compris, est de nouveau durable
+    private boolean recoverJournal() {
+        try {
+            journal.sync(journal.getLastSeq());
+        } catch (IOException e) {
+            logger.error("Ticket journal still not syncing, entry refused", e);
+            return false;
+        }
+        journalFailed = false;
+        logger.info("Ticket journal syncs again, accepting entries");
+        return true;
+    }
+
+    public boolean isJournalFailed() {
+        return journalFailed;
+    }
+
+    /**
+     * Sortie acquittée dès que l'enregistrement est durable dans le journal. Le ticket ouvert est pris
+     * parmi les entrées pas encore appliquées, sinon lu en base.
+     */
+    @Override
+    public Ticket saveOutgoingTicket(String vehicleRegNumber, Date outTime, FareCalculatorService fareCalculatorService) {
+        synchronized (lockFor(vehicleRegNumber)) {
+            long seq = 0;
+            try {
+                PendingTicket pending = pendingTickets.get(vehicleRegNumber);
+                Ticket openTicket = (pending != null) ? pending.getOpenTicket() : queryOpenTicket(vehicleRegNumber);
+                if (openTicket == null) {
+                    return null;
+                }
+                Ticket ticket = new Ticket();
+                ticket.setId(openTicket.getId());
+                ParkingSpot openSpot = openTicket.getParkingSpot();
+                ticket.setParkingSpot(new ParkingSpot(openSpot.getId(), openSpot.getLotId(), openSpot.getLevel(), openSpot.getParkingType(), false));
+                ticket.setVehicleRegNumber(vehicleRegNumber);
+                ticket.setInTime(openTicket.getInTime());
+                ticket.setOutTime(outTime);
+                fareCalculatorService.calculateFare(ticket, countVisits(vehicleRegNumber) > 1);
+
+                seq = journal.append(EXIT, encode(ticket.getId(), ticket.getParkingSpot(), outTime.getTime(), ticket.getPrice(), vehicleRegNumber));
+                journal.sync(seq);
+                ticket.getParkingSpot().setAvailable(true);
+                pendingTickets.put(vehicleRegNumber, new PendingTicket(ticket, seq));
+                return ticket;
+            } catch (IllegalArgumentException ex) {
+                //sortie antérieure à l'entrée : rien n'est journalisé, le ticket reste ouvert
+                throw ex;
+            } catch (Exception ex) {
+                if (seq != 0) {
+                    //sortie peut-être appliquée plus tard : la place n'est pas rendue et les entrées sont suspendues
+                    journalFailed = true;
+                }
+                logger.error("Error journaling outgoing ticket", ex);
+                throw new TicketStoreException("Outgoing ticket not journaled for " + vehicleRegNumber, ex);
+            }
+        }
+    }
+
+    @Override
+    public int getNbTicket(String vehicleRegNumber) {
+        synchronized (lockFor(vehicleRegNumber)) {
+            try {
+                return countVisits(vehicleRegNumber);
+            } catch (Exception ex) {
+                logger.error("Error fetching ticket count", ex);
+                return 0;
+            }
+        }
+    }
+
+    private int countVisits(String vehicleRegNumber) throws ClassNotFoundException, SQLException {
+        Integer cachedCount = getTicketCountCache().get(vehicleRegNumber);
+        if (cachedCount != null) {
+            return cachedCount;
+        }
+        int count = countStoredTickets(vehicleRegNumber);
+        getTicketCountCache().put(vehicleRegNumber, count);
+        return count;
+    }
+
+    //Passages en base plus entrées journalisées pas encore appliquées
+    private int countStoredTickets(String vehicleRegNumber) throws ClassNotFoundException, SQLException {
+        flushLock.readLock().lock();
+        try (Connection con = dataBaseConfig.getConnection()) {
+            return queryTicketCount(con, vehicleRegNumber) + unappliedEntries.getOrDefault(vehicleRegNumber, 0);
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    private Ticket queryOpenTicket(String vehicleRegNumber) throws ClassNotFoundException, SQLException {
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.GET_OPEN_TICKET)) {
+            ps.setString(1, vehicleRegNumber);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Ticket ticket = new Ticket();
+                ticket.setParkingSpot(new ParkingSpot(rs.getInt(1), rs.getInt(7), rs.getInt(8), ParkingType.valueOf(rs.getString(6)), false));
+                ticket.setId(rs.getInt(2));
+                ticket.setVehicleRegNumber(vehicleRegNumber);
+                ticket.setPrice(rs.getDouble(3));
+                ticket.setInTime(rs.getTimestamp(4));
+                return ticket;
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<TicketJournal.Record> records = Collections.emptyList();
+        long retryDelay = POLL_MILLIS;
+        while (running || !records.isEmpty() || journal.getAppliedSeq() < journal.getLastSeq()) {
+            try {
+                if (records.isEmpty()) {
+                    records = journal.poll(batchSize, POLL_MILLIS);
+                    if (records.isEmpty()) {
+                        continue;
+                    }
+                }
+                apply(records);
+                records = Collections.emptyList();
+                retryDelay = POLL_MILLIS;
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                //base indisponible : le lot est gardé et réessayé, le journal continue d'acquitter les bornes
+                logger.error("Unable to apply " + records.size() + " journal records to the database, retrying in " + retryDelay + " ms", e);
+                try {
+                    Thread.sleep(retryDelay);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    //Applique un lot en une transaction, puis libère sa place dans le journal
+    private void apply(List<TicketJournal.Record> records) throws ClassNotFoundException, SQLException {
+        TicketJournal.Record last = records.get(records.size() - 1);
+        List<Mutation> mutations = new ArrayList<>(records.size());
+        for (TicketJournal.Record record : records) {
+            //déjà en base : l'en-tête du journal n'avait pas encore été mis à jour
+            if (record.getSeq() > checkpointSeq) {
+                mutations.add(decode(record));
+            }
+        }
+        flushLock.writeLock().lock();
+        try {
+            if (!mutations.isEmpty()) {
+                write(mutations, last.getSeq());
+                checkpointSeq = last.getSeq();
+            }
+            for (Mutation mutation : mutations) {
+                if (mutation.type == ENTRY) {
+                    unappliedEntries.computeIfPresent(mutation.vehicleRegNumber, (plate, n) -> n > 1 ? n - 1 : null);
+                }
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+        journal.markApplied(last);
+        for (Mutation mutation : mutations) {
+            synchronized (lockFor(mutation.vehicleRegNumber)) {
+                pendingTickets.computeIfPresent(mutation.vehicleRegNumber, (plate, pending) -> pending.seq <= mutation.seq ? null : pending);
+            }
+        }
+    }
+
+    private void write(List<Mutation> mutations, long lastSeq) throws ClassNotFoundException, SQLException {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            try (PreparedStatement insertTicket = con.prepareStatement(DBConstants.SAVE_TICKET_WITH_ID);
+                 PreparedStatement closeTicket = con.prepareStatement(DBConstants.UPDATE_TICKET);
+                 PreparedStatement updateParking = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+                 PreparedStatement checkpoint = con.prepareStatement(DBConstants.UPDATE_JOURNAL_CHECKPOINT)) {
+                for (Mutation mutation : mutations) {
+                    if (mutation.type == ENTRY) {
+                        insertTicket.setInt(1, mutation.ticketId);
+                        insertTicket.setInt(2, mutation.parkingNumber);
+                        insertTicket.setString(3, mutation.vehicleRegNumber);
+                        insertTicket.setDouble(4, 0);
+                        insertTicket.setTimestamp(5, new Timestamp(mutation.time));
+                        insertTicket.setTimestamp(6, null);
+                        insertTicket.addBatch();
+                    } else {
+                        closeTicket.setDouble(1, mutation.price);
+                        closeTicket.setTimestamp(2, new Timestamp(mutation.time));
+                        closeTicket.setInt(3, mutation.ticketId);
+                        closeTicket.addBatch();
+                    }
+                    updateParking.setBoolean(1, mutation.type == EXIT);
+                    updateParking.setInt(2, mutation.parkingNumber);
+                    updateParking.addBatch();
+                }
+                //les insertions d'abord : une sortie peut clôturer un ticket entré dans le même lot
+                insertTicket.executeBatch();
+                closeTicket.executeBatch();
+                updateParking.executeBatch();
+                checkpoint.setLong(1, lastSeq);
+                checkpoint.setString(2, CHECKPOINT_NAME);
+                checkpoint.executeUpdate();
+            }
+            con.commit();
+        } catch (SQLException ex) {
+            rollback(con);
+            throw ex;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private long readCheckpoint() throws ClassNotFoundException, SQLException {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_JOURNAL_CHECKPOINT)) {
+                ps.setString(1, CHECKPOINT_NAME);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getLong(1);
+                    }
+                }
+            }
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_JOURNAL_CHECKPOINT)) {
+                ps.setString(1, CHECKPOINT_NAME);
+                ps.setLong(2, 0);
+                ps.executeUpdate();
+            }
+            return 0;
+        }
+    }
+
+    private int queryMaxTicketId() throws ClassNotFoundException, SQLException {
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.GET_MAX_TICKET_ID);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private Object lockFor(String vehicleRegNumber) {
+        return plateLocks[(vehicleRegNumber.hashCode() & 0x7fffffff) % PLATE_LOCKS];
+    }
+
+    //ticket, place, type, heure (entrée ou sortie), prix, plaque
+    private static byte[] encode(int ticketId, ParkingSpot parkingSpot, long time, double price, String vehicleRegNumber) {
+        byte[] plate = vehicleRegNumber.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(4 + 4 + 1 + 8 + 8 + 2 + plate.length);
+        payload.putInt(ticketId)
+                .putInt(parkingSpot.getId())
+                .put((byte) parkingSpot.getParkingType().ordinal())
+                .putLong(time)
+                .putDouble(price)
+                .putShort((short) plate.length)
+                .put(plate);
+        return payload.array();
+    }
+
+    private static Mutation decode(TicketJournal.Record record) {
+        ByteBuffer payload = ByteBuffer.wrap(record.getPayload());
+        Mutation mutation = new Mutation();
+        mutation.seq = record.getSeq();
+        mutation.type = record.getType();
+        mutation.ticketId = payload.getInt();
+        mutation.parkingNumber = payload.getInt();
+        payload.get();
+        mutation.time = payload.getLong();
+        mutation.price = payload.getDouble();
+        byte[] plate = new byte[payload.getShort()];
+        payload.get(plate);
+        mutation.vehicleRegNumber = new String(plate, StandardCharsets.UTF_8);
+        return mutation;
+    }
+
+    private static final class Mutation {
+        private long seq;
+        private byte type;
+        private int ticketId;
+        private int parkingNumber;
+        private long time;
+        private double price;
+        private String vehicleRegNumber;
+    }
+
+    private static final class PendingTicket {
+        private final Ticket ticket;
+        private final long seq;
+
+        private PendingTicket(Ticket ticket, long seq) {
+            this.ticket = ticket;
+            this.seq = seq;
+        }
+
+        //null si la dernière mutation en attente est une sortie
+        private Ticket getOpenTicket() {
+            return ticket.getOutTime() == null ? ticket : null;
+        }
+    }
+}
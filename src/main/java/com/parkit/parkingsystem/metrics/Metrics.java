@@ -0,0 +1,116 @@
+package com.parkit.parkingsystem.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registre des histogrammes de latence, publiés en JMX (com.parkit.parkingsystem:type=Latency,name=...)
+ * et, si demandé, écrits périodiquement dans le journal.
+ * Les appelants gardent leur histogramme dans un champ static final et mesurent ainsi :
+ *   long start = Metrics.start(); try { ... } finally { HISTOGRAM.recordSince(start); }
+ * Désactivées (-Dparkingsystem.metrics.enabled=false ou setEnabled), les mesures ne lisent même pas l'horloge.
+ */
+public final class Metrics {
+
+    private static final Logger logger = LogManager.getLogger("Metrics");
+
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private static volatile boolean enabled = !"false".equals(System.getProperty("parkingsystem.metrics.enabled"));
+    private static ScheduledExecutorService dumper;
+
+    private Metrics() {
+    }
+
+    //Histogramme du nom donné, créé et publié en JMX au premier appel
+    public static LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram != null) {
+            return histogram;
+        }
+        synchronized (histograms) {
+            histogram = histograms.get(name);
+            if (histogram == null) {
+                histogram = new LatencyHistogram(name);
+                register(histogram);
+                histograms.put(name, histogram);
+            }
+            return histogram;
+        }
+    }
+
+    //Début de mesure à passer à recordSince ; 0 si les métriques sont désactivées
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    public static List<LatencyHistogram> getHistograms() {
+        return new ArrayList<>(histograms.values());
+    }
+
+    //Une ligne par histogramme ayant reçu des mesures, triées par nom
+    public static String dump() {
+        StringBuilder text = new StringBuilder();
+        for (LatencyHistogram histogram : histograms.values()) {
+            if (histogram.getCount() > 0) {
+                text.append(histogram).append(System.lineSeparator());
+            }
+        }
+        return text.toString();
+    }
+
+    //Écrit dump() dans le journal toutes les periodSeconds secondes ; 0 ou moins : rien
+    public static synchronized void startDump(long periodSeconds) {
+        if (periodSeconds <= 0 || dumper != null) {
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            String text = dump();
+            if (!text.isEmpty()) {
+                logger.info("Latency metrics:" + System.lineSeparator() + text);
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public static synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    private static void register(LatencyHistogram histogram) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("com.parkit.parkingsystem:type=Latency,name=" + ObjectName.quote(histogram.getName()));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(histogram, objectName);
+            }
+        } catch (Exception e) {
+            logger.warn("Unable to register latency histogram " + histogram.getName() + " in JMX", e);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.parkit.parkingsystem.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Tickets rangés en colonnes de tableaux primitifs, pour tenir des millions de tickets en mémoire :
+ * 28 octets par ticket, contre environ 170 pour un Ticket avec sa String, ses deux Date et sa ParkingSpot (TicketMemoryBenchmark).
+ * - plaque : jusqu'à 10 caractères [0-9A-Za-z-] codés sur 6 bits dans un long ; une autre plaque est internée
+ *   une seule fois dans une table et le long porte son index, bit de signe à 1 ;
+ * - heures d'entrée et de sortie : secondes epoch en int non signé (jusqu'en 2106), sortie 0 pour un ticket ouvert ;
+ * - prix : int en unités de TariffTable (1/10000 €), les remises donnant des fractions de centime ;
+ * - place : numéro seul, la ParkingSpot n'est créée qu'à la conversion en Ticket.
+ * Les tickets sont repérés par leur index d'ajout. Non synchronisé : l'appelant sérialise les accès.
+ */
+public class CompactTickets {
+
+    //octets par ticket : ID, plaque, place, entrée, sortie, prix
+    public static final int BYTES_PER_TICKET = 4 + 8 + 4 + 4 + 4 + 4;
+
+    //même échelle que TariffTable.PRICE_SCALE
+    private static final int PRICE_SCALE = 10_000;
+
+    private static final int PLATE_BITS = 6;
+    private static final int PACKED_PLATE_LENGTH = 10;
+    private static final long INTERNED_PLATE = Long.MIN_VALUE;
+    private static final char[] PLATE_SYMBOLS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz-".toCharArray();
+    private static final byte[] SYMBOL_CODES = new byte[128];
+
+    static {
+        //code 0 réservé au remplissage après le dernier caractère
+        for (int i = 0; i < PLATE_SYMBOLS.length; i++) {
+            SYMBOL_CODES[PLATE_SYMBOLS[i]] = (byte) (i + 1);
+        }
+    }
+
+    private int[] ids;
+    private long[] plates;
+    private int[] parkingNumbers;
+    private int[] inTimes;
+    private int[] outTimes;
+    private int[] prices;
+    private int size;
+
+    private final List<String> internedPlates = new ArrayList<>();
+    private final Map<String, Integer> internedIndexes = new HashMap<>();
+
+    public CompactTickets(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        ids = new int[capacity];
+        plates = new long[capacity];
+        parkingNumbers = new int[capacity];
+        inTimes = new int[capacity];
+        outTimes = new int[capacity];
+        prices = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //Ajoute le ticket et retourne son index ; un ticket sans heure de sortie est ouvert
+    public int add(Ticket ticket) {
+        return add(ticket.getId(), ticket.getParkingSpot().getId(), ticket.getVehicleRegNumber(), ticket.getPrice(),
+                ticket.getInTime().getTime(), ticket.getOutTime() == null ? 0 : ticket.getOutTime().getTime());
+    }
+
+    //Heures en millisecondes epoch, tronquées à la seconde ; outTime 0 pour un ticket ouvert
+    public int add(int id, int parkingNumber, String vehicleRegNumber, double price, long inTime, long outTime) {
+        if (size == ids.length) {
+            grow();
+        }
+        int index = size;
+        ids[index] = id;
+        plates[index] = encodePlate(vehicleRegNumber);
+        parkingNumbers[index] = parkingNumber;
+        inTimes[index] = toSeconds(inTime);
+        outTimes[index] = toSeconds(outTime);
+        prices[index] = toPriceUnits(price);
+        size++;
+        return index;
+    }
+
+    public Ticket toTicket(int index, IntFunction<ParkingSpot> parkingSpots) {
+        checkIndex(index);
+        Ticket ticket = new Ticket();
+        ticket.setId(ids[index]);
+        ticket.setParkingSpot(parkingSpots.apply(parkingNumbers[index]));
+        ticket.setVehicleRegNumber(getVehicleRegNumber(index));
+        ticket.setPrice(getPrice(index));
+        ticket.setInTime(new Date(getInTime(index)));
+        ticket.setOutTime(isOpen(index) ? null : new Date(getOutTime(index)));
+        return ticket;
+    }
+
+    public int getId(int index) {
+        checkIndex(index);
+        return ids[index];
+    }
+
+    public int getParkingNumber(int index) {
+        checkIndex(index);
+        return parkingNumbers[index];
+    }
+
+    public String getVehicleRegNumber(int index) {
+        checkIndex(index);
+        return decodePlate(plates[index]);
+    }
+
+    //Code de la plaque : deux tickets du même véhicule ont le même code, sans décoder de String
+    public long getPlateCode(int index) {
+        checkIndex(index);
+        return plates[index];
+    }
+
+    public double getPrice(int index) {
+        checkIndex(index);
+        return prices[index] / (double) PRICE_SCALE;
+    }
+
+    public long getInTime(int index) {
+        checkIndex(index);
+        return Integer.toUnsignedLong(inTimes[index]) * 1000L;
+    }
+
+    //0 pour un ticket ouvert
+    public long getOutTime(int index) {
+        checkIndex(index);
+        return Integer.toUnsignedLong(outTimes[index]) * 1000L;
+    }
+
+    public boolean isOpen(int index) {
+        checkIndex(index);
+        return outTimes[index] == 0;
+    }
+
+    public void setPrice(int index, double price) {
+        checkIndex(index);
+        prices[index] = toPriceUnits(price);
+    }
+
+    public void setInTime(int index, long inTime) {
+        checkIndex(index);
+        inTimes[index] = toSeconds(inTime);
+    }
+
+    public void setOutTime(int index, long outTime) {
+        checkIndex(index);
+        outTimes[index] = toSeconds(outTime);
+    }
+
+    //Plaque codée dans un long, ou internée si elle sort de l'alphabet ou dépasse 10 caractères
+    public long encodePlate(String vehicleRegNumber) {
+        long code = packPlate(vehicleRegNumber);
+        if (code >= 0) {
+            return code;
+        }
+        Integer interned = internedIndexes.get(vehicleRegNumber);
+        if (interned == null) {
+            interned = internedPlates.size();
+            internedPlates.add(vehicleRegNumber);
+            internedIndexes.put(vehicleRegNumber, interned);
+        }
+        return INTERNED_PLATE | interned;
+    }
+
+    public String decodePlate(long code) {
+        if (code < 0) {
+            return internedPlates.get((int) (code & Integer.MAX_VALUE));
+        }
+        char[] chars = new char[PACKED_PLATE_LENGTH];
+        int length = 0;
+        for (int shift = (PACKED_PLATE_LENGTH - 1) * PLATE_BITS; shift >= 0; shift -= PLATE_BITS) {
+            int symbol = (int) (code >>> shift) & 0x3f;
+            if (symbol == 0) {
+                break;
+            }
+            chars[length++] = PLATE_SYMBOLS[symbol - 1];
+        }
+        return new String(chars, 0, length);
+    }
+
+    //-1 si la plaque ne tient pas dans un long
+    private static long packPlate(String vehicleRegNumber) {
+        int length = vehicleRegNumber.length();
+        if (length == 0 || length > PACKED_PLATE_LENGTH) {
+            return -1;
+        }
+        long code = 0;
+        for (int i = 0; i < PACKED_PLATE_LENGTH; i++) {
+            int symbol = 0;
+            if (i < length) {
+                char c = vehicleRegNumber.charAt(i);
+                symbol = c < SYMBOL_CODES.length ? SYMBOL_CODES[c] : 0;
+                if (symbol == 0) {
+                    return -1;
+                }
+            }
+            code = (code << PLATE_BITS) | symbol;
+        }
+        return code;
+    }
+
+    private static int toSeconds(long millis) {
+        long seconds = millis / 1000L;
+        if (millis < 0 || seconds > 0xffffffffL) {
+            throw new IllegalArgumentException("Time out of range: " + millis);
+        }
+        return (int) seconds;
+    }
+
+    private static int toPriceUnits(double price) {
+        long units = Math.round(price * PRICE_SCALE);
+        if (units < Integer.MIN_VALUE || units > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Price out of range: " + price);
+        }
+        return (int) units;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Ticket index " + index + ", size " + size);
+        }
+    }
+
+    private void grow() {
+        int capacity = ids.length + (ids.length >> 1);
+        ids = Arrays.copyOf(ids, capacity);
+        plates = Arrays.copyOf(plates, capacity);
+        parkingNumbers = Arrays.copyOf(parkingNumbers, capacity);
+        inTimes = Arrays.copyOf(inTimes, capacity);
+        outTimes = Arrays.copyOf(outTimes, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+    }
+}
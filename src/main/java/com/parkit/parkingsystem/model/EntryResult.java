@@ -0,0 +1,53 @@
+package com.parkit.parkingsystem.model;
+
+//Résultat d'une entrée : ticket et place attribuée si le véhicule est garé, sinon la raison du refus
+public class EntryResult {
+
+    public enum Status {
+        PARKED,
+        PARKING_FULL,
+        FAILED
+    }
+
+    private final Status status;
+    private final Ticket ticket;
+    private final boolean recurringUser;
+
+    private EntryResult(Status status, Ticket ticket, boolean recurringUser) {
+        this.status = status;
+        this.ticket = ticket;
+        this.recurringUser = recurringUser;
+    }
+
+    public static EntryResult parked(Ticket ticket, boolean recurringUser) {
+        return new EntryResult(Status.PARKED, ticket, recurringUser);
+    }
+
+    public static EntryResult parkingFull() {
+        return new EntryResult(Status.PARKING_FULL, null, false);
+    }
+
+    public static EntryResult failed() {
+        return new EntryResult(Status.FAILED, null, false);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isParked() {
+        return status == Status.PARKED;
+    }
+
+    public Ticket getTicket() {
+        return ticket;
+    }
+
+    public int getParkingNumber() {
+        return ticket == null ? 0 : ticket.getParkingSpot().getId();
+    }
+
+    public boolean isRecurringUser() {
+        return recurringUser;
+    }
+}
@@ -0,0 +1,53 @@
+package com.parkit.parkingsystem.model;
+
+//Résultat d'une sortie : ticket clôturé et tarifé, absence de ticket ouvert pour ce véhicule,
+//heure de sortie antérieure à l'entrée (horloge de borne décalée), ou échec du stockage
+public class ExitResult {
+
+    public enum Status {
+        EXITED,
+        NO_OPEN_TICKET,
+        OUT_TIME_BEFORE_ENTRY,
+        FAILED
+    }
+
+    private final Status status;
+    private final Ticket ticket;
+
+    private ExitResult(Status status, Ticket ticket) {
+        this.status = status;
+        this.ticket = ticket;
+    }
+
+    public static ExitResult exited(Ticket ticket) {
+        return new ExitResult(Status.EXITED, ticket);
+    }
+
+    public static ExitResult noOpenTicket() {
+        return new ExitResult(Status.NO_OPEN_TICKET, null);
+    }
+
+    public static ExitResult outTimeBeforeEntry() {
+        return new ExitResult(Status.OUT_TIME_BEFORE_ENTRY, null);
+    }
+
+    public static ExitResult failed() {
+        return new ExitResult(Status.FAILED, null);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isExited() {
+        return status == Status.EXITED;
+    }
+
+    public Ticket getTicket() {
+        return ticket;
+    }
+
+    public double getPrice() {
+        return ticket == null ? 0 : ticket.getPrice();
+    }
+}
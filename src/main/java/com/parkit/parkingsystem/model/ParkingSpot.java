@@ -2,10 +2,17 @@ package com.parkit.parkingsystem.model;
 
 import com.parkit.parkingsystem.constants.ParkingType;
 
+//Place de parking ; le numéro est unique sur l'ensemble des parkings, lotId et level la situent
 public class ParkingSpot {
+
+    //parking des places créées avant le multi-parkings et des bornes qui ne précisent pas de parking
+    public static final int DEFAULT_LOT_ID = 1;
+
     private int number;
     private ParkingType parkingType;
     private boolean isAvailable;
+    private int lotId = DEFAULT_LOT_ID;
+    private int level;
 
     public ParkingSpot(int number, ParkingType parkingType, boolean isAvailable) {
         this.number = number;
@@ -13,6 +20,12 @@ public class ParkingSpot {
         this.isAvailable = isAvailable;
     }
 
+    public ParkingSpot(int number, int lotId, int level, ParkingType parkingType, boolean isAvailable) {
+        this(number, parkingType, isAvailable);
+        this.lotId = lotId;
+        this.level = level;
+    }
+
     public int getId() {
         return number;
     }
@@ -29,6 +42,22 @@ public class ParkingSpot {
         this.parkingType = parkingType;
     }
 
+    public int getLotId() {
+        return lotId;
+    }
+
+    public void setLotId(int lotId) {
+        this.lotId = lotId;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
     public boolean isAvailable() {
         return isAvailable;
     }
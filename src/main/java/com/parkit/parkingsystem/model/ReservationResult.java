@@ -0,0 +1,44 @@
+package com.parkit.parkingsystem.model;
+
+//Résultat d'une demande de réservation : la réservation enregistrée, sinon la raison du refus
+public class ReservationResult {
+
+    public enum Status {
+        BOOKED,
+        FULL,
+        FAILED
+    }
+
+    private final Status status;
+    private final Reservation reservation;
+
+    private ReservationResult(Status status, Reservation reservation) {
+        this.status = status;
+        this.reservation = reservation;
+    }
+
+    public static ReservationResult booked(Reservation reservation) {
+        return new ReservationResult(Status.BOOKED, reservation);
+    }
+
+    //Plus de place libre du type sur au moins un créneau de l'intervalle demandé
+    public static ReservationResult full() {
+        return new ReservationResult(Status.FULL, null);
+    }
+
+    public static ReservationResult failed() {
+        return new ReservationResult(Status.FAILED, null);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isBooked() {
+        return status == Status.BOOKED;
+    }
+
+    public Reservation getReservation() {
+        return reservation;
+    }
+}
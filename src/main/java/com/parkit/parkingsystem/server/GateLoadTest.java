@@ -0,0 +1,169 @@
+package com.parkit.parkingsystem.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Client de charge du GateServer : N bornes simultanées enchaînent entrée puis sortie d'un nouveau véhicule
+ * pendant la durée donnée, puis débit et percentiles de latence sont affichés.
+ * Avec plusieurs parkings, la borne n entre dans le parking (n modulo parkings) + 1.
+ * Usage : GateLoadTest [url=http://localhost:8080] [bornes=8] [secondes=30] [type=CAR] [parkings=1]
+ */
+public class GateLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int gates = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        String type = args.length > 3 ? args[3] : "CAR";
+        int lots = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+
+        Gate[] workers = new Gate[gates];
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        for (int g = 0; g < gates; g++) {
+            workers[g] = new Gate(g, baseUrl, type, g % lots + 1, start, deadline);
+            workers[g].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Gate worker : workers) {
+            worker.join();
+        }
+        double elapsedSeconds = (System.nanoTime() - begin) / 1e9;
+
+        Stats entries = new Stats();
+        Stats exits = new Stats();
+        for (Gate worker : workers) {
+            entries.merge(worker.entries);
+            exits.merge(worker.exits);
+        }
+        System.out.printf("%d gates, %.1f s, %s%n", gates, elapsedSeconds, baseUrl);
+        entries.print("entry", elapsedSeconds);
+        exits.print("exit", elapsedSeconds);
+    }
+
+    private static final class Gate extends Thread {
+        private final int gate;
+        private final String baseUrl;
+        private final String type;
+        private final int lot;
+        private final CountDownLatch start;
+        private final long deadline;
+        private final Stats entries = new Stats();
+        private final Stats exits = new Stats();
+
+        private Gate(int gate, String baseUrl, String type, int lot, CountDownLatch start, long deadline) {
+            super("gate-" + gate);
+            this.gate = gate;
+            this.baseUrl = baseUrl;
+            this.type = type;
+            this.lot = lot;
+            this.start = start;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            //plaque unique sur 10 caractères : L + borne + numéro de passage
+            for (int i = 0; System.nanoTime() < deadline; i++) {
+                String plate = String.format("L%03d%06d", gate % 1000, i % 1_000_000);
+                entries.record(post(baseUrl + "/entry?type=" + type + "&lot=" + lot + "&plate=" + plate));
+                exits.record(post(baseUrl + "/exit?plate=" + plate));
+            }
+        }
+
+        //Retourne la latence en nanosecondes, négative si la réponse n'est pas 200
+        private long post(String url) {
+            long begin = System.nanoTime();
+            try {
+                HttpURLConnection con = (HttpURLConnection) new URL(url).openConnection();
+                con.setRequestMethod("POST");
+                int status = con.getResponseCode();
+                try (InputStream in = status < 400 ? con.getInputStream() : con.getErrorStream()) {
+                    drain(in);
+                }
+                long latency = System.nanoTime() - begin;
+                return status == 200 ? latency : -latency;
+            } catch (IOException e) {
+                return -(System.nanoTime() - begin);
+            }
+        }
+
+        private static void drain(InputStream in) throws IOException {
+            if (in == null) {
+                return;
+            }
+            byte[] buffer = new byte[256];
+            while (in.read(buffer) >= 0) {
+                //lire toute la réponse pour réutiliser la connexion (keep-alive)
+            }
+        }
+    }
+
+    private static final class Stats {
+        private final List<long[]> blocks = new ArrayList<>();
+        private long[] current = new long[4096];
+        private int size;
+        private long errors;
+
+        private void record(long latency) {
+            if (latency < 0) {
+                errors++;
+                return;
+            }
+            if (size == current.length) {
+                blocks.add(current);
+                current = new long[current.length];
+                size = 0;
+            }
+            current[size++] = latency;
+        }
+
+        private void merge(Stats other) {
+            for (long[] block : other.blocks) {
+                for (long latency : block) {
+                    record(latency);
+                }
+            }
+            for (int i = 0; i < other.size; i++) {
+                record(other.current[i]);
+            }
+            errors += other.errors;
+        }
+
+        private void print(String name, double elapsedSeconds) {
+            int count = blocks.size() * current.length + size;
+            long[] all = new long[count];
+            int offset = 0;
+            for (long[] block : blocks) {
+                System.arraycopy(block, 0, all, offset, block.length);
+                offset += block.length;
+            }
+            System.arraycopy(current, 0, all, offset, size);
+            Arrays.sort(all);
+            System.out.printf("  %-5s ok=%d errors=%d throughput=%.1f/s p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms%n",
+                    name, count, errors, count / elapsedSeconds,
+                    percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), percentile(all, 0.999),
+                    count == 0 ? 0 : all[count - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package com.parkit.parkingsystem.server;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Reservation;
+import com.parkit.parkingsystem.model.ReservationResult;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.OccupancyFeed;
+import com.parkit.parkingsystem.service.ParkingAnalytics;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.ReservationService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Frontal HTTP des bornes d'entrée et de sortie : chaque borne appelle
+ *   POST /entry?type=CAR&plate=AB123CD[&lot=2] -> {"ticket":12,"lot":2,"spot":3,"returning":false}
+ *   POST /exit?plate=AB123CD                   -> {"ticket":12,"lot":2,"spot":3,"price":1.5}
+ *   GET  /lots                                 -> places libres par parking et par type
+ *   GET  /analytics                            -> occupation, arrivées, départs, recettes et durées par type (si fournies)
+ *   GET  /occupancy                            -> places libres publiées par le flux d'occupation (si fourni)
+ *   GET  /occupancy/stream                     -> le même flux en Server-Sent Events, pour les panneaux d'entrée
+ *   POST /reservations?type=CAR&plate=AB123CD&from=...&to=...[&lot=2] -> {"reservation":7,"lot":2,"type":"CAR","from":...,"to":...}
+ *   DELETE /reservations?id=7                  -> annulation (si ParkingService gère des réservations)
+ * Les heures from et to sont en millisecondes epoch ou au format 2024-05-01T08:30 (heure locale).
+ * Sans paramètre lot, l'entrée se fait dans le parking par défaut ; un parking inconnu est vu comme complet.
+ * Les requêtes sont traitées en parallèle par un pool borné ; quand sa file est pleine,
+ * le thread d'acceptation traite lui-même la requête, ce qui ralentit les bornes au lieu de les rejeter.
+ * Simple adaptateur HTTP : tout le traitement passe par ParkingService.enter() et exit(), partagé entre les workers.
+ */
+public class GateServer {
+
+    private static final Logger logger = LogManager.getLogger("GateServer");
+
+    private static final String MALFORMED_QUERY = "malformed query string";
+
+    private final ParkingService parkingService;
+    private final ParkingAnalytics analytics;
+    private final OccupancyFeed occupancyFeed;
+    private final HttpServer server;
+    private final ThreadPoolExecutor executor;
+    //flux SSE ouverts, fermés à l'arrêt du serveur
+    private final Set<OccupancyFeed.Subscription> streams = ConcurrentHashMap.newKeySet();
+
+    public GateServer(int port, int threads, ParkingService parkingService) throws IOException {
+        this(port, threads, parkingService, null);
+    }
+
+    public GateServer(int port, int threads, ParkingService parkingService, ParkingAnalytics analytics) throws IOException {
+        this(port, threads, parkingService, analytics, null);
+    }
+
+    //analytics : statistiques servies sur /analytics, déjà abonnées à parkingService ; null pour ne pas les exposer
+    //occupancyFeed : flux servi sur /occupancy, déjà abonné à parkingService ; null pour ne pas l'exposer
+    public GateServer(int port, int threads, ParkingService parkingService, ParkingAnalytics analytics, OccupancyFeed occupancyFeed) throws IOException {
+        this.parkingService = parkingService;
+        this.analytics = analytics;
+        this.occupancyFeed = occupancyFeed;
+        AtomicInteger workerCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 16), r -> {
+                    Thread t = new Thread(r, "gate-worker-" + workerCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.server = HttpServer.create(new InetSocketAddress(port), 256);
+        server.createContext("/entry", this::handleEntry);
+        server.createContext("/exit", this::handleExit);
+        server.createContext("/lots", this::handleLots);
+        if (analytics != null) {
+            server.createContext("/analytics", this::handleAnalytics);
+        }
+        if (occupancyFeed != null) {
+            server.createContext("/occupancy", this::handleOccupancy);
+        }
+        if (parkingService.getReservationService() != null) {
+            server.createContext("/reservations", this::handleReservations);
+        }
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+        logger.info("Gate server listening on port " + getPort() + " with " + executor.getCorePoolSize() + " workers");
+    }
+
+    public void stop() {
+        for (OccupancyFeed.Subscription stream : streams) {
+            stream.cancel();
+        }
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleEntry(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, error("POST required"));
+                return;
+            }
+            Map<String, String> params = queryParams(exchange);
+            if (params == null) {
+                send(exchange, 400, error(MALFORMED_QUERY));
+                return;
+            }
+            ParkingType parkingType = parseType(params.get("type"));
+            String plate = params.get("plate");
+            if (parkingType == null || !isValidPlate(plate)) {
+                send(exchange, 400, error("type (CAR|BIKE) and plate (1-" + ParkingService.MAX_VEHICLE_REG_NUMBER_LENGTH + " chars) are required"));
+                return;
+            }
+            int lotId = parseLot(params.get("lot"));
+            if (lotId <= 0) {
+                send(exchange, 400, error("lot must be a positive number"));
+                return;
+            }
+            EntryResult result = parkingService.enter(lotId, parkingType, plate);
+            if (result.getStatus() == EntryResult.Status.PARKING_FULL) {
+                send(exchange, 409, error("entry refused: parking full"));
+                return;
+            }
+            if (!result.isParked()) {
+                //ticket non enregistré ou état inconnu : la borne peut réessayer
+                send(exchange, 503, error("entry refused: ticket not saved"));
+                return;
+            }
+            send(exchange, 200, "{\"ticket\":" + result.getTicket().getId() + ",\"lot\":" + lotId + ",\"spot\":" + result.getParkingNumber()
+                    + ",\"returning\":" + result.isRecurringUser() + "}");
+        } catch (RuntimeException e) {
+            logger.error("Unable to process entry request", e);
+            send(exchange, 500, error("internal error"));
+        }
+    }
+
+    private void handleExit(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, error("POST required"));
+                return;
+            }
+            Map<String, String> params = queryParams(exchange);
+            if (params == null) {
+                send(exchange, 400, error(MALFORMED_QUERY));
+                return;
+            }
+            String plate = params.get("plate");
+            if (!isValidPlate(plate)) {
+                send(exchange, 400, error("plate (1-" + ParkingService.MAX_VEHICLE_REG_NUMBER_LENGTH + " chars) is required"));
+                return;
+            }
+            ExitResult result = parkingService.exit(plate);
+            if (result.getStatus() == ExitResult.Status.FAILED) {
+                send(exchange, 503, error("exit refused: ticket not saved"));
+                return;
+            }
+            if (result.getStatus() == ExitResult.Status.OUT_TIME_BEFORE_ENTRY) {
+                send(exchange, 409, error("exit refused: out time is before the entry time"));
+                return;
+            }
+            if (!result.isExited()) {
+                send(exchange, 404, error("no open ticket for this vehicle"));
+                return;
+            }
+            Ticket ticket = result.getTicket();
+            send(exchange, 200, "{\"ticket\":" + ticket.getId() + ",\"lot\":" + ticket.getParkingSpot().getLotId()
+                    + ",\"spot\":" + ticket.getParkingSpot().getId()
+                    + ",\"price\":" + ticket.getPrice() + "}");
+        } catch (RuntimeException e) {
+            logger.error("Unable to process exit request", e);
+            send(exchange, 500, error("internal error"));
+        }
+    }
+
+    //Places libres lues dans les allocateurs en mémoire, sans requête en base
+    private void handleLots(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, error("GET required"));
+            return;
+        }
+        StringBuilder json = new StringBuilder("{");
+        for (int lotId : parkingService.getLotIds()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(lotId).append("\":{");
+            for (ParkingType parkingType : ParkingType.values()) {
+                if (parkingType.ordinal() > 0) {
+                    json.append(',');
+                }
+                json.append('"').append(parkingType).append("\":").append(parkingService.getAvailableSlotCount(lotId, parkingType));
+            }
+            json.append('}');
+        }
+        send(exchange, 200, json.append('}').toString());
+    }
+
+    //Lecture seule en mémoire : les tableaux de bord peuvent interroger souvent sans charger la base
+    private void handleAnalytics(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, error("GET required"));
+            return;
+        }
+        StringBuilder json = new StringBuilder("{\"windowMinutes\":").append(analytics.getWindowMinutes())
+                .append(",\"dwellLimitsMinutes\":").append(Arrays.toString(ParkingAnalytics.getDwellLimitsMinutes()).replace(" ", ""));
+        for (ParkingType parkingType : ParkingType.values()) {
+            json.append(",\"").append(parkingType).append("\":{")
+                    .append("\"occupied\":").append(analytics.getOccupied(parkingType))
+                    .append(",\"arrivals\":").append(analytics.getArrivals(parkingType))
+                    .append(",\"departures\":").append(analytics.getDepartures(parkingType))
+                    .append(",\"arrivalsPerMinute\":").append(analytics.getArrivalsPerMinute(parkingType))
+                    .append(",\"departuresPerMinute\":").append(analytics.getDeparturesPerMinute(parkingType))
+                    .append(",\"revenue\":").append(analytics.getRevenue(parkingType))
+                    .append(",\"dwell\":").append(Arrays.toString(analytics.getDwellHistogram(parkingType)).replace(" ", ""))
+                    .append('}');
+        }
+        send(exchange, 200, json.append('}').toString());
+    }
+
+    private void handleReservations(HttpExchange exchange) throws IOException {
+        try {
+            ReservationService reservationService = parkingService.getReservationService();
+            Map<String, String> params = queryParams(exchange);
+            if (params == null) {
+                send(exchange, 400, error(MALFORMED_QUERY));
+                return;
+            }
+            if ("DELETE".equals(exchange.getRequestMethod())) {
+                int id = parseId(params.get("id"));
+                if (id <= 0) {
+                    send(exchange, 400, error("a positive integer id is required"));
+                    return;
+                }
+                if (!reservationService.cancel(id)) {
+                    send(exchange, 404, error("no cancellable reservation with this id"));
+                    return;
+                }
+                send(exchange, 200, "{\"reservation\":" + id + ",\"cancelled\":true}");
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, error("POST or DELETE required"));
+                return;
+            }
+            ParkingType parkingType = parseType(params.get("type"));
+            String plate = params.get("plate");
+            Date from = parseTime(params.get("from"));
+            Date to = parseTime(params.get("to"));
+            int lotId = parseLot(params.get("lot"));
+            if (parkingType == null || !isValidPlate(plate) || from == null || to == null || !to.after(from) || lotId <= 0) {
+                send(exchange, 400, error("type (CAR|BIKE), plate, from < to and a positive lot are required"));
+                return;
+            }
+            if (to.getTime() <= System.currentTimeMillis()) {
+                send(exchange, 400, error("reservation must end in the future"));
+                return;
+            }
+            ReservationResult result = reservationService.reserve(lotId, parkingType, plate, from, to);
+            if (result.getStatus() == ReservationResult.Status.FULL) {
+                send(exchange, 409, error("reservation refused: no spot left for this window"));
+                return;
+            }
+            if (!result.isBooked()) {
+                //réservation non enregistrée : le client peut réessayer
+                send(exchange, 503, error("reservation refused: not saved"));
+                return;
+            }
+            Reservation reservation = result.getReservation();
+            send(exchange, 200, "{\"reservation\":" + reservation.getId() + ",\"lot\":" + lotId + ",\"type\":\"" + parkingType
+                    + "\",\"from\":" + reservation.getStartTime().getTime() + ",\"to\":" + reservation.getEndTime().getTime() + "}");
+        } catch (RuntimeException e) {
+            logger.error("Unable to process reservation request", e);
+            send(exchange, 500, error("internal error"));
+        }
+    }
+
+    private void handleOccupancy(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, error("GET required"));
+            return;
+        }
+        if ("/occupancy/stream".equals(exchange.getRequestURI().getPath())) {
+            handleOccupancyStream(exchange);
+            return;
+        }
+        send(exchange, 200, toJson(occupancyFeed.getSnapshot()));
+    }
+
+    /**
+     * Flux Server-Sent Events : un événement "occupancy" avec toutes les valeurs à l'ouverture, puis les seules
+     * valeurs modifiées, et un commentaire keepalive à chaque battement de vie.
+     * La connexion reste ouverte sans occuper de worker : les écritures se font sur les threads du flux,
+     * et une écriture en échec (panneau déconnecté, ou bloquée au-delà du délai d'écriture du flux)
+     * résilie l'abonnement et ferme l'échange.
+     */
+    private void handleOccupancyStream(HttpExchange exchange) throws IOException {
+        if (occupancyFeed.getSubscriberCount() >= occupancyFeed.getMaxSubscribers()) {
+            send(exchange, 503, error("too many occupancy streams"));
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        streams.removeIf(OccupancyFeed.Subscription::isCancelled);
+        try {
+            streams.add(occupancyFeed.subscribe(updates -> {
+                String event = updates.isEmpty() ? ": keepalive\n\n" : "event: occupancy\ndata: " + toJson(updates) + "\n\n";
+                try {
+                    out.write(event.getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                } catch (IOException e) {
+                    exchange.close();
+                    throw e;
+                }
+            }));
+        } catch (IllegalStateException e) {
+            //limite atteinte entre le contrôle et l'abonnement
+            exchange.close();
+        }
+    }
+
+    private static String toJson(List<OccupancyFeed.Update> updates) {
+        StringBuilder json = new StringBuilder("[");
+        for (OccupancyFeed.Update update : updates) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append(update.toJson());
+        }
+        return json.append(']').toString();
+    }
+
+    private static ParkingType parseType(String type) {
+        if (type == null) {
+            return null;
+        }
+        try {
+            return ParkingType.valueOf(type.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    //Parking par défaut si absent, 0 si la valeur n'est pas un nombre
+    private static int parseLot(String lot) {
+        if (lot == null) {
+            return ParkingSpot.DEFAULT_LOT_ID;
+        }
+        try {
+            return Integer.parseInt(lot);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    //Identifiant strictement positif, 0 si absent ou si la valeur n'est pas un entier positif
+    private static int parseId(String id) {
+        if (id == null) {
+            return 0;
+        }
+        try {
+            return Math.max(Integer.parseInt(id), 0);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    //Millisecondes epoch ou date-heure locale ISO, null si absente ou illisible
+    private static Date parseTime(String time) {
+        if (time == null) {
+            return null;
+        }
+        try {
+            return new Date(Long.parseLong(time));
+        } catch (NumberFormatException e) {
+            try {
+                return Date.from(LocalDateTime.parse(time).atZone(ZoneId.systemDefault()).toInstant());
+            } catch (DateTimeParseException invalid) {
+                return null;
+            }
+        }
+    }
+
+    private static boolean isValidPlate(String plate) {
+        return plate != null && plate.trim().length() > 0 && plate.length() <= ParkingService.MAX_VEHICLE_REG_NUMBER_LENGTH;
+    }
+
+    //Paramètres décodés, null si la requête contient un échappement invalide (%zz) : erreur du client
+    private static Map<String, String> queryParams(HttpExchange exchange) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                try {
+                    params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return params;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":\"" + message.replace("\"", "'") + "\"}";
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
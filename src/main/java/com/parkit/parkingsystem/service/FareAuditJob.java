@@ -0,0 +1,244 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Re-tarification des tickets clôturés après un changement de grille.
+ * La table ticket est lue en flux (curseur avant seulement, fetch size réglable) par paquets de chunkSize lignes ;
+ * chaque paquet est tarifé en parallèle sur un ForkJoinPool puis réécrit par batch JDBC dans une transaction.
+ * Après chaque paquet validé, le dernier ID traité est écrit dans le fichier de reprise : une relance repart de là.
+ * Le fichier est supprimé quand le parcours va jusqu'au bout : l'audit suivant reprend toute la table.
+ * La majoration d'occupation appliquée à la sortie n'est pas enregistrée : avec une grille qui en prévoit,
+ * l'audit ne touche à aucun ticket plutôt que d'effacer les majorations déjà facturées.
+ */
+public class FareAuditJob {
+
+    private static final Logger logger = LogManager.getLogger("FareAuditJob");
+
+    //seuil de découpage des tâches de tarification
+    private static final int PRICING_SLICE = 512;
+
+    private final DataBaseConfig dataBaseConfig;
+    private final TariffTable tariffTable;
+    private final int chunkSize;
+    private final int fetchSize;
+    private final ForkJoinPool pool;
+
+    public FareAuditJob(DataBaseConfig dataBaseConfig, TariffTable tariffTable, int chunkSize, int fetchSize, int parallelism) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.tariffTable = tariffTable;
+        this.chunkSize = chunkSize;
+        this.fetchSize = fetchSize;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    public Result run(Path checkpointFile) throws ClassNotFoundException, SQLException, IOException {
+        int lastId = readCheckpoint(checkpointFile);
+        if (tariffTable.hasSurcharges()) {
+            logger.warn("Fare audit skipped: occupancy surcharges are configured and the surcharge applied at exit is not stored");
+            pool.shutdown();
+            return new Result(0, 0, lastId, 0);
+        }
+        if (lastId > 0) {
+            logger.info("Resuming fare audit after ticket ID " + lastId);
+        }
+        long start = System.nanoTime();
+        long scanned = 0;
+        long updated = 0;
+        Chunk chunk = new Chunk(chunkSize);
+        //deux connexions : le flux de lecture MySQL occupe la sienne jusqu'à la fin du parcours
+        try (Connection readCon = dataBaseConfig.getConnection();
+             Connection writeCon = dataBaseConfig.getConnection();
+             PreparedStatement read = readCon.prepareStatement(DBConstants.GET_CLOSED_TICKETS_FOR_AUDIT,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             PreparedStatement write = writeCon.prepareStatement(DBConstants.UPDATE_TICKET_PRICE)) {
+            writeCon.setAutoCommit(false);
+            read.setFetchSize(fetchSize);
+            read.setInt(1, lastId);
+            try (ResultSet rs = read.executeQuery()) {
+                boolean more = true;
+                while (more) {
+                    chunk.size = 0;
+                    while (chunk.size < chunkSize && (more = rs.next())) {
+                        chunk.add(rs.getInt(1), rs.getTimestamp(2).getTime(), rs.getTimestamp(3).getTime(),
+                                ParkingType.valueOf(rs.getString(4)), rs.getInt(5), TariffTable.fromAmount(rs.getDouble(6)));
+                    }
+                    if (chunk.size == 0) {
+                        break;
+                    }
+                    pool.invoke(new PricingTask(chunk, 0, chunk.size));
+                    updated += write(writeCon, write, chunk);
+                    scanned += chunk.size;
+                    lastId = chunk.ids[chunk.size - 1];
+                    writeCheckpoint(checkpointFile, lastId);
+                    logger.info("Fare audit: " + scanned + " tickets scanned, " + updated + " repriced, last ID " + lastId
+                            + ", " + (long) ratePerSecond(scanned, System.nanoTime() - start) + " rows/s");
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        //parcours terminé : rien à reprendre
+        if (checkpointFile != null) {
+            Files.deleteIfExists(checkpointFile);
+        }
+        Result result = new Result(scanned, updated, lastId, System.nanoTime() - start);
+        logger.info("Fare audit done: " + result);
+        return result;
+    }
+
+    //Réécrit uniquement les prix modifiés, en un batch et une transaction par paquet
+    private int write(Connection con, PreparedStatement ps, Chunk chunk) throws SQLException {
+        int changed = 0;
+        for (int i = 0; i < chunk.size; i++) {
+            if (chunk.newPrices[i] != chunk.oldPrices[i]) {
+                ps.setDouble(1, TariffTable.toAmount(chunk.newPrices[i]));
+                ps.setInt(2, chunk.ids[i]);
+                ps.addBatch();
+                changed++;
+            }
+        }
+        if (changed > 0) {
+            try {
+                ps.executeBatch();
+                con.commit();
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        }
+        return changed;
+    }
+
+    private static int readCheckpoint(Path checkpointFile) throws IOException {
+        if (checkpointFile == null || !Files.exists(checkpointFile)) {
+            return 0;
+        }
+        String content = new String(Files.readAllBytes(checkpointFile), StandardCharsets.UTF_8).trim();
+        return content.isEmpty() ? 0 : Integer.parseInt(content);
+    }
+
+    //Écriture atomique : fichier temporaire puis renommage
+    private static void writeCheckpoint(Path checkpointFile, int lastId) throws IOException {
+        if (checkpointFile == null) {
+            return;
+        }
+        Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        Files.write(tmp, String.valueOf(lastId).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static double ratePerSecond(long rows, long nanos) {
+        return nanos == 0 ? 0 : rows * 1e9 / nanos;
+    }
+
+    //Paquet de tickets en tableaux primitifs, réutilisé d'un paquet à l'autre
+    private static final class Chunk {
+        private final int[] ids;
+        private final long[] inTimes;
+        private final long[] outTimes;
+        private final ParkingType[] types;
+        private final int[] visits;
+        private final long[] oldPrices;
+        private final long[] newPrices;
+        private int size;
+
+        private Chunk(int capacity) {
+            ids = new int[capacity];
+            inTimes = new long[capacity];
+            outTimes = new long[capacity];
+            types = new ParkingType[capacity];
+            visits = new int[capacity];
+            oldPrices = new long[capacity];
+            newPrices = new long[capacity];
+        }
+
+        private void add(int id, long inTime, long outTime, ParkingType type, int visit, long oldPrice) {
+            ids[size] = id;
+            inTimes[size] = inTime;
+            outTimes[size] = outTime;
+            types[size] = type;
+            visits[size] = visit;
+            oldPrices[size] = oldPrice;
+            size++;
+        }
+    }
+
+    private final class PricingTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Chunk chunk;
+        private final int from;
+        private final int to;
+
+        private PricingTask(Chunk chunk, int from, int to) {
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PRICING_SLICE) {
+                for (int i = from; i < to; i++) {
+                    chunk.newPrices[i] = tariffTable.price(chunk.types[i], chunk.inTimes[i], chunk.outTimes[i], chunk.visits[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new PricingTask(chunk, from, middle), new PricingTask(chunk, middle, to));
+        }
+    }
+
+    public static final class Result {
+        private final long scanned;
+        private final long updated;
+        private final int lastId;
+        private final long elapsedNanos;
+
+        private Result(long scanned, long updated, int lastId, long elapsedNanos) {
+            this.scanned = scanned;
+            this.updated = updated;
+            this.lastId = lastId;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getScanned() {
+            return scanned;
+        }
+
+        public long getUpdated() {
+            return updated;
+        }
+
+        public int getLastId() {
+            return lastId;
+        }
+
+        public double getRowsPerSecond() {
+            return ratePerSecond(scanned, elapsedNanos);
+        }
+
+        @Override
+        public String toString() {
+            return scanned + " tickets scanned, " + updated + " repriced, last ID " + lastId + ", "
+                    + (long) getRowsPerSecond() + " rows/s";
+        }
+    }
+}
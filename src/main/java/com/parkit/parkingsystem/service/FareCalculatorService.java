@@ -1,45 +1,52 @@
 package com.parkit.parkingsystem.service;
 
-import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.Ticket;
 
 public class FareCalculatorService {
 
-    public void calculateFare(Ticket ticket, boolean discount) {
-        if ((ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime()))) {
-            throw new IllegalArgumentException("Out time provided is incorrect: " + ticket.getOutTime());
-        }
+    //Occupation courante d'un parking en points de base (10 000 = complet) ; lue à chaque sortie, sans requête
+    public interface OccupancySource {
+        int getOccupancyBasisPoints(int lotId, ParkingType parkingType);
+    }
 
-        long inTimeMillis = ticket.getInTime().getTime();
-        long outTimeMillis = ticket.getOutTime().getTime();
-        double duration = (outTimeMillis - inTimeMillis) / (1000.0 * 60 * 60); // Converti en heures
+    private final TariffTable tariffTable;
+    private final OccupancySource occupancySource;
 
-        if (duration <= 0.5) { // 30 minutes gratuites
-            ticket.setPrice(0);
-            return;
-        }
+    public FareCalculatorService() {
+        this(TariffTable.defaultTariff());
+    }
 
-        double rate;
-        switch (ticket.getParkingSpot().getParkingType()) {
-            case CAR:
-                rate = Fare.CAR_RATE_PER_HOUR;
-                break;
-            case BIKE:
-                rate = Fare.BIKE_RATE_PER_HOUR;
-                break;
-            default:
-                throw new IllegalArgumentException("Unknown Parking Type");
-        }
-        double price = duration * rate;
-        if (discount) { // Appliquer 5% de réduction
-            price *= 0.95;
+    public FareCalculatorService(TariffTable tariffTable) {
+        this(tariffTable, null);
+    }
+
+    //occupancySource : null pour ne jamais majorer
+    public FareCalculatorService(TariffTable tariffTable, OccupancySource occupancySource) {
+        this.tariffTable = tariffTable;
+        this.occupancySource = occupancySource;
+    }
+
+    public void calculateFare(Ticket ticket, boolean discount) {
+        if ((ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime()))) {
+            throw new IllegalArgumentException("Out time provided is incorrect: " + ticket.getOutTime());
         }
 
-        ticket.setPrice(price);
+        // Calcul en entiers par la grille tarifaire (30 minutes gratuites, 5% de réduction dès le 2e passage)
+        ParkingType parkingType = ticket.getParkingSpot().getParkingType();
+        int occupancy = occupancySource != null && tariffTable.hasSurcharges()
+                ? occupancySource.getOccupancyBasisPoints(ticket.getParkingSpot().getLotId(), parkingType) : 0;
+        long price = tariffTable.price(parkingType,
+                ticket.getInTime().getTime(), ticket.getOutTime().getTime(), discount ? 2 : 1, occupancy);
+        ticket.setPrice(TariffTable.toAmount(price));
     }
 
     public void calculateFare(Ticket ticket) {
         calculateFare(ticket, false); // Appelle la méthode avec discount = false par défaut
     }
 
-}
\ No newline at end of file
+    public TariffTable getTariffTable() {
+        return tariffTable;
+    }
+
+}
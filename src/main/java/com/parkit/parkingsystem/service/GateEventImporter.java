@@ -0,0 +1,458 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.BatchTicketDAO;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+
+/**
+ * Import des journaux hors ligne des bornes (coupure réseau), à la place d'une ressaisie dans InteractiveShell.
+ * Le fichier est lu en flux par un FileChannel et un tampon d'1 Mo, analysé octet par octet sans découpage en chaînes ;
+ * les événements sont triés par horodatage puis rejoués par ParkingService.enter()/exit() sur un BatchTicketDAO
+ * qui écrit les tickets et les places par batch JDBC.
+ * Formats acceptés :
+ * - CSV : horodatage,ENTRY|EXIT,plaque[,CAR|BIKE[,parking]] ; horodatage en millisecondes epoch ou "yyyy-MM-dd HH:mm:ss"
+ *   (heure locale, 'T' accepté comme séparateur) ; une première ligne non numérique est prise pour un en-tête ;
+ * - binaire : l'entier BINARY_MAGIC puis des enregistrements [long ms][byte 1 entrée, 2 sortie][byte type][short parking][byte n][n octets de plaque].
+ * Les événements refusés sont comptés par motif et écrits dans le fichier des rejets (source,motif,événement).
+ */
+public class GateEventImporter {
+
+    private static final Logger logger = LogManager.getLogger("GateEventImporter");
+
+    //"PKEV"
+    public static final int BINARY_MAGIC = 0x504b4556;
+    public static final byte BINARY_ENTRY = 1;
+    public static final byte BINARY_EXIT = 2;
+
+    //tampon sur tas : l'analyse des lignes parcourt directement son tableau
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int RECORD_HEADER_SIZE = 8 + 1 + 1 + 2 + 1;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    //tri stable : à horodatage égal l'ordre du fichier est gardé ; un journal presque trié se trie en temps linéaire
+    private static final Comparator<GateEvent> BY_TIME = Comparator.comparingLong(event -> event.time);
+
+    private final ParkingService parkingService;
+    private final BatchTicketDAO ticketDAO;
+    private final long progressEvery;
+
+    public GateEventImporter(ParkingService parkingService, BatchTicketDAO ticketDAO, long progressEvery) {
+        this.parkingService = parkingService;
+        this.ticketDAO = ticketDAO;
+        this.progressEvery = progressEvery;
+    }
+
+    public Result run(Path eventFile, Path rejectsFile) throws IOException, ClassNotFoundException, SQLException {
+        long start = System.nanoTime();
+        try (Rejects rejects = new Rejects(rejectsFile)) {
+            List<GateEvent> events = read(eventFile, rejects);
+            events.sort(BY_TIME);
+            logger.info("Read " + events.size() + " gate events from " + eventFile + " (" + rejects.count + " unreadable) in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+            Result result = replay(events, rejects, start);
+            logger.info("Gate event import done: " + result);
+            return result;
+        }
+    }
+
+    private Result replay(List<GateEvent> events, Rejects rejects, long start) throws IOException, ClassNotFoundException, SQLException {
+        SortedSet<Integer> lotIds = parkingService.getLotIds();
+        long entries = 0;
+        long exits = 0;
+        long replayed = 0;
+        for (GateEvent event : events) {
+            String reason = apply(event, lotIds);
+            if (reason != null) {
+                rejects.add(event.source, reason, event.toString());
+            } else if (event.entry) {
+                entries++;
+            } else {
+                exits++;
+            }
+            ticketDAO.flushIfFull();
+            if (++replayed % progressEvery == 0) {
+                logger.info("Gate event import: " + replayed + "/" + events.size() + " events replayed, " + rejects.count
+                        + " rejected, " + (long) ratePerSecond(replayed, System.nanoTime() - start) + " events/s");
+            }
+        }
+        ticketDAO.flush();
+        return new Result(events.size() + rejects.unreadable, entries, exits, rejects.count, rejects.byReason, System.nanoTime() - start);
+    }
+
+    //Motif du refus, null si l'événement est enregistré
+    private String apply(GateEvent event, SortedSet<Integer> lotIds) {
+        Date time = new Date(event.time);
+        if (!event.entry) {
+            switch (parkingService.exit(event.plate, time).getStatus()) {
+                case EXITED:
+                    return null;
+                case NO_OPEN_TICKET:
+                    return "no open ticket";
+                case OUT_TIME_BEFORE_ENTRY:
+                    return "exit before entry";
+                default:
+                    return "exit refused";
+            }
+        }
+        if (!lotIds.contains(event.lot)) {
+            return "unknown lot";
+        }
+        if (ticketDAO.hasOpenTicket(event.plate)) {
+            return "vehicle already parked";
+        }
+        EntryResult result = parkingService.enter(event.lot, event.type, event.plate, time);
+        switch (result.getStatus()) {
+            case PARKED:
+                return null;
+            case PARKING_FULL:
+                return "parking full";
+            default:
+                return "entry refused";
+        }
+    }
+
+    private static List<GateEvent> read(Path eventFile, Rejects rejects) throws IOException {
+        List<GateEvent> events = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(eventFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            boolean eof = channel.read(buffer) < 0;
+            buffer.flip();
+            if (buffer.remaining() >= 4 && buffer.getInt(0) == BINARY_MAGIC) {
+                buffer.position(4);
+                readBinary(channel, buffer, events, rejects);
+            } else {
+                readCsv(channel, buffer, eof, events, rejects);
+            }
+        }
+        return events;
+    }
+
+    //Le tampon arrive en lecture ; une ligne coupée en fin de tampon est ramenée au début avant la lecture suivante
+    private static void readCsv(FileChannel channel, ByteBuffer buffer, boolean eof, List<GateEvent> events, Rejects rejects) throws IOException {
+        byte[] bytes = buffer.array();
+        long lineNumber = 0;
+        while (true) {
+            int lineStart = buffer.position();
+            int limit = buffer.limit();
+            for (int i = lineStart; i < limit; i++) {
+                if (bytes[i] == '\n') {
+                    parseLine(bytes, lineStart, i, ++lineNumber, events, rejects);
+                    lineStart = i + 1;
+                }
+            }
+            if (eof) {
+                if (lineStart < limit) {
+                    parseLine(bytes, lineStart, limit, ++lineNumber, events, rejects);
+                }
+                return;
+            }
+            if (lineStart == 0 && limit == buffer.capacity()) {
+                throw new IOException("Line " + (lineNumber + 1) + " is longer than " + BUFFER_SIZE + " bytes");
+            }
+            buffer.position(lineStart);
+            buffer.compact();
+            eof = channel.read(buffer) < 0;
+            buffer.flip();
+        }
+    }
+
+    private static void parseLine(byte[] bytes, int from, int to, long lineNumber, List<GateEvent> events, Rejects rejects) throws IOException {
+        if (to > from && bytes[to - 1] == '\r') {
+            to--;
+        }
+        if (to == from) {
+            return;
+        }
+        if (lineNumber == 1 && (bytes[from] < '0' || bytes[from] > '9')) {
+            return;
+        }
+        //début de chaque champ, et fin de ligne en dernière position
+        int[] fields = new int[6];
+        int count = 0;
+        fields[count++] = from;
+        for (int i = from; i < to && count < 5; i++) {
+            if (bytes[i] == ',') {
+                fields[count++] = i + 1;
+            }
+        }
+        int end = to;
+        for (int i = fields[count - 1]; i < to; i++) {
+            if (bytes[i] == ',') {
+                end = i;
+                break;
+            }
+        }
+        try {
+            if (count < 3) {
+                throw new IllegalArgumentException("missing fields");
+            }
+            GateEvent event = new GateEvent();
+            event.source = lineNumber;
+            event.time = parseTime(bytes, fields[0], fields[1] - 1);
+            event.entry = parseKind(bytes, fields[1], fields[2] - 1);
+            event.plate = new String(bytes, fields[2], (count > 3 ? fields[3] - 1 : end) - fields[2], StandardCharsets.UTF_8);
+            if (count > 3) {
+                event.type = parseType(new String(bytes, fields[3], (count > 4 ? fields[4] - 1 : end) - fields[3], StandardCharsets.US_ASCII));
+            }
+            if (count > 4) {
+                event.lot = (int) parseLong(bytes, fields[4], end, "lot");
+            }
+            check(event);
+            events.add(event);
+        } catch (IllegalArgumentException e) {
+            rejects.addUnreadable(lineNumber, e.getMessage(), new String(bytes, from, to - from, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void readBinary(FileChannel channel, ByteBuffer buffer, List<GateEvent> events, Rejects rejects) throws IOException {
+        long record = 0;
+        while (true) {
+            int available = buffer.remaining();
+            if (available < RECORD_HEADER_SIZE
+                    || available < RECORD_HEADER_SIZE + (buffer.get(buffer.position() + RECORD_HEADER_SIZE - 1) & 0xff)) {
+                buffer.compact();
+                boolean eof = channel.read(buffer) < 0;
+                buffer.flip();
+                if (eof) {
+                    if (buffer.hasRemaining()) {
+                        rejects.addUnreadable(record + 1, "truncated record", buffer.remaining() + " bytes");
+                    }
+                    return;
+                }
+                continue;
+            }
+            GateEvent event = new GateEvent();
+            event.source = ++record;
+            event.time = buffer.getLong();
+            byte kind = buffer.get();
+            byte type = buffer.get();
+            event.lot = buffer.getShort();
+            byte[] plate = new byte[buffer.get() & 0xff];
+            buffer.get(plate);
+            event.plate = new String(plate, StandardCharsets.UTF_8);
+            try {
+                if (kind != BINARY_ENTRY && kind != BINARY_EXIT) {
+                    throw new IllegalArgumentException("unknown event kind " + kind);
+                }
+                event.entry = kind == BINARY_ENTRY;
+                if (event.entry) {
+                    if (type < 0 || type >= ParkingType.values().length) {
+                        throw new IllegalArgumentException("unknown vehicle type " + type);
+                    }
+                    event.type = ParkingType.values()[type];
+                }
+                check(event);
+                events.add(event);
+            } catch (IllegalArgumentException e) {
+                rejects.addUnreadable(record, e.getMessage(), event.toString());
+            }
+        }
+    }
+
+    private static void check(GateEvent event) {
+        if (event.plate.isEmpty() || event.plate.length() > ParkingService.MAX_VEHICLE_REG_NUMBER_LENGTH) {
+            throw new IllegalArgumentException("invalid vehicle registration number");
+        }
+        if (event.entry && event.type == null) {
+            throw new IllegalArgumentException("missing vehicle type");
+        }
+        if (event.lot <= 0) {
+            throw new IllegalArgumentException("invalid lot");
+        }
+    }
+
+    private static long parseTime(byte[] bytes, int from, int to) {
+        boolean digits = to > from;
+        for (int i = from; i < to && digits; i++) {
+            digits = bytes[i] >= '0' && bytes[i] <= '9';
+        }
+        if (digits) {
+            return parseLong(bytes, from, to, "timestamp");
+        }
+        //yyyy-MM-dd HH:mm:ss
+        if (to - from != 19 || bytes[from + 4] != '-' || bytes[from + 7] != '-'
+                || (bytes[from + 10] != ' ' && bytes[from + 10] != 'T') || bytes[from + 13] != ':' || bytes[from + 16] != ':') {
+            throw new IllegalArgumentException("invalid timestamp");
+        }
+        try {
+            return LocalDateTime.of((int) parseLong(bytes, from, from + 4, "timestamp"),
+                    (int) parseLong(bytes, from + 5, from + 7, "timestamp"),
+                    (int) parseLong(bytes, from + 8, from + 10, "timestamp"),
+                    (int) parseLong(bytes, from + 11, from + 13, "timestamp"),
+                    (int) parseLong(bytes, from + 14, from + 16, "timestamp"),
+                    (int) parseLong(bytes, from + 17, from + 19, "timestamp"))
+                    .atZone(ZONE).toInstant().toEpochMilli();
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("invalid timestamp");
+        }
+    }
+
+    private static boolean parseKind(byte[] bytes, int from, int to) {
+        if (equalsIgnoreCase(bytes, from, to, "ENTRY")) {
+            return true;
+        }
+        if (equalsIgnoreCase(bytes, from, to, "EXIT")) {
+            return false;
+        }
+        throw new IllegalArgumentException("unknown event kind");
+    }
+
+    private static ParkingType parseType(String type) {
+        try {
+            return type.isEmpty() ? null : ParkingType.valueOf(type.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown vehicle type");
+        }
+    }
+
+    private static long parseLong(byte[] bytes, int from, int to, String field) {
+        if (to <= from || to - from > 18) {
+            throw new IllegalArgumentException("invalid " + field);
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("invalid " + field);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static boolean equalsIgnoreCase(byte[] bytes, int from, int to, String expected) {
+        if (to - from != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toUpperCase((char) bytes[from + i]) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double ratePerSecond(long events, long nanos) {
+        return nanos == 0 ? 0 : events * 1e9 / nanos;
+    }
+
+    private static final class GateEvent {
+        private long source;
+        private long time;
+        private boolean entry;
+        private ParkingType type;
+        private int lot = ParkingSpot.DEFAULT_LOT_ID;
+        private String plate;
+
+        @Override
+        public String toString() {
+            return entry ? time + ",ENTRY," + plate + "," + type + "," + lot : time + ",EXIT," + plate;
+        }
+    }
+
+    //Compteurs par motif et fichier des rejets, écrit au fil de l'eau (aucun fichier si rejectsFile est null)
+    private static final class Rejects implements Closeable {
+        private final BufferedWriter writer;
+        private final Map<String, Long> byReason = new TreeMap<>();
+        private long count;
+        private long unreadable;
+
+        private Rejects(Path rejectsFile) throws IOException {
+            writer = rejectsFile == null ? null : Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8);
+        }
+
+        private void addUnreadable(long source, String reason, String record) throws IOException {
+            unreadable++;
+            add(source, reason, record);
+        }
+
+        private void add(long source, String reason, String record) throws IOException {
+            count++;
+            byReason.merge(reason, 1L, Long::sum);
+            if (writer != null) {
+                writer.write(source + "," + reason + "," + record);
+                writer.newLine();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    public static final class Result {
+        private final long events;
+        private final long entries;
+        private final long exits;
+        private final long rejected;
+        private final Map<String, Long> rejectedByReason;
+        private final long elapsedNanos;
+
+        private Result(long events, long entries, long exits, long rejected, Map<String, Long> rejectedByReason, long elapsedNanos) {
+            this.events = events;
+            this.entries = entries;
+            this.exits = exits;
+            this.rejected = rejected;
+            this.rejectedByReason = Collections.unmodifiableMap(new TreeMap<>(rejectedByReason));
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getEvents() {
+            return events;
+        }
+
+        public long getEntries() {
+            return entries;
+        }
+
+        public long getExits() {
+            return exits;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public Map<String, Long> getRejectedByReason() {
+            return rejectedByReason;
+        }
+
+        public double getEventsPerSecond() {
+            return ratePerSecond(events, elapsedNanos);
+        }
+
+        @Override
+        public String toString() {
+            return events + " events, " + entries + " entries, " + exits + " exits, " + rejected + " rejected "
+                    + rejectedByReason + ", " + (long) getEventsPerSecond() + " events/s";
+        }
+    }
+}
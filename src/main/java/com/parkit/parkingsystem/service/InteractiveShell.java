@@ -1,7 +1,9 @@
 package com.parkit.parkingsystem.service;
 
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotStore;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketStore;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -11,14 +13,27 @@ public class InteractiveShell {
     private static final Logger logger = LogManager.getLogger("InteractiveShell");
 
     public static void loadInterface(){
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.loadAvailableSlots();
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.loadTicketCounts();
+        loadInterface(parkingSpotDAO, ticketDAO);
+    }
+
+    //Stockage déjà chargé par l'appelant (TicketDAO en écriture différée, journal rejoué, ou EmbeddedStore)
+    public static void loadInterface(ParkingSpotStore parkingSpotDAO, TicketStore ticketDAO){
+        loadInterface(parkingSpotDAO, ticketDAO, null);
+    }
+
+    //reservationService : réservations chargées, honorées aux entrées saisies ; null pour ne pas en tenir compte
+    public static void loadInterface(ParkingSpotStore parkingSpotDAO, TicketStore ticketDAO, ReservationService reservationService){
         logger.info("App initialized!!!");
         System.out.println("Welcome to Parking System!");
 
         boolean continueApp = true;
         InputReaderUtil inputReaderUtil = new InputReaderUtil();
-        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
-        TicketDAO ticketDAO = new TicketDAO();
         ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        parkingService.setReservationService(reservationService);
 
         while(continueApp){
             loadMenu();
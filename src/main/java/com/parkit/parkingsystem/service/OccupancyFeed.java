@@ -0,0 +1,371 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diffusion en direct des places libres par parking et par type, pour les panneaux d'entrée, sans lecture en base.
+ * Abonné à ParkingService : une entrée ou une sortie marque seulement son couple (parking, type) comme modifié.
+ * Un thread de publication relit alors les compteurs en mémoire de ParkingService, au plus une fois par
+ * coalesceMillis : une rafale d'entrées ne donne qu'une mise à jour par couple.
+ * Chaque abonné reçoit les mises à jour sur un pool de dispatchThreads threads, une livraison à la fois ;
+ * tant qu'elle est en cours, les mises à jour suivantes remplacent les précédentes (seule la dernière valeur
+ * de chaque couple est gardée) : un abonné lent ne retarde ni les bornes ni les autres abonnés et n'accumule rien.
+ * Sans changement pendant heartbeatMillis, les abonnés reçoivent une liste vide, pour détecter les connexions mortes.
+ * Une livraison bloquée plus de writeTimeoutMillis (panneau qui ne lit plus) est interrompue et l'abonné résilié :
+ * des panneaux figés ne peuvent pas immobiliser tous les threads du pool.
+ * Les compteurs sont ceux des allocateurs de cette instance : les places prises par une autre instance n'y figurent pas.
+ */
+public class OccupancyFeed implements ParkingEventListener, Closeable {
+
+    private static final Logger logger = LogManager.getLogger("OccupancyFeed");
+
+    private static final int TYPES = ParkingType.values().length;
+
+    private final ParkingService parkingService;
+    private final long coalesceMillis;
+    private final long heartbeatMillis;
+    private final int maxSubscribers;
+    private final long writeTimeoutMillis;
+
+    //couples (parking, type) modifiés depuis la dernière publication
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    //dernière valeur publiée de chaque couple
+    private final Map<Integer, Update> current = new ConcurrentHashMap<>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Object signal = new Object();
+    //vrai pendant que le thread de publication attend sur signal, ou s'apprête à le faire
+    private volatile boolean publisherWaiting;
+    private final Thread publisher;
+    private final ExecutorService dispatcher;
+    private final AtomicLong published = new AtomicLong();
+    private volatile boolean running = true;
+
+    //writeTimeoutMillis : durée maximale d'une livraison à un abonné, 0 pour ne pas en imposer
+    public OccupancyFeed(ParkingService parkingService, long coalesceMillis, long heartbeatMillis, int maxSubscribers,
+                         int dispatchThreads, long writeTimeoutMillis) {
+        this.parkingService = parkingService;
+        this.coalesceMillis = coalesceMillis;
+        this.heartbeatMillis = heartbeatMillis;
+        this.maxSubscribers = maxSubscribers;
+        this.writeTimeoutMillis = writeTimeoutMillis;
+        for (int lotId : parkingService.getLotIds()) {
+            for (ParkingType parkingType : ParkingType.values()) {
+                int key = key(lotId, parkingType);
+                current.put(key, new Update(lotId, parkingType, parkingService.getAvailableSlotCount(lotId, parkingType)));
+            }
+        }
+        AtomicInteger dispatcherCount = new AtomicInteger();
+        this.dispatcher = Executors.newFixedThreadPool(dispatchThreads, r -> {
+            Thread t = new Thread(r, "occupancy-dispatch-" + dispatcherCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.publisher = new Thread(this::publishLoop, "occupancy-publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+    }
+
+    @Override
+    public void vehicleEntered(Ticket ticket) {
+        changed(ticket.getParkingSpot());
+    }
+
+    @Override
+    public void vehicleExited(Ticket ticket) {
+        changed(ticket.getParkingSpot());
+    }
+
+    /**
+     * Thread de la borne : une insertion dans un ensemble, le réveil n'est envoyé que si le publieur attend.
+     * L'insertion précède la lecture de publisherWaiting, et le publieur lève ce drapeau avant de tester dirty :
+     * soit il voit la nouvelle clé et n'attend pas, soit la borne voit le drapeau et le réveille.
+     */
+    private void changed(ParkingSpot parkingSpot) {
+        dirty.add(key(parkingSpot.getLotId(), parkingSpot.getParkingType()));
+        if (publisherWaiting) {
+            synchronized (signal) {
+                signal.notify();
+            }
+        }
+    }
+
+    /**
+     * Abonne un lecteur : il reçoit d'abord toutes les valeurs courantes, puis les seules valeurs modifiées.
+     * IllegalStateException si maxSubscribers lecteurs sont déjà abonnés.
+     */
+    public Subscription subscribe(OccupancySubscriber subscriber) {
+        Subscription subscription = new Subscription(subscriber);
+        synchronized (subscriptions) {
+            if (subscriptions.size() >= maxSubscribers) {
+                throw new IllegalStateException("Too many occupancy subscribers (" + maxSubscribers + ")");
+            }
+            subscriptions.add(subscription);
+        }
+        subscription.offer(current.values());
+        return subscription;
+    }
+
+    //Valeurs courantes, triées par parking puis par type
+    public List<Update> getSnapshot() {
+        return new ArrayList<>(new TreeMap<>(current).values());
+    }
+
+    public int getMaxSubscribers() {
+        return maxSubscribers;
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    //Nombre de valeurs publiées depuis le démarrage, après regroupement
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        publisher.interrupt();
+        for (Subscription subscription : subscriptions) {
+            subscription.cancel();
+        }
+        dispatcher.shutdown();
+    }
+
+    private void publishLoop() {
+        long lastDelivery = System.currentTimeMillis();
+        //réveil au moins une fois par délai d'écriture pour repérer les livraisons bloquées
+        long idleWait = writeTimeoutMillis > 0 ? Math.min(heartbeatMillis, writeTimeoutMillis) : heartbeatMillis;
+        while (running) {
+            try {
+                synchronized (signal) {
+                    publisherWaiting = true;
+                    try {
+                        if (dirty.isEmpty()) {
+                            signal.wait(idleWait);
+                        }
+                    } finally {
+                        publisherWaiting = false;
+                    }
+                }
+                abortStalledDeliveries();
+                if (dirty.isEmpty()) {
+                    if (System.currentTimeMillis() - lastDelivery >= heartbeatMillis) {
+                        for (Subscription subscription : subscriptions) {
+                            subscription.offer(Collections.emptyList());
+                        }
+                        lastDelivery = System.currentTimeMillis();
+                    }
+                    continue;
+                }
+                //laisse la rafale se regrouper avant de relire les compteurs
+                Thread.sleep(coalesceMillis);
+                if (publish()) {
+                    lastDelivery = System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Occupancy publication failed", e);
+            }
+        }
+    }
+
+    private boolean publish() {
+        List<Update> updates = new ArrayList<>();
+        for (Integer key : dirty) {
+            dirty.remove(key);
+            int lotId = key / TYPES;
+            ParkingType parkingType = ParkingType.values()[key % TYPES];
+            Update update = new Update(lotId, parkingType, parkingService.getAvailableSlotCount(lotId, parkingType));
+            Update previous = current.put(key, update);
+            //entrée et sortie dans la même fenêtre : rien à annoncer
+            if (previous == null || previous.free != update.free) {
+                updates.add(update);
+            }
+        }
+        if (updates.isEmpty()) {
+            return false;
+        }
+        published.addAndGet(updates.size());
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(updates);
+        }
+        return true;
+    }
+
+    private void abortStalledDeliveries() {
+        if (writeTimeoutMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Subscription subscription : subscriptions) {
+            subscription.abortIfStalled(now);
+        }
+    }
+
+    private static int key(int lotId, ParkingType parkingType) {
+        return lotId * TYPES + parkingType.ordinal();
+    }
+
+    /**
+     * Reçoit les valeurs modifiées, jamais deux appels à la fois pour un même abonné.
+     * Une liste vide est un battement de vie. Une exception résilie l'abonnement.
+     */
+    public interface OccupancySubscriber {
+        void onOccupancy(List<Update> updates) throws Exception;
+    }
+
+    public final class Subscription {
+        private final OccupancySubscriber subscriber;
+        //dernière valeur non livrée de chaque couple
+        private final Map<Integer, Update> pending = new TreeMap<>();
+        //battement de vie demandé, livré seul si aucune valeur n'attend
+        private boolean heartbeat;
+        private boolean scheduled;
+        private volatile boolean cancelled;
+        //thread de la livraison en cours et son début, null entre deux livraisons
+        private Thread deliveringThread;
+        private long deliveryStart;
+
+        private Subscription(OccupancySubscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        private void offer(Iterable<Update> updates) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                boolean empty = true;
+                for (Update update : updates) {
+                    pending.put(key(update.lotId, update.parkingType), update);
+                    empty = false;
+                }
+                heartbeat |= empty;
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            try {
+                dispatcher.execute(this::deliver);
+            } catch (RuntimeException e) {
+                cancel();
+            }
+        }
+
+        private void deliver() {
+            while (true) {
+                List<Update> updates;
+                synchronized (this) {
+                    if (cancelled || (pending.isEmpty() && !heartbeat)) {
+                        scheduled = false;
+                        return;
+                    }
+                    updates = new ArrayList<>(pending.values());
+                    pending.clear();
+                    heartbeat = false;
+                    deliveringThread = Thread.currentThread();
+                    deliveryStart = System.currentTimeMillis();
+                }
+                try {
+                    subscriber.onOccupancy(updates);
+                } catch (Exception e) {
+                    logger.debug("Occupancy subscriber dropped: {}", e.toString());
+                    cancel();
+                    return;
+                } finally {
+                    synchronized (this) {
+                        deliveringThread = null;
+                    }
+                    if (cancelled) {
+                        //interruption éventuelle de abortIfStalled : elle ne doit pas atteindre la tâche suivante du pool
+                        Thread.interrupted();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Résilie l'abonnement si la livraison en cours dure depuis plus de writeTimeoutMillis et interrompt son thread :
+         * une écriture bloquée sur un SocketChannel échoue alors et la connexion est fermée.
+         */
+        private void abortIfStalled(long now) {
+            synchronized (this) {
+                if (deliveringThread == null || now - deliveryStart < writeTimeoutMillis) {
+                    return;
+                }
+                cancelled = true;
+                pending.clear();
+                deliveringThread.interrupt();
+            }
+            subscriptions.remove(this);
+            logger.warn("Occupancy subscriber dropped after a delivery blocked for more than " + writeTimeoutMillis + " ms");
+        }
+
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                pending.clear();
+            }
+            subscriptions.remove(this);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    public static final class Update {
+        private final int lotId;
+        private final ParkingType parkingType;
+        private final int free;
+
+        private Update(int lotId, ParkingType parkingType, int free) {
+            this.lotId = lotId;
+            this.parkingType = parkingType;
+            this.free = free;
+        }
+
+        public int getLotId() {
+            return lotId;
+        }
+
+        public ParkingType getParkingType() {
+            return parkingType;
+        }
+
+        public int getFree() {
+            return free;
+        }
+
+        public String toJson() {
+            return "{\"lot\":" + lotId + ",\"type\":\"" + parkingType + "\",\"free\":" + free + "}";
+        }
+
+        @Override
+        public String toString() {
+            return toJson();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Statistiques en direct alimentées par les entrées et sorties, sans requête en base.
+ * Par type de véhicule : occupation courante, puis sur une fenêtre glissante de windowMinutes minutes
+ * arrivées, départs, recettes et histogramme des durées de stationnement.
+ * La fenêtre est un anneau d'une case par minute en tableaux primitifs (mémoire fixe) ; les totaux de la fenêtre
+ * sont tenus à jour à chaque événement et à chaque case expirée, une lecture ne parcourt donc rien.
+ */
+public class ParkingAnalytics implements ParkingEventListener {
+
+    //bornes hautes des classes de durée, en minutes ; la dernière classe reçoit tout ce qui dépasse
+    private static final long[] DWELL_LIMITS_MINUTES = {15, 30, 60, 120, 240, 480, 1440};
+    private static final int DWELL_BUCKETS = DWELL_LIMITS_MINUTES.length + 1;
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+
+    private final int windowMinutes;
+    private final LongSupplier clock;
+    private final TypeWindow[] windows = new TypeWindow[ParkingType.values().length];
+
+    public ParkingAnalytics() {
+        this(60, System::currentTimeMillis);
+    }
+
+    public ParkingAnalytics(int windowMinutes, LongSupplier clock) {
+        if (windowMinutes < 1) {
+            throw new IllegalArgumentException("Window must be at least one minute");
+        }
+        this.windowMinutes = windowMinutes;
+        this.clock = clock;
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new TypeWindow(windowMinutes);
+        }
+    }
+
+    @Override
+    public void vehicleEntered(Ticket ticket) {
+        window(ticket.getParkingSpot().getParkingType()).entered(currentMinute());
+    }
+
+    @Override
+    public void vehicleExited(Ticket ticket) {
+        long dwellMinutes = (ticket.getOutTime().getTime() - ticket.getInTime().getTime()) / MILLIS_PER_MINUTE;
+        window(ticket.getParkingSpot().getParkingType()).exited(currentMinute(), dwellBucket(dwellMinutes),
+                TariffTable.fromAmount(ticket.getPrice()));
+    }
+
+    //Occupation au démarrage (véhicules déjà garés), avant tout événement
+    public void setOccupied(ParkingType parkingType, int occupied) {
+        window(parkingType).setOccupied(occupied);
+    }
+
+    public int getOccupied(ParkingType parkingType) {
+        return window(parkingType).getOccupied();
+    }
+
+    public int getArrivals(ParkingType parkingType) {
+        return window(parkingType).getArrivals(currentMinute());
+    }
+
+    public int getDepartures(ParkingType parkingType) {
+        return window(parkingType).getDepartures(currentMinute());
+    }
+
+    public double getArrivalsPerMinute(ParkingType parkingType) {
+        return getArrivals(parkingType) / (double) windowMinutes;
+    }
+
+    public double getDeparturesPerMinute(ParkingType parkingType) {
+        return getDepartures(parkingType) / (double) windowMinutes;
+    }
+
+    //Recettes des sorties de la fenêtre, en euros
+    public double getRevenue(ParkingType parkingType) {
+        return TariffTable.toAmount(window(parkingType).getRevenue(currentMinute()));
+    }
+
+    //Nombre de sorties de la fenêtre par classe de durée (voir getDwellLimitsMinutes)
+    public int[] getDwellHistogram(ParkingType parkingType) {
+        return window(parkingType).getDwellHistogram(currentMinute());
+    }
+
+    public static long[] getDwellLimitsMinutes() {
+        return DWELL_LIMITS_MINUTES.clone();
+    }
+
+    public int getWindowMinutes() {
+        return windowMinutes;
+    }
+
+    private TypeWindow window(ParkingType parkingType) {
+        return windows[parkingType.ordinal()];
+    }
+
+    private long currentMinute() {
+        return clock.getAsLong() / MILLIS_PER_MINUTE;
+    }
+
+    private static int dwellBucket(long dwellMinutes) {
+        for (int i = 0; i < DWELL_LIMITS_MINUTES.length; i++) {
+            if (dwellMinutes < DWELL_LIMITS_MINUTES[i]) {
+                return i;
+            }
+        }
+        return DWELL_LIMITS_MINUTES.length;
+    }
+
+    //Anneau d'un type de véhicule ; case = minute modulo la taille de la fenêtre
+    private static final class TypeWindow {
+        private final int size;
+        private final int[] arrivals;
+        private final int[] departures;
+        private final long[] revenue;
+        //[case * DWELL_BUCKETS + classe]
+        private final int[] dwell;
+
+        //totaux de la fenêtre
+        private int windowArrivals;
+        private int windowDepartures;
+        private long windowRevenue;
+        private final int[] windowDwell = new int[DWELL_BUCKETS];
+
+        private int occupied;
+        private long currentMinute = Long.MIN_VALUE;
+
+        private TypeWindow(int size) {
+            this.size = size;
+            this.arrivals = new int[size];
+            this.departures = new int[size];
+            this.revenue = new long[size];
+            this.dwell = new int[size * DWELL_BUCKETS];
+        }
+
+        private synchronized void entered(long minute) {
+            int slot = advance(minute);
+            arrivals[slot]++;
+            windowArrivals++;
+            occupied++;
+        }
+
+        private synchronized void exited(long minute, int dwellBucket, long price) {
+            int slot = advance(minute);
+            departures[slot]++;
+            windowDepartures++;
+            revenue[slot] += price;
+            windowRevenue += price;
+            dwell[slot * DWELL_BUCKETS + dwellBucket]++;
+            windowDwell[dwellBucket]++;
+            if (occupied > 0) {
+                occupied--;
+            }
+        }
+
+        private synchronized void setOccupied(int occupied) {
+            this.occupied = occupied;
+        }
+
+        private synchronized int getOccupied() {
+            return occupied;
+        }
+
+        private synchronized int getArrivals(long minute) {
+            advance(minute);
+            return windowArrivals;
+        }
+
+        private synchronized int getDepartures(long minute) {
+            advance(minute);
+            return windowDepartures;
+        }
+
+        private synchronized long getRevenue(long minute) {
+            advance(minute);
+            return windowRevenue;
+        }
+
+        private synchronized int[] getDwellHistogram(long minute) {
+            advance(minute);
+            return windowDwell.clone();
+        }
+
+        //Expire les minutes sorties de la fenêtre (au plus size cases) et retourne la case de la minute courante
+        private int advance(long minute) {
+            if (minute > currentMinute) {
+                long first = currentMinute == Long.MIN_VALUE ? minute - size + 1 : Math.max(currentMinute + 1, minute - size + 1);
+                for (long m = first; m <= minute; m++) {
+                    expire((int) Math.floorMod(m, (long) size));
+                }
+                currentMinute = minute;
+            }
+            //horloge revenue en arrière : l'événement est compté dans la minute courante
+            return (int) Math.floorMod(currentMinute, (long) size);
+        }
+
+        private void expire(int slot) {
+            windowArrivals -= arrivals[slot];
+            windowDepartures -= departures[slot];
+            windowRevenue -= revenue[slot];
+            arrivals[slot] = 0;
+            departures[slot] = 0;
+            revenue[slot] = 0;
+            for (int b = 0; b < DWELL_BUCKETS; b++) {
+                windowDwell[b] -= dwell[slot * DWELL_BUCKETS + b];
+                dwell[slot * DWELL_BUCKETS + b] = 0;
+            }
+        }
+    }
+}
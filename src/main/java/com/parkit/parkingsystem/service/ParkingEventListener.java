@@ -0,0 +1,15 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.model.Ticket;
+
+/**
+ * Notifié par ParkingService après chaque entrée ou sortie enregistrée, sur le thread de la borne :
+ * le traitement doit rester court et ne pas bloquer.
+ */
+public interface ParkingEventListener {
+
+    void vehicleEntered(Ticket ticket);
+
+    //ticket clôturé : heure de sortie et prix renseignés
+    void vehicleExited(Ticket ticket);
+}
@@ -1,60 +1,263 @@
 package com.parkit.parkingsystem.service;
 
 import com.parkit.parkingsystem.constants.ParkingType;
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotStore;
+import com.parkit.parkingsystem.dao.TicketStore;
+import com.parkit.parkingsystem.dao.TicketStoreException;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Reservation;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.util.InputReaderUtil;
+import com.parkit.parkingsystem.util.JitteredBackoff;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.Date;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class ParkingService {
 
     private static final Logger logger = LogManager.getLogger("ParkingService");
 
-    private static FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    //taille de la colonne VEHICLE_REG_NUMBER
+    public static final int MAX_VEHICLE_REG_NUMBER_LENGTH = 10;
+
+    private static final LatencyHistogram ENTER = Metrics.histogram("ParkingService.enter");
+    private static final LatencyHistogram EXIT = Metrics.histogram("ParkingService.exit");
 
     private InputReaderUtil inputReaderUtil;
-    private ParkingSpotDAO parkingSpotDAO;
-    private  TicketDAO ticketDAO;
+    private ParkingSpotStore parkingSpotDAO;
+    private  TicketStore ticketDAO;
+    private final List<ParkingEventListener> listeners = new CopyOnWriteArrayList<>();
+    private final JitteredBackoff claimBackoff = JitteredBackoff.fromSystemProperties();
+    private volatile ReservationService reservationService;
+    //grille des propriétés système ; majoration selon l'occupation lue dans les compteurs des allocateurs
+    private volatile FareCalculatorService fareCalculatorService;
 
-    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotStore parkingSpotDAO, TicketStore ticketDAO){
         this.inputReaderUtil = inputReaderUtil;
         this.parkingSpotDAO = parkingSpotDAO;
         this.ticketDAO = ticketDAO;
+        this.fareCalculatorService = new FareCalculatorService(TariffTable.fromSystemProperties(), this::getOccupancyBasisPoints);
+    }
+
+    //Service sans saisie clavier, piloté uniquement par enter() et exit()
+    public ParkingService(ParkingSpotStore parkingSpotDAO, TicketStore ticketDAO){
+        this(null, parkingSpotDAO, ticketDAO);
+    }
+
+    //Abonné notifié après chaque entrée ou sortie enregistrée (statistiques, tableaux de bord)
+    public void addListener(ParkingEventListener listener) {
+        listeners.add(listener);
+    }
+
+    //Réservations honorées à l'entrée : leurs places sont gardées pour leur véhicule ; null pour ne pas en gérer
+    public void setReservationService(ReservationService reservationService) {
+        this.reservationService = reservationService;
+    }
+
+    public ReservationService getReservationService() {
+        return reservationService;
+    }
+
+    public void setFareCalculatorService(FareCalculatorService fareCalculatorService) {
+        this.fareCalculatorService = fareCalculatorService;
+    }
+
+    public FareCalculatorService getFareCalculatorService() {
+        return fareCalculatorService;
+    }
+
+    //Places occupées / places du parking, en points de base ; compteurs atomiques en mémoire, sans accès à la base
+    public int getOccupancyBasisPoints(int lotId, ParkingType parkingType) {
+        int spots = parkingSpotDAO.getSpotCount(lotId, parkingType);
+        if (spots <= 0) {
+            return 0;
+        }
+        int occupied = Math.max(0, spots - parkingSpotDAO.getAvailableSlotCount(lotId, parkingType));
+        return (int) ((long) occupied * TariffTable.BASIS_POINTS / spots);
+    }
+
+    //Entrée dans le parking par défaut
+    public EntryResult enter(ParkingType parkingType, String vehicleRegNumber) {
+        return enter(ParkingSpot.DEFAULT_LOT_ID, parkingType, vehicleRegNumber);
+    }
+
+    /**
+     * Enregistre l'entrée d'un véhicule dans le parking lotId : attribution d'une place de ce parking puis,
+     * dans une seule transaction, réservation de la place, création du ticket et comptage des passages.
+     * Si la place a été prise entre-temps par une autre instance, la place libre suivante est essayée.
+     * Sans état partagé hors des DAO : peut être appelée par plusieurs bornes en même temps.
+     */
+    public EntryResult enter(int lotId, ParkingType parkingType, String vehicleRegNumber) {
+        return enter(lotId, parkingType, vehicleRegNumber, new Date());
     }
 
-    public void processIncomingVehicle() {
+    //Entrée à l'heure relevée par la borne (rejeu d'un journal hors ligne)
+    public EntryResult enter(int lotId, ParkingType parkingType, String vehicleRegNumber, Date inTime) {
+        long start = Metrics.start();
         try {
-            ParkingSpot parkingSpot = getNextParkingNumberIfAvailable();
-            if (parkingSpot != null && parkingSpot.getId() > 0) {
-                String vehicleRegNumber = getVehichleRegNumber();
-                parkingSpot.setAvailable(false);
-                parkingSpotDAO.updateParking(parkingSpot);
-
-                Date inTime = new Date();
-                Ticket ticket = new Ticket();
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(0);
-                ticket.setInTime(inTime);
-                ticket.setOutTime(null);
-                ticketDAO.saveTicket(ticket);
-
-                int nbTickets = ticketDAO.getNbTicket(vehicleRegNumber);
-                if (nbTickets > 1) {
-                    System.out.println("Heureux de vous revoir ! Vous bénéficiez d'une réduction de 5%.");
-                }
+            return doEnter(lotId, parkingType, vehicleRegNumber, inTime);
+        } finally {
+            ENTER.recordSince(start);
+        }
+    }
+
+    private EntryResult doEnter(int lotId, ParkingType parkingType, String vehicleRegNumber, Date inTime) {
+        if (parkingType == null) {
+            throw new IllegalArgumentException("Vehicle type is required");
+        }
+        checkVehicleRegNumber(vehicleRegNumber);
+        ReservationService reservations = reservationService;
+        Reservation reservation = reservations == null ? null : reservations.findArrival(lotId, parkingType, vehicleRegNumber, inTime);
+        Ticket ticket;
+        int nbTickets;
+        for (int attempt = 1; ; attempt++) {
+            int parkingNumber = parkingSpotDAO.getNextAvailableSlot(lotId, parkingType);
+            if (parkingNumber == 0) {
+                return EntryResult.parkingFull();
+            }
+            if (parkingNumber < 0) {
+                return EntryResult.failed();
+            }
+            ParkingSpot parkingSpot = new ParkingSpot(parkingNumber, parkingType, true);
+            parkingSpot.setLotId(lotId);
+            //place prise d'abord, contrôle ensuite : deux entrées simultanées ne peuvent pas passer toutes les deux
+            if (reservations != null && reservation == null
+                    && parkingSpotDAO.getAvailableSlotCount(lotId, parkingType) < reservations.getHeldCount(lotId, parkingType, inTime)) {
+                parkingSpotDAO.releaseSlot(parkingSpot); // places restantes retenues pour des réservations en cours
+                return EntryResult.parkingFull();
+            }
+            ticket = new Ticket();
+            ticket.setParkingSpot(parkingSpot);
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setPrice(0);
+            ticket.setInTime(inTime);
+            ticket.setOutTime(null);
+
+            nbTickets = ticketDAO.saveIncomingTicket(ticket);
+            if (nbTickets >= 0) {
+                break;
+            }
+            if (nbTickets == TicketStore.ENTRY_IN_DOUBT) {
+                //le ticket peut encore être appliqué : la place reste hors circulation jusqu'au rechargement des places
+                return EntryResult.failed();
+            }
+            if (nbTickets != TicketStore.SPOT_ALREADY_TAKEN) {
+                parkingSpotDAO.releaseSlot(parkingSpot); // transaction annulée : la place reste libre
+                return EntryResult.failed();
+            }
+            //place occupée en base par une autre instance : elle n'est pas rendue, on essaie la suivante
+            if (attempt >= claimBackoff.getMaxAttempts() || !claimBackoff.pause(attempt)) {
+                logger.warn("Entry refused after " + attempt + " spots already taken in lot " + lotId);
+                return EntryResult.failed();
+            }
+        }
+        if (reservation != null) {
+            reservations.markArrived(reservation);
+        }
+        for (ParkingEventListener listener : listeners) {
+            try {
+                listener.vehicleEntered(ticket);
+            } catch (RuntimeException e) {
+                logger.error("Parking event listener failed on entry", e);
+            }
+        }
+        return EntryResult.parked(ticket, nbTickets > 1);
+    }
+
+    /**
+     * Enregistre la sortie d'un véhicule : lecture du ticket ouvert, tarif, clôture et libération
+     * de la place dans une seule transaction. Peut être appelée par plusieurs bornes en même temps.
+     */
+    public ExitResult exit(String vehicleRegNumber) {
+        return exit(vehicleRegNumber, new Date());
+    }
+
+    //Sortie à l'heure relevée par la borne (rejeu d'un journal hors ligne)
+    public ExitResult exit(String vehicleRegNumber, Date outTime) {
+        long start = Metrics.start();
+        try {
+            return doExit(vehicleRegNumber, outTime);
+        } finally {
+            EXIT.recordSince(start);
+        }
+    }
+
+    private ExitResult doExit(String vehicleRegNumber, Date outTime) {
+        checkVehicleRegNumber(vehicleRegNumber);
+        Ticket ticket;
+        try {
+            ticket = ticketDAO.saveOutgoingTicket(vehicleRegNumber, outTime, fareCalculatorService);
+        } catch (TicketStoreException e) {
+            //déjà journalisé par le stockage ; le ticket reste ouvert et la place occupée
+            return ExitResult.failed();
+        } catch (IllegalArgumentException e) {
+            //le ticket ouvert existe : horloge de la borne en retard sur l'heure d'entrée enregistrée
+            logger.warn("Exit refused for " + vehicleRegNumber + ": out time " + outTime + " is before the entry time");
+            return ExitResult.outTimeBeforeEntry();
+        }
+        if (ticket == null) {
+            return ExitResult.noOpenTicket();
+        }
+        parkingSpotDAO.releaseSlot(ticket.getParkingSpot());
+        for (ParkingEventListener listener : listeners) {
+            try {
+                listener.vehicleExited(ticket);
+            } catch (RuntimeException e) {
+                logger.error("Parking event listener failed on exit", e);
+            }
+        }
+        return ExitResult.exited(ticket);
+    }
 
-                System.out.println("Veuillez vous garer à l'emplacement numéro: " + parkingSpot.getId());
-                System.out.println("Heure d'entrée enregistrée pour le véhicule: " + vehicleRegNumber);
+    public SortedSet<Integer> getLotIds() {
+        return parkingSpotDAO.getLotIds();
+    }
+
+    public int getAvailableSlotCount(int lotId, ParkingType parkingType) {
+        return parkingSpotDAO.getAvailableSlotCount(lotId, parkingType);
+    }
+
+    private static void checkVehicleRegNumber(String vehicleRegNumber) {
+        if (vehicleRegNumber == null || vehicleRegNumber.trim().isEmpty() || vehicleRegNumber.length() > MAX_VEHICLE_REG_NUMBER_LENGTH) {
+            throw new IllegalArgumentException("Vehicle registration number must have 1 to " + MAX_VEHICLE_REG_NUMBER_LENGTH + " characters");
+        }
+    }
+
+    //Adaptateur console : saisie du type et de la plaque, puis enter(). Retourne le ticket créé ou null
+    public Ticket processIncomingVehicle() {
+        try {
+            ParkingType parkingType = getVehichleType();
+            String vehicleRegNumber = getVehichleRegNumber();
+            EntryResult result = enter(parkingType, vehicleRegNumber);
+            switch (result.getStatus()) {
+                case PARKED: {
+                    if (result.isRecurringUser()) {
+                        System.out.println("Heureux de vous revoir ! Vous bénéficiez d'une réduction de 5%.");
+                    }
+                    System.out.println("Veuillez vous garer à l'emplacement numéro: " + result.getParkingNumber());
+                    System.out.println("Heure d'entrée enregistrée pour le véhicule: " + vehicleRegNumber);
+                    return result.getTicket();
+                }
+                case PARKING_FULL: {
+                    System.out.println("Aucune place disponible pour ce type de véhicule.");
+                    break;
+                }
+                default: System.out.println("Impossible d'enregistrer l'entrée du véhicule. Veuillez réessayer.");
             }
+        } catch (IllegalArgumentException ie) {
+            logger.error("Error parsing user input for incoming vehicle", ie);
         } catch (Exception e) {
             logger.error("Unable to process incoming vehicle", e);
         }
+        return null;
     }
 
     private String getVehichleRegNumber() throws Exception {
@@ -62,6 +265,7 @@ public class ParkingService {
         return inputReaderUtil.readVehicleRegistrationNumber();
     }
 
+    //Place que recevrait le prochain véhicule du type saisi, sans la retenir : elle est rendue aussitôt à l'allocateur
     public ParkingSpot getNextParkingNumberIfAvailable(){
         int parkingNumber=0;
         ParkingSpot parkingSpot = null;
@@ -70,6 +274,7 @@ public class ParkingService {
             parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
             if(parkingNumber > 0){
                 parkingSpot = new ParkingSpot(parkingNumber,parkingType, true);
+                parkingSpotDAO.releaseSlot(parkingSpot);
             }else{
                 throw new Exception("Error fetching parking number from DB. Parking slots might be full");
             }
@@ -100,30 +305,26 @@ public class ParkingService {
         }
     }
 
-    public void processExitingVehicle() {
+    //Adaptateur console : saisie de la plaque, puis exit(). Retourne le ticket clôturé et tarifé ou null
+    public Ticket processExitingVehicle() {
         try {
             String vehicleRegNumber = getVehichleRegNumber();
-            Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
-            Date outTime = new Date();
-            ticket.setOutTime(outTime);
-
-            int nbTickets = ticketDAO.getNbTicket(vehicleRegNumber);
-            boolean discount = (nbTickets > 1); // Appliquer la réduction si déjà passé au moins une fois
-
-            fareCalculatorService.calculateFare(ticket, discount);
-
-            if (ticketDAO.updateTicket(ticket)) {
-                ParkingSpot parkingSpot = ticket.getParkingSpot();
-                parkingSpot.setAvailable(true);
-                parkingSpotDAO.updateParking(parkingSpot);
-
-                System.out.println("Veuillez payer le tarif du parking : " + ticket.getPrice() + "€.");
+            ExitResult result = exit(vehicleRegNumber);
+            if (result.isExited()) {
+                System.out.println("Veuillez payer le tarif du parking : " + result.getPrice() + "€.");
                 System.out.println("Heure de sortie enregistrée pour le véhicule : " + vehicleRegNumber);
+                return result.getTicket();
+            }
+            if (result.getStatus() == ExitResult.Status.FAILED) {
+                System.out.println("Erreur lors de l'enregistrement de la sortie, veuillez réessayer.");
+            } else if (result.getStatus() == ExitResult.Status.OUT_TIME_BEFORE_ENTRY) {
+                System.out.println("Heure de sortie antérieure à l'heure d'entrée, vérifiez l'horloge de la borne.");
             } else {
                 System.out.println("Impossible de mettre à jour le ticket.");
             }
         } catch (Exception e) {
             logger.error("Unable to process exiting vehicle", e);
         }
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,188 @@
+package com.parkit.parkingsystem.service;
+
+import java.util.Arrays;
+
+/**
+ * Nombre de réservations par créneau de slotMillis, pour un parking et un type de véhicule.
+ * Arbre de segments creux sur les créneaux absolus (heure epoch / slotMillis, 2^31 créneaux) :
+ * ajout ou retrait d'une réservation sur [from, to) et maximum sur un intervalle en O(log T),
+ * quel que soit le nombre de places ou de réservations.
+ * Un noeud ne porte que les ajouts qui couvrent tout son intervalle ; il n'est créé qu'à la première réservation
+ * qui le coupe, et ses enfants sont rendus dès que tout son intervalle revient à zéro.
+ * Noeuds rangés dans des tableaux primitifs, 0 désignant l'absence de noeud.
+ * Non synchronisé : l'appelant sérialise les accès.
+ */
+public class ReservationCalendar {
+
+    private static final long SLOTS = 1L << 31;
+    private static final int ROOT = 1;
+
+    private final long slotMillis;
+
+    //par noeud : enfants, ajout couvrant tout l'intervalle, maximum du sous-arbre ajout compris
+    private int[] left;
+    private int[] right;
+    private int[] add;
+    private int[] max;
+    private int nodeCount = ROOT + 1;
+    //noeuds rendus, chaînés par left
+    private int freeNodes;
+    private int usedNodes = 1;
+
+    public ReservationCalendar(long slotMillis) {
+        if (slotMillis <= 0) {
+            throw new IllegalArgumentException("slotMillis must be positive");
+        }
+        this.slotMillis = slotMillis;
+        left = new int[64];
+        right = new int[64];
+        add = new int[64];
+        max = new int[64];
+    }
+
+    //Ajoute delta à tous les créneaux touchés par [from, to), heures en millisecondes epoch
+    public void add(long from, long to, int delta) {
+        long fromSlot = firstSlot(from);
+        long toSlot = endSlot(to);
+        if (fromSlot < toSlot) {
+            update(ROOT, 0, SLOTS, fromSlot, toSlot, delta);
+        }
+    }
+
+    //Plus grand nombre de réservations sur un créneau touché par [from, to)
+    public int getMax(long from, long to) {
+        long fromSlot = firstSlot(from);
+        long toSlot = endSlot(to);
+        return fromSlot < toSlot ? query(ROOT, 0, SLOTS, fromSlot, toSlot) : 0;
+    }
+
+    //Réservations sur le créneau contenant time
+    public int get(long time) {
+        return getMax(time, time + 1);
+    }
+
+    //Noeuds en service, racine comprise
+    public int getNodeCount() {
+        return usedNodes;
+    }
+
+    private long firstSlot(long time) {
+        return Math.max(0, Math.min(SLOTS, Math.floorDiv(time, slotMillis)));
+    }
+
+    private long endSlot(long time) {
+        return Math.max(0, Math.min(SLOTS, Math.floorDiv(time + slotMillis - 1, slotMillis)));
+    }
+
+    private void update(int node, long lo, long hi, long from, long to, int delta) {
+        if (from <= lo && hi <= to) {
+            add[node] += delta;
+            max[node] += delta;
+        } else {
+            long mid = (lo + hi) >>> 1;
+            push(node);
+            if (from < mid) {
+                if (left[node] == 0) {
+                    int child = allocate();
+                    left[node] = child;
+                }
+                update(left[node], lo, mid, from, to, delta);
+            }
+            if (to > mid) {
+                if (right[node] == 0) {
+                    int child = allocate();
+                    right[node] = child;
+                }
+                update(right[node], mid, hi, from, to, delta);
+            }
+            max[node] = Math.max(maxOf(left[node]), maxOf(right[node]));
+        }
+        //les ajouts des ancêtres sont nuls sur le chemin : max nul, tout l'intervalle est revenu à zéro
+        if (max[node] == 0 && (left[node] != 0 || right[node] != 0)) {
+            release(left[node]);
+            release(right[node]);
+            left[node] = 0;
+            right[node] = 0;
+            add[node] = 0;
+        }
+    }
+
+    private int query(int node, long lo, long hi, long from, long to) {
+        if (from <= lo && hi <= to) {
+            return max[node];
+        }
+        long mid = (lo + hi) >>> 1;
+        int result = 0;
+        if (from < mid) {
+            result = left[node] == 0 ? 0 : query(left[node], lo, mid, from, to);
+        }
+        if (to > mid) {
+            result = Math.max(result, right[node] == 0 ? 0 : query(right[node], mid, hi, from, to));
+        }
+        return add[node] + result;
+    }
+
+    private int maxOf(int node) {
+        return node == 0 ? 0 : max[node];
+    }
+
+    /*
+     * Un ajout posé sur un noeud est descendu dans ses enfants quand une mise à jour le coupe :
+     * les ancêtres du noeud courant ont ainsi toujours un ajout nul, et le test "max nul" porte sur les vraies valeurs.
+     */
+    private void push(int node) {
+        int pending = add[node];
+        if (pending == 0) {
+            return;
+        }
+        if (left[node] == 0) {
+            int child = allocate();
+            left[node] = child;
+        }
+        if (right[node] == 0) {
+            int child = allocate();
+            right[node] = child;
+        }
+        add[left[node]] += pending;
+        max[left[node]] += pending;
+        add[right[node]] += pending;
+        max[right[node]] += pending;
+        add[node] = 0;
+    }
+
+    //allocate() peut remplacer les tableaux : l'appelant range le noeud après l'appel
+    private int allocate() {
+        int node;
+        if (freeNodes != 0) {
+            node = freeNodes;
+            freeNodes = left[node];
+        } else {
+            if (nodeCount == left.length) {
+                int capacity = left.length + (left.length >> 1);
+                left = Arrays.copyOf(left, capacity);
+                right = Arrays.copyOf(right, capacity);
+                add = Arrays.copyOf(add, capacity);
+                max = Arrays.copyOf(max, capacity);
+            }
+            node = nodeCount++;
+        }
+        left[node] = 0;
+        right[node] = 0;
+        add[node] = 0;
+        max[node] = 0;
+        usedNodes++;
+        return node;
+    }
+
+    private void release(int node) {
+        if (node == 0) {
+            return;
+        }
+        release(left[node]);
+        release(right[node]);
+        right[node] = 0;
+        left[node] = freeNodes;
+        freeNodes = node;
+        usedNodes--;
+    }
+}
@@ -0,0 +1,293 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotStore;
+import com.parkit.parkingsystem.dao.ReservationDAO;
+import com.parkit.parkingsystem.model.Reservation;
+import com.parkit.parkingsystem.model.ReservationResult;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Réservations de places pour des créneaux à venir, par parking et par type de véhicule.
+ * Une réservation ne désigne pas de place : elle compte sur chaque créneau de son intervalle dans un ReservationCalendar,
+ * et une demande est acceptée tant qu'aucun créneau n'atteint le nombre de places du type (maximum en O(log T)).
+ * Les places étant interchangeables, ce comptage suffit pour qu'une place soit libre pour chacune à son arrivée.
+ * À l'entrée, ParkingService garde libres les places des réservations en cours (de leadMillis avant le début
+ * jusqu'à la fin) tant que leur véhicule n'est pas arrivé : un véhicule sans réservation est refusé s'il prendrait
+ * l'une d'elles, le véhicule réservé entre même si les places restantes sont toutes retenues.
+ * Les réservations sont enregistrées par ReservationDAO quand il est fourni, sinon gardées en mémoire seulement.
+ * Un verrou par parking et par type : les réservations et les entrées de parkings différents ne se gênent pas.
+ * App en attache une aux entrées du serveur HTTP et de la console, pas à l'import des journaux de bornes :
+ * les passages rejoués ont déjà eu lieu. Chaque instance ne voit que les réservations chargées au démarrage
+ * et celles qu'elle a prises elle-même.
+ */
+public class ReservationService {
+
+    private static final Logger logger = LogManager.getLogger("ReservationService");
+
+    private static final int TYPES = ParkingType.values().length;
+
+    private final ParkingSpotStore parkingSpotStore;
+    private final ReservationDAO reservationDAO;
+    private final long slotMillis;
+    private final long leadMillis;
+    private final LongSupplier clock;
+
+    private final ConcurrentMap<Integer, Inventory> inventories = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Reservation> reservations = new ConcurrentHashMap<>();
+    private final AtomicInteger lastLocalId = new AtomicInteger();
+
+    //reservationDAO : null pour des réservations en mémoire seulement
+    public ReservationService(ParkingSpotStore parkingSpotStore, ReservationDAO reservationDAO, long slotMillis, long leadMillis) {
+        this(parkingSpotStore, reservationDAO, slotMillis, leadMillis, System::currentTimeMillis);
+    }
+
+    public ReservationService(ParkingSpotStore parkingSpotStore, ReservationDAO reservationDAO, long slotMillis, long leadMillis, LongSupplier clock) {
+        if (leadMillis < 0) {
+            throw new IllegalArgumentException("leadMillis must not be negative");
+        }
+        this.parkingSpotStore = parkingSpotStore;
+        this.reservationDAO = reservationDAO;
+        this.slotMillis = slotMillis;
+        this.leadMillis = leadMillis;
+        this.clock = clock;
+    }
+
+    //Recharge les réservations en cours et à venir enregistrées ; à appeler au démarrage, avant les entrées
+    public void load() throws ClassNotFoundException, SQLException {
+        if (reservationDAO == null) {
+            return;
+        }
+        List<Reservation> active = reservationDAO.getActiveReservations(new Date(clock.getAsLong()));
+        for (Reservation reservation : active) {
+            Inventory inventory = inventory(reservation.getLotId(), reservation.getParkingType());
+            synchronized (inventory) {
+                index(inventory, reservation);
+            }
+            reservations.put(reservation.getId(), reservation);
+        }
+        logger.info("Loaded " + active.size() + " active reservations");
+    }
+
+    /**
+     * Réserve une place du type dans le parking lotId pour vehicleRegNumber de startTime à endTime.
+     * Refusée (FULL) si un créneau de l'intervalle a déjà autant de réservations que de places du type,
+     * ou si elle commence dans moins de leadMillis alors que les places libres sont déjà toutes retenues.
+     */
+    public ReservationResult reserve(int lotId, ParkingType parkingType, String vehicleRegNumber, Date startTime, Date endTime) {
+        long now = clock.getAsLong();
+        if (parkingType == null || startTime == null || endTime == null || !endTime.after(startTime) || endTime.getTime() <= now) {
+            throw new IllegalArgumentException("Vehicle type and a time window ending in the future are required");
+        }
+        if (vehicleRegNumber == null || vehicleRegNumber.trim().isEmpty() || vehicleRegNumber.length() > ParkingService.MAX_VEHICLE_REG_NUMBER_LENGTH) {
+            throw new IllegalArgumentException("Vehicle registration number must have 1 to " + ParkingService.MAX_VEHICLE_REG_NUMBER_LENGTH + " characters");
+        }
+        int capacity = parkingSpotStore.getSpotCount(lotId, parkingType);
+        if (capacity == 0) {
+            return ReservationResult.full();
+        }
+        Reservation reservation = new Reservation();
+        reservation.setLotId(lotId);
+        reservation.setParkingType(parkingType);
+        reservation.setVehicleRegNumber(vehicleRegNumber);
+        reservation.setStartTime(new Date(startTime.getTime()));
+        reservation.setEndTime(new Date(endTime.getTime()));
+        if (reservationDAO == null) {
+            reservation.setId(lastLocalId.incrementAndGet());
+        }
+        Inventory inventory = inventory(lotId, parkingType);
+        synchronized (inventory) {
+            purge(inventory, now);
+            if (inventory.booked.getMax(startTime.getTime(), endTime.getTime()) >= capacity) {
+                return ReservationResult.full();
+            }
+            if (startTime.getTime() - leadMillis <= now
+                    && parkingSpotStore.getAvailableSlotCount(lotId, parkingType) <= inventory.held.get(now)) {
+                return ReservationResult.full();
+            }
+            index(inventory, reservation);
+        }
+        //écriture hors du verrou : les entrées de ce parking n'attendent pas la base
+        if (reservationDAO != null && !reservationDAO.saveReservation(reservation)) {
+            synchronized (inventory) {
+                unindex(inventory, reservation);
+            }
+            return ReservationResult.failed();
+        }
+        reservations.put(reservation.getId(), reservation);
+        return ReservationResult.booked(reservation);
+    }
+
+    //Annule une réservation dont le véhicule n'est pas encore entré ; false si elle est inconnue, terminée ou utilisée
+    public boolean cancel(int id) {
+        Reservation reservation = reservations.get(id);
+        if (reservation == null) {
+            return false;
+        }
+        Inventory inventory = inventory(reservation.getLotId(), reservation.getParkingType());
+        synchronized (inventory) {
+            if (reservation.getStatus() != Reservation.Status.BOOKED || !unindex(inventory, reservation)) {
+                return false;
+            }
+            reservation.setStatus(Reservation.Status.CANCELLED);
+        }
+        reservations.remove(id);
+        if (reservationDAO != null) {
+            reservationDAO.updateStatus(id, Reservation.Status.CANCELLED);
+        }
+        return true;
+    }
+
+    public Reservation getReservation(int id) {
+        return reservations.get(id);
+    }
+
+    //Places du type encore réservables sur tout l'intervalle [startTime, endTime)
+    public int getAvailableCount(int lotId, ParkingType parkingType, Date startTime, Date endTime) {
+        int capacity = parkingSpotStore.getSpotCount(lotId, parkingType);
+        Inventory inventory = inventories.get(key(lotId, parkingType));
+        if (inventory == null) {
+            return capacity;
+        }
+        synchronized (inventory) {
+            purge(inventory, clock.getAsLong());
+            return Math.max(0, capacity - inventory.booked.getMax(startTime.getTime(), endTime.getTime()));
+        }
+    }
+
+    //Réservation du véhicule en cours à time (à leadMillis près) dont il n'a pas encore utilisé la place, sinon null
+    public Reservation findArrival(int lotId, ParkingType parkingType, String vehicleRegNumber, Date time) {
+        Inventory inventory = inventories.get(key(lotId, parkingType));
+        if (inventory == null) {
+            return null;
+        }
+        long at = time.getTime();
+        synchronized (inventory) {
+            List<Reservation> ofVehicle = inventory.byVehicle.get(vehicleRegNumber);
+            if (ofVehicle != null) {
+                for (Reservation reservation : ofVehicle) {
+                    if (reservation.getStatus() == Reservation.Status.BOOKED
+                            && reservation.getStartTime().getTime() - leadMillis <= at && at < reservation.getEndTime().getTime()) {
+                        return reservation;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    //Le véhicule est entré : sa place n'est plus retenue, la réservation compte jusqu'à sa fin
+    public void markArrived(Reservation reservation) {
+        Inventory inventory = inventory(reservation.getLotId(), reservation.getParkingType());
+        synchronized (inventory) {
+            if (reservation.getStatus() != Reservation.Status.BOOKED) {
+                return;
+            }
+            reservation.setStatus(Reservation.Status.ARRIVED);
+            inventory.held.add(holdStart(reservation), reservation.getEndTime().getTime(), -1);
+        }
+        if (reservationDAO != null) {
+            reservationDAO.updateStatus(reservation.getId(), Reservation.Status.ARRIVED);
+        }
+    }
+
+    //Places retenues à time pour des réservations en cours dont le véhicule n'est pas encore entré
+    public int getHeldCount(int lotId, ParkingType parkingType, Date time) {
+        Inventory inventory = inventories.get(key(lotId, parkingType));
+        if (inventory == null) {
+            return 0;
+        }
+        synchronized (inventory) {
+            return inventory.held.get(time.getTime());
+        }
+    }
+
+    private Inventory inventory(int lotId, ParkingType parkingType) {
+        return inventories.computeIfAbsent(key(lotId, parkingType), key -> new Inventory(slotMillis));
+    }
+
+    private static int key(int lotId, ParkingType parkingType) {
+        return lotId * TYPES + parkingType.ordinal();
+    }
+
+    private long holdStart(Reservation reservation) {
+        return reservation.getStartTime().getTime() - leadMillis;
+    }
+
+    private void index(Inventory inventory, Reservation reservation) {
+        long start = reservation.getStartTime().getTime();
+        long end = reservation.getEndTime().getTime();
+        inventory.booked.add(start, end, 1);
+        if (reservation.getStatus() == Reservation.Status.BOOKED) {
+            inventory.held.add(holdStart(reservation), end, 1);
+        }
+        inventory.byEnd.computeIfAbsent(end, e -> new ArrayList<>(1)).add(reservation);
+        inventory.byVehicle.computeIfAbsent(reservation.getVehicleRegNumber(), v -> new ArrayList<>(1)).add(reservation);
+    }
+
+    //false si la réservation n'est plus indexée (terminée et purgée)
+    private boolean unindex(Inventory inventory, Reservation reservation) {
+        long end = reservation.getEndTime().getTime();
+        List<Reservation> ending = inventory.byEnd.get(end);
+        if (ending == null || !ending.remove(reservation)) {
+            return false;
+        }
+        if (ending.isEmpty()) {
+            inventory.byEnd.remove(end);
+        }
+        release(inventory, reservation);
+        return true;
+    }
+
+    private void release(Inventory inventory, Reservation reservation) {
+        List<Reservation> ofVehicle = inventory.byVehicle.get(reservation.getVehicleRegNumber());
+        ofVehicle.remove(reservation);
+        if (ofVehicle.isEmpty()) {
+            inventory.byVehicle.remove(reservation.getVehicleRegNumber());
+        }
+        long end = reservation.getEndTime().getTime();
+        inventory.booked.add(reservation.getStartTime().getTime(), end, -1);
+        if (reservation.getStatus() == Reservation.Status.BOOKED) {
+            inventory.held.add(holdStart(reservation), end, -1);
+        }
+    }
+
+    //Retire les réservations terminées : les créneaux passés reviennent à zéro et leurs noeuds sont rendus
+    private void purge(Inventory inventory, long now) {
+        Map<Long, List<Reservation>> ended = inventory.byEnd.headMap(now, true);
+        for (List<Reservation> ending : ended.values()) {
+            for (Reservation reservation : ending) {
+                release(inventory, reservation);
+                reservations.remove(reservation.getId());
+            }
+        }
+        ended.clear();
+    }
+
+    private static final class Inventory {
+        //réservations non annulées par créneau : capacité restante
+        private final ReservationCalendar booked;
+        //réservations dont le véhicule n'est pas entré, de leadMillis avant le début jusqu'à la fin : places retenues
+        private final ReservationCalendar held;
+        private final TreeMap<Long, List<Reservation>> byEnd = new TreeMap<>();
+        private final Map<String, List<Reservation>> byVehicle = new HashMap<>();
+
+        private Inventory(long slotMillis) {
+            booked = new ReservationCalendar(slotMillis);
+            held = new ReservationCalendar(slotMillis);
+        }
+    }
+}
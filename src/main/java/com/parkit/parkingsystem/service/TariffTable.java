@@ -0,0 +1,424 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Grille tarifaire compilée : tout est entier (durées en millisecondes, montants en dix-millièmes d'euro),
+ * sans objet alloué par calcul. Pour chaque type de véhicule et chaque palier de fidélité, le taux horaire
+ * remisé est précalculé ; le prix est arrondi une seule fois, au plus proche (demi vers le haut).
+ * Tranches horaires (nuit, week-end) : la semaine locale est découpée une fois pour toutes en segments de taux
+ * constant, avec le cumul facturé depuis lundi 0 h au début de chaque segment. Le montant d'un séjour est la
+ * différence de ce cumul entre sortie et entrée : deux recherches dichotomiques, quelle que soit la durée.
+ * Majoration selon l'occupation : paliers en points de base, le taux d'occupation étant fourni par l'appelant.
+ */
+public final class TariffTable {
+
+    //1 € = 10 000 unités : les tarifs actuels (1,125 € ; 1,425 €) restent exacts
+    public static final long PRICE_SCALE = 10_000L;
+    public static final int BASIS_POINTS = 10_000;
+
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+    private static final long DIVISOR = MILLIS_PER_HOUR * BASIS_POINTS;
+    //remise et majoration cumulées : deux facteurs en points de base
+    private static final long SCALED_BASIS_POINTS = (long) BASIS_POINTS * BASIS_POINTS;
+    private static final long SCALED_DIVISOR = MILLIS_PER_HOUR * SCALED_BASIS_POINTS;
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+    private static final long MILLIS_PER_WEEK = MINUTES_PER_WEEK * 60_000L;
+    //le 1er janvier 1970 est un jeudi : décalage qui place les semaines sur lundi 0 h
+    private static final long MONDAY_SHIFT = 3L * MINUTES_PER_DAY * 60_000L;
+
+    private final long freePeriodMillis;
+    private final long[] ratesPerHour;
+    //[type.ordinal()][palier] = taux horaire * (10 000 - remise en points de base)
+    private final long[][] discountedRates;
+    private final int[] discountByVisits;
+    private final int lastTier;
+
+    //segments de la semaine locale : début en millisecondes depuis lundi 0 h, dernier élément = une semaine
+    private final long[] bandStarts;
+    //[type.ordinal()][segment] = taux horaire du segment
+    private final long[][] bandRates;
+    //[type.ordinal()][segment] = cumul (taux horaire * millisecondes) de lundi 0 h au début du segment
+    private final long[][] bandCumulative;
+    private final ZoneRules zoneRules;
+    //paliers de majoration, par seuil d'occupation croissant
+    private final int[] surchargeThresholds;
+    private final int[] surcharges;
+
+    private TariffTable(long freePeriodMillis, long[] ratesPerHour, int[] discountByVisits,
+                        int[] weekBasisPoints, ZoneId zone, int[] surchargeThresholds, int[] surcharges) {
+        this.freePeriodMillis = freePeriodMillis;
+        this.ratesPerHour = ratesPerHour;
+        this.discountByVisits = discountByVisits;
+        this.lastTier = discountByVisits.length - 1;
+        this.zoneRules = zone.getRules();
+        this.surchargeThresholds = surchargeThresholds;
+        this.surcharges = surcharges;
+        this.discountedRates = new long[ratesPerHour.length][discountByVisits.length];
+        for (int type = 0; type < ratesPerHour.length; type++) {
+            for (int tier = 0; tier < discountByVisits.length; tier++) {
+                discountedRates[type][tier] = ratesPerHour[type] * (BASIS_POINTS - discountByVisits[tier]);
+            }
+        }
+        if (weekBasisPoints == null) {
+            bandStarts = null;
+            bandRates = null;
+            bandCumulative = null;
+            return;
+        }
+        //minutes consécutives au même taux regroupées en segments
+        int segments = 1;
+        for (int minute = 1; minute < MINUTES_PER_WEEK; minute++) {
+            if (weekBasisPoints[minute] != weekBasisPoints[minute - 1]) {
+                segments++;
+            }
+        }
+        bandStarts = new long[segments + 1];
+        int[] segmentBasisPoints = new int[segments];
+        int segment = 0;
+        for (int minute = 1; minute < MINUTES_PER_WEEK; minute++) {
+            if (weekBasisPoints[minute] != weekBasisPoints[minute - 1]) {
+                segmentBasisPoints[segment] = weekBasisPoints[minute - 1];
+                bandStarts[++segment] = minute * 60_000L;
+            }
+        }
+        segmentBasisPoints[segment] = weekBasisPoints[MINUTES_PER_WEEK - 1];
+        bandStarts[segments] = MILLIS_PER_WEEK;
+        bandRates = new long[ratesPerHour.length][segments];
+        bandCumulative = new long[ratesPerHour.length][segments + 1];
+        for (int type = 0; type < ratesPerHour.length; type++) {
+            for (segment = 0; segment < segments; segment++) {
+                bandRates[type][segment] = (ratesPerHour[type] * segmentBasisPoints[segment] + BASIS_POINTS / 2) / BASIS_POINTS;
+                bandCumulative[type][segment + 1] = bandCumulative[type][segment]
+                        + (bandStarts[segment + 1] - bandStarts[segment]) * bandRates[type][segment];
+            }
+        }
+    }
+
+    /**
+     * Prix d'un stationnement en dix-millièmes d'euro.
+     * visits : nombre de passages du véhicule, ticket courant inclus (1 = première visite).
+     */
+    public long price(ParkingType parkingType, long inTimeMillis, long outTimeMillis, int visits) {
+        return price(parkingType, inTimeMillis, outTimeMillis, visits, 0);
+    }
+
+    /**
+     * Prix d'un stationnement en dix-millièmes d'euro, tranches horaires et majoration comprises.
+     * occupancyBasisPoints : occupation courante du parking (10 000 = complet), sans effet sans palier de majoration.
+     */
+    public long price(ParkingType parkingType, long inTimeMillis, long outTimeMillis, int visits, int occupancyBasisPoints) {
+        long duration = outTimeMillis - inTimeMillis;
+        if (duration < 0) {
+            throw new IllegalArgumentException("Out time provided is incorrect: " + outTimeMillis);
+        }
+        if (duration <= freePeriodMillis) {
+            return 0;
+        }
+        int tier = Math.max(0, Math.min(visits, lastTier));
+        int surcharge = surcharge(occupancyBasisPoints);
+        if (bandStarts != null || surcharge != 0) {
+            return weightedPrice(parkingType, inTimeMillis, outTimeMillis, tier, surcharge);
+        }
+        long rate = discountedRates[parkingType.ordinal()][tier];
+        //duration * rate / DIVISOR sans débordement : heures entières puis reste
+        long hours = duration / MILLIS_PER_HOUR;
+        long remainderMillis = duration % MILLIS_PER_HOUR;
+        long hoursAmount = hours * rate;
+        long remainder = (hoursAmount % BASIS_POINTS) * MILLIS_PER_HOUR + remainderMillis * rate;
+        return hoursAmount / BASIS_POINTS + (remainder + DIVISOR / 2) / DIVISOR;
+    }
+
+    public boolean hasTimeBands() {
+        return bandStarts != null;
+    }
+
+    public boolean hasSurcharges() {
+        return surcharges.length > 0;
+    }
+
+    //Majoration en points de base du palier atteint par occupancyBasisPoints, 0 sous le premier seuil
+    public int surcharge(int occupancyBasisPoints) {
+        int surcharge = 0;
+        for (int i = 0; i < surchargeThresholds.length && occupancyBasisPoints >= surchargeThresholds[i]; i++) {
+            surcharge = surcharges[i];
+        }
+        return surcharge;
+    }
+
+    private long weightedPrice(ParkingType parkingType, long inTimeMillis, long outTimeMillis, int tier, int surcharge) {
+        int type = parkingType.ordinal();
+        //taux horaire * millisecondes, tranches comprises
+        long weighted = bandStarts == null
+                ? (outTimeMillis - inTimeMillis) * ratesPerHour[type]
+                : bandWeighted(type, inTimeMillis, outTimeMillis);
+        long factor = (long) (BASIS_POINTS - discountByVisits[tier]) * (BASIS_POINTS + surcharge);
+        //weighted * factor / SCALED_DIVISOR sans débordement, comme pour le tarif simple
+        long hoursAmount = Math.multiplyExact(weighted / MILLIS_PER_HOUR, factor);
+        long remainder = (hoursAmount % SCALED_BASIS_POINTS) * MILLIS_PER_HOUR + (weighted % MILLIS_PER_HOUR) * factor;
+        return hoursAmount / SCALED_BASIS_POINTS + (remainder + SCALED_DIVISOR / 2) / SCALED_DIVISOR;
+    }
+
+    private long bandWeighted(int type, long inTimeMillis, long outTimeMillis) {
+        long localIn = toLocal(inTimeMillis);
+        long localOut = toLocal(outTimeMillis);
+        long weighted = cumulative(type, localOut) - cumulative(type, localIn);
+        /*
+         * Changement d'heure pendant le séjour : l'écart entre durée réelle et durée locale (une heure en général)
+         * est facturé au taux de la tranche où tombe le dernier changement.
+         */
+        long shift = (outTimeMillis - inTimeMillis) - (localOut - localIn);
+        if (shift != 0) {
+            ZoneOffsetTransition transition = zoneRules.previousTransition(Instant.ofEpochMilli(outTimeMillis + 1));
+            long localBefore = transition.toEpochSecond() * 1000 + transition.getOffsetBefore().getTotalSeconds() * 1000L;
+            weighted += shift * bandRates[type][segment(Math.floorMod(localBefore - 1 + MONDAY_SHIFT, MILLIS_PER_WEEK))];
+        }
+        return Math.max(0, weighted);
+    }
+
+    private long toLocal(long timeMillis) {
+        return timeMillis + zoneRules.getOffset(Instant.ofEpochMilli(timeMillis)).getTotalSeconds() * 1000L;
+    }
+
+    //Cumul facturé de lundi 0 h de la semaine 0 (29 décembre 1969) jusqu'à l'heure locale localMillis
+    private long cumulative(int type, long localMillis) {
+        long shifted = localMillis + MONDAY_SHIFT;
+        long weeks = Math.floorDiv(shifted, MILLIS_PER_WEEK);
+        long offset = Math.floorMod(shifted, MILLIS_PER_WEEK);
+        int segment = segment(offset);
+        return weeks * bandCumulative[type][bandStarts.length - 1] + bandCumulative[type][segment]
+                + (offset - bandStarts[segment]) * bandRates[type][segment];
+    }
+
+    private int segment(long offsetInWeek) {
+        int index = Arrays.binarySearch(bandStarts, 0, bandStarts.length - 1, offsetInWeek);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    public static double toAmount(long price) {
+        return price / (double) PRICE_SCALE;
+    }
+
+    public static long fromAmount(double amount) {
+        return Math.round(amount * PRICE_SCALE);
+    }
+
+    //Grille actuelle : taux de Fare, 30 minutes gratuites, 5% dès le deuxième passage
+    public static TariffTable defaultTariff() {
+        return builder()
+                .ratePerHour(ParkingType.CAR, Fare.CAR_RATE_PER_HOUR)
+                .ratePerHour(ParkingType.BIKE, Fare.BIKE_RATE_PER_HOUR)
+                .freePeriodMinutes(Fare.FREE_PERIOD_MINUTES)
+                .discountFromVisit(2, Fare.RECURRING_USER_DISCOUNT_BASIS_POINTS)
+                .build();
+    }
+
+    /**
+     * Grille actuelle complétée par les propriétés système :
+     * -Dparkingsystem.tariff.bands="SAT-SUN 00:00-00:00 8000;MON-FRI 20:00-08:00 7000" (taux en points de base du tarif),
+     * -Dparkingsystem.tariff.surcharges="8000:2000,9500:5000" (occupation:majoration en points de base),
+     * -Dparkingsystem.tariff.zone=Europe/Paris (fuseau des tranches, celui du système par défaut).
+     */
+    public static TariffTable fromSystemProperties() {
+        Builder builder = builder()
+                .ratePerHour(ParkingType.CAR, Fare.CAR_RATE_PER_HOUR)
+                .ratePerHour(ParkingType.BIKE, Fare.BIKE_RATE_PER_HOUR)
+                .freePeriodMinutes(Fare.FREE_PERIOD_MINUTES)
+                .discountFromVisit(2, Fare.RECURRING_USER_DISCOUNT_BASIS_POINTS);
+        String zone = System.getProperty("parkingsystem.tariff.zone");
+        if (zone != null) {
+            builder.zone(ZoneId.of(zone));
+        }
+        String bands = System.getProperty("parkingsystem.tariff.bands");
+        if (bands != null) {
+            builder.timeBands(bands);
+        }
+        String surcharges = System.getProperty("parkingsystem.tariff.surcharges");
+        if (surcharges != null) {
+            builder.surcharges(surcharges);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final long[] ratesPerHour = new long[ParkingType.values().length];
+        private final boolean[] rateDefined = new boolean[ParkingType.values().length];
+        private long freePeriodMillis;
+        private final TreeMap<Integer, Integer> discountTiers = new TreeMap<>();
+        private final List<int[]> timeBands = new ArrayList<>();
+        private final TreeMap<Integer, Integer> surchargeTiers = new TreeMap<>();
+        private ZoneId zone = ZoneId.systemDefault();
+
+        public Builder ratePerHour(ParkingType parkingType, double amountPerHour) {
+            ratesPerHour[parkingType.ordinal()] = fromAmount(amountPerHour);
+            rateDefined[parkingType.ordinal()] = true;
+            return this;
+        }
+
+        public Builder freePeriodMinutes(int minutes) {
+            this.freePeriodMillis = minutes * 60_000L;
+            return this;
+        }
+
+        //Remise (en points de base : 500 = 5%) appliquée à partir du n-ième passage
+        public Builder discountFromVisit(int visits, int basisPoints) {
+            if (visits < 1 || basisPoints < 0 || basisPoints > BASIS_POINTS) {
+                throw new IllegalArgumentException("Invalid discount tier: " + basisPoints + "bp from visit " + visits);
+            }
+            discountTiers.put(visits, basisPoints);
+            return this;
+        }
+
+        /**
+         * Taux en points de base du tarif horaire (8 000 = -20%) de from à to, heure locale, les jours donnés.
+         * to avant ou égal à from : la tranche se termine le lendemain (20:00-08:00, 00:00-00:00 pour la journée).
+         * Précision à la minute ; une tranche déclarée plus tard l'emporte sur les précédentes.
+         */
+        public Builder timeBand(Set<DayOfWeek> days, LocalTime from, LocalTime to, int basisPoints) {
+            if (basisPoints < 0 || days.isEmpty()) {
+                throw new IllegalArgumentException("Invalid time band: " + days + " " + from + "-" + to + " " + basisPoints + "bp");
+            }
+            int start = from.getHour() * 60 + from.getMinute();
+            int end = to.getHour() * 60 + to.getMinute();
+            if (end <= start) {
+                end += MINUTES_PER_DAY;
+            }
+            for (DayOfWeek day : days) {
+                int dayStart = (day.getValue() - 1) * MINUTES_PER_DAY;
+                timeBands.add(new int[]{dayStart + start, dayStart + end, basisPoints});
+            }
+            return this;
+        }
+
+        //Tranches au format "JOURS HH:MM-HH:MM POINTS" séparées par ';', JOURS = MON, MON-FRI ou SAT,SUN
+        public Builder timeBands(String spec) {
+            for (String band : spec.split(";")) {
+                String[] fields = band.trim().split("\\s+");
+                String[] times = fields.length == 3 ? fields[1].split("-") : new String[0];
+                if (times.length != 2) {
+                    throw new IllegalArgumentException("Invalid time band: " + band);
+                }
+                try {
+                    timeBand(parseDays(fields[0]), LocalTime.parse(times[0]), LocalTime.parse(times[1]),
+                            Integer.parseInt(fields[2]));
+                } catch (RuntimeException ex) {
+                    throw new IllegalArgumentException("Invalid time band: " + band, ex);
+                }
+            }
+            return this;
+        }
+
+        //Majoration (en points de base : 2 000 = +20%) appliquée à partir d'un taux d'occupation en points de base
+        public Builder surchargeFromOccupancy(int occupancyBasisPoints, int basisPoints) {
+            if (occupancyBasisPoints < 0 || occupancyBasisPoints > BASIS_POINTS || basisPoints < 0) {
+                throw new IllegalArgumentException("Invalid surcharge tier: " + basisPoints + "bp from " + occupancyBasisPoints + "bp");
+            }
+            surchargeTiers.put(occupancyBasisPoints, basisPoints);
+            return this;
+        }
+
+        //Paliers au format "OCCUPATION:MAJORATION" séparés par ','
+        public Builder surcharges(String spec) {
+            for (String tier : spec.split(",")) {
+                String[] fields = tier.trim().split(":");
+                try {
+                    surchargeFromOccupancy(Integer.parseInt(fields[0].trim()), Integer.parseInt(fields[1].trim()));
+                } catch (RuntimeException ex) {
+                    throw new IllegalArgumentException("Invalid surcharge tier: " + tier, ex);
+                }
+            }
+            return this;
+        }
+
+        //Fuseau dans lequel les tranches sont lues
+        public Builder zone(ZoneId zone) {
+            this.zone = zone;
+            return this;
+        }
+
+        private static Set<DayOfWeek> parseDays(String spec) {
+            Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+            for (String item : spec.split(",")) {
+                String[] range = item.split("-");
+                DayOfWeek first = parseDay(range[0]);
+                DayOfWeek last = parseDay(range[range.length - 1]);
+                for (DayOfWeek day = first; ; day = day.plus(1)) {
+                    days.add(day);
+                    if (day == last) {
+                        break;
+                    }
+                }
+            }
+            return days;
+        }
+
+        private static DayOfWeek parseDay(String name) {
+            for (DayOfWeek day : DayOfWeek.values()) {
+                if (name.length() >= 3 && day.name().startsWith(name.toUpperCase())) {
+                    return day;
+                }
+            }
+            throw new IllegalArgumentException("Unknown day: " + name);
+        }
+
+        public TariffTable build() {
+            for (ParkingType parkingType : ParkingType.values()) {
+                if (!rateDefined[parkingType.ordinal()]) {
+                    throw new IllegalStateException("No rate defined for " + parkingType);
+                }
+            }
+            //palier par nombre de passages : chaque palier reprend la remise du précédent jusqu'au suivant
+            int maxVisits = discountTiers.isEmpty() ? 1 : Math.max(1, discountTiers.lastKey());
+            int[] discountByVisits = new int[maxVisits + 1];
+            int current = 0;
+            for (int visits = 0; visits <= maxVisits; visits++) {
+                Integer tier = discountTiers.get(visits);
+                if (tier != null) {
+                    current = tier;
+                }
+                discountByVisits[visits] = current;
+            }
+            //taux de chaque minute de la semaine, pour le découpage en segments
+            int[] weekBasisPoints = null;
+            if (!timeBands.isEmpty()) {
+                weekBasisPoints = new int[MINUTES_PER_WEEK];
+                Arrays.fill(weekBasisPoints, BASIS_POINTS);
+                for (int[] band : timeBands) {
+                    for (int minute = band[0]; minute < band[1]; minute++) {
+                        weekBasisPoints[minute % MINUTES_PER_WEEK] = band[2];
+                    }
+                }
+            }
+            int[] thresholds = new int[surchargeTiers.size()];
+            int[] surcharges = new int[surchargeTiers.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Integer> tier : surchargeTiers.entrySet()) {
+                thresholds[i] = tier.getKey();
+                surcharges[i++] = tier.getValue();
+            }
+            return new TariffTable(freePeriodMillis, Arrays.copyOf(ratesPerHour, ratesPerHour.length), discountByVisits,
+                    weekBasisPoints, zone, thresholds, surcharges);
+        }
+    }
+}
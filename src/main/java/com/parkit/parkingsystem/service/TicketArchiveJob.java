@@ -0,0 +1,165 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archivage des tickets clôturés depuis plus de retentionDays jours : ils passent de la table ticket à ticket_archive,
+ * rangés par mois de sortie, et le nombre de tickets archivés de chaque véhicule est cumulé dans ticket_archive_count.
+ * La table ticket ne garde ainsi que les tickets ouverts et récents, les seuls lus par les entrées et les sorties.
+ * Les tickets sont lus par paquets de chunkSize dans l'ordre des ID, sans curseur ouvert pendant les suppressions ;
+ * chaque paquet est copié, compté et supprimé dans une seule transaction : une relance reprend les tickets restants.
+ */
+public class TicketArchiveJob {
+
+    private static final Logger logger = LogManager.getLogger("TicketArchiveJob");
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final DataBaseConfig dataBaseConfig;
+    private final int retentionDays;
+    private final int chunkSize;
+    private ScheduledExecutorService scheduler;
+
+    public TicketArchiveJob(DataBaseConfig dataBaseConfig, int retentionDays, int chunkSize) {
+        if (retentionDays <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("retentionDays and chunkSize must be positive");
+        }
+        this.dataBaseConfig = dataBaseConfig;
+        this.retentionDays = retentionDays;
+        this.chunkSize = chunkSize;
+    }
+
+    //Archive tout ce qui a dépassé la rétention au moment de l'appel
+    public Result run() throws ClassNotFoundException, SQLException {
+        long start = System.nanoTime();
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - retentionDays * DAY_MILLIS);
+        long archived = 0;
+        int lastId = 0;
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement read = con.prepareStatement(DBConstants.GET_TICKETS_TO_ARCHIVE);
+             PreparedStatement archive = con.prepareStatement(DBConstants.SAVE_ARCHIVED_TICKET);
+             PreparedStatement count = con.prepareStatement(DBConstants.ADD_ARCHIVED_TICKET_COUNT);
+             PreparedStatement delete = con.prepareStatement(DBConstants.DELETE_TICKET)) {
+            con.setAutoCommit(false);
+            Map<String, Integer> counts = new HashMap<>();
+            while (true) {
+                int size = 0;
+                read.setInt(1, lastId);
+                read.setTimestamp(2, cutoff);
+                read.setInt(3, chunkSize);
+                try (ResultSet rs = read.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getInt(1);
+                        String vehicleRegNumber = rs.getString(3);
+                        Timestamp outTime = rs.getTimestamp(6);
+                        LocalDateTime out = outTime.toLocalDateTime();
+                        archive.setInt(1, out.getYear() * 100 + out.getMonthValue());
+                        archive.setInt(2, lastId);
+                        archive.setInt(3, rs.getInt(2));
+                        archive.setString(4, vehicleRegNumber);
+                        archive.setDouble(5, rs.getDouble(4));
+                        archive.setTimestamp(6, rs.getTimestamp(5));
+                        archive.setTimestamp(7, outTime);
+                        archive.setString(8, rs.getString(7));
+                        archive.setInt(9, rs.getInt(8));
+                        archive.setInt(10, rs.getInt(9));
+                        archive.addBatch();
+                        delete.setInt(1, lastId);
+                        delete.addBatch();
+                        counts.merge(vehicleRegNumber, 1, Integer::sum);
+                        size++;
+                    }
+                }
+                if (size == 0) {
+                    break;
+                }
+                for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                    count.setString(1, entry.getKey());
+                    count.setInt(2, entry.getValue());
+                    count.addBatch();
+                }
+                counts.clear();
+                try {
+                    archive.executeBatch();
+                    count.executeBatch();
+                    delete.executeBatch();
+                    con.commit();
+                } catch (SQLException e) {
+                    con.rollback();
+                    throw e;
+                }
+                archived += size;
+                logger.info("Ticket archive: " + archived + " tickets archived, last ID " + lastId);
+            }
+        }
+        Result result = new Result(archived, lastId, System.nanoTime() - start);
+        logger.info("Ticket archive done: " + result);
+        return result;
+    }
+
+    //Relance l'archivage toutes les intervalMillis sur un thread de fond, la première fois après un intervalle
+    public synchronized void schedule(long intervalMillis) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ticket-archive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                run();
+            } catch (Exception e) {
+                logger.error("Ticket archive failed, retrying at next run", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public static final class Result {
+        private final long archived;
+        private final int lastId;
+        private final long elapsedNanos;
+
+        private Result(long archived, int lastId, long elapsedNanos) {
+            this.archived = archived;
+            this.lastId = lastId;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getArchived() {
+            return archived;
+        }
+
+        public int getLastId() {
+            return lastId;
+        }
+
+        @Override
+        public String toString() {
+            return archived + " tickets archived, last ID " + lastId + ", " + elapsedNanos / 1_000_000 + " ms";
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.parkit.parkingsystem.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Attente entre deux tentatives après un conflit : durée tirée au hasard entre 0 et baseMillis * 2^(tentative - 1),
+ * plafonnée à maxMillis, pour que deux bornes en conflit ne réessaient pas au même instant.
+ * Réglages : parkingsystem.claim.maxAttempts (5), .backoffMillis (2), .maxBackoffMillis (50).
+ */
+public class JitteredBackoff {
+
+    private final int maxAttempts;
+    private final long baseMillis;
+    private final long maxMillis;
+
+    public JitteredBackoff(int maxAttempts, long baseMillis, long maxMillis) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseMillis = baseMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    public static JitteredBackoff fromSystemProperties() {
+        return new JitteredBackoff(Integer.getInteger("parkingsystem.claim.maxAttempts", 5),
+                Long.getLong("parkingsystem.claim.backoffMillis", 2L),
+                Long.getLong("parkingsystem.claim.maxBackoffMillis", 50L));
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    //Attend avant la tentative suivante (attempt : nombre de tentatives déjà faites) ; false si le thread est interrompu
+    public boolean pause(int attempt) {
+        long ceiling = Math.min(maxMillis, baseMillis << Math.min(attempt - 1, 20));
+        long delay = ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+        if (delay == 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+-- Ticket lookup indexes by vehicle, open tickets first
+-- (VEHICLE_REG_NUMBER, OUT_TIME, ID) : le ticket ouvert d'un véhicule (OUT_TIME is null) est trouvé par seek,
+-- déjà trié par ID ; le préfixe VEHICLE_REG_NUMBER sert aussi au comptage des passages.
+create index IDX_TICKET_VEHICLE_OUT_ID on ticket(VEHICLE_REG_NUMBER, OUT_TIME, ID);
+-- (VEHICLE_REG_NUMBER, ID) : dernier ticket d'un véhicule, ouvert ou non, sans tri.
+create index IDX_TICKET_VEHICLE_ID on ticket(VEHICLE_REG_NUMBER, ID);
@@ -0,0 +1,6 @@
+-- Journal checkpoint for write-behind ticket mode
+-- Dernier numéro de séquence du journal local appliqué en base, mis à jour dans la même transaction que les tickets :
+-- un enregistrement rejoué après un arrêt brutal n'est jamais appliqué deux fois.
+create table if not exists journal_checkpoint(
+ NAME varchar(32) PRIMARY KEY,
+ SEQ bigint NOT NULL);
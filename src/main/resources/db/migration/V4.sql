@@ -0,0 +1,7 @@
+-- Parking lot and level of each spot
+-- Plusieurs parkings dans une même base : PARKING_NUMBER reste l'identifiant unique d'une place (clé des tickets),
+-- LOT_ID désigne le parking et LEVEL le niveau. Les places existantes appartiennent au parking 1.
+alter table parking add column LOT_ID int NOT NULL default 1;
+alter table parking add column LEVEL int NOT NULL default 0;
+-- (LOT_ID, AVAILABLE, TYPE) : places libres et occupation d'un parking sans parcourir les autres.
+create index IDX_PARKING_LOT on parking(LOT_ID, AVAILABLE, TYPE);
@@ -0,0 +1,24 @@
+-- Ticket archive partitioned by month, with archived visit counts
+-- Les tickets clôturés depuis plus de N jours sont déplacés de ticket vers ticket_archive par TicketArchiveJob :
+-- la table ticket ne garde que les tickets ouverts et récents, seule lue par les entrées et les sorties.
+-- Clé (ARCHIVE_MONTH, ID) : les tickets d'un même mois de sortie sont rangés ensemble, et la table peut être
+-- partitionnée par mois (partition by range (ARCHIVE_MONTH)) sans changer de clé. Pas de clé étrangère :
+-- type, parking et niveau de la place sont recopiés.
+create table if not exists ticket_archive(
+ ARCHIVE_MONTH int NOT NULL,
+ ID int NOT NULL,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL,
+ TYPE varchar(10) NOT NULL,
+ LOT_ID int NOT NULL,
+ LEVEL int NOT NULL,
+ PRIMARY KEY (ARCHIVE_MONTH, ID));
+-- Nombre de tickets archivés par véhicule : le comptage des passages lit une seule ligne au lieu de l'archive.
+create table if not exists ticket_archive_count(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ TICKETS int NOT NULL);
+-- (VEHICLE_REG_NUMBER, ID) : historique d'un véhicule sans parcourir les mois ; déjà présent, il est sauté à la relance.
+create index IDX_TICKET_ARCHIVE_VEHICLE_ID on ticket_archive(VEHICLE_REG_NUMBER, ID);
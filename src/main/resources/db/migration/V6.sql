@@ -0,0 +1,14 @@
+-- Reservations of parking spots for future time windows
+-- Une réservation retient une place d'un type dans un parking, sans numéro de place : la place est attribuée à l'arrivée.
+-- STATUS : BOOKED, ARRIVED (véhicule entré) ou CANCELLED. Au démarrage, ReservationService ne relit que les
+-- réservations non annulées qui ne sont pas encore terminées.
+create table if not exists reservation(
+ ID int PRIMARY KEY AUTO_INCREMENT,
+ LOT_ID int NOT NULL,
+ TYPE varchar(10) NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ START_TIME DATETIME NOT NULL,
+ END_TIME DATETIME NOT NULL,
+ STATUS varchar(10) NOT NULL);
+-- (END_TIME) : chargement des réservations en cours ou à venir sans parcourir l'historique.
+create index IDX_RESERVATION_END on reservation(END_TIME);
@@ -0,0 +1,74 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.CompactTickets;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactTicketsTest {
+
+    private final CompactTickets tickets = new CompactTickets(4);
+
+    @Test
+    public void ticketRoundTripsThroughColumns() {
+        Ticket ticket = new Ticket();
+        ticket.setId(42);
+        ticket.setParkingSpot(new ParkingSpot(7, 2, 1, ParkingType.BIKE, false));
+        ticket.setVehicleRegNumber("AB-123-cd");
+        ticket.setPrice(1.425);
+        ticket.setInTime(new Date(1_700_000_000_123L));
+        ticket.setOutTime(new Date(1_700_003_600_999L));
+
+        int index = tickets.add(ticket);
+        Ticket copy = tickets.toTicket(index, number -> new ParkingSpot(number, 2, 1, ParkingType.BIKE, false));
+
+        assertEquals(42, copy.getId());
+        assertEquals(7, copy.getParkingSpot().getId());
+        assertEquals("AB-123-cd", copy.getVehicleRegNumber());
+        assertEquals(1.425, copy.getPrice());
+        // heures à la seconde, comme les DATETIME de la base
+        assertEquals(1_700_000_000_000L, copy.getInTime().getTime());
+        assertEquals(1_700_003_600_000L, copy.getOutTime().getTime());
+    }
+
+    @Test
+    public void platesOutsideAlphabetAreInterned() {
+        int packed = tickets.add(1, 1, "ABCDEFGHIJ", 0, 1000L, 0);
+        int spaced = tickets.add(2, 1, "AB 123", 0, 1000L, 0);
+        int accented = tickets.add(3, 1, "ÉTÉ", 0, 1000L, 0);
+        int again = tickets.add(4, 1, "AB 123", 0, 1000L, 0);
+
+        assertTrue(tickets.getPlateCode(packed) >= 0);
+        assertTrue(tickets.getPlateCode(spaced) < 0);
+        assertEquals(tickets.getPlateCode(spaced), tickets.getPlateCode(again));
+        assertEquals("ABCDEFGHIJ", tickets.getVehicleRegNumber(packed));
+        assertEquals("AB 123", tickets.getVehicleRegNumber(spaced));
+        assertEquals("ÉTÉ", tickets.getVehicleRegNumber(accented));
+        assertNotEquals(tickets.encodePlate("A"), tickets.encodePlate("A0"));
+    }
+
+    @Test
+    public void openTicketIsClosedInPlace() {
+        for (int i = 0; i < 10_000; i++) {
+            tickets.add(i + 1, i % 50 + 1, "P" + i, 0, 1_600_000_000_000L + i * 1000L, 0);
+        }
+        assertTrue(tickets.isOpen(9_999));
+        assertNull(tickets.toTicket(9_999, number -> null).getOutTime());
+
+        tickets.setOutTime(9_999, 1_700_000_000_000L);
+        tickets.setPrice(9_999, 3.0);
+
+        assertFalse(tickets.isOpen(9_999));
+        assertEquals(1_700_000_000_000L, tickets.getOutTime(9_999));
+        assertEquals(3.0, tickets.getPrice(9_999));
+        assertEquals(10_000, tickets.size());
+        assertEquals("P9999", tickets.getVehicleRegNumber(9_999));
+        assertThrows(IndexOutOfBoundsException.class, () -> tickets.getId(10_000));
+        assertThrows(IllegalArgumentException.class, () -> tickets.setInTime(0, -1L));
+    }
+}
@@ -0,0 +1,147 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ConnectionPoolTest {
+
+    private AtomicInteger opened;
+    private Connection lastPhysical;
+    private List<PreparedStatement> prepared;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        opened = new AtomicInteger();
+        prepared = new ArrayList<>();
+        pool = new ConnectionPool(() -> {
+            opened.incrementAndGet();
+            Connection physical = mock(Connection.class);
+            when(physical.isValid(anyInt())).thenReturn(true);
+            when(physical.getAutoCommit()).thenReturn(true);
+            when(physical.prepareStatement(anyString())).thenAnswer(invocation -> {
+                PreparedStatement ps = mock(PreparedStatement.class);
+                prepared.add(ps);
+                return ps;
+            });
+            lastPhysical = physical;
+            return physical;
+        }, 2, 100, 0, 1, 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void closedConnectionIsReused() throws Exception {
+        Connection first = pool.borrow();
+        first.close();
+        Connection second = pool.borrow();
+        second.close();
+
+        // Une seule connexion physique ouverte pour deux emprunts
+        assertEquals(1, opened.get());
+        assertEquals(2, pool.getBorrowCount());
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void borrowTimesOutWhenPoolIsExhausted() throws Exception {
+        Connection first = pool.borrow();
+        Connection second = pool.borrow();
+
+        assertThrows(SQLTimeoutException.class, () -> pool.borrow());
+        assertEquals(1, pool.getTimeoutCount());
+        assertEquals(2, pool.getActiveCount());
+
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void invalidConnectionIsReplacedOnBorrow() throws Exception {
+        Connection first = pool.borrow();
+        Connection physical = lastPhysical;
+        first.close();
+        when(physical.isValid(anyInt())).thenReturn(false);
+
+        pool.borrow().close();
+
+        assertEquals(2, opened.get());
+        assertEquals(1, pool.getDestroyedCount());
+        verify(physical).close();
+    }
+
+    @Test
+    public void connectionCannotBeUsedAfterClose() throws Exception {
+        Connection con = pool.borrow();
+        con.close();
+        con.close(); // un double close ne doit pas rendre deux fois la connexion
+
+        assertTrue(con.isClosed());
+        assertThrows(java.sql.SQLException.class, () -> con.prepareStatement("select 1"));
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void preparedStatementIsReusedAcrossBorrows() throws Exception {
+        PreparedStatement first;
+        try (Connection con = pool.borrow(); PreparedStatement ps = con.prepareStatement("select 1")) {
+            first = ps;
+        }
+        try (Connection con = pool.borrow(); PreparedStatement ps = con.prepareStatement("select 1")) {
+            ps.setInt(1, 1);
+            assertSame(con, ps.getConnection());
+        }
+
+        // Une seule préparation physique : la requête est rendue au cache, paramètres effacés
+        verify(lastPhysical, times(1)).prepareStatement("select 1");
+        assertEquals(1, pool.getStatementCacheHitCount());
+        assertEquals(1, pool.getStatementCacheMissCount());
+        assertTrue(first.isClosed());
+        assertThrows(java.sql.SQLException.class, () -> first.setInt(1, 1));
+    }
+
+    @Test
+    public void leastRecentlyUsedStatementIsClosedWhenCacheIsFull() throws Exception {
+        try (Connection con = pool.borrow()) {
+            con.prepareStatement("select 1").close();
+            con.prepareStatement("select 2").close();
+            con.prepareStatement("select 3").close();
+        }
+
+        // cache de deux requêtes : la plus ancienne est fermée physiquement
+        verify(prepared.get(0)).close();
+        verify(prepared.get(1), never()).close();
+    }
+
+    @Test
+    public void statementsLeftOpenAreClosedWhenConnectionIsReturned() throws Exception {
+        Connection con = pool.borrow();
+        PreparedStatement cached = con.prepareStatement("select 1");
+        con.prepareStatement("select 1");
+        con.close();
+
+        // requête en cache rendue, exemplaire hors cache fermé
+        assertTrue(cached.isClosed());
+        verify(prepared.get(1)).close();
+        verify(prepared.get(0), never()).close();
+        assertEquals(2, pool.getLeakedStatementCount());
+        verify(lastPhysical, never()).close();
+    }
+}
@@ -0,0 +1,176 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.EmbeddedStore;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.lenient;
+
+//Scénarios de ParkingDataBaseIT rejoués sur le stockage embarqué, puis reprise après redémarrage
+@ExtendWith(MockitoExtension.class)
+public class EmbeddedStoreTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Mock
+    private InputReaderUtil inputReaderUtil;
+
+    private final List<EmbeddedStore> openedStores = new ArrayList<>();
+    private Path directory;
+    private EmbeddedStore store;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        lenient().when(inputReaderUtil.readSelection()).thenReturn(1);
+        lenient().when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+        directory = Files.createTempDirectory("embeddedStore");
+        store = open(1000);
+        for (int number = 1; number <= 5; number++) {
+            store.defineParkingSpot(number, number <= 3 ? ParkingType.CAR : ParkingType.BIKE);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (EmbeddedStore openedStore : openedStores) {
+            openedStore.close();
+        }
+    }
+
+    @Test
+    public void testParkingACar() {
+        new ParkingService(inputReaderUtil, store, store).processIncomingVehicle();
+
+        Ticket ticket = store.getTicket("ABCDEF");
+        assertNotNull(ticket);
+        assertNotNull(ticket.getInTime());
+        assertNull(ticket.getOutTime());
+        assertFalse(store.getParkingSpot(ticket.getParkingSpot().getId()).isAvailable());
+    }
+
+    @Test
+    public void testParkingLotExit() {
+        testParkingACar();
+        Ticket ticket = store.getTicket("ABCDEF");
+        assertTrue(store.updateTicketInTime(ticket.getId(), new Date(System.currentTimeMillis() - HOUR)));
+
+        new ParkingService(inputReaderUtil, store, store).processExitingVehicle();
+
+        ticket = store.getTicket("ABCDEF");
+        assertNotNull(ticket.getOutTime());
+        assertTrue(ticket.getPrice() > 0);
+        assertTrue(store.getParkingSpot(ticket.getParkingSpot().getId()).isAvailable());
+    }
+
+    @Test
+    public void testParkingLotExitRecurringUser() {
+        ParkingService parkingService = new ParkingService(inputReaderUtil, store, store);
+
+        parkingService.processIncomingVehicle();
+        store.updateTicketInTime(store.getTicket("ABCDEF").getId(), new Date(System.currentTimeMillis() - HOUR));
+        parkingService.processExitingVehicle();
+        assertEquals(1.5, store.getTicket("ABCDEF").getPrice(), 0.01);
+
+        parkingService.processIncomingVehicle();
+        store.updateTicketInTime(store.getTicket("ABCDEF").getId(), new Date(System.currentTimeMillis() - HOUR));
+        parkingService.processExitingVehicle();
+        assertEquals(1.425, store.getTicket("ABCDEF").getPrice(), 0.01);
+        assertEquals(2, store.getNbTicket("ABCDEF"));
+    }
+
+    @Test
+    public void stateIsRebuiltFromSnapshotAndLog() throws Exception {
+        store.close();
+        // un instantané toutes les 4 écritures : la reprise lit instantané puis journal
+        store = open(4);
+        ParkingService parkingService = new ParkingService(store, store);
+        parkingService.enter(ParkingType.CAR, "ABC");
+        parkingService.enter(ParkingType.CAR, "DEF");
+        parkingService.enter(ParkingType.BIKE, "GHI");
+        store.updateTicketInTime(store.getTicket("ABC").getId(), new Date(System.currentTimeMillis() - 2 * HOUR));
+        assertEquals(3.0, parkingService.exit("ABC").getPrice(), 0.001);
+        parkingService.enter(ParkingType.CAR, "ABC");
+        store.close();
+
+        EmbeddedStore reopened = open(4);
+        assertEquals(5, reopened.getParkingSpotCount());
+        assertEquals(2, reopened.getNbTicket("ABC"));
+        assertEquals(1, reopened.getNbTicket("DEF"));
+        assertFalse(reopened.getParkingSpot(1).isAvailable());
+        assertFalse(reopened.getParkingSpot(2).isAvailable());
+        assertTrue(reopened.getParkingSpot(3).isAvailable());
+        assertEquals(1, reopened.getAvailableSlotCount(ParkingType.CAR));
+        assertEquals(1, reopened.getAvailableSlotCount(ParkingType.BIKE));
+        assertNull(reopened.getTicket("ABC").getOutTime());
+        assertNotNull(reopened.saveOutgoingTicket("DEF", new Date(), new FareCalculatorService()));
+        assertEquals(6, reopened.getTicket("DEF").getId() + reopened.getTicket("ABC").getId());
+    }
+
+    @Test
+    public void lotsAreAllocatedSeparatelyAndSurviveRestart() throws Exception {
+        store.defineParkingSpot(6, 2, 1, ParkingType.CAR);
+        store.defineParkingSpot(7, 2, 1, ParkingType.CAR);
+        ParkingService parkingService = new ParkingService(store, store);
+        assertEquals(6, parkingService.enter(2, ParkingType.CAR, "ABC").getParkingNumber());
+        assertEquals(1, parkingService.enter(ParkingType.CAR, "DEF").getParkingNumber());
+        assertEquals(EntryResult.Status.PARKING_FULL, parkingService.enter(2, ParkingType.BIKE, "GHI").getStatus());
+        store.close();
+
+        EmbeddedStore reopened = open(1);
+        assertEquals(2, reopened.getParkingSpot(7).getLotId());
+        assertEquals(1, reopened.getParkingSpot(7).getLevel());
+        assertEquals(1, reopened.getAvailableSlotCount(2, ParkingType.CAR));
+        assertEquals(2, reopened.getAvailableSlotCount(1, ParkingType.CAR));
+        ExitResult exit = new ParkingService(reopened, reopened).exit("ABC");
+        assertEquals(2, exit.getTicket().getParkingSpot().getLotId());
+        assertEquals(2, reopened.getAvailableSlotCount(2, ParkingType.CAR));
+        // instantané écrit à la sortie : relu avec parkings et niveaux
+        reopened.close();
+        assertEquals(1, open(1000).getParkingSpot(6).getLevel());
+    }
+
+    @Test
+    public void tornLogTailIsDiscarded() throws Exception {
+        ParkingService parkingService = new ParkingService(store, store);
+        parkingService.enter(ParkingType.CAR, "ABC");
+        store.close();
+        // arrêt brutal au milieu d'un enregistrement
+        Path log = Files.list(directory).filter(p -> p.getFileName().toString().endsWith(".log")).findFirst().get();
+        Files.write(log, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        EmbeddedStore reopened = open(1000);
+        assertEquals(1, reopened.getNbTicket("ABC"));
+        assertTrue(new ParkingService(reopened, reopened).enter(ParkingType.CAR, "DEF").isParked());
+        reopened.close();
+
+        EmbeddedStore again = open(1000);
+        assertEquals(1, again.getNbTicket("DEF"));
+        assertEquals(2, again.getTicket("DEF").getId());
+    }
+
+    private EmbeddedStore open(int snapshotEvery) throws IOException {
+        EmbeddedStore opened = EmbeddedStore.open(directory, false, snapshotEvery);
+        openedStores.add(opened);
+        return opened;
+    }
+}
@@ -0,0 +1,138 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.service.FareAuditJob;
+import com.parkit.parkingsystem.service.TariffTable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FareAuditJobTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private final EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("fareAudit");
+
+    private Path tempDir;
+
+    // Tarif doublé : 3 €/h voiture, 2 €/h moto, mêmes 30 minutes gratuites et 5% dès le 2e passage
+    private final TariffTable doubledTariff = TariffTable.builder()
+            .ratePerHour(ParkingType.CAR, 3.0)
+            .ratePerHour(ParkingType.BIKE, 2.0)
+            .freePeriodMinutes(30)
+            .discountFromVisit(2, 500)
+            .build();
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        tempDir = Files.createTempDirectory("fareAudit");
+        new DataBasePrepareService(dataBaseConfig).createParkingSpots(3, 2);
+        long now = System.currentTimeMillis();
+        // ABC : deux passages d'une heure en voiture, DEF : une heure en moto, GHI : ticket encore ouvert
+        insertTicket(1, "ABC", now - 10 * HOUR, now - 9 * HOUR);
+        insertTicket(4, "DEF", now - 8 * HOUR, now - 7 * HOUR);
+        insertTicket(2, "ABC", now - 6 * HOUR, now - 5 * HOUR);
+        insertTicket(3, "GHI", now - HOUR, 0);
+    }
+
+    @Test
+    public void closedTicketsAreRepricedWithVisitRank() throws Exception {
+        FareAuditJob.Result result = new FareAuditJob(dataBaseConfig, doubledTariff, 2, 1, 2).run(tempDir.resolve("checkpoint"));
+
+        assertEquals(3, result.getScanned());
+        assertEquals(3, result.getUpdated());
+        assertEquals(3.0, priceOf(1));
+        assertEquals(2.0, priceOf(2));
+        assertEquals(2.85, priceOf(3)); // deuxième passage de ABC : remise de 5%
+        assertEquals(0.0, priceOf(4)); // ticket ouvert non touché
+        assertEquals(3, result.getLastId());
+        // parcours complet : le fichier de reprise est supprimé
+        assertFalse(Files.exists(tempDir.resolve("checkpoint")));
+    }
+
+    @Test
+    public void nextRunAfterTariffChangeRepricesEveryTicket() throws Exception {
+        Path checkpoint = tempDir.resolve("checkpoint");
+        new FareAuditJob(dataBaseConfig, doubledTariff, 2, 1, 1).run(checkpoint);
+        assertEquals(3.0, priceOf(1));
+
+        FareAuditJob.Result result = new FareAuditJob(dataBaseConfig, TariffTable.defaultTariff(), 2, 1, 1).run(checkpoint);
+
+        assertEquals(3, result.getScanned());
+        assertEquals(3, result.getUpdated());
+        assertEquals(1.5, priceOf(1));
+        assertEquals(1.0, priceOf(2));
+        assertEquals(1.425, priceOf(3));
+    }
+
+    @Test
+    public void runResumesAfterCheckpoint() throws Exception {
+        Path checkpoint = tempDir.resolve("checkpoint");
+        Files.write(checkpoint, "2".getBytes(StandardCharsets.UTF_8));
+
+        FareAuditJob.Result result = new FareAuditJob(dataBaseConfig, doubledTariff, 100, 10, 1).run(checkpoint);
+
+        assertEquals(1, result.getScanned());
+        assertEquals(0.0, priceOf(1));
+        assertEquals(2.85, priceOf(3));
+        assertFalse(Files.exists(checkpoint));
+    }
+
+    @Test
+    public void surchargedTariffLeavesTicketsUnchanged() throws Exception {
+        // ABC facturé 1,80 € à la sortie : 1,50 € majoré de 20% à plus de 80% d'occupation
+        try (Connection con = dataBaseConfig.getConnection()) {
+            con.prepareStatement("update ticket set PRICE = 1.8 where ID = 1").execute();
+        }
+        TariffTable surchargedTariff = TariffTable.builder()
+                .ratePerHour(ParkingType.CAR, 1.5)
+                .ratePerHour(ParkingType.BIKE, 1.0)
+                .freePeriodMinutes(30)
+                .discountFromVisit(2, 500)
+                .surchargeFromOccupancy(8000, 2000)
+                .build();
+        Path checkpoint = tempDir.resolve("checkpoint");
+
+        FareAuditJob.Result result = new FareAuditJob(dataBaseConfig, surchargedTariff, 2, 1, 1).run(checkpoint);
+
+        assertEquals(0, result.getScanned());
+        assertEquals(0, result.getUpdated());
+        assertEquals(1.8, priceOf(1));
+        assertEquals(0.0, priceOf(2));
+        assertFalse(Files.exists(checkpoint));
+    }
+
+    private void insertTicket(int parkingNumber, String plate, long inTime, long outTime) throws Exception {
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(
+                     "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,0,?,?)")) {
+            ps.setInt(1, parkingNumber);
+            ps.setString(2, plate);
+            ps.setTimestamp(3, new Timestamp(inTime));
+            ps.setTimestamp(4, outTime == 0 ? null : new Timestamp(outTime));
+            ps.executeUpdate();
+        }
+    }
+
+    private double priceOf(int ticketId) throws Exception {
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement("select PRICE from ticket where ID = ?")) {
+            ps.setInt(1, ticketId);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getDouble(1);
+            }
+        }
+    }
+}
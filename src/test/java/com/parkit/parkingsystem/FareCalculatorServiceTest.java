@@ -5,6 +5,7 @@ import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.TariffTable;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -166,7 +167,8 @@ public class FareCalculatorServiceTest {
 
         fareCalculatorService.calculateFare(ticket, true); // Avec réduction
 
-        double expectedFare = Fare.CAR_RATE_PER_HOUR * 0.95; // 95% du tarif
+        // 95% du tarif, arrondi exact (1.5 * 0.95 en double donnerait 1.4249999999999998)
+        double expectedFare = 1.425;
         assertEquals(expectedFare, ticket.getPrice());
     }
     @Test
@@ -186,4 +188,25 @@ public class FareCalculatorServiceTest {
         double expectedFare = Fare.BIKE_RATE_PER_HOUR * 0.95; // 95% du tarif
         assertEquals(expectedFare, ticket.getPrice());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void calculateFareWithSurchargeFromLotOccupancy() {
+        TariffTable surge = TariffTable.builder()
+                .ratePerHour(ParkingType.CAR, Fare.CAR_RATE_PER_HOUR)
+                .ratePerHour(ParkingType.BIKE, Fare.BIKE_RATE_PER_HOUR)
+                .surchargeFromOccupancy(9_000, 2_000)
+                .build();
+        FareCalculatorService surgeCalculator = new FareCalculatorService(surge,
+                (lotId, parkingType) -> lotId == 2 && parkingType == ParkingType.CAR ? 9_500 : 0);
+        ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+        ticket.setOutTime(new Date(ticket.getInTime().getTime() + 60 * 60 * 1000));
+
+        ticket.setParkingSpot(new ParkingSpot(1, 2, 0, ParkingType.CAR, false));
+        surgeCalculator.calculateFare(ticket);
+        assertEquals(Fare.CAR_RATE_PER_HOUR * 1.2, ticket.getPrice(), 1e-9);
+
+        ticket.setParkingSpot(new ParkingSpot(1, 1, 0, ParkingType.CAR, false));
+        surgeCalculator.calculateFare(ticket);
+        assertEquals(Fare.CAR_RATE_PER_HOUR, ticket.getPrice());
+    }
+}
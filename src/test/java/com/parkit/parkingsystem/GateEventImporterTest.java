@@ -0,0 +1,159 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.dao.BatchTicketDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.service.GateEventImporter;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GateEventImporterTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private final EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("gateImport");
+
+    private Path tempDir;
+    private long t0;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        tempDir = Files.createTempDirectory("gateImport");
+        new DataBasePrepareService(dataBaseConfig).createParkingSpots(3, 2);
+        t0 = System.currentTimeMillis() / 1000 * 1000 - 100 * HOUR;
+    }
+
+    @Test
+    public void csvEventsAreReplayedInTimestampOrder() throws Exception {
+        // GHI est déjà garé place 3 avant la coupure réseau
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(
+                     "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(3,'GHI',0,?,null)")) {
+            ps.setTimestamp(1, new Timestamp(t0 - HOUR));
+            ps.executeUpdate();
+            con.prepareStatement("update parking set AVAILABLE = false where PARKING_NUMBER = 3").executeUpdate();
+        }
+        String isoEntry = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date(t0 + HOUR));
+        Path events = tempDir.resolve("gate.csv");
+        Files.write(events, Arrays.asList(
+                "timestamp,event,plate,type,lot",
+                (t0 + 2 * HOUR) + ",EXIT,ABC",
+                t0 + ",ENTRY,ABC,CAR",
+                isoEntry + ",entry,DEF,bike,1",
+                (t0 + 3 * HOUR) + ",EXIT,GHI",
+                "not a line",
+                (t0 + 4 * HOUR) + ",EXIT,ZZZ",
+                (t0 + 5 * HOUR) + ",ENTRY,DEF,BIKE",
+                (t0 + 5 * HOUR) + ",ENTRY,JKL,BIKE",
+                (t0 + 6 * HOUR) + ",ENTRY,MNO,BIKE",
+                (t0 + 6 * HOUR) + ",ENTRY,PQR,CAR,7"), StandardCharsets.UTF_8);
+        Path rejects = tempDir.resolve("gate.rejects");
+
+        GateEventImporter.Result result = importer(2).run(events, rejects);
+
+        assertEquals(10, result.getEvents());
+        assertEquals(3, result.getEntries());
+        assertEquals(2, result.getExits());
+        assertEquals(5, result.getRejected());
+        assertEquals(Long.valueOf(1), result.getRejectedByReason().get("vehicle already parked"));
+        assertEquals(Long.valueOf(1), result.getRejectedByReason().get("parking full"));
+        assertEquals(Long.valueOf(1), result.getRejectedByReason().get("no open ticket"));
+        assertEquals(Long.valueOf(1), result.getRejectedByReason().get("unknown lot"));
+        assertEquals(Long.valueOf(1), result.getRejectedByReason().get("missing fields"));
+        List<String> rejected = Files.readAllLines(rejects, StandardCharsets.UTF_8);
+        assertEquals(5, rejected.size());
+        assertTrue(rejected.contains("6,missing fields,not a line"));
+
+        // ABC : deux heures de voiture, sorti avant la fin du fichier ; GHI : sa place est rendue
+        assertEquals(3.0, queryDouble("select PRICE from ticket where VEHICLE_REG_NUMBER = 'ABC' and OUT_TIME is not null"));
+        assertEquals(t0 + 2 * HOUR, queryTime("select OUT_TIME from ticket where VEHICLE_REG_NUMBER = 'ABC'"));
+        assertEquals(t0 + HOUR, queryTime("select IN_TIME from ticket where VEHICLE_REG_NUMBER = 'DEF'"));
+        assertEquals(6.0, queryDouble("select PRICE from ticket where VEHICLE_REG_NUMBER = 'GHI'"));
+        assertEquals(2.0, queryDouble("select count(*) from ticket where OUT_TIME is null"));
+        assertEquals(2.0, queryDouble("select count(*) from parking where AVAILABLE = false"));
+        assertEquals(0.0, queryDouble("select count(*) from parking where AVAILABLE = false and TYPE = 'CAR'"));
+    }
+
+    @Test
+    public void binaryEventsAreImportedInBatches() throws Exception {
+        // 10 000 passages d'une heure, un toutes les 30 minutes : jamais plus de 3 voitures à la fois
+        int vehicles = 10_000;
+        Path events = tempDir.resolve("gate.bin");
+        try (OutputStream file = Files.newOutputStream(events);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(GateEventImporter.BINARY_MAGIC);
+            // sorties écrites avant les entrées : le tri remet le journal dans l'ordre
+            for (int i = 0; i < vehicles; i++) {
+                writeRecord(out, t0 + i * 30 * 60_000L + HOUR, GateEventImporter.BINARY_EXIT, "V" + i);
+            }
+            for (int i = 0; i < vehicles; i++) {
+                writeRecord(out, t0 + i * 30 * 60_000L, GateEventImporter.BINARY_ENTRY, "V" + i);
+            }
+        }
+
+        GateEventImporter.Result result = importer(500).run(events, null);
+
+        assertEquals(2 * vehicles, result.getEvents());
+        assertEquals(vehicles, result.getEntries());
+        assertEquals(vehicles, result.getExits());
+        assertEquals(0, result.getRejected());
+        assertEquals(vehicles, queryDouble("select count(*) from ticket where OUT_TIME is not null"));
+        assertEquals(0.0, queryDouble("select count(*) from parking where AVAILABLE = false"));
+        assertEquals(vehicles * 1.5, queryDouble("select sum(PRICE) from ticket"), 0.01);
+    }
+
+    private GateEventImporter importer(int batchSize) throws Exception {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.loadAvailableSlots();
+        BatchTicketDAO ticketDAO = new BatchTicketDAO(batchSize);
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.load();
+        return new GateEventImporter(new ParkingService(parkingSpotDAO, ticketDAO), ticketDAO, 5000);
+    }
+
+    private static void writeRecord(DataOutputStream out, long time, byte kind, String plate) throws Exception {
+        byte[] bytes = plate.getBytes(StandardCharsets.UTF_8);
+        out.writeLong(time);
+        out.writeByte(kind);
+        out.writeByte(0); // CAR
+        out.writeShort(1);
+        out.writeByte(bytes.length);
+        out.write(bytes);
+    }
+
+    private double queryDouble(String sql) throws Exception {
+        try (Connection con = dataBaseConfig.getConnection();
+             ResultSet rs = con.prepareStatement(sql).executeQuery()) {
+            assertTrue(rs.next());
+            return rs.getDouble(1);
+        }
+    }
+
+    private long queryTime(String sql) throws Exception {
+        try (Connection con = dataBaseConfig.getConnection();
+             ResultSet rs = con.prepareStatement(sql).executeQuery()) {
+            assertTrue(rs.next());
+            return rs.getTimestamp(1).getTime();
+        }
+    }
+}
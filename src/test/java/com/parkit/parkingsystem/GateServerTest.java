@@ -0,0 +1,234 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketStore;
+import com.parkit.parkingsystem.dao.TicketStoreException;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.ReservationResult;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.server.GateServer;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.OccupancyFeed;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.ReservationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class GateServerTest {
+
+    @Mock
+    private ParkingSpotDAO parkingSpotDAO;
+    @Mock
+    private TicketDAO ticketDAO;
+
+    private GateServer gateServer;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        gateServer = new GateServer(0, 2, new ParkingService(parkingSpotDAO, ticketDAO));
+        gateServer.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        gateServer.stop();
+    }
+
+    @Test
+    public void entryReturnsSpotAndTicket() throws Exception {
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingSpot.DEFAULT_LOT_ID, ParkingType.BIKE)).thenReturn(4);
+        when(ticketDAO.saveIncomingTicket(any(Ticket.class))).thenAnswer(invocation -> {
+            invocation.<Ticket>getArgument(0).setId(12);
+            return 2;
+        });
+
+        assertEquals("200 {\"ticket\":12,\"lot\":1,\"spot\":4,\"returning\":true}", post("/entry?type=bike&plate=AB123"));
+    }
+
+    @Test
+    public void exitReturnsPrice() throws Exception {
+        Ticket ticket = new Ticket();
+        ticket.setId(12);
+        ticket.setParkingSpot(new ParkingSpot(4, ParkingType.BIKE, true));
+        ticket.setPrice(1.0);
+        when(ticketDAO.saveOutgoingTicket(eq("AB123"), any(Date.class), any(FareCalculatorService.class))).thenReturn(ticket);
+
+        assertEquals("200 {\"ticket\":12,\"lot\":1,\"spot\":4,\"price\":1.0}", post("/exit?plate=AB123"));
+        verify(parkingSpotDAO).releaseSlot(ticket.getParkingSpot());
+    }
+
+    @Test
+    public void entryIsRoutedToRequestedLot() throws Exception {
+        when(parkingSpotDAO.getNextAvailableSlot(2, ParkingType.CAR)).thenReturn(21);
+        when(ticketDAO.saveIncomingTicket(any(Ticket.class))).thenAnswer(invocation -> {
+            invocation.<Ticket>getArgument(0).setId(13);
+            return 1;
+        });
+        when(parkingSpotDAO.getLotIds()).thenReturn(new TreeSet<>(Arrays.asList(1, 2)));
+        when(parkingSpotDAO.getAvailableSlotCount(anyInt(), any(ParkingType.class))).thenAnswer(invocation ->
+                invocation.<Integer>getArgument(0) * 10 + invocation.<ParkingType>getArgument(1).ordinal());
+
+        assertEquals("200 {\"ticket\":13,\"lot\":2,\"spot\":21,\"returning\":false}", post("/entry?type=CAR&lot=2&plate=AB123"));
+        assertEquals("200 {\"1\":{\"CAR\":10,\"BIKE\":11},\"2\":{\"CAR\":20,\"BIKE\":21}}", get("/lots"));
+    }
+
+    @Test
+    public void invalidRequestsAreRejected() throws Exception {
+        assertTrue(post("/entry?type=CAR&lot=A1&plate=AB123").startsWith("400"));
+        assertTrue(post("/entry?type=TRUCK&plate=AB123").startsWith("400"));
+        assertTrue(post("/entry?type=CAR&plate=ABCDEFGHIJK").startsWith("400"));
+        assertTrue(post("/exit").startsWith("400"));
+        // échappement invalide : erreur du client, jamais 500
+        assertTrue(post("/entry?type=CAR&plate=%zz").startsWith("400"));
+        assertTrue(post("/exit?plate=AB%2").startsWith("400"));
+        verifyNoMoreInteractions(ticketDAO);
+    }
+
+    @Test
+    public void exitWithoutOpenTicketIsNotFound() throws Exception {
+        assertTrue(post("/exit?plate=AB123").startsWith("404"));
+    }
+
+    @Test
+    public void entryNotSavedIsUnavailable() throws Exception {
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingSpot.DEFAULT_LOT_ID, ParkingType.CAR)).thenReturn(3, 0);
+        when(ticketDAO.saveIncomingTicket(any(Ticket.class))).thenReturn(TicketStore.ENTRY_FAILED);
+
+        assertEquals("503 {\"error\":\"entry refused: ticket not saved\"}", post("/entry?type=CAR&plate=AB123"));
+        assertEquals("409 {\"error\":\"entry refused: parking full\"}", post("/entry?type=CAR&plate=AB123"));
+    }
+
+    @Test
+    public void exitBeforeEntryTimeIsAConflict() throws Exception {
+        when(ticketDAO.saveOutgoingTicket(eq("AB123"), any(Date.class), any(FareCalculatorService.class)))
+                .thenThrow(new IllegalArgumentException("Out time provided is incorrect"));
+
+        assertEquals("409 {\"error\":\"exit refused: out time is before the entry time\"}", post("/exit?plate=AB123"));
+    }
+
+    @Test
+    public void exitDuringStorageFailureIsUnavailable() throws Exception {
+        when(ticketDAO.saveOutgoingTicket(eq("AB123"), any(Date.class), any(FareCalculatorService.class)))
+                .thenThrow(new TicketStoreException("database down", new SQLException("connection refused")));
+
+        assertEquals("503 {\"error\":\"exit refused: ticket not saved\"}", post("/exit?plate=AB123"));
+        verify(parkingSpotDAO, never()).releaseSlot(any(ParkingSpot.class));
+    }
+
+    @Test
+    public void reservationCancellationRequiresValidId() throws Exception {
+        ReservationService reservationService = mock(ReservationService.class);
+        when(reservationService.cancel(7)).thenReturn(true);
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+        parkingService.setReservationService(reservationService);
+        gateServer.stop();
+        gateServer = new GateServer(0, 2, parkingService);
+        gateServer.start();
+
+        String idError = "400 {\"error\":\"a positive integer id is required\"}";
+        assertEquals(idError, request("DELETE", "/reservations"));
+        assertEquals(idError, request("DELETE", "/reservations?id=abc"));
+        assertEquals(idError, request("DELETE", "/reservations?id=-3"));
+        assertEquals(idError, request("DELETE", "/reservations?id=0"));
+        assertEquals("200 {\"reservation\":7,\"cancelled\":true}", request("DELETE", "/reservations?id=7"));
+        verify(reservationService).cancel(7);
+        verifyNoMoreInteractions(reservationService);
+    }
+
+    @Test
+    public void reservationNotSavedIsUnavailable() throws Exception {
+        ReservationService reservationService = mock(ReservationService.class);
+        when(reservationService.reserve(eq(1), eq(ParkingType.CAR), eq("AB123"), any(Date.class), any(Date.class)))
+                .thenReturn(ReservationResult.failed(), ReservationResult.full());
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+        parkingService.setReservationService(reservationService);
+        gateServer.stop();
+        gateServer = new GateServer(0, 2, parkingService);
+        gateServer.start();
+        long from = System.currentTimeMillis() + 3_600_000L;
+        String path = "/reservations?type=CAR&plate=AB123&from=" + from + "&to=" + (from + 3_600_000L);
+
+        assertEquals("503 {\"error\":\"reservation refused: not saved\"}", post(path));
+        assertEquals("409 {\"error\":\"reservation refused: no spot left for this window\"}", post(path));
+    }
+
+    @Test
+    public void occupancyStreamPushesFreeSpots() throws Exception {
+        when(parkingSpotDAO.getLotIds()).thenReturn(new TreeSet<>(Arrays.asList(1)));
+        when(parkingSpotDAO.getAvailableSlotCount(1, ParkingType.CAR)).thenReturn(3, 2);
+        doReturn(1).when(parkingSpotDAO).getAvailableSlotCount(1, ParkingType.BIKE);
+        when(parkingSpotDAO.getNextAvailableSlot(1, ParkingType.CAR)).thenReturn(2);
+        when(ticketDAO.saveIncomingTicket(any(Ticket.class))).thenReturn(1);
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+        OccupancyFeed occupancyFeed = new OccupancyFeed(parkingService, 10, 60_000, 1, 1, 0);
+        parkingService.addListener(occupancyFeed);
+        gateServer.stop();
+        gateServer = new GateServer(0, 2, parkingService, null, occupancyFeed);
+        gateServer.start();
+        try {
+            HttpURLConnection con = (HttpURLConnection) new URL("http://localhost:" + gateServer.getPort() + "/occupancy/stream").openConnection();
+            assertEquals(200, con.getResponseCode());
+            assertTrue(con.getContentType().startsWith("text/event-stream"));
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream(), StandardCharsets.UTF_8))) {
+                assertEquals("event: occupancy", in.readLine());
+                assertEquals("data: [{\"lot\":1,\"type\":\"CAR\",\"free\":3},{\"lot\":1,\"type\":\"BIKE\",\"free\":1}]", in.readLine());
+                assertEquals("", in.readLine());
+
+                assertTrue(post("/entry?type=CAR&plate=AB123").startsWith("200"));
+                assertEquals("event: occupancy", in.readLine());
+                assertEquals("data: [{\"lot\":1,\"type\":\"CAR\",\"free\":2}]", in.readLine());
+
+                // un seul panneau autorisé
+                assertTrue(get("/occupancy/stream").startsWith("503"));
+                assertEquals("200 [{\"lot\":1,\"type\":\"CAR\",\"free\":2},{\"lot\":1,\"type\":\"BIKE\",\"free\":1}]", get("/occupancy"));
+            }
+        } finally {
+            occupancyFeed.close();
+        }
+    }
+
+    private String post(String path) throws Exception {
+        return request("POST", path);
+    }
+
+    private String get(String path) throws Exception {
+        return request("GET", path);
+    }
+
+    private String request(String method, String path) throws Exception {
+        HttpURLConnection con = (HttpURLConnection) new URL("http://localhost:" + gateServer.getPort() + path).openConnection();
+        con.setRequestMethod(method);
+        int status = con.getResponseCode();
+        try (InputStream in = status < 400 ? con.getInputStream() : con.getErrorStream()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                body.write(buffer, 0, read);
+            }
+            return status + " " + new String(body.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
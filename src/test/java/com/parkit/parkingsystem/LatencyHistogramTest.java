@@ -0,0 +1,77 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @AfterEach
+    public void tearDown() {
+        Metrics.setEnabled(true);
+    }
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMeanMicros(), 1e-9);
+        assertEquals(1000.0, histogram.getMaxMicros(), 1e-9);
+        // une classe couvre au plus 1/32 de sa valeur
+        assertEquals(500, histogram.getP50Micros(), 500 / 32.0);
+        assertEquals(990, histogram.getP99Micros(), 990 / 32.0);
+        assertEquals(1000, histogram.getP999Micros(), 1e-9);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.percentile(99));
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram("concurrent");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i % 5000);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400_000, histogram.getCount());
+        assertEquals(4999, histogram.percentile(100));
+    }
+
+    @Test
+    public void histogramsArePublishedInJmxAndDumped() throws Exception {
+        LatencyHistogram histogram = Metrics.histogram("LatencyHistogramTest.published");
+        assertSame(histogram, Metrics.histogram("LatencyHistogramTest.published"));
+        histogram.record(2_000_000);
+
+        ObjectName name = new ObjectName("com.parkit.parkingsystem:type=Latency,name=" + ObjectName.quote("LatencyHistogramTest.published"));
+        assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Count"));
+        assertTrue(Metrics.dump().contains("LatencyHistogramTest.published count=1 mean=2000.0us"));
+
+        // désactivées : aucune mesure enregistrée
+        Metrics.setEnabled(false);
+        histogram.recordSince(Metrics.start());
+        assertEquals(1, histogram.getCount());
+    }
+}
@@ -0,0 +1,169 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.OccupancyFeed;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class OccupancyFeedTest {
+
+    private final Map<String, Integer> free = new ConcurrentHashMap<>();
+
+    private ParkingService parkingService;
+    private OccupancyFeed feed;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        free.put("1CAR", 10);
+        free.put("1BIKE", 5);
+        free.put("2CAR", 20);
+        free.put("2BIKE", 0);
+        ParkingSpotDAO parkingSpotDAO = mock(ParkingSpotDAO.class);
+        when(parkingSpotDAO.getLotIds()).thenReturn(new TreeSet<>(Arrays.asList(1, 2)));
+        when(parkingSpotDAO.getAvailableSlotCount(anyInt(), any(ParkingType.class)))
+                .thenAnswer(invocation -> free.get("" + invocation.getArgument(0) + invocation.getArgument(1)));
+        parkingService = new ParkingService(parkingSpotDAO, mock(TicketDAO.class));
+        feed = new OccupancyFeed(parkingService, 50, 60_000, 2, 2, 0);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        feed.close();
+    }
+
+    @Test
+    public void burstOfEntriesIsPublishedOnce() throws Exception {
+        BlockingQueue<List<OccupancyFeed.Update>> received = new LinkedBlockingQueue<>();
+        feed.subscribe(received::add);
+
+        List<OccupancyFeed.Update> snapshot = received.poll(5, TimeUnit.SECONDS);
+        assertEquals("[{\"lot\":1,\"type\":\"CAR\",\"free\":10}, {\"lot\":1,\"type\":\"BIKE\",\"free\":5}, "
+                + "{\"lot\":2,\"type\":\"CAR\",\"free\":20}, {\"lot\":2,\"type\":\"BIKE\",\"free\":0}]", snapshot.toString());
+
+        for (int i = 0; i < 8; i++) {
+            free.put("1CAR", 9 - i);
+            feed.vehicleEntered(ticket(1, ParkingType.CAR));
+        }
+        // une entrée et une sortie dans la même fenêtre : le compteur n'a pas bougé
+        feed.vehicleEntered(ticket(2, ParkingType.CAR));
+        feed.vehicleExited(ticket(2, ParkingType.CAR));
+
+        assertEquals("[{\"lot\":1,\"type\":\"CAR\",\"free\":2}]", received.poll(5, TimeUnit.SECONDS).toString());
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, feed.getPublishedCount());
+        assertEquals(2, feed.getSnapshot().get(0).getFree());
+    }
+
+    @Test
+    public void slowSubscriberOnlyGetsLatestCounts() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<List<OccupancyFeed.Update>> slow = new LinkedBlockingQueue<>();
+        feed.subscribe(updates -> {
+            release.await();
+            slow.add(updates);
+        });
+        BlockingQueue<List<OccupancyFeed.Update>> fast = new LinkedBlockingQueue<>();
+        feed.subscribe(fast::add);
+        assertNotNull(fast.poll(5, TimeUnit.SECONDS));
+
+        for (int i = 1; i <= 3; i++) {
+            free.put("1BIKE", 5 - i);
+            feed.vehicleEntered(ticket(1, ParkingType.BIKE));
+            assertEquals("[{\"lot\":1,\"type\":\"BIKE\",\"free\":" + (5 - i) + "}]", fast.poll(5, TimeUnit.SECONDS).toString());
+        }
+
+        // le premier envoi (toutes les valeurs) était bloqué ; les trois mises à jour n'en font qu'une
+        release.countDown();
+        assertEquals(4, slow.poll(5, TimeUnit.SECONDS).size());
+        assertEquals("[{\"lot\":1,\"type\":\"BIKE\",\"free\":2}]", slow.poll(5, TimeUnit.SECONDS).toString());
+        assertNull(slow.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void subscribersAreLimitedAndFailingOnesDropped() throws Exception {
+        OccupancyFeed.Subscription failing = feed.subscribe(updates -> {
+            throw new IOException("sign disconnected");
+        });
+        for (int i = 0; i < 500 && !failing.isCancelled(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(failing.isCancelled());
+        assertEquals(0, feed.getSubscriberCount());
+
+        OccupancyFeed.Subscription first = feed.subscribe(updates -> { });
+        feed.subscribe(updates -> { });
+        assertThrows(IllegalStateException.class, () -> feed.subscribe(updates -> { }));
+
+        first.cancel();
+        assertEquals(1, feed.getSubscriberCount());
+        assertNotNull(feed.subscribe(updates -> { }));
+    }
+
+    @Test
+    public void stalledSubscribersAreDroppedAfterWriteTimeout() throws Exception {
+        // plus de panneaux figés que de threads de livraison : les autres abonnés sont tout de même servis
+        try (OccupancyFeed timedFeed = new OccupancyFeed(parkingService, 50, 60_000, 10, 2, 200)) {
+            CountDownLatch never = new CountDownLatch(1);
+            List<OccupancyFeed.Subscription> stalled = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                stalled.add(timedFeed.subscribe(updates -> never.await()));
+            }
+            BlockingQueue<List<OccupancyFeed.Update>> received = new LinkedBlockingQueue<>();
+            timedFeed.subscribe(received::add);
+
+            assertEquals(4, received.poll(5, TimeUnit.SECONDS).size());
+            free.put("2CAR", 19);
+            timedFeed.vehicleEntered(ticket(2, ParkingType.CAR));
+            assertEquals("[{\"lot\":2,\"type\":\"CAR\",\"free\":19}]", received.poll(5, TimeUnit.SECONDS).toString());
+            for (OccupancyFeed.Subscription subscription : stalled) {
+                for (int i = 0; i < 500 && !subscription.isCancelled(); i++) {
+                    Thread.sleep(10);
+                }
+                assertTrue(subscription.isCancelled());
+            }
+            assertEquals(1, timedFeed.getSubscriberCount());
+        }
+    }
+
+    @Test
+    public void changesRightAfterAPublicationAreNotDelayed() throws Exception {
+        // heartbeat d'une minute : une mise à jour perdue jusqu'au réveil suivant ferait échouer le poll
+        BlockingQueue<List<OccupancyFeed.Update>> received = new LinkedBlockingQueue<>();
+        feed.subscribe(received::add);
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+
+        for (int i = 1; i <= 20; i++) {
+            free.put("1CAR", 10 - i);
+            feed.vehicleEntered(ticket(1, ParkingType.CAR));
+            assertEquals("[{\"lot\":1,\"type\":\"CAR\",\"free\":" + (10 - i) + "}]", received.poll(2, TimeUnit.SECONDS).toString());
+        }
+    }
+
+    private static Ticket ticket(int lotId, ParkingType parkingType) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, lotId, 0, parkingType, false));
+        ticket.setVehicleRegNumber("ABC");
+        return ticket;
+    }
+}
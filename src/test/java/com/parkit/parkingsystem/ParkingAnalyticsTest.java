@@ -0,0 +1,75 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingAnalytics;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParkingAnalyticsTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private final AtomicLong now = new AtomicLong(1_000 * MINUTE);
+    private final ParkingAnalytics analytics = new ParkingAnalytics(10, now::get);
+
+    @Test
+    public void occupancyFollowsEntriesAndExits() {
+        analytics.setOccupied(ParkingType.CAR, 2);
+
+        analytics.vehicleEntered(ticket(ParkingType.CAR, 0, 0));
+        analytics.vehicleEntered(ticket(ParkingType.BIKE, 0, 0));
+        analytics.vehicleExited(ticket(ParkingType.CAR, 45 * MINUTE, 1.5));
+
+        assertEquals(2, analytics.getOccupied(ParkingType.CAR));
+        assertEquals(1, analytics.getOccupied(ParkingType.BIKE));
+        assertEquals(1, analytics.getArrivals(ParkingType.CAR));
+        assertEquals(1, analytics.getDepartures(ParkingType.CAR));
+        assertEquals(0.1, analytics.getArrivalsPerMinute(ParkingType.CAR), 1e-9);
+        assertEquals(1.5, analytics.getRevenue(ParkingType.CAR), 1e-9);
+        assertEquals(0, analytics.getRevenue(ParkingType.BIKE), 1e-9);
+    }
+
+    @Test
+    public void eventsLeaveTheWindowAfterWindowMinutes() {
+        analytics.vehicleExited(ticket(ParkingType.CAR, 2 * 60 * MINUTE, 3.0));
+        now.addAndGet(5 * MINUTE);
+        analytics.vehicleExited(ticket(ParkingType.CAR, 2 * 60 * MINUTE, 3.0));
+        assertEquals(6.0, analytics.getRevenue(ParkingType.CAR), 1e-9);
+
+        now.addAndGet(5 * MINUTE);
+        assertEquals(1, analytics.getDepartures(ParkingType.CAR));
+        assertEquals(3.0, analytics.getRevenue(ParkingType.CAR), 1e-9);
+
+        // longue inactivité : tout l'anneau a expiré
+        now.addAndGet(1_000 * MINUTE);
+        assertEquals(0, analytics.getDepartures(ParkingType.CAR));
+        assertEquals(0, analytics.getRevenue(ParkingType.CAR), 1e-9);
+        assertArrayEquals(new int[8], analytics.getDwellHistogram(ParkingType.CAR));
+    }
+
+    @Test
+    public void dwellTimesAreBucketed() {
+        analytics.vehicleExited(ticket(ParkingType.CAR, 10 * MINUTE, 0));
+        analytics.vehicleExited(ticket(ParkingType.CAR, 15 * MINUTE, 0));
+        analytics.vehicleExited(ticket(ParkingType.CAR, 90 * MINUTE, 2.25));
+        analytics.vehicleExited(ticket(ParkingType.CAR, 3 * 24 * 60 * MINUTE, 108));
+
+        assertArrayEquals(new long[]{15, 30, 60, 120, 240, 480, 1440}, ParkingAnalytics.getDwellLimitsMinutes());
+        assertArrayEquals(new int[]{1, 1, 0, 1, 0, 0, 0, 1}, analytics.getDwellHistogram(ParkingType.CAR));
+    }
+
+    private Ticket ticket(ParkingType parkingType, long dwellMillis, double price) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+        ticket.setInTime(new Date(now.get() - dwellMillis));
+        ticket.setOutTime(new Date(now.get()));
+        ticket.setPrice(price);
+        return ticket;
+    }
+}
@@ -1,10 +1,16 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketStore;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingEventListener;
 import com.parkit.parkingsystem.service.ParkingService;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,6 +20,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.sql.SQLException;
 import java.util.Date;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -55,16 +62,24 @@ public class ParkingServiceTest {
 
     @Test
     public void processExitingVehicleTest(){
-        // Arrange : simuler que le véhicule est déjà venu (plus d'un ticket)
-        when(ticketDAO.getNbTicket(anyString())).thenReturn(2);
+        // Arrange : la DAO clôture le ticket ouvert et applique le tarif dans sa transaction
+        when(ticketDAO.saveOutgoingTicket(eq("ABCDEF"), any(Date.class), any(FareCalculatorService.class)))
+                .thenAnswer(invocation -> {
+                    Ticket ticket = ticketDAO.getTicket("ABCDEF");
+                    ticket.setOutTime(invocation.getArgument(1));
+                    invocation.<FareCalculatorService>getArgument(2).calculateFare(ticket, true);
+                    ticket.getParkingSpot().setAvailable(true);
+                    return ticket;
+                });
 
         // Act : traiter la sortie du véhicule
         parkingService.processExitingVehicle();
 
-        // Assert : vérifier que getNbTicket a été appelé avec le numéro de plaque "ABCDEF"
-        verify(ticketDAO, Mockito.times(1)).getNbTicket("ABCDEF");
-        // Et vérifier que la mise à jour de la disponibilité de la place a bien été effectuée
-        verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
+        // Assert : une seule opération DAO pour la sortie, puis la place est rendue à l'allocateur
+        verify(ticketDAO, Mockito.times(1)).saveOutgoingTicket(eq("ABCDEF"), any(Date.class), any(FareCalculatorService.class));
+        verify(ticketDAO, never()).getNbTicket(anyString());
+        verify(ticketDAO, never()).updateTicket(any(Ticket.class));
+        verify(parkingSpotDAO, Mockito.times(1)).releaseSlot(any(ParkingSpot.class));
     }
     @Test
     public void testProcessIncomingVehicle() {
@@ -72,46 +87,49 @@ public class ParkingServiceTest {
         // Simule la saisie de la sélection du type de véhicule (1 = CAR)
         when(inputReaderUtil.readSelection()).thenReturn(1);
         // Simule la récupération d'une place de parking disponible pour une voiture
-        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
-        // Simule l'enregistrement du ticket avec succès
-        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
-        // Simule qu'il s'agit du premier ticket pour ce véhicule (pas de réduction)
-        when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(0);
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingSpot.DEFAULT_LOT_ID, ParkingType.CAR)).thenReturn(1);
+        // Simule une entrée enregistrée avec succès, premier ticket pour ce véhicule (pas de réduction)
+        when(ticketDAO.saveIncomingTicket(any(Ticket.class))).thenReturn(1);
 
         // Act
         parkingService.processIncomingVehicle();
 
         // Assert
-        // Vérifie que la place de parking a bien été mise à jour (passage en indisponible)
-        verify(parkingSpotDAO, times(1)).updateParking(any(ParkingSpot.class));
-        // Vérifie que le ticket a bien été sauvegardé
-        verify(ticketDAO, times(1)).saveTicket(any(Ticket.class));
-        // Vérifie que le comptage du nombre de tickets a été effectué pour le véhicule "ABCDEF"
-        verify(ticketDAO, times(1)).getNbTicket("ABCDEF");
+        // Vérifie que la place, le ticket et le comptage passent par une seule opération transactionnelle
+        verify(ticketDAO, times(1)).saveIncomingTicket(any(Ticket.class));
+        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
+        verify(ticketDAO, never()).getNbTicket(anyString());
+        verify(parkingSpotDAO, never()).releaseSlot(any(ParkingSpot.class));
+    }
+    @Test
+    public void testProcessIncomingVehicleEntryFailedReleasesSpot() {
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingSpot.DEFAULT_LOT_ID, ParkingType.CAR)).thenReturn(1);
+        // Simule une transaction annulée
+        when(ticketDAO.saveIncomingTicket(any(Ticket.class))).thenReturn(TicketDAO.ENTRY_FAILED);
+
+        parkingService.processIncomingVehicle();
+
+        // La place réservée en mémoire doit être rendue
+        verify(parkingSpotDAO, times(1)).releaseSlot(any(ParkingSpot.class));
     }
     @Test
     public void processExitingVehicleTestUnableUpdate() throws Exception {
         // Arrange
         // Simuler la saisie du véhicule
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
-        // Simuler le retour d'un ticket pour le véhicule
-        Ticket ticket = new Ticket();
-        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
-        ticket.setVehicleRegNumber("ABCDEF");
-        ticket.setInTime(new Date());
-        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
-        // Simuler un échec lors de la mise à jour du ticket
-        when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(false);
+        // Simuler un échec de la transaction de sortie (aucun ticket ouvert ou erreur SQL)
+        when(ticketDAO.saveOutgoingTicket(eq("ABCDEF"), any(Date.class), any(FareCalculatorService.class))).thenReturn(null);
 
         // Act
         parkingService.processExitingVehicle();
 
         // Assert
-        // Vérifier que la méthode updateTicket a bien été appelée
-        verify(ticketDAO, times(1)).updateTicket(any(Ticket.class));
-        // Vérifier que, suite à l'échec de la mise à jour du ticket,
-        // on ne remet PAS la place de parking en disponibilité
+        // Vérifier que la sortie a bien été tentée
+        verify(ticketDAO, times(1)).saveOutgoingTicket(eq("ABCDEF"), any(Date.class), any(FareCalculatorService.class));
+        // Vérifier que, suite à l'échec, on ne remet PAS la place de parking en disponibilité
         verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
+        verify(parkingSpotDAO, never()).releaseSlot(any(ParkingSpot.class));
     }
     @Test
     public void testGetNextParkingNumberIfAvailable() throws Exception {
@@ -134,6 +152,8 @@ public class ParkingServiceTest {
         // Vérification supplémentaire :
         // s'assurer que la méthode getNextAvailableSlot a bien été appelée
         verify(parkingSpotDAO, times(1)).getNextAvailableSlot(ParkingType.CAR);
+        // la place consultée n'est pas retenue
+        verify(parkingSpotDAO, times(1)).releaseSlot(result);
     }
     @Test
     public void testGetNextParkingNumberIfAvailableParkingNumberNotFound() throws Exception {
@@ -153,6 +173,7 @@ public class ParkingServiceTest {
 
         // Vérifier que la méthode DAO a bien été appelée une fois avec le type CAR
         verify(parkingSpotDAO, times(1)).getNextAvailableSlot(ParkingType.CAR);
+        verify(parkingSpotDAO, never()).releaseSlot(any(ParkingSpot.class));
     }
     @Test
     public void testGetNextParkingNumberIfAvailableParkingNumberWrongArgument() throws Exception {
@@ -168,4 +189,129 @@ public class ParkingServiceTest {
         // Vérifier que la méthode du DAO n'est jamais appelée
         verify(parkingSpotDAO, never()).getNextAvailableSlot(any(ParkingType.class));
     }
-}
\ No newline at end of file
+    @Test
+    public void enterReturnsSpotAndRecurringUser() {
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingSpot.DEFAULT_LOT_ID, ParkingType.BIKE)).thenReturn(4);
+        when(ticketDAO.saveIncomingTicket(any(Ticket.class))).thenReturn(2);
+
+        EntryResult result = parkingService.enter(ParkingType.BIKE, "AB123");
+
+        assertTrue(result.isParked());
+        assertEquals(4, result.getParkingNumber());
+        assertEquals("AB123", result.getTicket().getVehicleRegNumber());
+        assertTrue(result.isRecurringUser());
+        verifyZeroInteractions(inputReaderUtil);
+    }
+    @Test
+    public void enterWhenParkingFull() {
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingSpot.DEFAULT_LOT_ID, ParkingType.CAR)).thenReturn(0);
+
+        EntryResult result = parkingService.enter(ParkingType.CAR, "AB123");
+
+        assertEquals(EntryResult.Status.PARKING_FULL, result.getStatus());
+        verify(ticketDAO, never()).saveIncomingTicket(any(Ticket.class));
+    }
+    @Test
+    public void enterTriesNextSpotWhenSpotIsAlreadyTaken() {
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingSpot.DEFAULT_LOT_ID, ParkingType.CAR)).thenReturn(1, 2);
+        // la place 1 a été prise en base par une autre instance
+        when(ticketDAO.saveIncomingTicket(any(Ticket.class))).thenReturn(TicketDAO.SPOT_ALREADY_TAKEN, 1);
+
+        EntryResult result = parkingService.enter(ParkingType.CAR, "AB123");
+
+        assertTrue(result.isParked());
+        assertEquals(2, result.getParkingNumber());
+        verify(ticketDAO, times(2)).saveIncomingTicket(any(Ticket.class));
+        verify(parkingSpotDAO, never()).releaseSlot(any(ParkingSpot.class));
+    }
+    @Test
+    public void enterRoutesToRequestedLot() {
+        when(parkingSpotDAO.getNextAvailableSlot(2, ParkingType.CAR)).thenReturn(21);
+        when(ticketDAO.saveIncomingTicket(any(Ticket.class))).thenReturn(TicketDAO.ENTRY_FAILED);
+
+        EntryResult result = parkingService.enter(2, ParkingType.CAR, "AB123");
+
+        // la place réservée est rendue à l'allocateur de son parking
+        assertEquals(EntryResult.Status.FAILED, result.getStatus());
+        verify(parkingSpotDAO).releaseSlot(argThat(spot -> spot.getId() == 21 && spot.getLotId() == 2));
+        verify(parkingSpotDAO, never()).getNextAvailableSlot(eq(ParkingSpot.DEFAULT_LOT_ID), any(ParkingType.class));
+    }
+    @Test
+    public void enterRejectsInvalidInput() {
+        assertThrows(IllegalArgumentException.class, () -> parkingService.enter(null, "AB123"));
+        assertThrows(IllegalArgumentException.class, () -> parkingService.enter(ParkingType.CAR, " "));
+        assertThrows(IllegalArgumentException.class, () -> parkingService.exit("ABCDEFGHIJK"));
+        verifyZeroInteractions(parkingSpotDAO, ticketDAO);
+    }
+    @Test
+    public void exitWithoutOpenTicket() {
+        when(ticketDAO.saveOutgoingTicket(eq("AB123"), any(Date.class), any(FareCalculatorService.class))).thenReturn(null);
+
+        ExitResult result = parkingService.exit("AB123");
+
+        assertEquals(ExitResult.Status.NO_OPEN_TICKET, result.getStatus());
+        verify(parkingSpotDAO, never()).releaseSlot(any(ParkingSpot.class));
+    }
+    @Test
+    public void exitBeforeEntryTimeIsReportedDistinctly() {
+        when(ticketDAO.saveOutgoingTicket(eq("AB123"), any(Date.class), any(FareCalculatorService.class)))
+                .thenThrow(new IllegalArgumentException("Out time provided is incorrect"));
+
+        ExitResult result = parkingService.exit("AB123");
+
+        assertEquals(ExitResult.Status.OUT_TIME_BEFORE_ENTRY, result.getStatus());
+        verify(parkingSpotDAO, never()).releaseSlot(any(ParkingSpot.class));
+    }
+    @Test
+    public void listenersAreNotifiedOfRecordedEntriesAndExits() {
+        ParkingEventListener listener = mock(ParkingEventListener.class);
+        parkingService.addListener(listener);
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingSpot.DEFAULT_LOT_ID, ParkingType.CAR)).thenReturn(1, 0);
+        when(ticketDAO.saveIncomingTicket(any(Ticket.class))).thenReturn(1);
+        Ticket closed = new Ticket();
+        closed.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, true));
+        when(ticketDAO.saveOutgoingTicket(eq("AB123"), any(Date.class), any(FareCalculatorService.class))).thenReturn(closed);
+
+        EntryResult result = parkingService.enter(ParkingType.CAR, "AB123");
+        parkingService.enter(ParkingType.CAR, "CD456");
+        parkingService.exit("AB123");
+
+        verify(listener).vehicleEntered(result.getTicket());
+        verify(listener).vehicleExited(closed);
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void occupancyIsReadFromSpotCounters() {
+        when(parkingSpotDAO.getSpotCount(3, ParkingType.CAR)).thenReturn(40);
+        when(parkingSpotDAO.getAvailableSlotCount(3, ParkingType.CAR)).thenReturn(6);
+
+        assertEquals(8_500, parkingService.getOccupancyBasisPoints(3, ParkingType.CAR));
+        assertEquals(0, parkingService.getOccupancyBasisPoints(4, ParkingType.BIKE));
+        verify(parkingSpotDAO, never()).getOccupiedSlotCount(any(ParkingType.class));
+    }
+
+    @Test
+    public void exitDuringDatabaseOutageFailsWithoutReleasingSpot() throws Exception {
+        DataBaseConfig unreachable = mock(DataBaseConfig.class);
+        when(unreachable.getConnection()).thenThrow(new SQLException("connection refused"));
+        TicketDAO failingTicketDAO = new TicketDAO();
+        failingTicketDAO.dataBaseConfig = unreachable;
+
+        ExitResult result = new ParkingService(parkingSpotDAO, failingTicketDAO).exit("ABCDEF");
+
+        assertEquals(ExitResult.Status.FAILED, result.getStatus());
+        verify(parkingSpotDAO, never()).releaseSlot(any(ParkingSpot.class));
+    }
+
+    @Test
+    public void entryInDoubtKeepsSpotOutOfCirculation() {
+        when(parkingSpotDAO.getNextAvailableSlot(1, ParkingType.CAR)).thenReturn(2);
+        when(ticketDAO.saveIncomingTicket(any(Ticket.class))).thenReturn(TicketStore.ENTRY_IN_DOUBT);
+
+        EntryResult result = parkingService.enter(1, ParkingType.CAR, "ABCDEF");
+
+        assertEquals(EntryResult.Status.FAILED, result.getStatus());
+        verify(parkingSpotDAO, never()).releaseSlot(any(ParkingSpot.class));
+    }
+}
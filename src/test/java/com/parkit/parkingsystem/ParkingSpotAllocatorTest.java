@@ -0,0 +1,85 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotAllocator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParkingSpotAllocatorTest {
+
+    private ParkingSpotAllocator allocator;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        allocator = new ParkingSpotAllocator();
+        allocator.release(ParkingType.CAR, 3);
+        allocator.release(ParkingType.CAR, 1);
+        allocator.release(ParkingType.CAR, 2);
+        allocator.release(ParkingType.BIKE, 4);
+    }
+
+    @Test
+    public void claimReturnsLowestFreeSpotOfType() {
+        assertEquals(1, allocator.claim(ParkingType.CAR));
+        assertEquals(2, allocator.claim(ParkingType.CAR));
+        assertEquals(4, allocator.claim(ParkingType.BIKE));
+        assertEquals(1, allocator.getFreeCount(ParkingType.CAR));
+    }
+
+    @Test
+    public void claimReturnsZeroWhenFull() {
+        allocator.claim(ParkingType.BIKE);
+        assertEquals(0, allocator.claim(ParkingType.BIKE));
+        assertEquals(0, allocator.getFreeCount(ParkingType.BIKE));
+    }
+
+    @Test
+    public void releasedSpotIsClaimedAgain() {
+        allocator.claim(ParkingType.CAR);
+        allocator.release(ParkingType.CAR, 1);
+        allocator.release(ParkingType.CAR, 1); // libérer deux fois ne crée pas de doublon
+        assertEquals(3, allocator.getFreeCount(ParkingType.CAR));
+        assertEquals(1, allocator.claim(ParkingType.CAR));
+    }
+
+    @Test
+    public void concurrentClaimsNeverShareASpot() throws Exception {
+        ParkingSpotAllocator bigLot = new ParkingSpotAllocator();
+        for (int i = 1; i <= 1000; i++) {
+            bigLot.release(ParkingType.CAR, i);
+        }
+        Set<Integer> claimed = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        for (int t = 0; t < 16; t++) {
+            executor.submit(() -> {
+                start.await();
+                int number;
+                while ((number = bigLot.claim(ParkingType.CAR)) > 0) {
+                    if (!claimed.add(number)) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(0, duplicates.get());
+        assertEquals(1000, claimed.size());
+        assertEquals(0, bigLot.getFreeCount(ParkingType.CAR));
+    }
+}
@@ -0,0 +1,123 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Deux parkings dans la même base : places 1 à 3 et 6 dans le parking 1, places 4, 5, 7 et 8 au niveau 2 du parking 2
+public class ParkingSpotDAOTest {
+
+    private final EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("parkingLots");
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        new DataBasePrepareService(dataBaseConfig).createParkingSpots(5, 3);
+        try (Connection con = dataBaseConfig.getConnection()) {
+            con.prepareStatement("update parking set LOT_ID = 2, LEVEL = 2 where PARKING_NUMBER in (4, 5, 7, 8)").execute();
+            con.prepareStatement("update parking set TYPE = 'CAR' where PARKING_NUMBER = 6").execute();
+        }
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.loadAvailableSlots();
+    }
+
+    @Test
+    public void spotsAreAllocatedPerLot() {
+        assertEquals(Arrays.asList(1, 2), Arrays.asList(parkingSpotDAO.getLotIds().toArray()));
+        assertEquals(4, parkingSpotDAO.getAvailableSlotCount(1, ParkingType.CAR));
+        assertEquals(2, parkingSpotDAO.getAvailableSlotCount(2, ParkingType.CAR));
+        assertEquals(2, parkingSpotDAO.getAvailableSlotCount(2, ParkingType.BIKE));
+        assertEquals(6, parkingSpotDAO.getAvailableSlotCount(ParkingType.CAR));
+
+        assertEquals(4, parkingSpotDAO.getNextAvailableSlot(2, ParkingType.CAR));
+        assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(0, parkingSpotDAO.getNextAvailableSlot(1, ParkingType.BIKE));
+        assertEquals(0, parkingSpotDAO.getNextAvailableSlot(3, ParkingType.CAR));
+    }
+
+    @Test
+    public void exitReleasesSpotToItsLot() {
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+
+        EntryResult entry = parkingService.enter(2, ParkingType.CAR, "ABC");
+        assertEquals(4, entry.getParkingNumber());
+        assertEquals(1, parkingSpotDAO.getAvailableSlotCount(2, ParkingType.CAR));
+
+        Ticket ticket = ticketDAO.getTicket("ABC");
+        assertEquals(2, ticket.getParkingSpot().getLotId());
+        assertEquals(2, ticket.getParkingSpot().getLevel());
+
+        ExitResult exit = parkingService.exit("ABC");
+        assertTrue(exit.isExited());
+        assertEquals(2, exit.getTicket().getParkingSpot().getLotId());
+        assertEquals(2, parkingSpotDAO.getAvailableSlotCount(2, ParkingType.CAR));
+        assertEquals(4, parkingSpotDAO.getAvailableSlotCount(1, ParkingType.CAR));
+    }
+
+    @Test
+    public void exitBeforeEntryTimeKeepsTicketOpen() {
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+        assertTrue(parkingService.enter(1, ParkingType.CAR, "ABC").isParked());
+
+        ExitResult exit = parkingService.exit("ABC", new Date(System.currentTimeMillis() - 3_600_000L));
+
+        assertEquals(ExitResult.Status.OUT_TIME_BEFORE_ENTRY, exit.getStatus());
+        assertNull(ticketDAO.getTicket("ABC").getOutTime());
+        assertEquals(3, parkingSpotDAO.getAvailableSlotCount(1, ParkingType.CAR));
+        assertTrue(parkingService.exit("ABC").isExited());
+    }
+
+    @Test
+    public void spotsFreedThroughAnotherInstanceAreReused() {
+        parkingSpotDAO.setResyncIntervalMillis(0);
+        ParkingService instanceA = new ParkingService(parkingSpotDAO, ticketDAO);
+        ParkingSpotDAO otherParkingSpotDAO = new ParkingSpotDAO();
+        otherParkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        otherParkingSpotDAO.loadAvailableSlots();
+        otherParkingSpotDAO.setResyncIntervalMillis(0);
+        TicketDAO otherTicketDAO = new TicketDAO();
+        otherTicketDAO.dataBaseConfig = dataBaseConfig;
+        ParkingService instanceB = new ParkingService(otherParkingSpotDAO, otherTicketDAO);
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(instanceA.enter(1, ParkingType.CAR, "A" + round + i).isParked());
+            }
+            assertEquals(EntryResult.Status.PARKING_FULL, instanceA.enter(1, ParkingType.CAR, "A" + round + 4).getStatus());
+            for (int i = 0; i < 4; i++) {
+                assertTrue(instanceB.exit("A" + round + i).isExited());
+            }
+        }
+
+        //B écarte les places prises par A, puis les retrouve une fois libérées par A
+        for (int i = 0; i < 4; i++) {
+            assertTrue(instanceA.enter(1, ParkingType.CAR, "C" + i).isParked());
+        }
+        assertEquals(EntryResult.Status.PARKING_FULL, instanceB.enter(1, ParkingType.CAR, "B0").getStatus());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(instanceA.exit("C" + i).isExited());
+        }
+        for (int i = 0; i < 4; i++) {
+            assertTrue(instanceB.enter(1, ParkingType.CAR, "B" + i).isParked());
+        }
+        assertEquals(0, otherParkingSpotDAO.getAvailableSlotCount(1, ParkingType.CAR));
+    }
+}
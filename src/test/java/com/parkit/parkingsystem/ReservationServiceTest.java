@@ -0,0 +1,146 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.EmbeddedStore;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ReservationDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.Reservation;
+import com.parkit.parkingsystem.model.ReservationResult;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.ReservationCalendar;
+import com.parkit.parkingsystem.service.ReservationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReservationServiceTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+
+    private final AtomicLong now = new AtomicLong(1_000_000 * HOUR);
+
+    private EmbeddedStore store;
+    private ReservationService reservationService;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        store = EmbeddedStore.open(Files.createTempDirectory("reservations"), false, 1000);
+        store.defineParkingSpot(1, ParkingType.CAR);
+        store.defineParkingSpot(2, ParkingType.CAR);
+        store.defineParkingSpot(3, ParkingType.BIKE);
+        reservationService = new ReservationService(store, null, 15 * MINUTE, 15 * MINUTE, now::get);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        store.close();
+    }
+
+    @Test
+    public void calendarCountsOverlappingWindowsAndReleasesNodes() {
+        ReservationCalendar calendar = new ReservationCalendar(15 * MINUTE);
+        long t0 = now.get();
+        calendar.add(t0, t0 + 2 * HOUR, 1);
+        calendar.add(t0 + HOUR, t0 + 3 * HOUR, 1);
+        calendar.add(t0 + 10 * MINUTE, t0 + 20 * MINUTE, 1);
+
+        assertEquals(2, calendar.getMax(t0, t0 + 3 * HOUR));
+        assertEquals(1, calendar.getMax(t0 + 2 * HOUR, t0 + 3 * HOUR));
+        assertEquals(2, calendar.get(t0 + 15 * MINUTE));
+        assertEquals(0, calendar.getMax(t0 + 3 * HOUR, t0 + 4 * HOUR));
+
+        calendar.add(t0 + HOUR, t0 + 3 * HOUR, -1);
+        calendar.add(t0, t0 + 2 * HOUR, -1);
+        calendar.add(t0 + 10 * MINUTE, t0 + 20 * MINUTE, -1);
+        assertEquals(0, calendar.getMax(0, t0 + 100 * HOUR));
+        assertEquals(1, calendar.getNodeCount());
+    }
+
+    @Test
+    public void reservationsAreLimitedBySpotsOnEveryOverlappingSlot() {
+        long t0 = now.get() + 24 * HOUR;
+        assertTrue(reserve("AAA", t0, t0 + 2 * HOUR).isBooked());
+        assertTrue(reserve("BBB", t0 + HOUR, t0 + 3 * HOUR).isBooked());
+
+        // deux réservations de t0+1h à t0+2h : plus de voiture possible sur ce créneau
+        assertEquals(ReservationResult.Status.FULL, reserve("CCC", t0 + 90 * MINUTE, t0 + 4 * HOUR).getStatus());
+        assertEquals(0, reservationService.getAvailableCount(1, ParkingType.CAR, new Date(t0), new Date(t0 + 4 * HOUR)));
+        ReservationResult later = reserve("CCC", t0 + 2 * HOUR, t0 + 4 * HOUR);
+        assertTrue(later.isBooked());
+        assertTrue(reservationService.reserve(1, ParkingType.BIKE, "DDD", new Date(t0), new Date(t0 + HOUR)).isBooked());
+        assertEquals(ReservationResult.Status.FULL, reservationService.reserve(
+                7, ParkingType.CAR, "DDD", new Date(t0), new Date(t0 + HOUR)).getStatus());
+
+        assertTrue(reservationService.cancel(later.getReservation().getId()));
+        assertFalse(reservationService.cancel(later.getReservation().getId()));
+        Reservation replacing = reserve("EEE", t0 + 150 * MINUTE, t0 + 4 * HOUR).getReservation();
+        assertNotNull(replacing);
+
+        // réservations terminées : leurs créneaux sont libérés
+        now.addAndGet(30 * 24 * HOUR);
+        assertEquals(2, reservationService.getAvailableCount(1, ParkingType.CAR, new Date(t0), new Date(t0 + 4 * HOUR)));
+        assertNull(reservationService.getReservation(replacing.getId()));
+        assertEquals(2, reservationService.getAvailableCount(1, ParkingType.CAR, new Date(now.get()), new Date(now.get() + HOUR)));
+    }
+
+    @Test
+    public void reservedSpotIsKeptForItsVehicleOnArrival() {
+        ParkingService parkingService = new ParkingService(store, store);
+        parkingService.setReservationService(reservationService);
+        Reservation reservation = reserve("RES", now.get() + 10 * MINUTE, now.get() + 2 * HOUR).getReservation();
+        assertEquals(1, reservationService.getHeldCount(1, ParkingType.CAR, new Date(now.get())));
+
+        assertTrue(parkingService.enter(1, ParkingType.CAR, "WALK1", new Date(now.get())).isParked());
+        // dernière place retenue pour RES
+        EntryResult refused = parkingService.enter(1, ParkingType.CAR, "WALK2", new Date(now.get()));
+        assertEquals(EntryResult.Status.PARKING_FULL, refused.getStatus());
+        assertEquals(1, store.getAvailableSlotCount(1, ParkingType.CAR));
+
+        assertTrue(parkingService.enter(1, ParkingType.CAR, "RES", new Date(now.get())).isParked());
+        assertEquals(Reservation.Status.ARRIVED, reservation.getStatus());
+        assertEquals(0, reservationService.getHeldCount(1, ParkingType.CAR, new Date(now.get())));
+        assertFalse(reservationService.cancel(reservation.getId()));
+        // les vélos ne sont pas concernés
+        assertTrue(parkingService.enter(1, ParkingType.BIKE, "WALK3", new Date(now.get())).isParked());
+    }
+
+    @Test
+    public void reservationsAreStoredAndReloaded() throws Exception {
+        EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("reservations");
+        new DataBasePrepareService(dataBaseConfig).createParkingSpots(1, 1);
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.loadAvailableSlots();
+        ReservationDAO reservationDAO = new ReservationDAO();
+        reservationDAO.dataBaseConfig = dataBaseConfig;
+        long t0 = (System.currentTimeMillis() / 1000 + 3600) * 1000;
+        ReservationService first = new ReservationService(parkingSpotDAO, reservationDAO, 15 * MINUTE, 15 * MINUTE);
+        Reservation booked = first.reserve(1, ParkingType.CAR, "AAA", new Date(t0), new Date(t0 + HOUR)).getReservation();
+        int cancelled = first.reserve(1, ParkingType.BIKE, "BBB", new Date(t0), new Date(t0 + HOUR)).getReservation().getId();
+        assertTrue(first.cancel(cancelled));
+
+        ReservationService reloaded = new ReservationService(parkingSpotDAO, reservationDAO, 15 * MINUTE, 15 * MINUTE);
+        reloaded.load();
+
+        assertEquals("AAA", reloaded.getReservation(booked.getId()).getVehicleRegNumber());
+        assertEquals(t0, reloaded.getReservation(booked.getId()).getStartTime().getTime());
+        assertNull(reloaded.getReservation(cancelled));
+        assertEquals(ReservationResult.Status.FULL,
+                reloaded.reserve(1, ParkingType.CAR, "CCC", new Date(t0 + 30 * MINUTE), new Date(t0 + 2 * HOUR)).getStatus());
+        assertTrue(reloaded.reserve(1, ParkingType.BIKE, "CCC", new Date(t0), new Date(t0 + HOUR)).isBooked());
+    }
+
+    private ReservationResult reserve(String plate, long from, long to) {
+        return reservationService.reserve(1, ParkingType.CAR, plate, new Date(from), new Date(to));
+    }
+}
@@ -0,0 +1,89 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Scripts interrompus après un premier changement validé : la relance doit aller jusqu'au bout
+public class SchemaMigratorTest {
+
+    @Test
+    public void interruptedIndexScriptCanBeRerun() throws Exception {
+        EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("schemaIndexRerun");
+        try (Connection con = dataBaseConfig.getConnection();
+             Statement st = con.createStatement()) {
+            st.execute("create table schema_version(VERSION int PRIMARY KEY, DESCRIPTION varchar(200) NOT NULL, INSTALLED_ON DATETIME NOT NULL)");
+            st.execute("insert into schema_version values(1, 'Baseline parking and ticket tables', now())");
+            st.execute("create table parking(PARKING_NUMBER int PRIMARY KEY, AVAILABLE bool NOT NULL, TYPE varchar(10) NOT NULL)");
+            st.execute("create table ticket(ID int PRIMARY KEY AUTO_INCREMENT, PARKING_NUMBER int NOT NULL, VEHICLE_REG_NUMBER varchar(10) NOT NULL,"
+                    + " PRICE double, IN_TIME DATETIME NOT NULL, OUT_TIME DATETIME)");
+            // V2 arrêté après son premier index
+            st.execute("create index IDX_TICKET_VEHICLE_OUT_ID on ticket(VEHICLE_REG_NUMBER, OUT_TIME, ID)");
+        }
+
+        int version = new SchemaMigrator(dataBaseConfig).migrate();
+
+        assertTrue(version >= 2);
+        assertTrue(indexExists(dataBaseConfig, "TICKET", "IDX_TICKET_VEHICLE_ID"));
+        assertEquals(version, new SchemaMigrator(dataBaseConfig).migrate());
+    }
+
+    @Test
+    public void interruptedColumnScriptCanBeRerun() throws Exception {
+        EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("schemaColumnRerun");
+        new SchemaMigrator(dataBaseConfig).migrate();
+        try (Connection con = dataBaseConfig.getConnection();
+             Statement st = con.createStatement()) {
+            // V4 arrêté après sa première colonne : LEVEL et l'index du parking manquent, les versions suivantes aussi
+            st.execute("delete from schema_version where VERSION >= 4");
+            st.execute("drop index IDX_PARKING_LOT");
+            st.execute("alter table parking drop column LEVEL");
+        }
+
+        new SchemaMigrator(dataBaseConfig).migrate();
+
+        assertTrue(indexExists(dataBaseConfig, "PARKING", "IDX_PARKING_LOT"));
+        try (Connection con = dataBaseConfig.getConnection();
+             ResultSet rs = con.getMetaData().getColumns(con.getCatalog(), null, "PARKING", "LEVEL")) {
+            assertTrue(rs.next());
+        }
+    }
+
+    @Test
+    public void interruptedArchiveScriptCanBeRerun() throws Exception {
+        EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("schemaArchiveRerun");
+        new SchemaMigrator(dataBaseConfig).migrate();
+        try (Connection con = dataBaseConfig.getConnection();
+             Statement st = con.createStatement()) {
+            // V5 arrêté après ticket_archive et son index : ticket_archive_count manque
+            st.execute("delete from schema_version where VERSION >= 5");
+            st.execute("drop table ticket_archive_count");
+        }
+
+        new SchemaMigrator(dataBaseConfig).migrate();
+
+        assertTrue(indexExists(dataBaseConfig, "TICKET_ARCHIVE", "IDX_TICKET_ARCHIVE_VEHICLE_ID"));
+        try (Connection con = dataBaseConfig.getConnection();
+             ResultSet rs = con.getMetaData().getTables(con.getCatalog(), null, "TICKET_ARCHIVE_COUNT", null)) {
+            assertTrue(rs.next());
+        }
+    }
+
+    private static boolean indexExists(EmbeddedDataBaseTestConfig dataBaseConfig, String table, String index) throws Exception {
+        try (Connection con = dataBaseConfig.getConnection();
+             ResultSet rs = con.getMetaData().getIndexInfo(con.getCatalog(), null, table, false, false)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Plusieurs instances, chacune avec son propre allocateur en mémoire, se disputent les mêmes places en base :
+ * chaque place ne doit être attribuée qu'une fois.
+ */
+public class SpotClaimStressTest {
+
+    private static final int SPOTS = 300;
+    private static final int INSTANCES = 4;
+    private static final int THREADS = 32;
+
+    private final EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("spotClaimStress");
+
+    @BeforeEach
+    public void setUpPerTest() {
+        new DataBasePrepareService(dataBaseConfig).createParkingSpots(SPOTS, 0);
+    }
+
+    @Test
+    public void concurrentEntriesNeverShareASpot() throws Exception {
+        ParkingService[] instances = new ParkingService[INSTANCES];
+        for (int i = 0; i < INSTANCES; i++) {
+            TicketDAO ticketDAO = new TicketDAO();
+            ticketDAO.dataBaseConfig = dataBaseConfig;
+            instances[i] = new ParkingService(newParkingSpotDAO(), ticketDAO);
+        }
+        AtomicInteger parked = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        runThreads(thread -> {
+            ParkingService parkingService = instances[thread % INSTANCES];
+            for (int i = 0; ; i++) {
+                EntryResult result = parkingService.enter(ParkingType.CAR, String.format("S%02d%05d", thread, i));
+                if (result.getStatus() == EntryResult.Status.PARKING_FULL) {
+                    return;
+                }
+                (result.isParked() ? parked : failed).incrementAndGet();
+            }
+        });
+
+        assertEquals(SPOTS, parked.get());
+        assertEquals(0, countAvailableSpots());
+        try (Connection con = dataBaseConfig.getConnection();
+             ResultSet rs = con.createStatement().executeQuery(
+                     "select count(*), count(distinct PARKING_NUMBER) from ticket where OUT_TIME is null")) {
+            assertTrue(rs.next());
+            assertEquals(SPOTS, rs.getInt(1));
+            assertEquals(SPOTS, rs.getInt(2));
+        }
+    }
+
+    private ParkingSpotDAO newParkingSpotDAO() {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.loadAvailableSlots();
+        parkingSpotDAO.setResyncIntervalMillis(0);
+        return parkingSpotDAO;
+    }
+
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    //Lance THREADS threads ensemble et attend leur fin
+    private static void runThreads(Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit((Callable<Object>) () -> {
+                    start.await();
+                    worker.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<Object> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int countAvailableSpots() throws Exception {
+        try (Connection con = dataBaseConfig.getConnection();
+             ResultSet rs = con.createStatement().executeQuery("select count(*) from parking where AVAILABLE = true")) {
+            return rs.next() ? rs.getInt(1) : -1;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.TariffTable;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TariffTableTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private static final ZoneId UTC = ZoneId.of("UTC");
+    private static final ZoneId PARIS = ZoneId.of("Europe/Paris");
+
+    private final TariffTable tariffTable = TariffTable.defaultTariff();
+
+    @Test
+    public void priceIsExactInTenThousandths() {
+        assertEquals(15_000, tariffTable.price(ParkingType.CAR, 0, HOUR, 1));
+        assertEquals(11_250, tariffTable.price(ParkingType.CAR, 0, 45 * 60_000L, 1));
+        assertEquals(14_250, tariffTable.price(ParkingType.CAR, 0, HOUR, 2));
+        assertEquals(9_500, tariffTable.price(ParkingType.BIKE, 0, HOUR, 5));
+    }
+
+    @Test
+    public void freePeriodIsNotCharged() {
+        assertEquals(0, tariffTable.price(ParkingType.CAR, 0, 30 * 60_000L, 1));
+        // au-delà de 30 minutes, toute la durée est facturée : 50 minutes = 5/6 d'heure
+        assertEquals(12_500, tariffTable.price(ParkingType.CAR, 0, 50 * 60_000L, 1));
+    }
+
+    @Test
+    public void priceIsRoundedHalfUp() {
+        // 1 ms de voiture = 15 000 / 3 600 000 unités : 240 ms valent exactement 1 unité, 120 ms une demi-unité
+        TariffTable noFreePeriod = TariffTable.builder()
+                .ratePerHour(ParkingType.CAR, 1.5)
+                .ratePerHour(ParkingType.BIKE, 1.0)
+                .build();
+        assertEquals(1, noFreePeriod.price(ParkingType.CAR, 0, 120, 1));
+        assertEquals(0, noFreePeriod.price(ParkingType.CAR, 0, 119, 1));
+    }
+
+    @Test
+    public void discountTiersApplyFromTheirVisitCount() {
+        TariffTable tiers = TariffTable.builder()
+                .ratePerHour(ParkingType.CAR, 2.0)
+                .ratePerHour(ParkingType.BIKE, 1.0)
+                .discountFromVisit(2, 500)
+                .discountFromVisit(10, 2_000)
+                .build();
+        assertEquals(20_000, tiers.price(ParkingType.CAR, 0, HOUR, 1));
+        assertEquals(19_000, tiers.price(ParkingType.CAR, 0, HOUR, 9));
+        assertEquals(16_000, tiers.price(ParkingType.CAR, 0, HOUR, 10));
+        assertEquals(16_000, tiers.price(ParkingType.CAR, 0, HOUR, 500));
+    }
+
+    @Test
+    public void longStaysDoNotOverflow() {
+        long tenYears = 10L * 365 * 24 * HOUR;
+        assertEquals(10L * 365 * 24 * 14_250, tariffTable.price(ParkingType.CAR, 0, tenYears, 2));
+    }
+
+    @Test
+    public void outTimeBeforeInTimeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> tariffTable.price(ParkingType.CAR, HOUR, 0, 1));
+    }
+
+    @Test
+    public void stayIsSplitAcrossTimeBands() {
+        TariffTable bands = bandedTariff(UTC);
+        // lundi 18 h - 22 h : 2 h à 1,50 € puis 2 h de nuit à 0,75 €
+        assertEquals(45_000, bands.price(ParkingType.CAR, millis(UTC, 2024, 1, 1, 18), millis(UTC, 2024, 1, 1, 22), 1));
+        // vendredi 22 h - samedi 2 h : la tranche week-end déclarée ensuite l'emporte sur la nuit
+        assertEquals(2 * 7_500 + 2 * 12_000, bands.price(ParkingType.CAR,
+                millis(UTC, 2024, 1, 5, 22), millis(UTC, 2024, 1, 6, 2), 1));
+        // une semaine : 5 jours à 12 h de jour et 12 h de nuit, 2 jours de week-end ; quatre semaines = 4 fois plus
+        long week = 5 * (12 * 15_000 + 12 * 7_500) + 2 * 24 * 12_000;
+        assertEquals(4 * week, bands.price(ParkingType.CAR, millis(UTC, 2024, 1, 1, 18), millis(UTC, 2024, 1, 29, 18), 1));
+        assertEquals(4 * week * 95 / 100, bands.price(ParkingType.CAR,
+                millis(UTC, 2024, 1, 3, 9), millis(UTC, 2024, 1, 31, 9), 2));
+        // la période gratuite porte sur la durée réelle
+        assertEquals(0, bands.price(ParkingType.CAR, millis(UTC, 2024, 1, 1, 18), millis(UTC, 2024, 1, 1, 18) + 30 * 60_000L, 1));
+    }
+
+    @Test
+    public void timeBandsFollowDaylightSavingChanges() {
+        TariffTable bands = bandedTariff(PARIS);
+        // samedi 22 h - dimanche 6 h heure de Paris : 7 h réelles au passage à l'heure d'été, 9 h au passage à l'heure d'hiver
+        assertEquals(7 * 12_000, bands.price(ParkingType.CAR, millis(PARIS, 2024, 3, 30, 22), millis(PARIS, 2024, 3, 31, 6), 1));
+        assertEquals(9 * 12_000, bands.price(ParkingType.CAR, millis(PARIS, 2024, 10, 26, 22), millis(PARIS, 2024, 10, 27, 6), 1));
+        // lundi : nuit jusqu'à 8 h puis tarif plein
+        assertEquals(2 * 7_500 + 15_000, bands.price(ParkingType.CAR, millis(PARIS, 2024, 4, 1, 6), millis(PARIS, 2024, 4, 1, 9), 1));
+    }
+
+    @Test
+    public void surchargeTiersFollowOccupancy() {
+        TariffTable surge = TariffTable.builder()
+                .ratePerHour(ParkingType.CAR, 1.5)
+                .ratePerHour(ParkingType.BIKE, 1.0)
+                .discountFromVisit(2, 500)
+                .surcharges("8000:2000, 9500:5000")
+                .build();
+        assertEquals(15_000, surge.price(ParkingType.CAR, 0, HOUR, 1, 7_999));
+        assertEquals(18_000, surge.price(ParkingType.CAR, 0, HOUR, 1, 8_000));
+        assertEquals(22_500, surge.price(ParkingType.CAR, 0, HOUR, 1, 10_000));
+        assertEquals(21_375, surge.price(ParkingType.CAR, 0, HOUR, 2, 9_500));
+        assertEquals(15_000, surge.price(ParkingType.CAR, 0, HOUR, 1));
+        long tenYears = 10L * 365 * 24 * HOUR;
+        assertEquals(10L * 365 * 24 * 21_375, surge.price(ParkingType.CAR, 0, tenYears, 2, 9_500));
+
+        TariffTable nightSurge = TariffTable.builder()
+                .ratePerHour(ParkingType.CAR, 1.5)
+                .ratePerHour(ParkingType.BIKE, 1.0)
+                .timeBands("MON-SUN 20:00-08:00 5000")
+                .zone(UTC)
+                .surchargeFromOccupancy(9_000, 5_000)
+                .build();
+        assertEquals(11_250, nightSurge.price(ParkingType.CAR, millis(UTC, 2024, 1, 1, 21), millis(UTC, 2024, 1, 1, 22), 1, 9_000));
+    }
+
+    @Test
+    public void invalidBandsAreRejected() {
+        TariffTable.Builder builder = TariffTable.builder();
+        assertThrows(IllegalArgumentException.class, () -> builder.timeBands("MON-FRI 20:00 5000"));
+        assertThrows(IllegalArgumentException.class, () -> builder.timeBands("XYZ 20:00-08:00 5000"));
+        assertThrows(IllegalArgumentException.class, () -> builder.timeBands("MON 25:00-08:00 5000"));
+        assertThrows(IllegalArgumentException.class, () -> builder.surcharges("8000"));
+        assertThrows(IllegalArgumentException.class, () -> builder.surchargeFromOccupancy(12_000, 1_000));
+    }
+
+    //nuit à -50% tous les jours de 20 h à 8 h, week-end entier à -20%
+    private static TariffTable bandedTariff(ZoneId zone) {
+        return TariffTable.builder()
+                .ratePerHour(ParkingType.CAR, 1.5)
+                .ratePerHour(ParkingType.BIKE, 1.0)
+                .freePeriodMinutes(30)
+                .discountFromVisit(2, 500)
+                .timeBand(EnumSet.allOf(DayOfWeek.class), LocalTime.of(20, 0), LocalTime.of(8, 0), 5_000)
+                .timeBands("SAT,SUN 00:00-00:00 8000")
+                .zone(zone)
+                .build();
+    }
+
+    private static long millis(ZoneId zone, int year, int month, int day, int hour) {
+        return LocalDateTime.of(year, month, day, hour, 0).atZone(zone).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,100 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.TicketArchiveJob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketArchiveJobTest {
+
+    private static final long DAY = 86_400_000L;
+
+    private final EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("ticketArchive");
+
+    private TicketDAO ticketDAO;
+    private long now;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        new DataBasePrepareService(dataBaseConfig).createParkingSpots(3, 2);
+        now = System.currentTimeMillis() / 1000 * 1000;
+        // ABC : deux passages anciens et un récent, DEF : un passage ancien en moto, GHI : ticket ouvert
+        insertTicket(1, 1, "ABC", now - 200 * DAY, now - 200 * DAY + 3_600_000L);
+        insertTicket(2, 2, "ABC", now - 100 * DAY, now - 100 * DAY + 3_600_000L);
+        insertTicket(3, 4, "DEF", now - 120 * DAY, now - 120 * DAY + 3_600_000L);
+        insertTicket(4, 1, "ABC", now - DAY, now - DAY + 3_600_000L);
+        insertTicket(5, 3, "GHI", now - 300 * DAY, 0);
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    @Test
+    public void oldClosedTicketsAreMovedToArchive() throws Exception {
+        TicketArchiveJob.Result result = new TicketArchiveJob(dataBaseConfig, 30, 2).run();
+
+        assertEquals(3, result.getArchived());
+        assertEquals(3, result.getLastId());
+        assertEquals(2, queryInt("select count(*) from ticket"));
+        assertEquals(3, queryInt("select count(*) from ticket_archive"));
+        LocalDateTime firstOut = new Timestamp(now - 200 * DAY + 3_600_000L).toLocalDateTime();
+        assertEquals(firstOut.getYear() * 100 + firstOut.getMonthValue(), queryInt("select ARCHIVE_MONTH from ticket_archive where ID = 1"));
+        assertEquals(2, queryInt("select TICKETS from ticket_archive_count where VEHICLE_REG_NUMBER = 'ABC'"));
+
+        // passages et historique voient toujours tout, le dernier ticket vient de la table courante
+        assertEquals(3, ticketDAO.getNbTicket("ABC"));
+        assertEquals(1, ticketDAO.getNbTicket("DEF"));
+        assertEquals(4, ticketDAO.getTicket("ABC").getId());
+        List<Ticket> history = ticketDAO.getTicketHistory("ABC");
+        assertEquals("[1, 2, 4]", history.stream().map(Ticket::getId).collect(Collectors.toList()).toString());
+        assertEquals(ParkingType.BIKE, ticketDAO.getTicketHistory("DEF").get(0).getParkingSpot().getParkingType());
+        ticketDAO.loadTicketCounts();
+        assertEquals(Integer.valueOf(3), ticketDAO.getTicketCountCache().get("ABC"));
+    }
+
+    @Test
+    public void rerunArchivesOnlyNewlyExpiredTickets() throws Exception {
+        new TicketArchiveJob(dataBaseConfig, 150, 10).run();
+        assertEquals(1, queryInt("select count(*) from ticket_archive"));
+
+        TicketArchiveJob.Result result = new TicketArchiveJob(dataBaseConfig, 30, 10).run();
+
+        assertEquals(2, result.getArchived());
+        assertEquals(2, queryInt("select TICKETS from ticket_archive_count where VEHICLE_REG_NUMBER = 'ABC'"));
+        assertEquals(0, new TicketArchiveJob(dataBaseConfig, 30, 10).run().getArchived());
+    }
+
+    private void insertTicket(int id, int parkingNumber, String plate, long inTime, long outTime) throws Exception {
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(
+                     "insert into ticket(ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,1.5,?,?)")) {
+            ps.setInt(1, id);
+            ps.setInt(2, parkingNumber);
+            ps.setString(3, plate);
+            ps.setTimestamp(4, new Timestamp(inTime));
+            ps.setTimestamp(5, outTime == 0 ? null : new Timestamp(outTime));
+            ps.executeUpdate();
+        }
+    }
+
+    private int queryInt(String sql) throws Exception {
+        try (Connection con = dataBaseConfig.getConnection();
+             ResultSet rs = con.prepareStatement(sql).executeQuery()) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.dao.TicketCountCache;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketCountCacheTest {
+
+    private TicketCountCache ticketCountCache;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        ticketCountCache = new TicketCountCache(2);
+    }
+
+    @Test
+    public void getCountsHitsAndMisses() {
+        assertNull(ticketCountCache.get("ABCDEF"));
+        ticketCountCache.put("ABCDEF", 3);
+        assertEquals(Integer.valueOf(3), ticketCountCache.get("ABCDEF"));
+
+        assertEquals(1, ticketCountCache.getHitCount());
+        assertEquals(1, ticketCountCache.getMissCount());
+        assertEquals(0.5, ticketCountCache.getHitRatio());
+    }
+
+    @Test
+    public void incrementOnlyUpdatesKnownVehicles() {
+        ticketCountCache.put("ABCDEF", 1);
+        assertEquals(Integer.valueOf(2), ticketCountCache.increment("ABCDEF"));
+        // Une plaque inconnue n'est pas ajoutée : son total sera relu en base
+        assertNull(ticketCountCache.increment("GHIJKL"));
+        assertEquals(1, ticketCountCache.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedVehicleIsEvicted() {
+        ticketCountCache.put("AAA", 1);
+        ticketCountCache.put("BBB", 1);
+        ticketCountCache.get("AAA"); // AAA devient la plus récemment consultée
+        ticketCountCache.put("CCC", 1);
+
+        assertEquals(2, ticketCountCache.size());
+        assertEquals(1, ticketCountCache.getEvictionCount());
+        assertNotNull(ticketCountCache.get("AAA"));
+        assertNull(ticketCountCache.get("BBB"));
+    }
+
+    @Test
+    public void warmUpKeepsMostRecentVehiclesLongest() throws Exception {
+        EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("ticketCountWarmUp");
+        new DataBasePrepareService(dataBaseConfig).createParkingSpots(3, 0);
+        long now = System.currentTimeMillis();
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(
+                     "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(1,?,0,?,?)")) {
+            // AAA, puis BBB, puis CCC : CCC est la plus récente
+            for (String plate : new String[]{"AAA", "BBB", "CCC"}) {
+                ps.setString(1, plate);
+                ps.setTimestamp(2, new Timestamp(now));
+                ps.setTimestamp(3, new Timestamp(now));
+                ps.executeUpdate();
+            }
+        }
+        TicketDAO ticketDAO = new TicketDAO(2);
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.loadTicketCounts();
+        TicketCountCache warmed = ticketDAO.getTicketCountCache();
+        assertEquals(2, warmed.size());
+
+        // premier véhicule vu en direct : la plus ancienne des plaques préchauffées est évincée
+        warmed.put("DDD", 1);
+        assertEquals(Integer.valueOf(1), warmed.get("CCC"));
+        assertNull(warmed.get("BBB"));
+        assertNull(warmed.get("AAA"));
+    }
+}
@@ -0,0 +1,139 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.dao.TicketJournal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketJournalTest {
+
+    private Path journalFile;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        journalFile = Files.createTempDirectory("ticketJournal").resolve("tickets.journal");
+    }
+
+    @Test
+    public void syncedRecordsAreReplayedAfterReopen() throws Exception {
+        try (TicketJournal journal = TicketJournal.open(journalFile, 4096, 0, 1000)) {
+            journal.sync(journal.append((byte) 1, bytes("ABC")));
+            journal.sync(journal.append((byte) 2, bytes("DEF")));
+        }
+
+        try (TicketJournal journal = TicketJournal.open(journalFile, 4096, 0, 1000)) {
+            List<TicketJournal.Record> records = journal.poll(10, 0);
+            assertEquals(2, records.size());
+            assertEquals(1, records.get(0).getSeq());
+            assertEquals(1, records.get(0).getType());
+            assertEquals("ABC", new String(records.get(0).getPayload(), StandardCharsets.UTF_8));
+            assertEquals(2, records.get(1).getSeq());
+            assertEquals("DEF", new String(records.get(1).getPayload(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void appliedRecordsAreNotReplayed() throws Exception {
+        try (TicketJournal journal = TicketJournal.open(journalFile, 4096, 41, 1000)) {
+            journal.sync(journal.append((byte) 1, bytes("ABC")));
+            journal.sync(journal.append((byte) 1, bytes("DEF")));
+            journal.markApplied(journal.poll(1, 0).get(0));
+        }
+
+        try (TicketJournal journal = TicketJournal.open(journalFile, 4096, 0, 1000)) {
+            assertEquals(42, journal.getAppliedSeq());
+            List<TicketJournal.Record> records = journal.poll(10, 0);
+            assertEquals(1, records.size());
+            assertEquals(43, records.get(0).getSeq());
+        }
+    }
+
+    @Test
+    public void recoveryStopsAtCorruptedRecord() throws Exception {
+        try (TicketJournal journal = TicketJournal.open(journalFile, 4096, 0, 1000)) {
+            journal.append((byte) 1, bytes("ABC"));
+            journal.sync(journal.append((byte) 1, bytes("DEF")));
+        }
+        // un octet de la plaque du second enregistrement est abîmé : son CRC ne correspond plus
+        int secondRecordPayload = 64 + 17 + 3 + 17;
+        try (RandomAccessFile file = new RandomAccessFile(journalFile.toFile(), "rw")) {
+            file.seek(secondRecordPayload);
+            file.write('X');
+        }
+
+        try (TicketJournal journal = TicketJournal.open(journalFile, 4096, 0, 1000)) {
+            assertEquals(1, journal.getLastSeq());
+            assertEquals(1, journal.poll(10, 0).size());
+            // l'écriture reprend à la place de l'enregistrement perdu
+            assertEquals(2, journal.append((byte) 1, bytes("GHI")));
+        }
+    }
+
+    @Test
+    public void ringIsReusedOnceRecordsAreApplied() throws Exception {
+        byte[] payload = new byte[100];
+        try (TicketJournal journal = TicketJournal.open(journalFile, 1024, 0, 100)) {
+            for (int i = 0; i < 50; i++) {
+                journal.sync(journal.append((byte) 1, payload));
+                List<TicketJournal.Record> records = journal.poll(10, 0);
+                assertEquals(1, records.size());
+                assertEquals(i + 1, records.get(0).getSeq());
+                journal.markApplied(records.get(0));
+            }
+            // rien n'est appliqué : l'anneau se remplit et l'ajout échoue après le délai
+            assertThrows(java.io.IOException.class, () -> {
+                for (int i = 0; i < 10; i++) {
+                    journal.append((byte) 1, payload);
+                }
+            });
+            journal.sync(journal.getLastSeq());
+        }
+
+        try (TicketJournal journal = TicketJournal.open(journalFile, 1024, 0, 100)) {
+            List<TicketJournal.Record> records = journal.poll(100, 0);
+            assertFalse(records.isEmpty());
+            assertEquals(51, records.get(0).getSeq());
+            assertEquals(journal.getLastSeq(), records.get(records.size() - 1).getSeq());
+        }
+    }
+
+    @Test
+    public void concurrentAppendsShareDiskSyncs() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (TicketJournal journal = TicketJournal.open(journalFile, 1 << 20, 0, 1000)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        journal.sync(journal.append((byte) 1, bytes("ABCDEF")));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            assertEquals(800, journal.getLastSeq());
+            assertEquals(800, journal.poll(1000, 0).size());
+            assertTrue(journal.getSyncCount() <= 800);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
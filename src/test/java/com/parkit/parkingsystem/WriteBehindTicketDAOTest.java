@@ -0,0 +1,186 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketJournal;
+import com.parkit.parkingsystem.dao.TicketStore;
+import com.parkit.parkingsystem.dao.WriteBehindTicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class WriteBehindTicketDAOTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private final SwitchableDataBaseConfig dataBaseConfig = new SwitchableDataBaseConfig();
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private final List<WriteBehindTicketDAO> startedDAOs = new ArrayList<>();
+
+    private Path journalFile;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        journalFile = Files.createTempDirectory("writeBehind").resolve("tickets.journal");
+        new DataBasePrepareService(dataBaseConfig).createParkingSpots(3, 2);
+        try (Connection con = dataBaseConfig.getConnection()) {
+            con.prepareStatement("delete from journal_checkpoint").execute();
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dataBaseConfig.down = false;
+        for (WriteBehindTicketDAO ticketDAO : startedDAOs) {
+            ticketDAO.stop(1000);
+        }
+    }
+
+    @Test
+    public void journaledTicketsAreWrittenToDataBase() throws Exception {
+        WriteBehindTicketDAO ticketDAO = start();
+
+        Ticket ticket = newTicket(1, ParkingType.CAR, "ABC", System.currentTimeMillis() - 2 * HOUR);
+        assertEquals(1, ticketDAO.saveIncomingTicket(ticket));
+        assertEquals(1, ticket.getId());
+
+        // la sortie retrouve le ticket encore dans le journal
+        Ticket closed = ticketDAO.saveOutgoingTicket("ABC", new Date(), fareCalculatorService);
+        assertNotNull(closed);
+        assertEquals(3.0, closed.getPrice(), 0.001);
+        assertNull(ticketDAO.saveOutgoingTicket("ABC", new Date(), fareCalculatorService));
+
+        assertTrue(ticketDAO.flush(5000));
+        assertEquals(3.0, queryDouble("select PRICE from ticket where ID=1 and OUT_TIME is not null"), 0.001);
+        assertEquals(1.0, queryDouble("select count(*) from parking where PARKING_NUMBER=1 and AVAILABLE = true"));
+        assertEquals(2.0, queryDouble("select SEQ from journal_checkpoint"));
+    }
+
+    @Test
+    public void entriesAreAcknowledgedWhileDataBaseIsDownAndReplayedOnRestart() throws Exception {
+        WriteBehindTicketDAO ticketDAO = start();
+        // cache préchauffé comme au démarrage de l'application : pas de comptage en base
+        ticketDAO.getTicketCountCache().put("ABC", 0);
+        ticketDAO.getTicketCountCache().put("DEF", 0);
+        dataBaseConfig.down = true;
+
+        assertEquals(1, ticketDAO.saveIncomingTicket(newTicket(1, ParkingType.CAR, "ABC", System.currentTimeMillis() - HOUR)));
+        assertEquals(1, ticketDAO.saveIncomingTicket(newTicket(4, ParkingType.BIKE, "DEF", System.currentTimeMillis())));
+        assertFalse(ticketDAO.flush(300));
+        ticketDAO.stop(300);
+
+        dataBaseConfig.down = false;
+        WriteBehindTicketDAO restarted = start();
+
+        assertEquals(2.0, queryDouble("select count(*) from ticket where OUT_TIME is null"));
+        assertEquals(2.0, queryDouble("select count(*) from parking where PARKING_NUMBER in (1,4) and AVAILABLE = false"));
+        Ticket closed = restarted.saveOutgoingTicket("ABC", new Date(), fareCalculatorService);
+        assertEquals(1, closed.getId());
+        assertEquals(1.5, closed.getPrice(), 0.001);
+        Ticket next = newTicket(2, ParkingType.CAR, "GHI", System.currentTimeMillis());
+        restarted.saveIncomingTicket(next);
+        assertEquals(3, next.getId());
+    }
+
+    @Test
+    public void entryJournaledButNotSyncedKeepsSpotAndSuspendsEntries() throws Exception {
+        AtomicBoolean syncFails = new AtomicBoolean();
+        WriteBehindTicketDAO ticketDAO = new WriteBehindTicketDAO(journalFile, 1 << 16, 100, 1000) {
+            @Override
+            protected TicketJournal openJournal(long initialSeq) throws IOException {
+                TicketJournal journal = spy(super.openJournal(initialSeq));
+                doAnswer(invocation -> {
+                    if (syncFails.get()) {
+                        throw new IOException("disk full");
+                    }
+                    return invocation.callRealMethod();
+                }).when(journal).sync(anyLong());
+                return journal;
+            }
+        };
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.start();
+        startedDAOs.add(ticketDAO);
+        ticketDAO.getTicketCountCache().put("ABC", 0);
+
+        syncFails.set(true);
+        Ticket inDoubt = newTicket(1, ParkingType.CAR, "ABC", System.currentTimeMillis() - HOUR);
+        assertEquals(TicketStore.ENTRY_IN_DOUBT, ticketDAO.saveIncomingTicket(inDoubt));
+        assertTrue(ticketDAO.isJournalFailed());
+        // journal toujours en échec : refus sans rien journaliser
+        assertEquals(TicketStore.ENTRY_FAILED, ticketDAO.saveIncomingTicket(newTicket(2, ParkingType.CAR, "DEF", System.currentTimeMillis())));
+        assertEquals(1, ticketDAO.getJournal().getLastSeq());
+
+        syncFails.set(false);
+        assertEquals(1, ticketDAO.saveIncomingTicket(newTicket(2, ParkingType.CAR, "GHI", System.currentTimeMillis())));
+        assertFalse(ticketDAO.isJournalFailed());
+        assertTrue(ticketDAO.flush(5000));
+
+        // le ticket en doute est appliqué : sa place est occupée, et le véhicule peut sortir
+        assertEquals(1.0, queryDouble("select count(*) from ticket where ID=1 and PARKING_NUMBER=1 and OUT_TIME is null"));
+        assertEquals(1.0, queryDouble("select count(*) from parking where PARKING_NUMBER=1 and AVAILABLE = false"));
+        assertEquals(1, ticketDAO.getNbTicket("ABC"));
+        assertEquals(1, ticketDAO.saveOutgoingTicket("ABC", new Date(), fareCalculatorService).getId());
+    }
+
+    private WriteBehindTicketDAO start() throws Exception {
+        WriteBehindTicketDAO ticketDAO = new WriteBehindTicketDAO(journalFile, 1 << 16, 100, 1000);
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.start();
+        startedDAOs.add(ticketDAO);
+        return ticketDAO;
+    }
+
+    private static Ticket newTicket(int parkingNumber, ParkingType parkingType, String vehicleRegNumber, long inTime) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, true));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(inTime));
+        return ticket;
+    }
+
+    private double queryDouble(String sql) throws Exception {
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            return rs.getDouble(1);
+        }
+    }
+
+    //Base H2 qu'on peut rendre indisponible pour simuler un blocage de MySQL
+    private static class SwitchableDataBaseConfig extends EmbeddedDataBaseTestConfig {
+        private volatile boolean down;
+
+        SwitchableDataBaseConfig() {
+            super("writeBehind");
+        }
+
+        @Override
+        public Connection getConnection() throws ClassNotFoundException, SQLException {
+            if (down) {
+                throw new SQLException("Database unavailable");
+            }
+            return super.getConnection();
+        }
+    }
+}
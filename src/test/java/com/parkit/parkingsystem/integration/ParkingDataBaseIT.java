@@ -1,5 +1,6 @@
 package com.parkit.parkingsystem.integration;
 
+import com.parkit.parkingsystem.config.SchemaMigrator;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
@@ -43,6 +44,7 @@ public class ParkingDataBaseIT {
         ticketDAO = new TicketDAO();
         ticketDAO.dataBaseConfig = dataBaseTestConfig;
         dataBasePrepareService = new DataBasePrepareService();
+        new SchemaMigrator(dataBaseTestConfig).migrate();
     }
 
     //configure le comportement des mocks et appelle clearDataBaseEntries() pour vider les tables concernées avant chaque test
@@ -51,6 +53,8 @@ public class ParkingDataBaseIT {
         lenient().when(inputReaderUtil.readSelection()).thenReturn(1);
         lenient().when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
         dataBasePrepareService.clearDataBaseEntries();
+        parkingSpotDAO.loadAvailableSlots();
+        ticketDAO.getTicketCountCache().clear();
     }
     //est prévue pour d’éventuels nettoyages finaux, ici laissée vide
     @AfterAll
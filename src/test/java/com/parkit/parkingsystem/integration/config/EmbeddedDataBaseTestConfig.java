@@ -0,0 +1,28 @@
+package com.parkit.parkingsystem.integration.config;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+
+//Base H2 en mémoire (mode MySQL) : même code DAO, sans serveur MySQL
+public class EmbeddedDataBaseTestConfig extends DataBaseConfig {
+
+    private final String url;
+
+    public EmbeddedDataBaseTestConfig(String name) {
+        this.url = "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+    }
+
+    @Override
+    protected String getUrl() {
+        return url;
+    }
+
+    @Override
+    protected String getUser() {
+        return "sa";
+    }
+
+    @Override
+    protected String getPassword() {
+        return "";
+    }
+}
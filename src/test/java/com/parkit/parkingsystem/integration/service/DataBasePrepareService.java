@@ -1,12 +1,23 @@
 package com.parkit.parkingsystem.integration.service;
 
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 
 public class DataBasePrepareService {
 
-    DataBaseTestConfig dataBaseTestConfig = new DataBaseTestConfig();
+    DataBaseConfig dataBaseTestConfig;
+
+    public DataBasePrepareService() {
+        this(new DataBaseTestConfig());
+    }
+
+    public DataBasePrepareService(DataBaseConfig dataBaseConfig) {
+        this.dataBaseTestConfig = dataBaseConfig;
+    }
 
     public void clearDataBaseEntries(){
         Connection connection = null;
@@ -18,6 +29,9 @@ public class DataBasePrepareService {
 
             //clear ticket entries;
             connection.prepareStatement("truncate table ticket").execute();
+            connection.prepareStatement("truncate table ticket_archive").execute();
+            connection.prepareStatement("truncate table ticket_archive_count").execute();
+            connection.prepareStatement("truncate table reservation").execute();
 
         }catch(Exception e){
             e.printStackTrace();
@@ -26,5 +40,30 @@ public class DataBasePrepareService {
         }
     }
 
+    //Crée le schéma par les migrations puis les places : numéros 1..cars pour CAR, puis les BIKE
+    public void createParkingSpots(int cars, int bikes){
+        Connection connection = null;
+        try{
+            new SchemaMigrator(dataBaseTestConfig).migrate();
+            connection = dataBaseTestConfig.getConnection();
+            connection.prepareStatement("truncate table ticket").execute();
+            connection.prepareStatement("truncate table ticket_archive").execute();
+            connection.prepareStatement("truncate table ticket_archive_count").execute();
+            connection.prepareStatement("truncate table reservation").execute();
+            connection.prepareStatement("delete from parking").execute();
+            try (PreparedStatement ps = connection.prepareStatement("insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(?,true,?)")) {
+                for (int number = 1; number <= cars + bikes; number++) {
+                    ps.setInt(1, number);
+                    ps.setString(2, number <= cars ? "CAR" : "BIKE");
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }catch(Exception e){
+            throw new IllegalStateException("Unable to create parking spots", e);
+        }finally {
+            dataBaseTestConfig.closeConnection(connection);
+        }
+    }
 
 }